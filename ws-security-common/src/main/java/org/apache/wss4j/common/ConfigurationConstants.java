@@ -549,6 +549,31 @@ public class ConfigurationConstants {
      */
     public static final String EXPAND_XOP_INCLUDE = "expandXOPInclude";
 
+    /**
+     * Whether to index the elements of the message by their Id, the first time that a referenced
+     * element is looked up, instead of searching the message for each reference when verifying a
+     * Signature or decrypting. This is more efficient for messages with many references. The
+     * default is false.
+     */
+    public static final String ENABLE_ID_INDEX = "enableIdIndex";
+
+    /**
+     * Whether to canonicalize and digest the References of a Signature concurrently, before the
+     * SignatureValue is checked. The References are validated on the Executor configured via
+     * REFERENCE_VALIDATION_EXECUTOR_INSTANCE, or on the common ForkJoinPool if none is configured.
+     * This reduces the latency of verifying signatures over many (large) parts of a message. The
+     * default is false.
+     */
+    public static final String PARALLEL_REFERENCE_VALIDATION = "parallelReferenceValidation";
+
+    /**
+     * Whether to decrypt the EncryptedData elements referenced by a ReferenceList concurrently. The
+     * decrypted elements are inserted into the message on the calling thread, in the order of the
+     * references. The elements are decrypted on the Executor configured via DECRYPTION_EXECUTOR_INSTANCE,
+     * or on the common ForkJoinPool if none is configured. The default is false.
+     */
+    public static final String PARALLEL_DECRYPTION = "parallelDecryption";
+
     //
     // (Non-boolean) Configuration parameters for the actions/processors
     //
@@ -888,6 +913,14 @@ public class ConfigurationConstants {
      */
     public static final String SAML_ONE_TIME_USE_CACHE_INSTANCE = "samlOneTimeUseCacheInstance";
 
+    /**
+     * The directory in which persistent replay caches are stored. If this is set, then a
+     * MappedFileReplayCache, which survives restarts, is used for each of the nonce, Timestamp and
+     * SAML OneTimeUse replay caches that is not configured via NONCE_CACHE_INSTANCE,
+     * TIMESTAMP_CACHE_INSTANCE or SAML_ONE_TIME_USE_CACHE_INSTANCE. It is not set by default.
+     */
+    public static final String REPLAY_CACHE_DIRECTORY = "replayCacheDirectory";
+
     /**
      * This holds a reference to a PasswordEncryptor instance, which is used to encrypt or
      * decrypt passwords in the Merlin Crypto implementation (or any custom Crypto implementations).
@@ -901,6 +934,43 @@ public class ConfigurationConstants {
      */
     public static final String PASSWORD_ENCRYPTOR_INSTANCE = "passwordEncryptorInstance";
 
+    /**
+     * This holds a reference to a java.util.concurrent.Executor instance, which is used to validate
+     * the References of a Signature concurrently, if PARALLEL_REFERENCE_VALIDATION is enabled. The
+     * default is the common ForkJoinPool.
+     */
+    public static final String REFERENCE_VALIDATION_EXECUTOR_INSTANCE = "referenceValidationExecutorInstance";
+
+    /**
+     * This holds a reference to a java.util.concurrent.Executor instance, which is used to decrypt
+     * EncryptedData elements concurrently, if PARALLEL_DECRYPTION is enabled. The default is the
+     * common ForkJoinPool.
+     */
+    public static final String DECRYPTION_EXECUTOR_INSTANCE = "decryptionExecutorInstance";
+
+    /**
+     * This holds a reference to an EncryptedKeyCache instance, which is used to cache the secret keys
+     * that are unwrapped from EncryptedKey elements. A message that contains an EncryptedKey that
+     * was already unwrapped (identified by its EncryptedKeySHA1) then skips the private key operation.
+     * It is not set by default.
+     */
+    public static final String ENCRYPTED_KEY_CACHE_INSTANCE = "encryptedKeyCacheInstance";
+
+    /**
+     * This holds a reference to a SamlAssertionCache instance, which is used to cache signed SAML
+     * Assertions that have been validated. A message that contains an Assertion that was already
+     * validated then skips the signature and trust checks of the Assertion. Assertions with a
+     * OneTimeUse Condition are never cached. It is not set by default.
+     */
+    public static final String SAML_ASSERTION_CACHE_INSTANCE = "samlAssertionCacheInstance";
+
+    /**
+     * This holds a reference to a PasswordCallbackCache instance, which is used to cache the
+     * passwords that the CallbackHandler supplies to validate UsernameTokens. Concurrent
+     * lookups of the same user only call the CallbackHandler once. It is not set by default.
+     */
+    public static final String PASSWORD_CALLBACK_CACHE_INSTANCE = "passwordCallbackCacheInstance";
+
     /**
      * This controls the deriving token from which DerivedKeyTokens derive keys from.
      * Valid values are:
@@ -0,0 +1,397 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A ReplayCache decorator, that puts a set of in-memory Bloom filters in front of another ReplayCache
+ * (e.g. a MemoryReplayCache or an EHCacheReplayCache). As most identifiers are only ever seen once, most
+ * lookups can be answered by the Bloom filter alone ("definitely not seen"), and the backing cache is only
+ * consulted if the identifier might have been seen before.
+ *
+ * The Bloom filters are partitioned by expiry time - each filter holds the identifiers that expire
+ * in a given time window, and is cleared and re-used once all of them have expired.
+ *
+ * The Bloom filters must know about every identifier in the backing cache, and so only two kinds of
+ * backing cache are supported:
+ *  - A private, in-memory MemoryReplayCache, ConcurrentMemoryReplayCache or DigestReplayCache, which is
+ *    owned by this instance - it must not be written to other than via this instance.
+ *  - An EHCacheReplayCache, which may be shared with other writers (including other cluster nodes if the
+ *    cache is replicated) and may be persisted to disk. The filters are populated with the identifiers
+ *    already in the cache when this instance is created, and then with the identifiers added by any writer
+ *    via a cache event listener. If the filters report that an identifier was definitely not seen, the
+ *    backing cache is not consulted, and the identifier is simply added to it. So putIfAbsent is only atomic
+ *    with respect to the other users of this instance - an identifier that another writer adds at the same
+ *    time is only known once the listener is notified. (For a replicated cache, even the putIfAbsent of the
+ *    EHCacheReplayCache itself is only atomic within a single node.)
+ * Any other backing cache is rejected, as identifiers added by another writer or before a restart would
+ * otherwise be accepted as new.
+ *
+ * The backing cache must not keep an identifier for longer than the given maximum TTL. This is enforced
+ * for the identifiers added via this instance, but not for those added by other writers of an
+ * EHCacheReplayCache, and so the maximum TTL must be at least the maximum TTL of the EHCacheReplayCache.
+ */
+public class BloomFilterReplayCache implements ReplayCache {
+
+    public static final long DEFAULT_MAX_TTL = 3600L;
+    public static final int DEFAULT_EXPECTED_INSERTIONS = 100000;
+    public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private static final int PARTITIONS = 8;
+    private static final int LOCKS = 256;
+
+    private final ReplayCache replayCache;
+    private final boolean sharedCache;
+    private final long maxTTL;
+    private final long windowMillis;
+    private final int bitCount;
+    private final int hashCount;
+    private final Partition[] partitions = new Partition[PARTITIONS + 2];
+    private final Object[] locks = new Object[LOCKS];
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder filterMisses = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public BloomFilterReplayCache(ReplayCache replayCache) {
+        this(replayCache, Math.max(DEFAULT_MAX_TTL, getMinimumMaxTTL(replayCache)),
+             DEFAULT_EXPECTED_INSERTIONS, DEFAULT_FALSE_POSITIVE_PROBABILITY);
+    }
+
+    /**
+     * Create a new BloomFilterReplayCache
+     * @param replayCache The backing ReplayCache, either a private in-memory cache or an EHCacheReplayCache
+     * @param maxTTL The maximum TTL in seconds of an identifier in the backing ReplayCache
+     * @param expectedInsertions The expected number of identifiers that are cached at any one time
+     * @param falsePositiveProbability The desired probability that the Bloom filter reports an identifier
+     *        that was not seen before as possibly seen
+     * @throws IllegalArgumentException if the backing ReplayCache is not supported, or the maximum TTL is
+     *         less than the maximum TTL of the backing ReplayCache
+     */
+    public BloomFilterReplayCache(
+        ReplayCache replayCache, long maxTTL, int expectedInsertions, double falsePositiveProbability
+    ) {
+        if (replayCache == null || maxTTL <= 0 || expectedInsertions <= 0
+            || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter replay cache configuration");
+        }
+        sharedCache = isEHCacheReplayCache(replayCache);
+        if (!sharedCache && !isPrivateCache(replayCache)) {
+            throw new IllegalArgumentException(
+                "A Bloom filter replay cache can't be used with a " + replayCache.getClass().getName()
+            );
+        }
+        if (maxTTL < getMinimumMaxTTL(replayCache)) {
+            throw new IllegalArgumentException(
+                "The maximum TTL of a Bloom filter replay cache must be at least " + getMinimumMaxTTL(replayCache)
+            );
+        }
+        this.replayCache = replayCache;
+        this.maxTTL = maxTTL;
+        windowMillis = Math.max(maxTTL * 1000L / PARTITIONS, 1000L);
+
+        // Standard Bloom filter sizing for the identifiers of one partition
+        double insertions = Math.max(expectedInsertions / (double)PARTITIONS, 1024.0);
+        double bits = -insertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        bitCount = (int)Math.min(Math.ceil(bits / 64.0) * 64.0, Integer.MAX_VALUE - 63);
+        hashCount = Math.max(1, (int)Math.round(bitCount / insertions * Math.log(2)));
+
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(bitCount / 64);
+        }
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+
+        if (sharedCache) {
+            ((EHCacheReplayCache)replayCache).registerListener(this::putCachedIdentifier);
+        }
+    }
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     */
+    public void add(String identifier) {
+        add(identifier, null);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier
+     */
+    public void add(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        long[] digest = ReplayCacheUtils.digest(identifier);
+        synchronized (getLock(digest)) {
+            // Update the filter first, so that the identifier is never in the backing cache but not in the filter
+            put(digest, getFilterExpiry(expiry, now));
+            if (expiry == null) {
+                replayCache.add(identifier);
+            } else {
+                replayCache.add(identifier, getCacheExpiry(expiry, now));
+            }
+        }
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already contained
+     * in the cache. The check and the addition are performed as a single atomic operation.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for a default amount of time
+     * @return true if the identifier was added, or false if it was already contained in the cache
+     */
+    public boolean putIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        Instant now = Instant.now();
+        long[] digest = ReplayCacheUtils.digest(identifier);
+        lookups.increment();
+        synchronized (getLock(digest)) {
+            if (mightContain(digest, now.toEpochMilli())) {
+                if (!replayCache.putIfAbsent(identifier, getCacheExpiry(expiry, now))) {
+                    cacheHits.increment();
+                    return false;
+                }
+                falsePositives.increment();
+            } else {
+                // Definitely not seen before, so a plain add is sufficient for the backing cache
+                filterMisses.increment();
+                replayCache.add(identifier, getCacheExpiry(expiry, now));
+            }
+            put(digest, getFilterExpiry(expiry, now));
+            return true;
+        }
+    }
+
+    /**
+     * Return true if the given identifier is contained in the cache
+     * @param identifier The identifier to check
+     */
+    public boolean contains(String identifier) {
+        if (identifier == null || "".equals(identifier)) {
+            return false;
+        }
+
+        lookups.increment();
+        if (!mightContain(ReplayCacheUtils.digest(identifier), Instant.now().toEpochMilli())) {
+            filterMisses.increment();
+            return false;
+        }
+        if (replayCache.contains(identifier)) {
+            cacheHits.increment();
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * Get the backing ReplayCache
+     * @return the backing ReplayCache
+     */
+    public ReplayCache getReplayCache() {
+        return replayCache;
+    }
+
+    /**
+     * Get the number of lookups (contains or putIfAbsent calls) so far
+     * @return the number of lookups so far
+     */
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * Get the number of lookups that were answered by the Bloom filter alone
+     * @return the number of lookups that were answered by the Bloom filter alone
+     */
+    public long getFilterMissCount() {
+        return filterMisses.sum();
+    }
+
+    /**
+     * Get the number of lookups that found the identifier in the backing cache
+     * @return the number of lookups that found the identifier in the backing cache
+     */
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Get the number of lookups for which the Bloom filter reported a possible hit, but the identifier
+     * was not found in the backing cache
+     * @return the number of false positives of the Bloom filter
+     */
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Get the ratio of lookups that were answered by the Bloom filter alone
+     * @return the ratio of lookups that were answered by the Bloom filter alone
+     */
+    public double getFilterHitRate() {
+        long count = lookups.sum();
+        return count == 0 ? 0.0 : filterMisses.sum() / (double)count;
+    }
+
+    private void putCachedIdentifier(String identifier, Instant expiry) {
+        Instant now = Instant.now();
+        if (!expiry.isBefore(now)) {
+            put(ReplayCacheUtils.digest(identifier), getFilterExpiry(expiry, now));
+        }
+    }
+
+    private static boolean isEHCacheReplayCache(ReplayCache replayCache) {
+        // Don't load the EHCacheReplayCache class unless EH-Cache is available
+        return ReplayCacheFactory.isEhCacheInstalled() && replayCache instanceof EHCacheReplayCache;
+    }
+
+    private static boolean isPrivateCache(ReplayCache replayCache) {
+        // The exact classes are checked, as e.g. a MappedFileReplayCache is persistent and may be shared
+        Class<?> cacheClass = replayCache.getClass();
+        return cacheClass == MemoryReplayCache.class || cacheClass == ConcurrentMemoryReplayCache.class
+            || cacheClass == DigestReplayCache.class;
+    }
+
+    private static long getMinimumMaxTTL(ReplayCache replayCache) {
+        if (replayCache != null && isEHCacheReplayCache(replayCache)) {
+            // Other writers may cache identifiers for up to the maximum (or the configured) TTL
+            return Math.max(EHCacheReplayCache.MAX_TTL, ((EHCacheReplayCache)replayCache).getTTL());
+        }
+        // Identifiers that are added without an expiry are cached for the default TTL of the private caches
+        return MemoryReplayCache.DEFAULT_TTL;
+    }
+
+    private Instant getFilterExpiry(Instant expiry, Instant now) {
+        Instant maxExpiry = now.plusSeconds(maxTTL);
+        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxExpiry)) {
+            // The backing cache may use its default TTL, so assume the worst case
+            return maxExpiry;
+        }
+        return expiry;
+    }
+
+    private Instant getCacheExpiry(Instant expiry, Instant now) {
+        Instant maxExpiry = now.plusSeconds(maxTTL);
+        if (expiry != null && expiry.isAfter(maxExpiry)) {
+            // Make sure that the backing cache never holds an identifier for longer than the filter
+            return maxExpiry;
+        }
+        return expiry;
+    }
+
+    private boolean mightContain(long[] digest, long nowMillis) {
+        // The partitions of the windows that have expired less than one window ago are still checked,
+        // to allow for backing caches that round up expiry times
+        long oldestWindow = nowMillis / windowMillis - 1;
+        for (Partition partition : partitions) {
+            if (partition.window >= oldestWindow && partition.mightContain(digest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void put(long[] digest, Instant expiry) {
+        long window = expiry.toEpochMilli() / windowMillis;
+        Partition partition = partitions[(int)(window % partitions.length)];
+        if (partition.window != window) {
+            synchronized (partition) {
+                if (partition.window != window) {
+                    // The windows that map to the same partition are far enough apart that the old one has expired
+                    partition.reset(window);
+                }
+            }
+        }
+        partition.put(digest);
+    }
+
+    private Object getLock(long[] digest) {
+        return locks[(int)(digest[0] >>> 56) & (LOCKS - 1)];
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Partition partition : partitions) {
+            synchronized (partition) {
+                partition.reset(-1L);
+            }
+        }
+        replayCache.close();
+    }
+
+    private final class Partition {
+        private final AtomicLongArray bits;
+        private volatile long window = -1L;
+
+        Partition(int length) {
+            bits = new AtomicLongArray(length);
+        }
+
+        boolean mightContain(long[] digest) {
+            for (int i = 0; i < hashCount; i++) {
+                int index = getIndex(digest, i);
+                if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(long[] digest) {
+            for (int i = 0; i < hashCount; i++) {
+                int index = getIndex(digest, i);
+                long mask = 1L << index;
+                long value = bits.get(index >>> 6);
+                while ((value & mask) == 0 && !bits.compareAndSet(index >>> 6, value, value | mask)) {
+                    value = bits.get(index >>> 6);
+                }
+            }
+        }
+
+        void reset(long newWindow) {
+            window = -1L;
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0L);
+            }
+            window = newWindow;
+        }
+
+        private int getIndex(long[] digest, int i) {
+            // Double hashing, see Kirsch and Mitzenmacher, "Less Hashing, Same Performance"
+            long hash = digest[0] + i * digest[1];
+            return (int)((hash & Long.MAX_VALUE) % bitCount);
+        }
+    }
+}
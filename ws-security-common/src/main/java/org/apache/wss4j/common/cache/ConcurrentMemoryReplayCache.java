@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.time.Instant;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-memory ReplayCache implementation that is designed for highly concurrent use. The identifiers are
+ * stored in a ConcurrentHashMap, so that lookups never block and additions only contend on the
+ * lock-striped bins of the map. Expiry is handled by a timing wheel with one bucket per second of the
+ * maximum TTL. The wheel is advanced at most once per second, by whichever thread first notices that a
+ * tick is due, without blocking the other threads. The number of cached identifiers is bounded. An unexpired
+ * identifier is never evicted to make room, as a replay would then be accepted - once the maximum is reached,
+ * new identifiers are rejected until enough of the cached identifiers have expired.
+ *
+ * The default TTL is 5 minutes and the max TTL is 60 minutes.
+ */
+public class ConcurrentMemoryReplayCache implements ReplayCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ConcurrentMemoryReplayCache.class);
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+    public static final long DEFAULT_MAX_ENTRIES = 1000000L;
+
+    private static final int WHEEL_SIZE = (int)MAX_TTL + 2;
+
+    private final ConcurrentMap<String, Long> ids = new ConcurrentHashMap<>();
+    private final Queue<WheelEntry>[] wheel;
+    private final AtomicLong size = new AtomicLong();
+    private final ReentrantLock tickLock = new ReentrantLock();
+    private final long maxEntries;
+    private volatile long lastProcessedSecond;
+
+    public ConcurrentMemoryReplayCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Create a new ConcurrentMemoryReplayCache
+     * @param maxEntries The maximum number of identifiers that are held in the cache
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentMemoryReplayCache(long maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        wheel = new Queue[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        lastProcessedSecond = Instant.now().getEpochSecond() - 1;
+    }
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     */
+    public void add(String identifier) {
+        add(identifier, Instant.now().plusSeconds(DEFAULT_TTL));
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time. If the cache is full of
+     * unexpired identifiers, a new identifier is not added.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier
+     */
+    public void add(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        processTokenExpiry(now);
+        expiry = getExpiry(expiry, now);
+
+        if (!reserve()) {
+            return;
+        }
+        Long expiryMillis = expiry.toEpochMilli();
+        if (ids.put(identifier, expiryMillis) != null) {
+            size.decrementAndGet();
+        }
+        wheel[slot(expiry.getEpochSecond())].offer(new WheelEntry(identifier, expiryMillis));
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already contained
+     * in the cache. The check and the addition are performed as a single atomic operation. If the cache is
+     * full of unexpired identifiers, the identifier is rejected as if it was already contained in the cache.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for a default amount of time
+     * @return true if the identifier was added, or false if it was already contained in the cache or the
+     *         cache is full
+     */
+    public boolean putIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        Instant now = Instant.now();
+        processTokenExpiry(now);
+        expiry = getExpiry(expiry, now);
+
+        long nowMillis = now.toEpochMilli();
+        Long existingExpiry = ids.get(identifier);
+        if (existingExpiry != null && existingExpiry >= nowMillis) {
+            return false;
+        }
+        if (!reserve()) {
+            return false;
+        }
+        Long expiryMillis = expiry.toEpochMilli();
+        while (true) {
+            existingExpiry = ids.putIfAbsent(identifier, expiryMillis);
+            if (existingExpiry == null) {
+                break;
+            } else if (existingExpiry >= nowMillis) {
+                size.decrementAndGet();
+                return false;
+            } else if (ids.replace(identifier, existingExpiry, expiryMillis)) {
+                // The existing identifier had expired but was not yet removed by the timing wheel
+                size.decrementAndGet();
+                break;
+            }
+        }
+        wheel[slot(expiry.getEpochSecond())].offer(new WheelEntry(identifier, expiryMillis));
+        return true;
+    }
+
+    /**
+     * Return true if the given identifier is contained in the cache
+     * @param identifier The identifier to check
+     */
+    public boolean contains(String identifier) {
+        if (identifier == null || "".equals(identifier)) {
+            return false;
+        }
+
+        Instant now = Instant.now();
+        processTokenExpiry(now);
+
+        Long expiry = ids.get(identifier);
+        return expiry != null && expiry >= now.toEpochMilli();
+    }
+
+    private static Instant getExpiry(Instant expiry, Instant now) {
+        Instant maxTTL = now.plusSeconds(MAX_TTL);
+        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxTTL)) {
+            return now.plusSeconds(DEFAULT_TTL);
+        }
+        return expiry;
+    }
+
+    /**
+     * Reserve room for a new identifier. The identifiers that are due to expire have already been removed
+     * by processTokenExpiry, so if the cache is still full, no room is left without forgetting an unexpired
+     * identifier.
+     * @return true if room was reserved, which must be released again if no identifier is added
+     */
+    private boolean reserve() {
+        if (size.incrementAndGet() > maxEntries) {
+            size.decrementAndGet();
+            LOG.warn("The replay cache is full with {} unexpired identifiers, rejecting a new identifier",
+                     maxEntries);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the (approximate) number of identifiers currently held in the cache
+     * @return the number of identifiers currently held in the cache
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Get the maximum number of identifiers that are held in the cache
+     * @return the maximum number of identifiers that are held in the cache
+     */
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Advance the timing wheel up to the given time, if a tick is due and no other thread is
+     * already doing so.
+     */
+    protected void processTokenExpiry(Instant current) {
+        long currentSecond = current.getEpochSecond();
+        if (currentSecond - 1 <= lastProcessedSecond || !tickLock.tryLock()) {
+            return;
+        }
+        try {
+            advance(current.toEpochMilli(), currentSecond - 1);
+        } finally {
+            tickLock.unlock();
+        }
+    }
+
+    private void advance(long currentMillis, long targetSecond) {
+        long fromSecond = lastProcessedSecond + 1;
+        // After a long idle period there is no point in visiting a bucket more than once
+        if (targetSecond - fromSecond >= WHEEL_SIZE) {
+            fromSecond = targetSecond - WHEEL_SIZE + 1;
+        }
+        for (long second = fromSecond; second <= targetSecond; second++) {
+            drain(wheel[slot(second)], currentMillis);
+        }
+        lastProcessedSecond = targetSecond;
+    }
+
+    private void drain(Queue<WheelEntry> bucket, long currentMillis) {
+        int pending = bucket.size();
+        for (int i = 0; i < pending; i++) {
+            WheelEntry entry = bucket.poll();
+            if (entry == null) {
+                break;
+            }
+            if (entry.expiry < currentMillis) {
+                remove(entry);
+            } else {
+                // The bucket was visited early, e.g. after an idle period. Keep the entry for the next round
+                bucket.offer(entry);
+            }
+        }
+    }
+
+    private void remove(WheelEntry entry) {
+        // Only remove the identifier if it has not been re-added with a different expiry in the meantime
+        if (ids.remove(entry.identifier, entry.expiry)) {
+            size.decrementAndGet();
+        }
+    }
+
+    private static int slot(long epochSecond) {
+        return (int)Math.floorMod(epochSecond, (long)WHEEL_SIZE);
+    }
+
+    @Override
+    public void close() {
+        tickLock.lock();
+        try {
+            for (Queue<WheelEntry> bucket : wheel) {
+                bucket.clear();
+            }
+            ids.clear();
+            size.set(0);
+        } finally {
+            tickLock.unlock();
+        }
+    }
+
+    private static final class WheelEntry {
+        private final String identifier;
+        private final Long expiry;
+
+        WheelEntry(String identifier, Long expiry) {
+            this.identifier = identifier;
+            this.expiry = expiry;
+        }
+    }
+}
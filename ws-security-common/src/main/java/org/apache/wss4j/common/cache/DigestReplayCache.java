@@ -0,0 +1,314 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.time.Instant;
+
+/**
+ * A compact in-memory ReplayCache implementation for caches that must hold a very large number of
+ * identifiers. Instead of the identifiers themselves, it stores a 128-bit digest of each identifier
+ * in an open-addressing hash table made up of primitive longs - two longs for the digest and a long
+ * for the expiry time per slot. No objects are allocated per cached identifier.
+ *
+ * The table has a fixed capacity. Each identifier is stored in a small window of slots starting at the
+ * slot given by its digest, and expired slots are recycled. If all slots in the window hold unexpired
+ * identifiers, the identifier is stored in a small overflow area of the segment instead. An unexpired
+ * identifier is never evicted, as a replay would then be accepted - if the overflow area is full as well,
+ * the new identifier is rejected. The table is split into segments with a separate lock each, so that
+ * concurrent operations rarely contend.
+ *
+ * The default TTL is 5 minutes and the max TTL is 60 minutes.
+ */
+public class DigestReplayCache implements ReplayCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int MAX_CAPACITY = 1 << 26;
+
+    /**
+     * The number of longs that make up a slot of the table
+     */
+    protected static final int SLOT_LENGTH = 3;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(DigestReplayCache.class);
+
+    private static final int SEGMENTS = 64;
+    private static final int PROBE_LENGTH = 16;
+    private static final int OVERFLOW_LENGTH = 64;
+
+    private final LongBuffer table;
+    private final Object[] locks = new Object[SEGMENTS];
+    private final int[] overflowCounts = new int[SEGMENTS];
+    private final int slots;
+    private final int slotsPerSegment;
+
+    public DigestReplayCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new DigestReplayCache
+     * @param capacity The number of identifiers that the cache can hold. It is rounded up to a power of two.
+     */
+    public DigestReplayCache(int capacity) {
+        this(LongBuffer.allocate(getTableLength(getSlotCount(capacity))), getSlotCount(capacity));
+    }
+
+    /**
+     * Create a new DigestReplayCache that stores its table in the given buffer
+     * @param table The buffer holding the table, which must hold getTableLength(slots) longs
+     * @param slots The number of slots of the table, as returned by getSlotCount()
+     */
+    protected DigestReplayCache(LongBuffer table, int slots) {
+        if (slots != getSlotCount(slots) || table.capacity() < getTableLength(slots)) {
+            throw new IllegalArgumentException("Invalid number of slots: " + slots);
+        }
+        this.table = table;
+        this.slots = slots;
+        slotsPerSegment = slots / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) {
+            locks[i] = new Object();
+            // Count the overflow slots that are in use, in case the table was stored before
+            int start = overflowStart(i);
+            for (int slot = start; slot < start + OVERFLOW_LENGTH; slot++) {
+                if (getExpiry(slot) != 0L) {
+                    overflowCounts[i]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of slots of a table that holds (at least) the given number of identifiers
+     * @param capacity The number of identifiers that the table must hold, at most MAX_CAPACITY
+     * @return the number of slots of the table
+     */
+    protected static int getSlotCount(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity must not exceed " + MAX_CAPACITY);
+        }
+        int slotCount = SEGMENTS * PROBE_LENGTH;
+        while (slotCount < capacity) {
+            slotCount <<= 1;
+        }
+        return slotCount;
+    }
+
+    /**
+     * Get the number of longs that make up a table with the given number of slots, including the
+     * overflow area of each segment
+     * @param slots The number of slots of the table, as returned by getSlotCount()
+     * @return the number of longs that make up the table
+     */
+    protected static int getTableLength(int slots) {
+        return (slots + SEGMENTS * OVERFLOW_LENGTH) * SLOT_LENGTH;
+    }
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     */
+    public void add(String identifier) {
+        add(identifier, Instant.now().plusSeconds(DEFAULT_TTL));
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time. If there is no room left for
+     * the identifier without evicting an unexpired identifier, it is not added.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier
+     */
+    public void add(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return;
+        }
+        put(ReplayCacheUtils.digest(identifier), expiry, true);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already contained
+     * in the cache. The check and the addition are performed as a single atomic operation. If there is no
+     * room left for the identifier without evicting an unexpired identifier, it is rejected as if it was
+     * already contained in the cache.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for a default amount of time
+     * @return true if the identifier was added, or false if it was already contained in the cache or there
+     *         is no room left for it
+     */
+    public boolean putIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+        return put(ReplayCacheUtils.digest(identifier), expiry, false);
+    }
+
+    /**
+     * Return true if the given identifier is contained in the cache
+     * @param identifier The identifier to check
+     */
+    public boolean contains(String identifier) {
+        if (identifier == null || "".equals(identifier)) {
+            return false;
+        }
+
+        long[] digest = ReplayCacheUtils.digest(identifier);
+        long now = Instant.now().toEpochMilli();
+        int segment = segment(digest[0]);
+        synchronized (locks[segment]) {
+            return find(segment, digest, now) >= 0;
+        }
+    }
+
+    /**
+     * Get the number of identifiers that the cache can hold, not counting the overflow areas
+     * @return the number of identifiers that the cache can hold
+     */
+    public int getCapacity() {
+        return slots;
+    }
+
+    private boolean put(long[] digest, Instant expiry, boolean replace) {
+        Instant now = Instant.now();
+        Instant maxTTL = now.plusSeconds(MAX_TTL);
+        if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxTTL)) {
+            expiry = now.plusSeconds(DEFAULT_TTL);
+        }
+        long expiryMillis = expiry.toEpochMilli();
+        long nowMillis = now.toEpochMilli();
+
+        int segment = segment(digest[0]);
+        synchronized (locks[segment]) {
+            int existing = find(segment, digest, nowMillis);
+            if (existing >= 0) {
+                if (replace) {
+                    table.put(existing * SLOT_LENGTH + 2, expiryMillis);
+                }
+                return false;
+            }
+
+            // Use the first free (or expired) slot of the window, or otherwise of the overflow area
+            int target = findFreeSlot(windowStart(segment, digest), true, nowMillis);
+            if (target < 0) {
+                target = findFreeSlot(overflowStart(segment), false, nowMillis);
+                if (target < 0) {
+                    LOG.warn("No room is left in the replay cache without evicting an unexpired identifier, "
+                             + "rejecting a new identifier");
+                    return false;
+                }
+                if (getExpiry(target) == 0L) {
+                    overflowCounts[segment]++;
+                }
+            }
+            // Write the expiry last, so that a partially written slot is never mistaken for a valid entry
+            int index = target * SLOT_LENGTH;
+            table.put(index + 2, 0L);
+            table.put(index, digest[0]);
+            table.put(index + 1, digest[1]);
+            table.put(index + 2, expiryMillis);
+            return true;
+        }
+    }
+
+    private int find(int segment, long[] digest, long nowMillis) {
+        int home = windowStart(segment, digest);
+        for (int i = 0; i < PROBE_LENGTH; i++) {
+            int slot = windowSlot(home, i);
+            if (matches(slot, digest, nowMillis)) {
+                return slot;
+            }
+        }
+        if (overflowCounts[segment] == 0) {
+            return -1;
+        }
+        int found = -1;
+        int start = overflowStart(segment);
+        for (int slot = start; slot < start + OVERFLOW_LENGTH; slot++) {
+            long slotExpiry = getExpiry(slot);
+            if (slotExpiry != 0L && slotExpiry < nowMillis) {
+                // Free the expired overflow slots, so that the overflow area is only searched while in use
+                table.put(slot * SLOT_LENGTH + 2, 0L);
+                overflowCounts[segment]--;
+            } else if (found < 0 && matches(slot, digest, nowMillis)) {
+                found = slot;
+            }
+        }
+        return found;
+    }
+
+    private int findFreeSlot(int first, boolean window, long nowMillis) {
+        int length = window ? PROBE_LENGTH : OVERFLOW_LENGTH;
+        for (int i = 0; i < length; i++) {
+            int slot = window ? windowSlot(first, i) : first + i;
+            if (getExpiry(slot) < nowMillis) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(int slot, long[] digest, long nowMillis) {
+        int index = slot * SLOT_LENGTH;
+        return table.get(index + 2) >= nowMillis && table.get(index) == digest[0]
+            && table.get(index + 1) == digest[1];
+    }
+
+    private int windowStart(int segment, long[] digest) {
+        return segment * slotsPerSegment + ((int)digest[1] & (slotsPerSegment - 1));
+    }
+
+    private int windowSlot(int home, int i) {
+        // The window wraps around within the segment
+        int start = home & -slotsPerSegment;
+        return start + ((home + i) & (slotsPerSegment - 1));
+    }
+
+    private int overflowStart(int segment) {
+        return slots + segment * OVERFLOW_LENGTH;
+    }
+
+    private long getExpiry(int slot) {
+        return table.get(slot * SLOT_LENGTH + 2);
+    }
+
+    private static int segment(long digestHigh) {
+        return (int)(digestHigh >>> 58) & (SEGMENTS - 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (int i = 0; i < SEGMENTS; i++) {
+            synchronized (locks[i]) {
+                int start = i * slotsPerSegment;
+                for (int slot = start; slot < start + slotsPerSegment; slot++) {
+                    table.put(slot * SLOT_LENGTH + 2, 0L);
+                }
+                start = overflowStart(i);
+                for (int slot = start; slot < start + OVERFLOW_LENGTH; slot++) {
+                    table.put(slot * SLOT_LENGTH + 2, 0L);
+                }
+                overflowCounts[i] = 0;
+            }
+        }
+    }
+}
@@ -21,7 +21,10 @@ package org.apache.wss4j.common.cache;
 
 import java.net.URL;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -29,6 +32,9 @@ import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.Status;
 import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.event.CacheEventListener;
+import net.sf.ehcache.event.CacheEventListenerAdapter;
+import net.sf.ehcache.event.NotificationScope;
 
 /**
  * An in-memory EHCache implementation of the ReplayCache interface. The default TTL is 60 minutes and the
@@ -41,6 +47,7 @@ public class EHCacheReplayCache implements ReplayCache {
     protected Ehcache cache;
     protected CacheManager cacheManager;
     private long ttl = DEFAULT_TTL;
+    private final List<CacheEventListener> listeners = new ArrayList<>();
 
     public EHCacheReplayCache(String key, URL configFileURL) {
         this(key, EHCacheManagerHolder.getCacheManager("", configFileURL));
@@ -114,7 +121,39 @@ public class EHCacheReplayCache implements ReplayCache {
             return;
         }
 
-        int parsedTTL = (int)(expiry.getEpochSecond() - Instant.now().getEpochSecond());
+        cache.put(createElement(identifier, expiry));
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already contained
+     * in the cache. The check and the addition are performed as a single atomic operation.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for the configured TTL
+     * @return true if the identifier was added, or false if it was already contained in the cache
+     */
+    public boolean putIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        Element cacheElement = createElement(identifier, expiry);
+        Element existingElement = cache.putIfAbsent(cacheElement);
+        while (existingElement != null) {
+            if (!cache.isExpired(existingElement)) {
+                return false;
+            }
+            // Only remove the expired Element if no other thread has replaced it in the meantime
+            cache.removeElement(existingElement);
+            existingElement = cache.putIfAbsent(cacheElement);
+        }
+        return true;
+    }
+
+    private Element createElement(String identifier, Instant expiry) {
+        int parsedTTL = -1;
+        if (expiry != null) {
+            parsedTTL = (int)(expiry.getEpochSecond() - Instant.now().getEpochSecond());
+        }
         if (parsedTTL < 0 || parsedTTL > MAX_TTL) {
             // Default to configured value
             parsedTTL = (int)ttl;
@@ -126,7 +165,7 @@ public class EHCacheReplayCache implements ReplayCache {
 
         Element cacheElement = new Element(identifier, identifier, parsedTTL, parsedTTL);
         cacheElement.resetAccessStatistics();
-        cache.put(cacheElement);
+        return cacheElement;
     }
 
     /**
@@ -148,11 +187,49 @@ public class EHCacheReplayCache implements ReplayCache {
         return false;
     }
 
+    /**
+     * Register a listener that is notified of each identifier that is added to the underlying cache, with
+     * its expiry time. This includes the identifiers that are added by any other writer of the cache, such
+     * as other EHCacheReplayCache instances for the same key, or other cluster nodes if the cache is
+     * replicated. The listener is first notified of all of the identifiers that are already cached,
+     * including those that were persisted to disk before a restart.
+     * @param listener The listener to be notified of the identifier and its expiry time
+     */
+    synchronized void registerListener(final BiConsumer<String, Instant> listener) {
+        CacheEventListener cacheEventListener = new CacheEventListenerAdapter() {
+            @Override
+            public void notifyElementPut(Ehcache ehcache, Element element) {
+                notifyListener(listener, element);
+            }
+
+            @Override
+            public void notifyElementUpdated(Ehcache ehcache, Element element) {
+                notifyListener(listener, element);
+            }
+        };
+        // Register the listener before reading the cached identifiers, so that no identifier is missed
+        cache.getCacheEventNotificationService().registerListener(cacheEventListener, NotificationScope.ALL);
+        listeners.add(cacheEventListener);
+        for (Object key : cache.getKeys()) {
+            notifyListener(listener, cache.getQuiet(key));
+        }
+    }
+
+    private static void notifyListener(BiConsumer<String, Instant> listener, Element element) {
+        if (element != null && element.getObjectKey() instanceof String) {
+            listener.accept((String)element.getObjectKey(), Instant.ofEpochMilli(element.getExpirationTime()));
+        }
+    }
+
     @Override
     public synchronized void close() {
         if (cacheManager != null) {
             // this step is especially important for global shared cache manager
             if (cache != null) {
+                for (CacheEventListener listener : listeners) {
+                    cache.getCacheEventNotificationService().unregisterListener(listener);
+                }
+                listeners.clear();
                 synchronized (cache) {
                     if (cache instanceof RefCountCache
                         && ((RefCountCache)cache).decrementAndGet() == 0) {
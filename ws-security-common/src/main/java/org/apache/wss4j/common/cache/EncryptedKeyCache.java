@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the secret keys that were unwrapped from (asymmetrically encrypted) EncryptedKey
+ * elements, so that a client that sends the same EncryptedKey with each message of a session does not
+ * cost a private key operation per message. The cache is keyed by the EncryptedKeySHA1 of the EncryptedKey,
+ * i.e. the SHA-1 digest of the octets of its CipherValue. A cached secret key is only returned for the
+ * same octets, key transport algorithm (and parameters) and recipient public key it was unwrapped with.
+ *
+ * Only successfully unwrapped keys should be added to the cache. A cache should not be shared between
+ * configurations with different decryption keystores. Entries expire after a TTL (one hour by default),
+ * and the least recently used entry is evicted once the maximum number of entries (1000 by default)
+ * is reached.
+ */
+public class EncryptedKeyCache {
+
+    public static final long DEFAULT_TTL = 60L * 60L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(EncryptedKeyCache.class);
+
+    private final long ttl;
+    private final Map<String, CachedKey> keys;
+
+    public EncryptedKeyCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * Create a new EncryptedKeyCache
+     * @param maxEntries The maximum number of secret keys that are held in the cache
+     * @param ttl The time (in seconds) for which a secret key is held in the cache
+     */
+    public EncryptedKeyCache(int maxEntries, long ttl) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive");
+        }
+        if (ttl < 1) {
+            throw new IllegalArgumentException("The TTL must be positive");
+        }
+        this.ttl = ttl;
+        // An access-ordered map, that evicts the least recently used entry
+        keys = new LinkedHashMap<String, CachedKey>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the secret key that was unwrapped from the given encrypted key
+     * @param encryptedKey The octets of the CipherValue of the EncryptedKey
+     * @param keyTransport The key transport algorithm, and its parameters (if any)
+     * @param recipientKey The public key the secret key was encrypted for
+     * @return the (encoded) secret key, or null if it is not cached
+     */
+    public byte[] get(byte[] encryptedKey, String keyTransport, PublicKey recipientKey) {
+        String encryptedKeySHA1 = getEncryptedKeySHA1(encryptedKey);
+        if (encryptedKeySHA1 == null || recipientKey == null) {
+            return null;
+        }
+
+        CachedKey cachedKey;
+        synchronized (keys) {
+            cachedKey = keys.get(encryptedKeySHA1);
+            if (cachedKey != null && cachedKey.expires.isBefore(Instant.now())) {
+                keys.remove(encryptedKeySHA1);
+                cachedKey = null;
+            }
+        }
+        if (cachedKey == null
+            || !MessageDigest.isEqual(encryptedKey, cachedKey.encryptedKey)
+            || !cachedKey.keyTransport.equals(keyTransport)
+            || !MessageDigest.isEqual(recipientKey.getEncoded(), cachedKey.recipientKey)) {
+            return null;
+        }
+        return cachedKey.secretKey.clone();
+    }
+
+    /**
+     * Add a secret key that was unwrapped from the given encrypted key
+     * @param encryptedKey The octets of the CipherValue of the EncryptedKey
+     * @param keyTransport The key transport algorithm, and its parameters (if any)
+     * @param recipientKey The public key the secret key was encrypted for
+     * @param secretKey The (encoded) secret key
+     */
+    public void put(byte[] encryptedKey, String keyTransport, PublicKey recipientKey, byte[] secretKey) {
+        String encryptedKeySHA1 = getEncryptedKeySHA1(encryptedKey);
+        if (encryptedKeySHA1 == null || keyTransport == null || recipientKey == null
+            || recipientKey.getEncoded() == null || secretKey == null) {
+            return;
+        }
+        CachedKey cachedKey =
+            new CachedKey(encryptedKey.clone(), keyTransport, recipientKey.getEncoded(), secretKey.clone(),
+                          Instant.now().plusSeconds(ttl));
+        synchronized (keys) {
+            keys.put(encryptedKeySHA1, cachedKey);
+        }
+    }
+
+    /**
+     * Remove all of the cached secret keys
+     */
+    public void clear() {
+        synchronized (keys) {
+            for (CachedKey cachedKey : keys.values()) {
+                Arrays.fill(cachedKey.secretKey, (byte)0);
+            }
+            keys.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    private static String getEncryptedKeySHA1(byte[] encryptedKey) {
+        if (encryptedKey == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(encryptedKey);
+            return Base64.getMimeEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    private static final class CachedKey {
+        private final byte[] encryptedKey;
+        private final String keyTransport;
+        private final byte[] recipientKey;
+        private final byte[] secretKey;
+        private final Instant expires;
+
+        CachedKey(byte[] encryptedKey, String keyTransport, byte[] recipientKey, byte[] secretKey, Instant expires) {
+            this.encryptedKey = encryptedKey;
+            this.keyTransport = keyTransport;
+            this.recipientKey = recipientKey;
+            this.secretKey = secretKey;
+            this.expires = expires;
+        }
+    }
+}
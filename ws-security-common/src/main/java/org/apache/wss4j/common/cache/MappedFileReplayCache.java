@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A persistent ReplayCache implementation, that stores the table of a DigestReplayCache in a memory-mapped
+ * file. As the cached identifiers are written straight to the file, they survive a restart (or a crash) of
+ * the JVM, so that replayed messages are still detected within their TTL after a restart. Lookups have the
+ * same cost as for the in-memory DigestReplayCache. Like the DigestReplayCache, it never evicts an unexpired
+ * identifier - the overflow areas of the table are stored in the file as well, and once they are full, new
+ * identifiers are rejected.
+ *
+ * The file is locked while the cache is open, and so it can't be shared between different processes. If
+ * the file already exists, the capacity stored in the file takes precedence over the configured capacity.
+ */
+public class MappedFileReplayCache extends DigestReplayCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(MappedFileReplayCache.class);
+
+    // "WSS4SRC" + version
+    private static final long MAGIC = 0x5753533453524302L;
+    private static final int HEADER_LENGTH = 16;
+
+    private final File file;
+    private final MappedTable mappedTable;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    public MappedFileReplayCache(File file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new MappedFileReplayCache, or re-open an existing one
+     * @param file The file that holds the cache
+     * @param capacity The number of identifiers that the cache can hold, if the file does not exist yet
+     * @throws IOException if the file can't be opened or locked, or is not a replay cache file
+     */
+    public MappedFileReplayCache(File file, int capacity) throws IOException {
+        this(file, MappedTable.open(file, capacity));
+    }
+
+    private MappedFileReplayCache(File file, MappedTable mappedTable) {
+        super(mappedTable.getTable(), mappedTable.slots);
+        this.file = file;
+        this.mappedTable = mappedTable;
+    }
+
+    /**
+     * Get the file that holds the cache
+     * @return the file that holds the cache
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Write any changes to the cache that are still held in memory to the storage device, so that they
+     * also survive an operating system crash or a power failure.
+     */
+    public void flush() {
+        mappedTable.buffer.force();
+    }
+
+    /**
+     * Register an additional user of this (shared) cache, who is also responsible for closing it.
+     * @return true if the cache is still open
+     */
+    boolean retain() {
+        int count = references.get();
+        while (count > 0) {
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+            count = references.get();
+        }
+        return false;
+    }
+
+    boolean isClosed() {
+        return references.get() <= 0;
+    }
+
+    /**
+     * Close the cache once it is no longer used. The cached identifiers are kept in the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (references.decrementAndGet() == 0) {
+            mappedTable.close();
+        }
+    }
+
+    private static final class MappedTable {
+        private final RandomAccessFile randomAccessFile;
+        private final FileLock lock;
+        private final MappedByteBuffer buffer;
+        private final int slots;
+
+        private MappedTable(RandomAccessFile randomAccessFile, FileLock lock, MappedByteBuffer buffer, int slots) {
+            this.randomAccessFile = randomAccessFile;
+            this.lock = lock;
+            this.buffer = buffer;
+            this.slots = slots;
+        }
+
+        static MappedTable open(File file, int capacity) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                FileLock lock = channel.tryLock();
+                if (lock == null) {
+                    throw new IOException("The replay cache file " + file + " is in use by another process");
+                }
+
+                int slots = getSlotCount(capacity);
+                long length = channel.size();
+                if (length >= HEADER_LENGTH) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                    channel.read(header, 0);
+                    header.flip();
+                    long storedSlots = header.getLong(8);
+                    if (header.getLong(0) != MAGIC || storedSlots < 0 || storedSlots > MAX_CAPACITY
+                        || storedSlots != getSlotCount((int)storedSlots)
+                        || length != getFileLength((int)storedSlots)) {
+                        throw new IOException("The file " + file + " is not a valid replay cache file");
+                    }
+                    if (storedSlots != slots) {
+                        LOG.debug("Using the existing capacity of {} for the replay cache file {}",
+                                  storedSlots, file);
+                    }
+                    slots = (int)storedSlots;
+                } else if (length != 0) {
+                    throw new IOException("The file " + file + " is not a valid replay cache file");
+                }
+
+                MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, getFileLength(slots));
+                if (length == 0) {
+                    // A new file is zero-filled, which denotes an empty table
+                    buffer.putLong(8, slots);
+                    buffer.putLong(0, MAGIC);
+                    buffer.force();
+                }
+                return new MappedTable(randomAccessFile, lock, buffer, slots);
+            } catch (IOException | RuntimeException ex) {
+                randomAccessFile.close();
+                throw ex;
+            }
+        }
+
+        private static long getFileLength(int slots) {
+            return HEADER_LENGTH + getTableLength(slots) * 8L;
+        }
+
+        LongBuffer getTable() {
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(HEADER_LENGTH);
+            return duplicate.slice().asLongBuffer();
+        }
+
+        void close() throws IOException {
+            try {
+                buffer.force();
+                lock.release();
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+    }
+}
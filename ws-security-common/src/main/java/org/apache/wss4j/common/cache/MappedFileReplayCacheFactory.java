@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A factory to return a MappedFileReplayCache instance. The configuration Object is the directory
+ * (a File, Path or String) in which the cache file is stored, and defaults to the "java.io.tmpdir"
+ * directory. The cache file is named after the key.
+ *
+ * A cache that is still open is shared between all factories that request the same file. Each factory
+ * holds a single reference to each cache it has returned, however often the cache is requested from it,
+ * and releases these references when the factory is closed. So the returned caches must not be closed
+ * by the caller - close the factory instead, once none of its caches are used any more.
+ */
+public class MappedFileReplayCacheFactory extends ReplayCacheFactory implements Closeable {
+
+    private static final Map<File, MappedFileReplayCache> OPEN_CACHES = new HashMap<>();
+
+    private final Map<File, MappedFileReplayCache> replayCaches = new HashMap<>();
+    private int capacity = DigestReplayCache.DEFAULT_CAPACITY;
+
+    public ReplayCache newReplayCache(String key, Object configuration) {
+        File file = new File(getDirectory(configuration), key + ".replaycache").getAbsoluteFile();
+        synchronized (OPEN_CACHES) {
+            MappedFileReplayCache replayCache = replayCaches.get(file);
+            if (replayCache != null && !replayCache.isClosed()) {
+                return replayCache;
+            }
+            replayCache = OPEN_CACHES.get(file);
+            if (replayCache == null || !replayCache.retain()) {
+                try {
+                    replayCache = new MappedFileReplayCache(file, capacity);
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Error opening the replay cache file " + file, ex);
+                }
+                OPEN_CACHES.values().removeIf(MappedFileReplayCache::isClosed);
+                OPEN_CACHES.put(file, replayCache);
+            }
+            replayCaches.put(file, replayCache);
+            return replayCache;
+        }
+    }
+
+    /**
+     * Release the references of this factory to the caches it has returned. A cache is closed once it
+     * is not referenced by any factory any more.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (OPEN_CACHES) {
+            for (MappedFileReplayCache replayCache : replayCaches.values()) {
+                replayCache.close();
+            }
+            replayCaches.clear();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Set the number of identifiers that a newly created cache file can hold
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    private static File getDirectory(Object configuration) {
+        if (configuration instanceof File) {
+            return (File)configuration;
+        } else if (configuration instanceof Path) {
+            return ((Path)configuration).toFile();
+        } else if (configuration instanceof String) {
+            return new File((String)configuration);
+        }
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+}
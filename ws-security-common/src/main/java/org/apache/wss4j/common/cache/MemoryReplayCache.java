@@ -60,21 +60,54 @@ public class MemoryReplayCache implements ReplayCache {
             return;
         }
 
+        expiry = getExpiry(expiry);
+
+        synchronized (cache) {
+            addToExpiryList(identifier, expiry);
+        }
+        ids.add(identifier);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already contained
+     * in the cache. The check and the addition are performed as a single atomic operation.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for a default amount of time
+     * @return true if the identifier was added, or false if it was already contained in the cache
+     */
+    public boolean putIfAbsent(String identifier, Instant expiry) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        processTokenExpiry();
+        expiry = getExpiry(expiry);
+
+        synchronized (cache) {
+            if (!ids.add(identifier)) {
+                return false;
+            }
+            addToExpiryList(identifier, expiry);
+        }
+        return true;
+    }
+
+    private Instant getExpiry(Instant expiry) {
         Instant now = Instant.now();
         Instant maxTTL = now.plusSeconds(MAX_TTL);
         if (expiry == null || expiry.isBefore(now) || expiry.isAfter(maxTTL)) {
-            expiry = now.plusSeconds(DEFAULT_TTL);
+            return now.plusSeconds(DEFAULT_TTL);
         }
+        return expiry;
+    }
 
-        synchronized (cache) {
-            List<String> list = cache.get(expiry);
-            if (list == null) {
-                list = new ArrayList<>(1);
-                cache.put(expiry, list);
-            }
-            list.add(identifier);
+    private void addToExpiryList(String identifier, Instant expiry) {
+        List<String> list = cache.get(expiry);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            cache.put(expiry, list);
         }
-        ids.add(identifier);
+        list.add(identifier);
     }
 
     /**
@@ -21,12 +21,41 @@ package org.apache.wss4j.common.cache;
 
 
 /**
- * A factory to return a MemoryReplayCache instance.
+ * A factory to return a MemoryReplayCache instance. If "concurrent" is enabled, it returns a
+ * ConcurrentMemoryReplayCache instance instead, which is bounded to "maxEntries" identifiers.
  */
 public class MemoryReplayCacheFactory extends ReplayCacheFactory {
 
+    private boolean concurrent;
+    private long maxEntries = ConcurrentMemoryReplayCache.DEFAULT_MAX_ENTRIES;
+
     public ReplayCache newReplayCache(String key, Object configuration) {
+        if (concurrent) {
+            return new ConcurrentMemoryReplayCache(maxEntries);
+        }
         return new MemoryReplayCache();
     }
 
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Whether to return a ConcurrentMemoryReplayCache instead of a MemoryReplayCache. The default is false.
+     */
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Set the maximum number of identifiers held by a ConcurrentMemoryReplayCache
+     */
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
 }
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+
+/**
+ * A bounded cache of the passwords that a CallbackHandler returns for a WSPasswordCallback, so
+ * that a CallbackHandler that looks up passwords in a (remote) user store is not called for
+ * every UsernameToken. Passwords are cached by the identifier, usage and (password) type of the
+ * callback, for a TTL (five minutes by default). The absence of a password for an identifier is
+ * also cached, for a separate (and typically shorter) TTL of one minute by default. A callback
+ * that throws an exception is not cached.
+ *
+ * Concurrent lookups of the same identifier only call the CallbackHandler once, all of the other
+ * threads wait for (and share) the result of that call. Only the password of a WSPasswordCallback
+ * is cached, and so the cache should not be used with a CallbackHandler that sets anything else
+ * (such as a key), or that depends on anything other than the identifier, usage and type.
+ */
+public class PasswordCallbackCache {
+
+    public static final long DEFAULT_TTL = 5L * 60L;
+    public static final long DEFAULT_NEGATIVE_TTL = 60L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(PasswordCallbackCache.class);
+
+    private final int maxEntries;
+    private final long ttl;
+    private final long negativeTtl;
+    private final Map<CacheKey, CompletableFuture<CachedPassword>> passwords = new ConcurrentHashMap<>();
+
+    public PasswordCallbackCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * Create a new PasswordCallbackCache
+     * @param maxEntries The maximum number of passwords that are held in the cache
+     * @param ttl The time (in seconds) for which a password is held in the cache
+     * @param negativeTtl The time (in seconds) for which the absence of a password is held in the
+     *                    cache, or 0 if the absence of a password is not cached
+     */
+    public PasswordCallbackCache(int maxEntries, long ttl, long negativeTtl) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive");
+        }
+        if (ttl < 1) {
+            throw new IllegalArgumentException("The TTL must be positive");
+        }
+        if (negativeTtl < 0) {
+            throw new IllegalArgumentException("The negative TTL must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+    }
+
+    /**
+     * Set the password on the given WSPasswordCallback, either from the cache, or by calling the
+     * CallbackHandler with it.
+     * @param callbackHandler The CallbackHandler that supplies the passwords
+     * @param pwCb The WSPasswordCallback to supply the password for
+     * @throws IOException if the CallbackHandler failed
+     * @throws UnsupportedCallbackException if the CallbackHandler does not support the callback
+     */
+    public void handle(CallbackHandler callbackHandler, WSPasswordCallback pwCb)
+        throws IOException, UnsupportedCallbackException {
+        if (pwCb.getIdentifier() == null) {
+            callbackHandler.handle(new Callback[]{pwCb});
+            return;
+        }
+        CacheKey key = new CacheKey(pwCb.getUsage(), pwCb.getType(), pwCb.getIdentifier());
+
+        while (true) {
+            CompletableFuture<CachedPassword> lookup = new CompletableFuture<>();
+            CompletableFuture<CachedPassword> existingLookup = passwords.putIfAbsent(key, lookup);
+            if (existingLookup == null) {
+                lookupPassword(callbackHandler, pwCb, key, lookup);
+                return;
+            }
+
+            // A result that another thread was still looking up is used even if it has expired already
+            boolean inFlight = !existingLookup.isDone();
+            CachedPassword cachedPassword = getResult(existingLookup);
+            if (inFlight || cachedPassword.expires.isAfter(Instant.now())) {
+                LOG.debug("Using the cached password of {}", pwCb.getIdentifier());
+                pwCb.setPassword(cachedPassword.password);
+                return;
+            }
+            // The entry has expired, so look up the password again
+            passwords.remove(key, existingLookup);
+        }
+    }
+
+    private void lookupPassword(
+        CallbackHandler callbackHandler, WSPasswordCallback pwCb,
+        CacheKey key, CompletableFuture<CachedPassword> lookup
+    ) throws IOException, UnsupportedCallbackException {
+        try {
+            callbackHandler.handle(new Callback[]{pwCb});
+        } catch (IOException | UnsupportedCallbackException | RuntimeException ex) {
+            passwords.remove(key, lookup);
+            lookup.completeExceptionally(ex);
+            throw ex;
+        }
+
+        String password = pwCb.getPassword();
+        long entryTtl = password == null ? negativeTtl : ttl;
+        lookup.complete(new CachedPassword(password, Instant.now().plusSeconds(entryTtl)));
+        if (entryTtl == 0) {
+            passwords.remove(key, lookup);
+        } else if (passwords.size() > maxEntries) {
+            removeExpiredEntries();
+            if (passwords.size() > maxEntries) {
+                passwords.remove(key, lookup);
+            }
+        }
+    }
+
+    private static CachedPassword getResult(CompletableFuture<CachedPassword> lookup)
+        throws IOException, UnsupportedCallbackException {
+        try {
+            return lookup.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof UnsupportedCallbackException) {
+                throw (UnsupportedCallbackException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void removeExpiredEntries() {
+        Instant now = Instant.now();
+        passwords.entrySet().removeIf(entry -> {
+            CachedPassword cachedPassword = entry.getValue().getNow(null);
+            return cachedPassword != null && !cachedPassword.expires.isAfter(now);
+        });
+    }
+
+    /**
+     * Remove the cached password (or absence of a password) of the given identifier, e.g. once
+     * the password of the user has been changed
+     * @param identifier The identifier
+     */
+    public void remove(String identifier) {
+        passwords.keySet().removeIf(key -> key.identifier.equals(identifier));
+    }
+
+    /**
+     * Remove all of the cached passwords
+     */
+    public void clear() {
+        passwords.clear();
+    }
+
+    public int size() {
+        return passwords.size();
+    }
+
+    private static final class CacheKey {
+        private final int usage;
+        private final String type;
+        private final String identifier;
+
+        CacheKey(int usage, String type, String identifier) {
+            this.usage = usage;
+            this.type = type;
+            this.identifier = identifier;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey cacheKey = (CacheKey)object;
+            return usage == cacheKey.usage && Objects.equals(type, cacheKey.type)
+                && identifier.equals(cacheKey.identifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(usage, type, identifier);
+        }
+    }
+
+    private static final class CachedPassword {
+        private final String password;
+        private final Instant expires;
+
+        CachedPassword(String password, Instant expires) {
+            this.password = password;
+            this.expires = expires;
+        }
+    }
+}
@@ -47,4 +47,26 @@ public interface ReplayCache extends Closeable {
      */
     boolean contains(String identifier);
 
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already contained
+     * in the cache. Implementations should perform the check and the addition as a single atomic operation.
+     * The default implementation is not atomic: it calls contains and then add, and so two concurrent
+     * requests with the same identifier may both be accepted. It is only provided so that existing
+     * implementations continue to work, and all of the ReplayCache implementations in WSS4J override it.
+     * @param identifier The identifier to be added
+     * @param expiry A custom expiry time for the identifier, or null to cache it for a default amount of time
+     * @return true if the identifier was added, or false if it was already contained in the cache
+     */
+    default boolean putIfAbsent(String identifier, Instant expiry) {
+        if (contains(identifier)) {
+            return false;
+        }
+        if (expiry == null) {
+            add(identifier);
+        } else {
+            add(identifier, expiry);
+        }
+        return true;
+    }
+
 }
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.xml.security.utils.XMLUtils;
+
+/**
+ * Some utility methods to create compact identifiers for the ReplayCache implementations.
+ */
+public final class ReplayCacheUtils {
+
+    /**
+     * The length in bytes of a digested identifier
+     */
+    public static final int DIGEST_LENGTH = 16;
+
+    private ReplayCacheUtils() {
+        // complete
+    }
+
+    /**
+     * Create a fixed-width identifier from the given values. The identifier is the Base-64 encoding of
+     * a 128-bit digest (the first half of a SHA-256 digest) of the values, so that it is independent of
+     * the size of e.g. the signature value that it is derived from.
+     * @param values the values that together make up the identifier
+     * @return a fixed-width identifier of the given values
+     * @throws WSSecurityException
+     */
+    public static String createIdentifier(byte[]... values) throws WSSecurityException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] value : values) {
+                // Add the length of each value, so that different splits of the same bytes don't collide
+                int length = value == null ? -1 : value.length;
+                digest.update(new byte[] {
+                    (byte)(length >>> 24), (byte)(length >>> 16), (byte)(length >>> 8), (byte)length
+                });
+                if (value != null) {
+                    digest.update(value);
+                }
+            }
+            return XMLUtils.encodeToString(Arrays.copyOf(digest.digest(), DIGEST_LENGTH));
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "empty",
+                                          new Object[] {"Error in generating digest"}
+            );
+        }
+    }
+
+    /**
+     * Create a fixed-width identifier from the given Strings.
+     * @param values the values that together make up the identifier
+     * @return a fixed-width identifier of the given values
+     * @throws WSSecurityException
+     * @see #createIdentifier(byte[]...)
+     */
+    public static String createIdentifier(String... values) throws WSSecurityException {
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                bytes[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return createIdentifier(bytes);
+    }
+
+    /**
+     * Digest the given identifier to 128 bits, which are returned as two longs.
+     * @param identifier the identifier to digest
+     * @return the 128-bit digest of the identifier
+     */
+    static long[] digest(String identifier) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(identifier.getBytes(StandardCharsets.UTF_8));
+            return new long[] {toLong(bytes, 0), toLong(bytes, 8)};
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required to be supported by every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFFL);
+        }
+        return value;
+    }
+}
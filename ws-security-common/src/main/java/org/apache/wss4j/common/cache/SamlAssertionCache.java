@@ -0,0 +1,268 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.util.DigestingOutputStream;
+import org.apache.xml.security.c14n.CanonicalizationException;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.apache.xml.security.c14n.InvalidCanonicalizerException;
+import org.opensaml.saml.common.SAMLVersion;
+import org.w3c.dom.Element;
+
+/**
+ * A bounded cache of signed SAML Assertions that have been validated, i.e. whose signature has been
+ * verified and whose signing key or certificate has been found to be trusted. A client that sends
+ * the same Assertion with each message then only costs the checks that depend on the time and on
+ * the message (Conditions, Subject Confirmation, etc.), and not the signature and trust checks.
+ *
+ * An Assertion is identified by its ID together with the SHA-256 digest of the exclusive
+ * canonicalized Assertion, which covers the SignatureValue along with the signed content. It is
+ * cached for the signature verification Crypto and the class of the validator that trusted it, so
+ * that a configuration with a different Crypto or validator verifies the Assertion itself. (A validator
+ * is identified by its class, as the default validators are instantiated for each message.) An
+ * Assertion is held until its NotOnOrAfter Condition, or until a TTL (one hour by default)
+ * if that is sooner. Assertions with a OneTimeUse (SAML 2.0) or DoNotCacheCondition (SAML 1.1)
+ * Condition are never cached.
+ */
+public class SamlAssertionCache {
+
+    public static final long DEFAULT_TTL = 60L * 60L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SamlAssertionCache.class);
+
+    private final long ttl;
+    private final Map<CacheKey, CachedAssertion> assertions;
+    // The identifiers of the Assertion elements of the messages currently being processed
+    private final Map<Element, String> identifiers = new WeakHashMap<>();
+
+    public SamlAssertionCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * Create a new SamlAssertionCache
+     * @param maxEntries The maximum number of Assertions that are held in the cache
+     * @param ttl The maximum time (in seconds) for which an Assertion is held in the cache
+     */
+    public SamlAssertionCache(int maxEntries, long ttl) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive");
+        }
+        if (ttl < 1) {
+            throw new IllegalArgumentException("The TTL must be positive");
+        }
+        this.ttl = ttl;
+        // An access-ordered map, that evicts the least recently used entry
+        assertions = new LinkedHashMap<CacheKey, CachedAssertion>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedAssertion> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the identifier of the given Assertion, under which it is cached
+     * @param samlAssertion The Assertion
+     * @return the identifier, or null if the Assertion must not be cached
+     */
+    public String getIdentifier(SamlAssertionWrapper samlAssertion) {
+        Element element = samlAssertion.getElement();
+        String id = samlAssertion.getId();
+        if (element == null || id == null || "".equals(id) || !samlAssertion.isSigned()
+            || !isCacheable(samlAssertion)) {
+            return null;
+        }
+
+        synchronized (identifiers) {
+            String identifier = identifiers.get(element);
+            if (identifier != null) {
+                return identifier;
+            }
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Canonicalizer canon = Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+            canon.canonicalizeSubtree(element, new DigestingOutputStream(digest));
+            String identifier = id + " " + Base64.getEncoder().encodeToString(digest.digest());
+            synchronized (identifiers) {
+                identifiers.put(element, identifier);
+            }
+            return identifier;
+        } catch (NoSuchAlgorithmException | InvalidCanonicalizerException | CanonicalizationException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Get the signature SAMLKeyInfo of the validated Assertion with the given identifier
+     * @param identifier The identifier of the Assertion
+     * @param sigVerCrypto The signature verification Crypto of the current configuration
+     * @param validator The validator of the current configuration
+     * @return the SAMLKeyInfo of the signature of the Assertion, or null if it is not cached
+     *         for the given Crypto and validator
+     */
+    public SAMLKeyInfo get(String identifier, Crypto sigVerCrypto, Object validator) {
+        if (identifier == null) {
+            return null;
+        }
+        CacheKey key = new CacheKey(identifier, sigVerCrypto, validator);
+        synchronized (assertions) {
+            CachedAssertion cachedAssertion = assertions.get(key);
+            if (cachedAssertion == null) {
+                return null;
+            }
+            if (cachedAssertion.expires.isBefore(Instant.now())) {
+                assertions.remove(key);
+                return null;
+            }
+            SAMLKeyInfo signatureKeyInfo = new SAMLKeyInfo(cachedAssertion.publicKey);
+            if (cachedAssertion.certs != null) {
+                signatureKeyInfo.setCerts(cachedAssertion.certs.clone());
+            }
+            return signatureKeyInfo;
+        }
+    }
+
+    /**
+     * Add a validated Assertion to the cache
+     * @param identifier The identifier of the Assertion
+     * @param sigVerCrypto The signature verification Crypto the Assertion has been trusted with
+     * @param validator The validator the Assertion has been trusted by
+     * @param samlAssertion The Assertion, the signature of which has been verified and trusted
+     * @param signatureKeyInfo The SAMLKeyInfo of the signature of the Assertion
+     */
+    public void put(String identifier, Crypto sigVerCrypto, Object validator,
+                    SamlAssertionWrapper samlAssertion, SAMLKeyInfo signatureKeyInfo) {
+        if (identifier == null || signatureKeyInfo == null) {
+            return;
+        }
+        if (signatureKeyInfo.getCerts() == null && signatureKeyInfo.getPublicKey() == null) {
+            return;
+        }
+        Instant expires = Instant.now().plusSeconds(ttl);
+        Instant notOnOrAfter = getNotOnOrAfter(samlAssertion);
+        if (notOnOrAfter != null && notOnOrAfter.isBefore(expires)) {
+            expires = notOnOrAfter;
+        }
+        if (expires.isAfter(Instant.now())) {
+            synchronized (assertions) {
+                assertions.put(new CacheKey(identifier, sigVerCrypto, validator),
+                               new CachedAssertion(signatureKeyInfo, expires));
+            }
+        }
+    }
+
+    /**
+     * Remove all of the cached Assertions
+     */
+    public void clear() {
+        synchronized (assertions) {
+            assertions.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (assertions) {
+            return assertions.size();
+        }
+    }
+
+    private static boolean isCacheable(SamlAssertionWrapper samlAssertion) {
+        if (samlAssertion.getSamlVersion().equals(SAMLVersion.VERSION_20)) {
+            return samlAssertion.getSaml2().getConditions() == null
+                || samlAssertion.getSaml2().getConditions().getOneTimeUse() == null;
+        }
+        return samlAssertion.getSaml1().getConditions() == null
+            || samlAssertion.getSaml1().getConditions().getDoNotCacheConditions().isEmpty();
+    }
+
+    private static Instant getNotOnOrAfter(SamlAssertionWrapper samlAssertion) {
+        if (samlAssertion.getSamlVersion().equals(SAMLVersion.VERSION_20)) {
+            if (samlAssertion.getSaml2().getConditions() == null) {
+                return null;
+            }
+        } else if (samlAssertion.getSaml1().getConditions() == null) {
+            return null;
+        }
+        return samlAssertion.getNotOnOrAfter();
+    }
+
+    private static final class CacheKey {
+        private final String identifier;
+        private final Crypto sigVerCrypto;
+        private final Class<?> validatorClass;
+
+        CacheKey(String identifier, Crypto sigVerCrypto, Object validator) {
+            this.identifier = identifier;
+            this.sigVerCrypto = sigVerCrypto;
+            this.validatorClass = validator == null ? null : validator.getClass();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey)obj;
+            return identifier.equals(other.identifier)
+                && sigVerCrypto == other.sigVerCrypto
+                && validatorClass == other.validatorClass;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * identifier.hashCode() + System.identityHashCode(sigVerCrypto))
+                + System.identityHashCode(validatorClass);
+        }
+    }
+
+    private static final class CachedAssertion {
+        private final X509Certificate[] certs;
+        private final PublicKey publicKey;
+        private final Instant expires;
+
+        CachedAssertion(SAMLKeyInfo signatureKeyInfo, Instant expires) {
+            X509Certificate[] signatureCerts = signatureKeyInfo.getCerts();
+            this.certs = signatureCerts == null ? null : signatureCerts.clone();
+            this.publicKey = signatureKeyInfo.getPublicKey();
+            this.expires = expires;
+        }
+    }
+}
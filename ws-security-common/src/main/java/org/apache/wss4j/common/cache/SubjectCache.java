@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.security.auth.Subject;
+
+/**
+ * A bounded cache of the Subjects that were authenticated by a JAAS LoginContext for a username
+ * and password, so that a client that sends the same credentials with each message does not
+ * cost a LoginModule round-trip per message. The cache is keyed by the JAAS context name and the
+ * username, and holds a salted SHA-256 hash of the password (and never the password itself). A
+ * cached Subject is only returned for the same password.
+ *
+ * Only Subjects that were successfully authenticated should be added to the cache. Entries expire
+ * after a TTL (five minutes by default), and the least recently used entry is evicted once the
+ * maximum number of entries (1000 by default) is reached. A change of the password or roles of a
+ * user in the user store therefore only takes effect for a cached user once the TTL has elapsed,
+ * unless the user is removed from the cache.
+ */
+public class SubjectCache {
+
+    public static final long DEFAULT_TTL = 5L * 60L;
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SubjectCache.class);
+
+    private final long ttl;
+    private final Map<String, CachedSubject> subjects;
+    private final SecureRandom random = new SecureRandom();
+
+    public SubjectCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * Create a new SubjectCache
+     * @param maxEntries The maximum number of Subjects that are held in the cache
+     * @param ttl The time (in seconds) for which a Subject is held in the cache
+     */
+    public SubjectCache(int maxEntries, long ttl) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive");
+        }
+        if (ttl < 1) {
+            throw new IllegalArgumentException("The TTL must be positive");
+        }
+        this.ttl = ttl;
+        // An access-ordered map, that evicts the least recently used entry
+        subjects = new LinkedHashMap<String, CachedSubject>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSubject> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the Subject that was authenticated for the given credentials
+     * @param contextName The JAAS context name
+     * @param user The username
+     * @param password The password
+     * @return a copy of the authenticated Subject, or null if it is not cached
+     */
+    public Subject get(String contextName, String user, String password) {
+        if (user == null || password == null) {
+            return null;
+        }
+        String key = getKey(contextName, user);
+
+        CachedSubject cachedSubject;
+        synchronized (subjects) {
+            cachedSubject = subjects.get(key);
+            if (cachedSubject != null && cachedSubject.expires.isBefore(Instant.now())) {
+                subjects.remove(key);
+                cachedSubject = null;
+            }
+        }
+        if (cachedSubject == null) {
+            return null;
+        }
+
+        byte[] passwordHash = getPasswordHash(cachedSubject.salt, password);
+        if (passwordHash == null || !MessageDigest.isEqual(passwordHash, cachedSubject.passwordHash)) {
+            return null;
+        }
+        LOG.debug("Using the cached Subject of {}", user);
+        return copy(cachedSubject.subject);
+    }
+
+    /**
+     * Add a Subject that was authenticated for the given credentials to the cache
+     * @param contextName The JAAS context name
+     * @param user The username
+     * @param password The password
+     * @param subject The authenticated Subject
+     */
+    public void put(String contextName, String user, String password, Subject subject) {
+        if (user == null || password == null || subject == null) {
+            return;
+        }
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        byte[] passwordHash = getPasswordHash(salt, password);
+        if (passwordHash == null) {
+            return;
+        }
+
+        CachedSubject cachedSubject =
+            new CachedSubject(salt, passwordHash, copy(subject), Instant.now().plusSeconds(ttl));
+        synchronized (subjects) {
+            subjects.put(getKey(contextName, user), cachedSubject);
+        }
+    }
+
+    /**
+     * Remove the cached Subject of the given user, e.g. once the password or roles of the user
+     * have been changed
+     * @param contextName The JAAS context name
+     * @param user The username
+     */
+    public void remove(String contextName, String user) {
+        synchronized (subjects) {
+            subjects.remove(getKey(contextName, user));
+        }
+    }
+
+    /**
+     * Remove all of the cached Subjects
+     */
+    public void clear() {
+        synchronized (subjects) {
+            subjects.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (subjects) {
+            return subjects.size();
+        }
+    }
+
+    private static String getKey(String contextName, String user) {
+        // The length prefix keeps the key unambiguous, whatever characters the names contain
+        String name = contextName == null ? "" : contextName;
+        return name.length() + ":" + name + user;
+    }
+
+    private static byte[] getPasswordHash(byte[] salt, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    private static Subject copy(Subject subject) {
+        return new Subject(false, subject.getPrincipals(), subject.getPublicCredentials(),
+                           subject.getPrivateCredentials());
+    }
+
+    private static final class CachedSubject {
+        private final byte[] salt;
+        private final byte[] passwordHash;
+        private final Subject subject;
+        private final Instant expires;
+
+        CachedSubject(byte[] salt, byte[] passwordHash, Subject subject, Instant expires) {
+            this.salt = salt;
+            this.passwordHash = passwordHash;
+            this.subject = subject;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * An X.509 certificate that was parsed by the X509CertificateCache, along with the values that are
+ * repeatedly derived from it when processing a message - the SKI bytes, the SHA-1 and SHA-256
+ * thumbprints and the subject and issuer DNs. The derived values are computed the first time they
+ * are requested, and are then shared by all users of the certificate.
+ *
+ * The certificate instance is shared, and must not be modified. The byte arrays that are returned
+ * are copies.
+ */
+public final class CachedX509Certificate {
+
+    private final X509Certificate certificate;
+    private final byte[] encoded;
+    private final Crypto crypto;
+    private volatile byte[] skiBytes;
+    private volatile byte[] sha1Thumbprint;
+    private volatile byte[] sha256Thumbprint;
+    private volatile String subjectDN;
+    private volatile String issuerDN;
+
+    CachedX509Certificate(X509Certificate certificate, byte[] encoded, Crypto crypto) {
+        this.certificate = certificate;
+        this.encoded = encoded;
+        this.crypto = crypto;
+    }
+
+    public X509Certificate getX509Certificate() {
+        return certificate;
+    }
+
+    /**
+     * @return the DER encoding of the certificate
+     */
+    public byte[] getEncoded() {
+        return encoded.clone();
+    }
+
+    /**
+     * Get the SubjectKeyIdentifier bytes of the certificate, as read (or computed) by the Crypto
+     * instance of the cache that holds the certificate
+     * @return the SKI bytes of the certificate
+     * @throws WSSecurityException if the SKI bytes can't be read or computed
+     */
+    public byte[] getSKIBytes() throws WSSecurityException {
+        byte[] ski = skiBytes;
+        if (ski == null) {
+            Crypto skiCrypto = crypto == null ? new Merlin() : crypto;
+            ski = skiCrypto.getSKIBytesFromCert(certificate);
+            skiBytes = ski;
+        }
+        return ski.clone();
+    }
+
+    /**
+     * @return the SHA-1 digest of the DER encoding of the certificate
+     */
+    public byte[] getSHA1Thumbprint() throws WSSecurityException {
+        byte[] thumbprint = sha1Thumbprint;
+        if (thumbprint == null) {
+            thumbprint = digest("SHA-1");
+            sha1Thumbprint = thumbprint;
+        }
+        return thumbprint.clone();
+    }
+
+    /**
+     * @return the SHA-256 digest of the DER encoding of the certificate
+     */
+    public byte[] getSHA256Thumbprint() throws WSSecurityException {
+        byte[] thumbprint = sha256Thumbprint;
+        if (thumbprint == null) {
+            thumbprint = digest("SHA-256");
+            sha256Thumbprint = thumbprint;
+        }
+        return thumbprint.clone();
+    }
+
+    /**
+     * @return the subject DN of the certificate, in the RFC 2253 format
+     */
+    public String getSubjectDN() {
+        String dn = subjectDN;
+        if (dn == null) {
+            dn = certificate.getSubjectX500Principal().getName();
+            subjectDN = dn;
+        }
+        return dn;
+    }
+
+    /**
+     * @return the issuer DN of the certificate, in the RFC 2253 format
+     */
+    public String getIssuerDN() {
+        String dn = issuerDN;
+        if (dn == null) {
+            dn = certificate.getIssuerX500Principal().getName();
+            issuerDN = dn;
+        }
+        return dn;
+    }
+
+    private byte[] digest(String algorithm) throws WSSecurityException {
+        try {
+            return MessageDigest.getInstance(algorithm).digest(encoded);
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "decoding.general");
+        }
+    }
+}
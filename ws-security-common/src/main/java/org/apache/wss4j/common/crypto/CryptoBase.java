@@ -64,6 +64,8 @@ public abstract class CryptoBase implements Crypto {
     private String defaultAlias;
     private String cryptoProvider;
     private String trustProvider;
+    private final X509CertificateCache certificateCache =
+        new X509CertificateCache(this, X509CertificateCache.DEFAULT_MAX_SIZE);
 
     static {
         Constructor<?> cons = null;
@@ -96,6 +98,15 @@ public abstract class CryptoBase implements Crypto {
      */
     public void setCryptoProvider(String provider) {
         cryptoProvider = provider;
+        // The cached certificates were parsed with the previous provider
+        certificateCache.clear();
+    }
+
+    /**
+     * @return the cache of the certificates that are parsed with this Crypto instance
+     */
+    X509CertificateCache getX509CertificateCache() {
+        return certificateCache;
     }
 
     /**
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * An immutable index of the certificate (chains) of a KeyStore, so that Merlin can find a certificate
+ * by its subject DN, issuer and serial number, SKI bytes, SHA-1 thumbprint or public key without
+ * enumerating (and parsing the DNs of) all of the entries of the KeyStore on each lookup.
+ *
+ * Where several entries match, the first one in the order of KeyStore.aliases() is indexed, which
+ * is the entry that a search of the KeyStore would return.
+ *
+ * Entries that are added to, replaced in or removed from the KeyStore after it was indexed are not
+ * seen by the index. Merlin creates a new index when a KeyStore is replaced, or when it is told via
+ * Merlin.refresh() that a KeyStore has been modified in place.
+ */
+final class KeyStoreIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KeyStoreIndex.class);
+
+    private final KeyStore keyStore;
+    private final Map<Object, List<Certificate[]>> subjects = new HashMap<>();
+    private final Map<List<Object>, Certificate[]> issuerSerials = new HashMap<>();
+    private final Map<ByteBuffer, Certificate[]> skis = new HashMap<>();
+    private final Map<ByteBuffer, Certificate[]> thumbprints = new HashMap<>();
+    private final Map<ByteBuffer, String> publicKeys = new HashMap<>();
+    private final Map<Certificate, String> certificates = new HashMap<>();
+
+    /**
+     * Index the given KeyStore
+     * @param keyStore The KeyStore to index
+     * @param merlin The Merlin instance, which is used to parse the DNs and SKI bytes of the certificates
+     * @throws WSSecurityException if the KeyStore can't be read
+     */
+    KeyStoreIndex(KeyStore keyStore, Merlin merlin) throws WSSecurityException {
+        this.keyStore = keyStore;
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA1");
+            for (Enumeration<String> e = keyStore.aliases(); e.hasMoreElements();) {
+                String alias = e.nextElement();
+                Certificate[] certs = keyStore.getCertificateChain(alias);
+                if (certs == null || certs.length == 0) {
+                    // no cert chain, so lets check if getCertificate gives us a result.
+                    Certificate cert = keyStore.getCertificate(alias);
+                    if (cert != null) {
+                        certs = new Certificate[]{cert};
+                    }
+                }
+                if (certs != null && certs.length > 0) {
+                    index(alias, certs, merlin, sha);
+                }
+            }
+        } catch (KeyStoreException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "decoding.general");
+        }
+    }
+
+    private void index(String alias, Certificate[] certs, Merlin merlin, MessageDigest sha) {
+        certificates.putIfAbsent(certs[0], alias);
+        byte[] encodedKey = certs[0].getPublicKey().getEncoded();
+        if (encodedKey != null) {
+            publicKeys.putIfAbsent(ByteBuffer.wrap(encodedKey), alias);
+        }
+        if (!(certs[0] instanceof X509Certificate)) {
+            return;
+        }
+
+        X509Certificate x509cert = (X509Certificate)certs[0];
+        Object subjectName = merlin.createBCX509Name(x509cert.getSubjectX500Principal().getName());
+        subjects.computeIfAbsent(subjectName, k -> new ArrayList<>()).add(certs);
+
+        Object issuerName = merlin.createBCX509Name(x509cert.getIssuerX500Principal().getName());
+        issuerSerials.putIfAbsent(Arrays.asList(issuerName, x509cert.getSerialNumber()), certs);
+
+        try {
+            skis.putIfAbsent(ByteBuffer.wrap(merlin.getSKIBytesFromCert(x509cert)), certs);
+        } catch (WSSecurityException ex) {
+            LOG.debug("Can't index the SKI of keystore alias {}: {}", alias, ex.getMessage());
+        }
+
+        try {
+            thumbprints.putIfAbsent(ByteBuffer.wrap(sha.digest(x509cert.getEncoded())), certs);
+        } catch (CertificateEncodingException ex) {
+            LOG.debug("Can't index the thumbprint of keystore alias {}: {}", alias, ex.getMessage());
+        }
+    }
+
+    /**
+     * Return true if this is an index of the given KeyStore instance
+     */
+    boolean isIndexOf(KeyStore store) {
+        return keyStore == store;
+    }
+
+    /**
+     * @param subjectName either an X500Principal or a BouncyCastle X509Name instance
+     * @return the certificate chains with the given subject DN, or an empty list
+     */
+    List<Certificate[]> getCertificatesBySubject(Object subjectName) {
+        List<Certificate[]> certs = subjects.get(subjectName);
+        return certs == null ? Collections.emptyList() : certs;
+    }
+
+    /**
+     * @param issuerName either an X500Principal or a BouncyCastle X509Name instance
+     * @param serialNumber the serial number
+     * @return the certificate chain with the given issuer DN and serial number, or null
+     */
+    Certificate[] getCertificatesByIssuerSerial(Object issuerName, BigInteger serialNumber) {
+        return issuerSerials.get(Arrays.asList(issuerName, serialNumber));
+    }
+
+    Certificate[] getCertificatesBySKI(byte[] skiBytes) {
+        return skis.get(ByteBuffer.wrap(skiBytes));
+    }
+
+    Certificate[] getCertificatesByThumbprint(byte[] thumbprint) {
+        return thumbprints.get(ByteBuffer.wrap(thumbprint));
+    }
+
+    String getAlias(PublicKey publicKey) {
+        byte[] encodedKey = publicKey.getEncoded();
+        return encodedKey == null ? null : publicKeys.get(ByteBuffer.wrap(encodedKey));
+    }
+
+    String getAlias(Certificate cert) {
+        return certificates.get(cert);
+    }
+}
@@ -19,9 +19,13 @@
 
 package org.apache.wss4j.common.crypto;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.GeneralSecurityException;
@@ -29,7 +33,6 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.Key;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
@@ -39,7 +42,6 @@ import java.security.cert.CertPath;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertStore;
 import java.security.cert.Certificate;
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateFactory;
@@ -116,19 +118,45 @@ public class Merlin extends CryptoBase {
      */
     public static final String X509_CRL_FILE = "x509crl.file";
 
+    /*
+     * Verified certificate chain cache configuration
+     */
+    public static final String TRUST_CACHE_SIZE = "trust.cache.size";
+    public static final String TRUST_CACHE_TTL = "trust.cache.ttl";
+    public static final long DEFAULT_TRUST_CACHE_TTL = 300L;
+
+    /*
+     * The maximum number of recovered private keys to cache
+     */
+    public static final String PRIVATE_KEY_CACHE_SIZE = "private.key.cache.size";
+
+    /*
+     * The interval in seconds to check the keystore, truststore and CRL files for changes
+     */
+    public static final String RELOAD_INTERVAL = "reload.interval";
+
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(Merlin.class);
     private static final String COMMA_SEPARATOR = ",";
 
     protected Properties properties;
-    protected KeyStore keystore;
-    protected KeyStore truststore;
-    protected CertStore crlCertStore;
-    protected boolean loadCACerts;
+    protected volatile KeyStore keystore;
+    protected volatile KeyStore truststore;
+    protected volatile CertStore crlCertStore;
+    protected volatile boolean loadCACerts;
     protected boolean privatePasswordSet;
     protected PasswordEncryptor passwordEncryptor;
 
     private boolean certProviderHandlesNameConstraints = false;
+    private final Object storesLock = new Object();
+    private volatile Stores stores;
+    private volatile TrustParameters trustParameters;
+    private int trustCacheSize;
+    private long trustCacheTTL = DEFAULT_TRUST_CACHE_TTL;
+    private volatile VerifiedChainCache verifiedChainCache;
+    private int privateKeyCacheSize;
+    private volatile PrivateKeyCache privateKeyCache;
+    private MerlinReloader reloader;
 
     public Merlin() {
         // default constructor
@@ -200,6 +228,7 @@ public class Merlin extends CryptoBase {
         if (cpNameConstraintsProp != null) {
             certProviderHandlesNameConstraints = Boolean.parseBoolean(cpNameConstraintsProp);
         }
+        loadTrustCacheProperties(prefix);
         //
         // Load the KeyStore
         //
@@ -335,6 +364,159 @@ public class Merlin extends CryptoBase {
             }
             LOG.debug("The CRL files {} have been loaded", crlLocations);
         }
+
+        //
+        // Index the KeyStore and TrustStore up front, rather than on the first lookup
+        //
+        getStores();
+
+        //
+        // Watch the files for changes
+        //
+        String reloadInterval = properties.getProperty(prefix + RELOAD_INTERVAL);
+        if (reloadInterval != null && reloader == null) {
+            startReloader(prefix, loader, Long.parseLong(reloadInterval.trim()));
+        }
+    }
+
+    private void loadTrustCacheProperties(String prefix) {
+        String trustCacheSizeProp = properties.getProperty(prefix + TRUST_CACHE_SIZE);
+        if (trustCacheSizeProp != null) {
+            setTrustCacheSize(Integer.parseInt(trustCacheSizeProp.trim()));
+        }
+        String trustCacheTTLProp = properties.getProperty(prefix + TRUST_CACHE_TTL);
+        if (trustCacheTTLProp != null) {
+            setTrustCacheTTL(Long.parseLong(trustCacheTTLProp.trim()));
+        }
+        String privateKeyCacheSizeProp = properties.getProperty(prefix + PRIVATE_KEY_CACHE_SIZE);
+        if (privateKeyCacheSizeProp != null) {
+            setPrivateKeyCacheSize(Integer.parseInt(privateKeyCacheSizeProp.trim()));
+        }
+    }
+
+    private void startReloader(String prefix, ClassLoader loader, long interval) {
+        List<File> watchedFiles = getWatchedFiles(prefix, loader);
+        if (interval > 0 && !watchedFiles.isEmpty()) {
+            Properties reloadProperties = new Properties();
+            reloadProperties.putAll(properties);
+            reloadProperties.remove(prefix + RELOAD_INTERVAL);
+            reloader = new MerlinReloader(
+                this, reloadProperties, loader, passwordEncryptor, watchedFiles, interval
+            );
+            LOG.debug("Checking the files {} for changes every {} seconds", watchedFiles, interval);
+        }
+    }
+
+    /**
+     * Create a new instance from the given properties, which is used to reload the keystore, truststore
+     * and CRL files in the background before they are taken over by this instance. The default
+     * implementation creates a Merlin instance directly, and an instance of a subclass via CryptoFactory,
+     * i.e. the properties must name the subclass as the Crypto provider. Subclasses that are not created
+     * by CryptoFactory must override this method to support the reload interval.
+     * @param properties The properties to load the new instance from, without the reload interval
+     * @param loader The ClassLoader to load the files with
+     * @param passwordEncryptor The PasswordEncryptor to decrypt the passwords with
+     * @return a new instance, loaded from the given properties
+     * @throws WSSecurityException if the new instance can't be created or loaded
+     * @throws IOException if a file can't be read
+     */
+    protected Merlin createReloadInstance(
+        Properties properties, ClassLoader loader, PasswordEncryptor passwordEncryptor
+    ) throws WSSecurityException, IOException {
+        if (getClass() == Merlin.class) {
+            return new Merlin(properties, loader, passwordEncryptor);
+        }
+        Crypto crypto = CryptoFactory.getInstance(properties, loader, passwordEncryptor);
+        if (!getClass().isInstance(crypto)) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
+                new Object[] {"Cannot reload " + getClass().getName() + " from properties that create a "
+                    + crypto.getClass().getName()});
+        }
+        return (Merlin)crypto;
+    }
+
+    /**
+     * Get the keystore, truststore and CRL files that are configured in the properties, and that can
+     * be watched for changes (i.e. that are not contained in an archive).
+     */
+    private List<File> getWatchedFiles(String prefix, ClassLoader loader) {
+        List<String> locations = new ArrayList<>();
+        String keyStoreLocation = properties.getProperty(prefix + KEYSTORE_FILE);
+        if (keyStoreLocation == null) {
+            keyStoreLocation = properties.getProperty(prefix + OLD_KEYSTORE_FILE);
+        }
+        locations.add(keyStoreLocation);
+        String trustStoreLocation = properties.getProperty(prefix + TRUSTSTORE_FILE);
+        if (trustStoreLocation == null && loadCACerts) {
+            trustStoreLocation = System.getProperty("java.home") + "/lib/security/cacerts";
+        }
+        locations.add(trustStoreLocation);
+        String crlLocations = properties.getProperty(prefix + X509_CRL_FILE);
+        if (crlLocations != null) {
+            locations.addAll(Arrays.asList(crlLocations.split(COMMA_SEPARATOR)));
+        }
+
+        List<File> files = new ArrayList<>();
+        for (String location : locations) {
+            if (location == null) {
+                continue;
+            }
+            location = location.trim();
+            URL url = null;
+            try {
+                url = new URL(location);
+            } catch (MalformedURLException ex) {
+                url = Loader.getResource(loader, location);
+            }
+            File file = null;
+            if (url == null) {
+                file = new File(location);
+            } else if ("file".equals(url.getProtocol())) {
+                try {
+                    file = new File(url.toURI());
+                } catch (URISyntaxException | IllegalArgumentException ex) {
+                    LOG.debug(ex.getMessage(), ex);
+                }
+            }
+            if (file != null && file.isFile()) {
+                files.add(file);
+            } else {
+                LOG.debug("The location {} can't be watched for changes", location);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Take over the keystore, truststore and CRLs (along with their indexes) of the given Merlin instance,
+     * which was loaded from the same properties as this instance. Any stores that are not configured in
+     * the properties are kept.
+     */
+    void reloadFrom(Merlin source) throws WSSecurityException {
+        Stores sourceStores = source.getStores();
+        Stores current;
+        synchronized (storesLock) {
+            if (sourceStores.keystore != null) {
+                keystore = sourceStores.keystore;
+            }
+            if (sourceStores.truststore != null) {
+                truststore = sourceStores.truststore;
+                loadCACerts = sourceStores.loadCACerts;
+            }
+            if (sourceStores.crlCertStore != null) {
+                crlCertStore = sourceStores.crlCertStore;
+            }
+            // All of the changes are published at once, re-using the indexes of the source
+            current = new Stores(keystore, truststore, loadCACerts, crlCertStore, this, sourceStores, stores);
+            stores = current;
+        }
+
+        // Create the trust anchors now, rather than on the next request
+        try {
+            getPKIXParameters(current, false);
+        } catch (Exception ex) {
+            LOG.debug(ex.getMessage(), ex);
+        }
     }
 
     /**
@@ -378,12 +560,15 @@ public class Merlin extends CryptoBase {
     //
 
     /**
-     * Gets the Keystore that was loaded
+     * Gets the Keystore that was loaded. If the returned Keystore is modified, refresh() must be called
+     * for the changes to be seen by this Crypto instance.
      *
      * @return the Keystore
      */
     public KeyStore getKeyStore() {
-        return keystore;
+        synchronized (storesLock) {
+            return keystore;
+        }
     }
 
     /**
@@ -392,16 +577,21 @@ public class Merlin extends CryptoBase {
      * @param keyStore the Keystore to set
      */
     public void setKeyStore(KeyStore keyStore) {
-        keystore = keyStore;
+        synchronized (storesLock) {
+            keystore = keyStore;
+        }
     }
 
     /**
-     * Gets the trust store that was loaded by the underlying implementation
+     * Gets the trust store that was loaded by the underlying implementation. If the returned trust store
+     * is modified, refresh() must be called for the changes to be seen by this Crypto instance.
      *
      * @return the trust store
      */
     public KeyStore getTrustStore() {
-        return truststore;
+        synchronized (storesLock) {
+            return truststore;
+        }
     }
 
     /**
@@ -410,7 +600,9 @@ public class Merlin extends CryptoBase {
      * @param trustStore the trust store to set
      */
     public void setTrustStore(KeyStore trustStore) {
-        truststore = trustStore;
+        synchronized (storesLock) {
+            truststore = trustStore;
+        }
     }
 
     /**
@@ -420,7 +612,9 @@ public class Merlin extends CryptoBase {
      * Revocation checking.
      */
     public void setCRLCertStore(CertStore crlCertStore) {
-        this.crlCertStore = crlCertStore;
+        synchronized (storesLock) {
+            this.crlCertStore = crlCertStore;
+        }
     }
 
     /**
@@ -430,7 +624,66 @@ public class Merlin extends CryptoBase {
      * Revocation checking.
      */
     public CertStore getCRLCertStore() {
-        return crlCertStore;
+        synchronized (storesLock) {
+            return crlCertStore;
+        }
+    }
+
+    /**
+     * Get the maximum number of verified certificate chains that are cached
+     * @return the maximum number of verified certificate chains that are cached
+     */
+    public int getTrustCacheSize() {
+        return trustCacheSize;
+    }
+
+    /**
+     * Set the maximum number of verified certificate chains that are cached, so that a repeated
+     * verifyTrust call for the same certificate chain (and constraints) does not validate the chain
+     * again. The default of 0 disables the cache.
+     * @param trustCacheSize the maximum number of verified certificate chains that are cached
+     */
+    public void setTrustCacheSize(int trustCacheSize) {
+        this.trustCacheSize = trustCacheSize;
+        verifiedChainCache = null;
+    }
+
+    /**
+     * Get the time in seconds that a verified certificate chain is cached for
+     * @return the time in seconds that a verified certificate chain is cached for
+     */
+    public long getTrustCacheTTL() {
+        return trustCacheTTL;
+    }
+
+    /**
+     * Set the time in seconds that a verified certificate chain is cached for. The default is 300 seconds.
+     * A chain is never cached beyond the expiry of its certificates, and the cache is cleared when the
+     * keystore, the truststore or the CRL CertStore change.
+     * @param trustCacheTTL the time in seconds that a verified certificate chain is cached for
+     */
+    public void setTrustCacheTTL(long trustCacheTTL) {
+        this.trustCacheTTL = trustCacheTTL;
+        verifiedChainCache = null;
+    }
+
+    /**
+     * Get the maximum number of private keys that are cached
+     * @return the maximum number of private keys that are cached
+     */
+    public int getPrivateKeyCacheSize() {
+        return privateKeyCacheSize;
+    }
+
+    /**
+     * Set the maximum number of private keys that are cached, so that a private key is not recovered
+     * from the keystore again for each message. A cached key is only returned for the same password,
+     * and the cache is cleared when the keystore changes. The default of 0 disables the cache.
+     * @param privateKeyCacheSize the maximum number of private keys that are cached
+     */
+    public void setPrivateKeyCacheSize(int privateKeyCacheSize) {
+        this.privateKeyCacheSize = privateKeyCacheSize;
+        privateKeyCache = null;
     }
 
     /**
@@ -509,9 +762,10 @@ public class Merlin extends CryptoBase {
             return super.getDefaultX509Identifier();
         }
 
-        if (keystore != null) {
+        KeyStore keyStore = getStores().keystore;
+        if (keyStore != null) {
             try {
-                Enumeration<String> as = keystore.aliases();
+                Enumeration<String> as = keyStore.aliases();
                 if (as.hasMoreElements()) {
                     String alias = as.nextElement();
                     if (!as.hasMoreElements()) {
@@ -551,19 +805,19 @@ public class Merlin extends CryptoBase {
         X509Certificate[] certs = null;
         switch (type) {
         case ISSUER_SERIAL:
-            certs = getX509Certificates(cryptoType.getIssuer(), cryptoType.getSerial());
+            certs = getX509Certificates(getStores(), cryptoType.getIssuer(), cryptoType.getSerial());
             break;
         case THUMBPRINT_SHA1:
-            certs = getX509Certificates(cryptoType.getBytes());
+            certs = getX509Certificates(getStores(), cryptoType.getBytes());
             break;
         case SKI_BYTES:
-            certs = getX509CertificatesSKI(cryptoType.getBytes());
+            certs = getX509CertificatesSKI(getStores(), cryptoType.getBytes());
             break;
         case SUBJECT_DN:
-            certs = getX509CertificatesSubjectDN(cryptoType.getSubjectDN());
+            certs = getX509CertificatesSubjectDN(getStores(), cryptoType.getSubjectDN());
             break;
         case ALIAS:
-            certs = getX509Certificates(cryptoType.getAlias());
+            certs = getX509Certificates(getStores(), cryptoType.getAlias());
             break;
         case ENDPOINT:
             break;
@@ -579,14 +833,15 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException
      */
     public String getX509Identifier(X509Certificate cert) throws WSSecurityException {
+        Stores current = getStores();
         String identifier = null;
 
-        if (keystore != null) {
-            identifier = getIdentifier(cert, keystore);
+        if (current.keystoreIndex != null) {
+            identifier = current.keystoreIndex.getAlias(cert);
         }
 
-        if (identifier == null && truststore != null) {
-            identifier = getIdentifier(cert, truststore);
+        if (identifier == null && current.truststoreIndex != null) {
+            identifier = current.truststoreIndex.getAlias(cert);
         }
 
         return identifier;
@@ -603,7 +858,8 @@ public class Merlin extends CryptoBase {
         X509Certificate certificate,
         CallbackHandler callbackHandler
     ) throws WSSecurityException {
-        if (keystore == null) {
+        Stores current = getStores();
+        if (current.keystore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
         }
@@ -612,11 +868,11 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
-        String identifier = getIdentifier(certificate, keystore);
+        String identifier = current.keystoreIndex.getAlias(certificate);
         if (identifier == null) {
             try {
                 String msg = "Cannot find key for certificate";
-                String logMsg = createKeyStoreErrorMessage(keystore);
+                String logMsg = createKeyStoreErrorMessage(current.keystore);
                 LOG.error(msg + logMsg);
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
@@ -628,7 +884,7 @@ public class Merlin extends CryptoBase {
             }
         }
         String password = getPassword(identifier, callbackHandler);
-        return getPrivateKey(identifier, password);
+        return getPrivateKey(current, identifier, password);
     }
 
     /**
@@ -642,7 +898,8 @@ public class Merlin extends CryptoBase {
         PublicKey publicKey,
         CallbackHandler callbackHandler
     ) throws WSSecurityException {
-        if (keystore == null) {
+        Stores current = getStores();
+        if (current.keystore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
         }
@@ -651,11 +908,11 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
-        String identifier = getIdentifier(publicKey, keystore);
+        String identifier = current.keystoreIndex.getAlias(publicKey);
         if (identifier == null) {
             try {
                 String msg = "Cannot find key for corresponding public key";
-                String logMsg = createKeyStoreErrorMessage(keystore);
+                String logMsg = createKeyStoreErrorMessage(current.keystore);
                 LOG.error(msg + logMsg);
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
@@ -667,7 +924,7 @@ public class Merlin extends CryptoBase {
             }
         }
         String password = getPassword(identifier, callbackHandler);
-        return getPrivateKey(identifier, password);
+        return getPrivateKey(current, identifier, password);
     }
 
     /**
@@ -681,14 +938,29 @@ public class Merlin extends CryptoBase {
         String identifier,
         String password
     ) throws WSSecurityException {
-        if (keystore == null) {
+        return getPrivateKey(getStores(), identifier, password);
+    }
+
+    private PrivateKey getPrivateKey(
+        Stores current,
+        String identifier,
+        String password
+    ) throws WSSecurityException {
+        if (current.keystore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
         }
+        PrivateKeyCache cache = getPrivateKeyCache(current);
+        if (cache != null && identifier != null) {
+            PrivateKey privateKey = cache.get(identifier, password);
+            if (privateKey != null) {
+                return privateKey;
+            }
+        }
         try {
-            if (identifier == null || !keystore.isKeyEntry(identifier)) {
+            if (identifier == null || !current.keystore.isKeyEntry(identifier)) {
                 String msg = "Cannot find key for alias: [" + identifier + "]";
-                String logMsg = createKeyStoreErrorMessage(keystore);
+                String logMsg = createKeyStoreErrorMessage(current.keystore);
                 LOG.error(msg + logMsg);
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
@@ -704,15 +976,18 @@ public class Merlin extends CryptoBase {
                     pwd = decryptPassword(pwd, passwordEncryptor);
                 }
             }
-            Key keyTmp = keystore.getKey(identifier, pwd == null
+            Key keyTmp = current.keystore.getKey(identifier, pwd == null
                                          ? new char[]{} : pwd.toCharArray());
             if (!(keyTmp instanceof PrivateKey)) {
                 String msg = "Key is not a private key, alias: [" + identifier + "]";
-                String logMsg = createKeyStoreErrorMessage(keystore);
+                String logMsg = createKeyStoreErrorMessage(current.keystore);
                 LOG.error(msg + logMsg);
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
             }
+            if (cache != null) {
+                cache.put(identifier, password, (PrivateKey) keyTmp);
+            }
             return (PrivateKey) keyTmp;
         } catch (KeyStoreException | UnrecoverableKeyException | NoSuchAlgorithmException ex) {
             throw new WSSecurityException(
@@ -735,6 +1010,8 @@ public class Merlin extends CryptoBase {
         boolean enableRevocation,
         Collection<Pattern> subjectCertConstraints
     ) throws WSSecurityException {
+        Stores current = getStores();
+
         //
         // FIRST step - Search the keystore for the transmitted certificate
         //
@@ -742,9 +1019,7 @@ public class Merlin extends CryptoBase {
             String issuerString = certs[0].getIssuerX500Principal().getName();
             BigInteger issuerSerial = certs[0].getSerialNumber();
 
-            CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
-            cryptoType.setIssuerSerial(issuerString, issuerSerial);
-            X509Certificate[] foundCerts = getX509Certificates(cryptoType);
+            X509Certificate[] foundCerts = getX509Certificates(current, issuerString, issuerSerial);
 
             //
             // If a certificate has been found, the certificates must be compared
@@ -775,13 +1050,14 @@ public class Merlin extends CryptoBase {
 
             Object subject = convertSubjectToPrincipal(issuerString);
 
-            if (keystore != null) {
-                foundIssuingCertChains = getCertificates(subject, keystore, false);
+            if (current.keystoreIndex != null) {
+                foundIssuingCertChains = getCertificates(subject, current.keystoreIndex, false);
             }
 
             //If we can't find the issuer in the keystore then look at the truststore
-            if ((foundIssuingCertChains == null || foundIssuingCertChains.isEmpty()) && truststore != null) {
-                foundIssuingCertChains = getCertificates(subject, truststore, true);
+            if ((foundIssuingCertChains == null || foundIssuingCertChains.isEmpty())
+                && current.truststoreIndex != null) {
+                foundIssuingCertChains = getCertificates(subject, current.truststoreIndex, true);
             }
 
             if (foundIssuingCertChains == null || foundIssuingCertChains.isEmpty()
@@ -806,30 +1082,9 @@ public class Merlin extends CryptoBase {
         );
 
         try {
-            Set<TrustAnchor> set = new HashSet<>();
-            if (truststore != null) {
-                addTrustAnchors(set, truststore);
-            }
-
-            //
-            // Add certificates from the keystore - only if there is no TrustStore, apart from
-            // the case that the truststore is the JDK CA certs. This behaviour is preserved
-            // for backwards compatibility reasons
-            //
-            if (keystore != null && (truststore == null || loadCACerts)) {
-                addTrustAnchors(set, keystore);
-            }
-
-            // Verify the trust path using the above settings
-            String provider = getCryptoProvider();
-            CertPathValidator validator = null;
-            if (provider == null || provider.length() == 0) {
-                validator = CertPathValidator.getInstance("PKIX");
-            } else {
-                validator = CertPathValidator.getInstance("PKIX", provider);
-            }
-
-            PKIXParameters param = createPKIXParameters(set, enableRevocation);
+            // Verify the trust path using the cached trust anchors
+            CertPathValidator validator = createCertPathValidator();
+            PKIXParameters param = getPKIXParameters(current, enableRevocation);
 
             // Generate cert path
             if (foundIssuingCertChains != null && !foundIssuingCertChains.isEmpty()) {
@@ -881,10 +1136,136 @@ public class Merlin extends CryptoBase {
     public void verifyTrust(X509Certificate[] certs, boolean enableRevocation,
                             Collection<Pattern> subjectCertConstraints,
                             Collection<Pattern> issuerCertConstraints) throws WSSecurityException {
+        VerifiedChainCache cache = getVerifiedChainCache(getStores());
+        String key = null;
+        if (cache != null) {
+            key = VerifiedChainCache.createKey(
+                certs, enableRevocation, subjectCertConstraints, issuerCertConstraints
+            );
+            if (key != null && cache.isVerified(key)) {
+                LOG.debug(
+                    "Cached trust for certificate with {}", certs[0].getSubjectX500Principal().getName()
+                );
+                return;
+            }
+        }
+
         verifyTrust(certs, enableRevocation, subjectCertConstraints);
         if (!matchesIssuerDnPattern(certs[0], issuerCertConstraints)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
+
+        if (key != null) {
+            cache.add(key, certs);
+        }
+    }
+
+    /**
+     * Get the cache of private keys, which is replaced when the keystore changes. Returns null if the
+     * cache is disabled.
+     */
+    private PrivateKeyCache getPrivateKeyCache(Stores current) {
+        if (privateKeyCacheSize <= 0) {
+            return null;
+        }
+
+        PrivateKeyCache cache = privateKeyCache;
+        if (cache == null || !cache.isValidFor(current.keystoreIndex)) {
+            cache = new PrivateKeyCache(current.keystoreIndex, privateKeyCacheSize);
+            privateKeyCache = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * Get the cache of verified certificate chains, which is replaced when the keystore, the truststore
+     * or the CRL CertStore change. Returns null if the cache is disabled.
+     */
+    private VerifiedChainCache getVerifiedChainCache(Stores current) {
+        if (trustCacheSize <= 0 || trustCacheTTL <= 0) {
+            return null;
+        }
+
+        VerifiedChainCache cache = verifiedChainCache;
+        if (cache == null || !cache.isValidFor(
+            current.keystoreIndex, current.truststoreIndex, current.loadCACerts, current.crlCertStore)) {
+            cache = new VerifiedChainCache(
+                current.keystoreIndex, current.truststoreIndex, current.loadCACerts, current.crlCertStore,
+                trustCacheSize, trustCacheTTL
+            );
+            verifiedChainCache = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * Get the PKIXParameters to validate a certificate path against the trust anchors of the keystore
+     * and/or the truststore. The trust anchors and the parameters for each revocation mode are only
+     * created (via createPKIXParameters) when the keystore, the truststore or the CRL CertStore have
+     * changed. A copy of the cached parameters is returned, which the caller is free to modify.
+     *
+     * @param enableRevocation whether to enable CRL verification or not
+     * @return the PKIXParameters to validate a certificate path with
+     */
+    protected PKIXParameters getPKIXParameters(boolean enableRevocation)
+        throws KeyStoreException, WSSecurityException, InvalidAlgorithmParameterException {
+        return getPKIXParameters(getStores(), enableRevocation);
+    }
+
+    private PKIXParameters getPKIXParameters(Stores current, boolean enableRevocation)
+        throws KeyStoreException, WSSecurityException, InvalidAlgorithmParameterException {
+        TrustParameters trust = trustParameters;
+        if (trust == null || trust.stores != current) {
+            // createPKIXParameters reads the CRL CertStore field, which only changes under the lock
+            synchronized (storesLock) {
+                Set<TrustAnchor> set = new HashSet<>();
+                if (current.truststore != null) {
+                    addTrustAnchors(set, current.truststore);
+                }
+
+                //
+                // Add certificates from the keystore - only if there is no TrustStore, apart from
+                // the case that the truststore is the JDK CA certs. This behaviour is preserved
+                // for backwards compatibility reasons
+                //
+                if (current.keystore != null && (current.truststore == null || current.loadCACerts)) {
+                    addTrustAnchors(set, current.keystore);
+                }
+
+                PKIXParameters revocationParameters = createPKIXParameters(set, true);
+                if (crlCertStore != current.crlCertStore) {
+                    // The CRLs were replaced after this snapshot was taken, so use those of the snapshot
+                    List<CertStore> certStores = new ArrayList<>(revocationParameters.getCertStores());
+                    certStores.remove(crlCertStore);
+                    if (current.crlCertStore != null) {
+                        certStores.add(current.crlCertStore);
+                    }
+                    revocationParameters.setCertStores(certStores);
+                }
+                trust = new TrustParameters(current, createPKIXParameters(set, false), revocationParameters);
+                if (current == stores) {
+                    trustParameters = trust;
+                }
+            }
+        }
+
+        PKIXParameters param = enableRevocation ? trust.revocationParameters : trust.parameters;
+        return (PKIXParameters)param.clone();
+    }
+
+    /**
+     * Create a PKIX CertPathValidator. A new instance is created for each certificate path that is
+     * validated, as a CertPathValidator is not thread-safe.
+     *
+     * @return Returns a <code>CertPathValidator</code> to validate certificate paths
+     */
+    protected CertPathValidator createCertPathValidator()
+        throws NoSuchAlgorithmException, NoSuchProviderException {
+        String provider = getCryptoProvider();
+        if (provider == null || provider.length() == 0) {
+            return CertPathValidator.getInstance("PKIX");
+        }
+        return CertPathValidator.getInstance("PKIX", provider);
     }
 
     // Separated out to allow subclasses to override it
@@ -918,8 +1299,9 @@ public class Merlin extends CryptoBase {
         // Search the keystore for the transmitted public key (direct trust). If not found
         // then search the truststore for the transmitted public key (direct trust)
         //
-        if (!findPublicKeyInKeyStore(publicKey, keystore, false)
-            && !findPublicKeyInKeyStore(publicKey, truststore, true)) {
+        Stores current = getStores();
+        if (!findPublicKeyInKeyStore(publicKey, current.keystoreIndex, false)
+            && !findPublicKeyInKeyStore(publicKey, current.truststoreIndex, true)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
     }
@@ -933,6 +1315,7 @@ public class Merlin extends CryptoBase {
      * @throws WSSecurityException
      */
     private X509Certificate[] getX509Certificates(
+        Stores current,
         String issuer,
         BigInteger serialNumber
     ) throws WSSecurityException {
@@ -952,13 +1335,13 @@ public class Merlin extends CryptoBase {
             issuerName = createBCX509Name(issuer);
         }
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(issuerName, serialNumber, keystore, false);
+        if (current.keystoreIndex != null) {
+            certs = getCertificates(issuerName, serialNumber, current.keystoreIndex, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(issuerName, serialNumber, truststore, true);
+        if ((certs == null || certs.length == 0) && current.truststoreIndex != null) {
+            certs = getCertificates(issuerName, serialNumber, current.truststoreIndex, true);
         }
 
         if (certs == null || certs.length == 0) {
@@ -971,14 +1354,14 @@ public class Merlin extends CryptoBase {
     /**
      * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
      * @param issuerRDN either an X500Principal or a BouncyCastle X509Name instance.
-     * @param store The KeyStore
+     * @param index The index of the KeyStore
      * @return an X509 Certificate (chain)
      * @throws WSSecurityException
      */
     private Certificate[] getCertificates(
         Object issuerRDN,
         BigInteger serialNumber,
-        KeyStore store,
+        KeyStoreIndex index,
         boolean truststore
     ) throws WSSecurityException {
         String keystore = "keystore";
@@ -986,36 +1369,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert with issuer {} and serial {}", keystore, issuerRDN, serialNumber);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    LOG.debug("Keystore alias {} has issuer {} and serial {}", alias,
-                              x509cert.getIssuerX500Principal().getName(), x509cert.getSerialNumber());
-                    if (x509cert.getSerialNumber().compareTo(serialNumber) == 0) {
-                        Object certName =
-                            createBCX509Name(x509cert.getIssuerX500Principal().getName());
-                        if (certName.equals(issuerRDN)) {
-                            LOG.debug("Issuer Serial match found using keystore alias {}", alias);
-                            return certs;
-                        }
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        Certificate[] certs = index.getCertificatesByIssuerSerial(issuerRDN, serialNumber);
+        if (certs != null) {
+            LOG.debug("Issuer Serial match found in {}", keystore);
+            return certs;
         }
 
         LOG.debug("No issuer serial match found in {}", keystore);
@@ -1029,24 +1386,15 @@ public class Merlin extends CryptoBase {
      * @return the X509 Certificate (chain) that was found (can be null)
      * @throws WSSecurityException if problems during keystore handling or wrong certificate
      */
-    private X509Certificate[] getX509Certificates(byte[] thumbprint) throws WSSecurityException {
-        MessageDigest sha = null;
-
-        try {
-            sha = MessageDigest.getInstance("SHA1");
-        } catch (NoSuchAlgorithmException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
-            );
-        }
+    private X509Certificate[] getX509Certificates(Stores current, byte[] thumbprint) throws WSSecurityException {
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(thumbprint, keystore, sha, false);
+        if (current.keystoreIndex != null) {
+            certs = getCertificatesByThumbprint(thumbprint, current.keystoreIndex, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(thumbprint, truststore, sha, true);
+        if ((certs == null || certs.length == 0) && current.truststoreIndex != null) {
+            certs = getCertificatesByThumbprint(thumbprint, current.truststoreIndex, true);
         }
 
         if (certs == null || certs.length == 0) {
@@ -1059,14 +1407,13 @@ public class Merlin extends CryptoBase {
     /**
      * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
      * @param thumbprint
-     * @param store The KeyStore
+     * @param index The index of the KeyStore
      * @return an X509 Certificate (chain)
      * @throws WSSecurityException
      */
-    private Certificate[] getCertificates(
+    private Certificate[] getCertificatesByThumbprint(
         byte[] thumbprint,
-        KeyStore store,
-        MessageDigest sha,
+        KeyStoreIndex index,
         boolean truststore
     ) throws WSSecurityException {
         String keystore = "keystore";
@@ -1074,39 +1421,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert using a SHA-1 thumbprint", keystore);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    try {
-                        sha.update(x509cert.getEncoded());
-                    } catch (CertificateEncodingException ex) {
-                        throw new WSSecurityException(
-                            WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
-                        );
-                    }
-                    byte[] data = sha.digest();
-
-                    if (Arrays.equals(data, thumbprint)) {
-                        LOG.debug("Thumbprint match found using keystore alias {}", alias);
-                        return certs;
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        Certificate[] certs = index.getCertificatesByThumbprint(thumbprint);
+        if (certs != null) {
+            LOG.debug("Thumbprint match found in {}", keystore);
+            return certs;
         }
 
         LOG.debug("No thumbprint match found in {}", keystore);
@@ -1119,15 +1437,15 @@ public class Merlin extends CryptoBase {
      * @param skiBytes The SKI bytes
      * @return the X509 certificate (chain) that was found (can be null)
      */
-    private X509Certificate[] getX509CertificatesSKI(byte[] skiBytes) throws WSSecurityException {
+    private X509Certificate[] getX509CertificatesSKI(Stores current, byte[] skiBytes) throws WSSecurityException {
         Certificate[] certs = null;
-        if (keystore != null) {
-            certs = getCertificates(skiBytes, keystore, false);
+        if (current.keystoreIndex != null) {
+            certs = getCertificates(skiBytes, current.keystoreIndex, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.length == 0) && truststore != null) {
-            certs = getCertificates(skiBytes, truststore, true);
+        if ((certs == null || certs.length == 0) && current.truststoreIndex != null) {
+            certs = getCertificates(skiBytes, current.truststoreIndex, true);
         }
 
         if (certs == null || certs.length == 0) {
@@ -1140,13 +1458,13 @@ public class Merlin extends CryptoBase {
     /**
      * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore
      * @param skiBytes
-     * @param store The KeyStore
+     * @param index The index of the KeyStore
      * @return an X509 Certificate (chain)
      * @throws WSSecurityException
      */
     private Certificate[] getCertificates(
         byte[] skiBytes,
-        KeyStore store,
+        KeyStoreIndex index,
         boolean truststore
     ) throws WSSecurityException {
         String keystore = "keystore";
@@ -1154,31 +1472,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert using Subject Key Identifier bytes", keystore);
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X509Certificate x509cert = (X509Certificate) certs[0];
-                    byte[] data = getSKIBytesFromCert(x509cert);
-                    if (data.length == skiBytes.length && Arrays.equals(data, skiBytes)) {
-                        LOG.debug("SKI match found using keystore alias {}", alias);
-                        return certs;
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
+        Certificate[] certs = index.getCertificatesBySKI(skiBytes);
+        if (certs != null) {
+            LOG.debug("SKI match found in {}", keystore);
+            return certs;
         }
 
         LOG.debug("No SKI match found in {}", keystore);
@@ -1192,17 +1489,18 @@ public class Merlin extends CryptoBase {
      * @return An X509 Certificate (chain) with the same DN as given in the parameters
      * @throws WSSecurityException
      */
-    private X509Certificate[] getX509CertificatesSubjectDN(String subjectDN) throws WSSecurityException {
+    private X509Certificate[] getX509CertificatesSubjectDN(Stores current, String subjectDN)
+        throws WSSecurityException {
         Object subject = convertSubjectToPrincipal(subjectDN);
 
         List<Certificate[]> certs = null;
-        if (keystore != null) {
-            certs = getCertificates(subject, keystore, false);
+        if (current.keystoreIndex != null) {
+            certs = getCertificates(subject, current.keystoreIndex, false);
         }
 
         //If we can't find the issuer in the keystore then look at the truststore
-        if ((certs == null || certs.isEmpty()) && truststore != null) {
-            certs = getCertificates(subject, truststore, true);
+        if ((certs == null || certs.isEmpty()) && current.truststoreIndex != null) {
+            certs = getCertificates(subject, current.truststoreIndex, true);
         }
 
         if (certs == null || certs.isEmpty()) {
@@ -1237,29 +1535,29 @@ public class Merlin extends CryptoBase {
      * @param identifier The identifier that corresponds to the returned certs
      * @return an X509 Certificate (chain) that corresponds to the identifier
      */
-    private X509Certificate[] getX509Certificates(String identifier) throws WSSecurityException {
+    private X509Certificate[] getX509Certificates(Stores current, String identifier) throws WSSecurityException {
         if (identifier == null) {
             return null;
         }
         Certificate[] certs = null;
         try {
-            if (keystore != null) {
+            if (current.keystore != null) {
                 // There's a chance that there can only be a set of trust stores
-                certs = keystore.getCertificateChain(identifier);
+                certs = current.keystore.getCertificateChain(identifier);
                 if (certs == null || certs.length == 0) {
                     // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = keystore.getCertificate(identifier);
+                    Certificate cert = current.keystore.getCertificate(identifier);
                     if (cert != null) {
                         certs = new Certificate[]{cert};
                     }
                 }
             }
 
-            if (certs == null && truststore != null) {
+            if (certs == null && current.truststore != null) {
                 // Now look into the trust stores
-                certs = truststore.getCertificateChain(identifier);
+                certs = current.truststore.getCertificateChain(identifier);
                 if (certs == null) {
-                    Certificate cert = truststore.getCertificate(identifier);
+                    Certificate cert = current.truststore.getCertificate(identifier);
                     if (cert != null) {
                         certs = new Certificate[]{cert};
                     }
@@ -1279,8 +1577,8 @@ public class Merlin extends CryptoBase {
     /**
      * Find the Public Key in a keystore.
      */
-    private boolean findPublicKeyInKeyStore(PublicKey publicKey, KeyStore keyStoreToSearch, boolean truststore) {
-        if (keyStoreToSearch == null) {
+    private boolean findPublicKeyInKeyStore(PublicKey publicKey, KeyStoreIndex index, boolean truststore) {
+        if (index == null) {
             return false;
         }
         String keystore = "keystore";
@@ -1288,26 +1586,10 @@ public class Merlin extends CryptoBase {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for public key {}", keystore, publicKey);
-        try {
-            for (Enumeration<String> e = keyStoreToSearch.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = keyStoreToSearch.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = keyStoreToSearch.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate
-                    && publicKey.equals(((X509Certificate)certs[0]).getPublicKey())) {
-                    LOG.debug("PublicKey match found using keystore alias {}", alias);
-                    return true;
-                }
-            }
-        } catch (KeyStoreException e) {
-            return false;
+        String alias = index.getAlias(publicKey);
+        if (alias != null) {
+            LOG.debug("PublicKey match found using keystore alias {}", alias);
+            return true;
         }
 
         LOG.debug("No PublicKey match found in {}", keystore);
@@ -1318,44 +1600,18 @@ public class Merlin extends CryptoBase {
      * Get an X509 Certificate (chain) of the X500Principal argument in the supplied KeyStore. If multiple
      * certs match the Subject DN, then multiple cert chains are returned.
      * @param subjectRDN either an X500Principal or a BouncyCastle X509Name instance.
-     * @param store The KeyStore
+     * @param index The index of the KeyStore
      * @return an X509 Certificate (chain)
      * @throws WSSecurityException
      */
-    private List<Certificate[]> getCertificates(Object subjectRDN, KeyStore store, boolean truststore)
+    private List<Certificate[]> getCertificates(Object subjectRDN, KeyStoreIndex index, boolean truststore)
         throws WSSecurityException {
         String keystore = "keystore";
         if (truststore) {
             keystore = "truststore";
         }
         LOG.debug("Searching {} for cert with Subject {}", keystore, subjectRDN);
-        List<Certificate[]> foundCerts = new ArrayList<>();
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a result.
-                    Certificate cert = store.getCertificate(alias);
-                    if (cert != null) {
-                        certs = new Certificate[]{cert};
-                    }
-                }
-                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
-                    X500Principal foundRDN = ((X509Certificate)certs[0]).getSubjectX500Principal();
-                    Object certName = createBCX509Name(foundRDN.getName());
-
-                    if (subjectRDN.equals(certName)) {
-                        LOG.debug("Subject certificate match found using keystore alias {}", alias);
-                        foundCerts.add(certs);
-                    }
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
-            );
-        }
+        List<Certificate[]> foundCerts = index.getCertificatesBySubject(subjectRDN);
 
         if (foundCerts.isEmpty()) {
             LOG.debug("No Subject match found in {}", keystore);
@@ -1417,63 +1673,6 @@ public class Merlin extends CryptoBase {
         }
     }
 
-    /**
-     * Get an implementation-specific identifier that corresponds to the X509Certificate. In
-     * this case, the identifier is the KeyStore alias.
-     * @param cert The X509Certificate corresponding to the returned identifier
-     * @param store The KeyStore to search
-     * @return An implementation-specific identifier that corresponds to the X509Certificate
-     */
-    private String getIdentifier(X509Certificate cert, KeyStore store)
-        throws WSSecurityException {
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a  result.
-                    Certificate retrievedCert = store.getCertificate(alias);
-                    if (retrievedCert != null) {
-                        certs = new Certificate[]{retrievedCert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0].equals(cert)) {
-                    return alias;
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
-        }
-        return null;
-    }
-
-    private String getIdentifier(PublicKey publicKey, KeyStore store)
-        throws WSSecurityException {
-        try {
-            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
-                String alias = e.nextElement();
-
-                Certificate[] certs = store.getCertificateChain(alias);
-                if (certs == null || certs.length == 0) {
-                    // no cert chain, so lets check if getCertificate gives us a  result.
-                    Certificate retrievedCert = store.getCertificate(alias);
-                    if (retrievedCert != null) {
-                        certs = new Certificate[]{retrievedCert};
-                    }
-                }
-
-                if (certs != null && certs.length > 0 && certs[0].getPublicKey().equals(publicKey)) {
-                    return alias;
-                }
-            }
-        } catch (KeyStoreException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "keystore");
-        }
-        return null;
-    }
-
     /**
      * Get a password from the CallbackHandler
      * @param identifier The identifier to give to the Callback
@@ -1519,4 +1718,106 @@ public class Merlin extends CryptoBase {
     public void setPasswordEncryptor(PasswordEncryptor passwordEncryptor) {
         this.passwordEncryptor = passwordEncryptor;
     }
+
+    /**
+     * Re-index the keystore and the truststore, and re-create the trust anchors, after a KeyStore
+     * returned by getKeyStore() or getTrustStore() has been modified in place. A KeyStore that is
+     * replaced via setKeyStore or setTrustStore (or reloaded from its file) is re-indexed automatically,
+     * but entries that are added to, replaced in or removed from a KeyStore in place are not seen by
+     * this Crypto instance until this method is called.
+     * @throws WSSecurityException if a KeyStore can't be read
+     */
+    public void refresh() throws WSSecurityException {
+        synchronized (storesLock) {
+            stores = new Stores(keystore, truststore, loadCACerts, crlCertStore, this);
+        }
+    }
+
+    /**
+     * Get the current snapshot of the keystore, the truststore and the CRL CertStore, creating a new
+     * one if any of them has been replaced since.
+     */
+    private Stores getStores() throws WSSecurityException {
+        Stores current = stores;
+        if (current == null || !current.isSnapshotOf(keystore, truststore, loadCACerts, crlCertStore)) {
+            synchronized (storesLock) {
+                current = stores;
+                if (current == null || !current.isSnapshotOf(keystore, truststore, loadCACerts, crlCertStore)) {
+                    current = new Stores(keystore, truststore, loadCACerts, crlCertStore, this, current);
+                    stores = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * An immutable snapshot of the keystore, the truststore and the CRL CertStore, along with the
+     * indexes of the keystore and the truststore. Each operation reads the snapshot once, so that it
+     * sees a consistent set of stores even if they are replaced concurrently.
+     */
+    private static final class Stores {
+        private final KeyStore keystore;
+        private final KeyStore truststore;
+        private final boolean loadCACerts;
+        private final CertStore crlCertStore;
+        private final KeyStoreIndex keystoreIndex;
+        private final KeyStoreIndex truststoreIndex;
+
+        Stores(
+            KeyStore keystore, KeyStore truststore, boolean loadCACerts, CertStore crlCertStore,
+            Merlin merlin, Stores... previousStores
+        ) throws WSSecurityException {
+            this.keystore = keystore;
+            this.truststore = truststore;
+            this.loadCACerts = loadCACerts;
+            this.crlCertStore = crlCertStore;
+            keystoreIndex = keystore == null ? null : getIndex(keystore, merlin, previousStores);
+            truststoreIndex = truststore == null ? null : getIndex(truststore, merlin, previousStores);
+        }
+
+        /**
+         * Re-use the index of a previous snapshot if the KeyStore has not changed since
+         */
+        private static KeyStoreIndex getIndex(
+            KeyStore store, Merlin merlin, Stores... previousStores
+        ) throws WSSecurityException {
+            for (Stores previous : previousStores) {
+                if (previous == null) {
+                    continue;
+                }
+                if (previous.keystoreIndex != null && previous.keystoreIndex.isIndexOf(store)) {
+                    return previous.keystoreIndex;
+                }
+                if (previous.truststoreIndex != null && previous.truststoreIndex.isIndexOf(store)) {
+                    return previous.truststoreIndex;
+                }
+            }
+            return new KeyStoreIndex(store, merlin);
+        }
+
+        boolean isSnapshotOf(
+            KeyStore currentKeystore, KeyStore currentTruststore, boolean currentLoadCACerts,
+            CertStore currentCrlCertStore
+        ) {
+            return keystore == currentKeystore && truststore == currentTruststore
+                && loadCACerts == currentLoadCACerts && crlCertStore == currentCrlCertStore;
+        }
+    }
+
+    /**
+     * The cached trust anchors (as part of the PKIXParameters), along with the snapshot of the stores
+     * they were created from.
+     */
+    private static final class TrustParameters {
+        private final Stores stores;
+        private final PKIXParameters parameters;
+        private final PKIXParameters revocationParameters;
+
+        TrustParameters(Stores stores, PKIXParameters parameters, PKIXParameters revocationParameters) {
+            this.stores = stores;
+            this.parameters = parameters;
+            this.revocationParameters = revocationParameters;
+        }
+    }
 }
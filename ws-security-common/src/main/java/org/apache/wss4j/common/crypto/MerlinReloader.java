@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the keystore, truststore and CRL files of a Merlin instance for changes, and reloads them in
+ * the background. The new material is loaded into a fresh instance, which is created by the watched
+ * instance via Merlin.createReloadInstance, and is then swapped into the watched instance, so that
+ * requests never wait for a reload.
+ *
+ * The reloader only holds a weak reference to the Merlin instance, and stops once it is no longer used.
+ */
+final class MerlinReloader implements Runnable {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(MerlinReloader.class);
+
+    private static final ScheduledExecutorService EXECUTOR =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wss4j-merlin-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final WeakReference<Merlin> merlinReference;
+    private final Properties properties;
+    private final ClassLoader loader;
+    private final PasswordEncryptor passwordEncryptor;
+    private final List<File> files;
+    private final long[] lastModified;
+    private final ScheduledFuture<?> future;
+
+    /**
+     * Start to poll the given files for changes
+     * @param merlin The Merlin instance to reload
+     * @param properties The properties to reload the Merlin instance from, without the reload interval
+     * @param loader The ClassLoader to load the files with
+     * @param passwordEncryptor The PasswordEncryptor to decrypt the passwords with
+     * @param files The files to watch
+     * @param interval The interval in seconds between two checks for changes
+     */
+    MerlinReloader(
+        Merlin merlin, Properties properties, ClassLoader loader, PasswordEncryptor passwordEncryptor,
+        List<File> files, long interval
+    ) {
+        merlinReference = new WeakReference<>(merlin);
+        this.properties = properties;
+        this.loader = loader;
+        this.passwordEncryptor = passwordEncryptor;
+        this.files = new ArrayList<>(files);
+        lastModified = getLastModified();
+        future = EXECUTOR.scheduleWithFixedDelay(this, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void run() {
+        Merlin merlin = merlinReference.get();
+        if (merlin == null) {
+            stop();
+            return;
+        }
+
+        long[] modified = getLastModified();
+        boolean changed = false;
+        for (int i = 0; i < modified.length; i++) {
+            changed |= modified[i] != lastModified[i];
+        }
+        if (!changed) {
+            return;
+        }
+
+        try {
+            merlin.reloadFrom(merlin.createReloadInstance(properties, loader, passwordEncryptor));
+            // Only remember the new modification times once the files were loaded successfully
+            System.arraycopy(modified, 0, lastModified, 0, modified.length);
+            LOG.debug("Reloaded the keystore, truststore and CRL files {}", files);
+        } catch (Exception ex) {
+            LOG.warn("Error reloading the keystore, truststore or CRL files {}: {}", files, ex.getMessage());
+            LOG.debug(ex.getMessage(), ex);
+        }
+    }
+
+    void stop() {
+        future.cancel(false);
+    }
+
+    private long[] getLastModified() {
+        long[] modified = new long[files.size()];
+        for (int i = 0; i < modified.length; i++) {
+            File file = files.get(i);
+            // Include the length, to detect changes within the timestamp granularity of the file system
+            modified[i] = file.lastModified() * 31L + file.length();
+        }
+        return modified;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the private keys that Merlin recovered from its keystore, so that the (possibly
+ * expensive) decryption of a private key entry is not repeated for each message. A cached key is only
+ * returned for the password it was recovered with - the cache stores a salted hash of the password
+ * along with the key.
+ *
+ * A cache is only valid for the keystore it was created for - Merlin replaces it when the keystore changes.
+ */
+final class PrivateKeyCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(PrivateKeyCache.class);
+
+    private final KeyStoreIndex keystoreIndex;
+    private final byte[] salt = new byte[16];
+    private final Map<String, CachedKey> privateKeys;
+
+    PrivateKeyCache(KeyStoreIndex keystoreIndex, int maxSize) {
+        this.keystoreIndex = keystoreIndex;
+        new SecureRandom().nextBytes(salt);
+        // An access-ordered map, that evicts the least recently used entry
+        privateKeys = new LinkedHashMap<String, CachedKey>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    boolean isValidFor(KeyStoreIndex currentKeystoreIndex) {
+        return keystoreIndex == currentKeystoreIndex;
+    }
+
+    /**
+     * Get the cached private key of the given alias, if it was recovered with the given password
+     * @return the cached private key, or null
+     */
+    PrivateKey get(String alias, String password) {
+        CachedKey cachedKey;
+        synchronized (privateKeys) {
+            cachedKey = privateKeys.get(alias);
+        }
+        if (cachedKey == null) {
+            return null;
+        }
+        byte[] passwordHash = hash(password);
+        if (passwordHash == null || !MessageDigest.isEqual(passwordHash, cachedKey.passwordHash)) {
+            return null;
+        }
+        return cachedKey.privateKey;
+    }
+
+    void put(String alias, String password, PrivateKey privateKey) {
+        byte[] passwordHash = hash(password);
+        if (passwordHash != null) {
+            synchronized (privateKeys) {
+                privateKeys.put(alias, new CachedKey(passwordHash, privateKey));
+            }
+        }
+    }
+
+    private byte[] hash(String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            if (password == null) {
+                // Distinguish a null password from an empty one
+                digest.update((byte)0);
+            } else {
+                digest.update((byte)1);
+                digest.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException ex) {
+            LOG.debug(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    private static final class CachedKey {
+        private final byte[] passwordHash;
+        private final PrivateKey privateKey;
+
+        CachedKey(byte[] passwordHash, PrivateKey privateKey) {
+            this.passwordHash = passwordHash;
+            this.privateKey = privateKey;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertStore;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.xml.security.utils.XMLUtils;
+
+/**
+ * A bounded cache of certificate chains that were successfully verified by Merlin, so that the
+ * repeated validation of the same chain with the same constraints is a hash lookup. An entry expires
+ * after the configured TTL, or when the first certificate of the chain expires, whichever is earlier.
+ *
+ * A cache is only valid for the keystore, truststore and CRLs it was created for - Merlin replaces it
+ * when any of them change.
+ */
+final class VerifiedChainCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(VerifiedChainCache.class);
+
+    private final KeyStoreIndex keystoreIndex;
+    private final KeyStoreIndex truststoreIndex;
+    private final boolean loadCACerts;
+    private final CertStore crlCertStore;
+    private final long ttlMillis;
+    private final Map<String, Long> verifiedChains;
+
+    VerifiedChainCache(
+        KeyStoreIndex keystoreIndex, KeyStoreIndex truststoreIndex, boolean loadCACerts,
+        CertStore crlCertStore, int maxSize, long ttl
+    ) {
+        this.keystoreIndex = keystoreIndex;
+        this.truststoreIndex = truststoreIndex;
+        this.loadCACerts = loadCACerts;
+        this.crlCertStore = crlCertStore;
+        ttlMillis = ttl * 1000L;
+        // An access-ordered map, that evicts the least recently used entry
+        verifiedChains = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    boolean isValidFor(
+        KeyStoreIndex currentKeystoreIndex, KeyStoreIndex currentTruststoreIndex,
+        boolean currentLoadCACerts, CertStore currentCrlCertStore
+    ) {
+        return keystoreIndex == currentKeystoreIndex && truststoreIndex == currentTruststoreIndex
+            && loadCACerts == currentLoadCACerts && crlCertStore == currentCrlCertStore;
+    }
+
+    /**
+     * Create the key of a certificate chain, which is made up of the SHA-256 digests of the certificates
+     * of the chain, the revocation flag and the subject and issuer DN constraints.
+     * @return the key of the certificate chain, or null if the chain can't be cached
+     */
+    static String createKey(
+        X509Certificate[] certs, boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints, Collection<Pattern> issuerCertConstraints
+    ) {
+        if (certs == null || certs.length == 0) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder key = new StringBuilder();
+            for (X509Certificate cert : certs) {
+                key.append(XMLUtils.encodeToString(digest.digest(cert.getEncoded()))).append(',');
+            }
+            key.append(enableRevocation);
+            appendConstraints(key, subjectCertConstraints);
+            appendConstraints(key, issuerCertConstraints);
+            // The constraints may be long, so digest the key once more
+            return XMLUtils.encodeToString(digest.digest(key.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException | CertificateEncodingException e) {
+            LOG.debug("Can't create a cache key for the certificate chain: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void appendConstraints(StringBuilder key, Collection<Pattern> constraints) {
+        key.append('\n');
+        if (constraints != null) {
+            for (Pattern pattern : constraints) {
+                key.append(pattern.flags()).append(':').append(pattern.pattern().length()).append(':')
+                    .append(pattern.pattern());
+            }
+        }
+    }
+
+    boolean isVerified(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (verifiedChains) {
+            Long expiry = verifiedChains.get(key);
+            if (expiry == null) {
+                return false;
+            } else if (expiry < now) {
+                verifiedChains.remove(key);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    void add(String key, X509Certificate[] certs) {
+        long expiry = System.currentTimeMillis() + ttlMillis;
+        for (X509Certificate cert : certs) {
+            expiry = Math.min(expiry, cert.getNotAfter().getTime());
+        }
+        synchronized (verifiedChains) {
+            verifiedChains.put(key, expiry);
+        }
+    }
+}
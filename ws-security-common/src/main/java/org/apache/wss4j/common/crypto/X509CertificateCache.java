@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * A bounded cache of the X.509 certificates that are parsed with a given Crypto instance, keyed by their
+ * DER encoding. Each CryptoBase instance holds its own cache, so that a certificate is only ever returned
+ * to the Crypto instance (and thus the provider) that parsed it. The same certificates
+ * are typically received (as BinarySecurityTokens, X509Data etc.) in every message from a given
+ * client, and so parsing them once, and sharing the parsed certificate and the values derived from
+ * it, avoids repeating the ASN.1 parsing and the digest computations for each message. The same
+ * applies to the certificate paths of PKIPath BinarySecurityTokens, which are cached separately,
+ * keyed by their PkiPath encoding.
+ *
+ * Once the cache is full, an arbitrary entry is evicted for each new certificate (or path).
+ */
+public final class X509CertificateCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(X509CertificateCache.class);
+
+    private static final X509CertificateCache INSTANCE = new X509CertificateCache(DEFAULT_MAX_SIZE);
+
+    private final Crypto crypto;
+    private final int maxSize;
+    private final Map<ByteBuffer, CachedX509Certificate> certificates = new ConcurrentHashMap<>();
+    private final Map<ByteBuffer, X509Certificate[]> certificatePaths = new ConcurrentHashMap<>();
+
+    /**
+     * Create a cache of the certificates that are parsed with Merlin
+     * @param maxSize The maximum number of cached certificates (and paths)
+     */
+    public X509CertificateCache(int maxSize) {
+        this(null, maxSize);
+    }
+
+    /**
+     * Create a cache of the certificates that are parsed with the given Crypto instance
+     * @param crypto The Crypto instance to parse the certificates with, or null to use Merlin
+     * @param maxSize The maximum number of cached certificates (and paths)
+     */
+    public X509CertificateCache(Crypto crypto, int maxSize) {
+        this.crypto = crypto;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the cache of the certificates that are parsed with Merlin, and that are not tied to a
+     * particular Crypto instance
+     */
+    public static X509CertificateCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the cache of the certificates that are parsed with the given Crypto instance. A Crypto
+     * implementation that does not extend CryptoBase gets a new (empty) cache on each call, i.e. its
+     * certificates are not cached.
+     * @param crypto The Crypto instance to parse the certificates with, or null to use Merlin
+     * @return the cache of the given Crypto instance
+     */
+    public static X509CertificateCache getInstance(Crypto crypto) {
+        if (crypto == null) {
+            return INSTANCE;
+        }
+        if (crypto instanceof CryptoBase) {
+            return ((CryptoBase)crypto).getX509CertificateCache();
+        }
+        return new X509CertificateCache(crypto, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Get the certificate with the given DER encoding, parsing it if it is not cached yet
+     * @param encoded The DER encoding of the certificate
+     * @return the cached certificate
+     * @throws WSSecurityException if the certificate can't be parsed
+     */
+    public CachedX509Certificate loadCertificate(byte[] encoded) throws WSSecurityException {
+        ByteBuffer key = ByteBuffer.wrap(encoded);
+        CachedX509Certificate cachedCert = certificates.get(key);
+        if (cachedCert != null) {
+            return cachedCert;
+        }
+
+        Crypto certCrypto = crypto == null ? new Merlin() : crypto;
+        X509Certificate cert;
+        try (InputStream in = new ByteArrayInputStream(encoded)) {
+            cert = certCrypto.loadCertificate(in);
+        } catch (IOException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "parseError"
+            );
+        }
+        if (cert == null) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, "invalidCertData", new Object[] {"0"});
+        }
+        // Copy the bytes, as the caller may reuse the array
+        byte[] copy = encoded.clone();
+        return add(ByteBuffer.wrap(copy), new CachedX509Certificate(cert, copy, crypto));
+    }
+
+    /**
+     * Get the cached form of the given certificate, to access its derived values
+     * @param cert The certificate
+     * @return the cached certificate, which holds an equal (but not necessarily the same) certificate
+     * @throws WSSecurityException if the certificate can't be encoded
+     */
+    public CachedX509Certificate get(X509Certificate cert) throws WSSecurityException {
+        byte[] encoded;
+        try {
+            encoded = cert.getEncoded();
+        } catch (CertificateEncodingException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "encodeError"
+            );
+        }
+        ByteBuffer key = ByteBuffer.wrap(encoded);
+        CachedX509Certificate cachedCert = certificates.get(key);
+        if (cachedCert != null) {
+            return cachedCert;
+        }
+        return add(key, new CachedX509Certificate(cert, encoded, crypto));
+    }
+
+    /**
+     * Get the certificates of the given PkiPath encoding, parsing them if the path is not cached yet
+     * @param pkiPath The PkiPath encoding of the certificates
+     * @return the certificates of the path (a copy of the cached array)
+     * @throws WSSecurityException if the certificates can't be parsed
+     */
+    public X509Certificate[] loadCertificates(byte[] pkiPath) throws WSSecurityException {
+        ByteBuffer key = ByteBuffer.wrap(pkiPath);
+        X509Certificate[] certs = certificatePaths.get(key);
+        if (certs == null) {
+            Crypto certCrypto = crypto == null ? new Merlin() : crypto;
+            certs = certCrypto.getCertificatesFromBytes(pkiPath);
+            if (certs == null) {
+                return null;
+            }
+            // Share the certificates with the ones that are received on their own
+            for (int i = 0; i < certs.length; i++) {
+                certs[i] = get(certs[i]).getX509Certificate();
+            }
+            evictIfFull(certificatePaths);
+            // Copy the bytes, as the caller may reuse the array
+            X509Certificate[] existing = certificatePaths.putIfAbsent(ByteBuffer.wrap(pkiPath.clone()), certs);
+            if (existing != null) {
+                certs = existing;
+            }
+        }
+        return certs.clone();
+    }
+
+    private CachedX509Certificate add(ByteBuffer key, CachedX509Certificate cachedCert) {
+        evictIfFull(certificates);
+        CachedX509Certificate existing = certificates.putIfAbsent(key, cachedCert);
+        if (existing != null) {
+            return existing;
+        }
+        LOG.debug("Cached certificate {}", cachedCert.getX509Certificate().getSubjectX500Principal());
+        return cachedCert;
+    }
+
+    private void evictIfFull(Map<ByteBuffer, ?> map) {
+        if (map.size() >= maxSize) {
+            Iterator<ByteBuffer> iterator = map.keySet().iterator();
+            if (iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of cached certificates, not counting the cached paths
+     */
+    public int size() {
+        return certificates.size();
+    }
+
+    public void clear() {
+        certificates.clear();
+        certificatePaths.clear();
+    }
+}
@@ -755,6 +755,15 @@ public class SamlAssertionWrapper {
         return signatureKeyInfo;
     }
 
+    /**
+     * Set the SAMLKeyInfo associated with the signature of the assertion. This is for an assertion
+     * the signature of which has already been verified, e.g. when it was validated previously.
+     * @param signatureKeyInfo the SAMLKeyInfo associated with the signature of the assertion
+     */
+    public void setSignatureKeyInfo(SAMLKeyInfo signatureKeyInfo) {
+        this.signatureKeyInfo = signatureKeyInfo;
+    }
+
     /**
      * Get the SAMLKeyInfo associated with the Subject KeyInfo
      * @return the SAMLKeyInfo associated with the Subject KeyInfo
@@ -23,6 +23,7 @@ import org.apache.wss4j.common.WSS4JConstants;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.X509CertificateCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -73,7 +74,8 @@ public class PKIPathSecurity extends BinarySecurity {
         if (crypto == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noSigCryptoFile");
         }
-        return crypto.getCertificatesFromBytes(data);
+        // The same certificate path is typically received in many messages, so share the parsed path
+        return X509CertificateCache.getInstance(crypto).loadCertificates(data);
     }
 
     /**
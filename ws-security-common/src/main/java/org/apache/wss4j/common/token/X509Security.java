@@ -23,14 +23,11 @@ import org.apache.wss4j.common.WSS4JConstants;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
-import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.crypto.X509CertificateCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.ByteArrayInputStream;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 
@@ -83,24 +80,14 @@ public class X509Security extends BinarySecurity {
         if (cachedCert != null) {
             return cachedCert;
         }
-        Crypto certCrypto = crypto;
-        if (certCrypto == null) {
-            certCrypto = new Merlin();
-        }
         byte[] data = getToken();
         if (data == null) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.FAILURE, "invalidCertData", new Object[] {"0"});
         }
-        try (InputStream in = new ByteArrayInputStream(data)) {
-            cachedCert = certCrypto.loadCertificate(in);
-            return cachedCert;
-        } catch (IOException e) {
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "parseError"
-            );
-        }
-
+        // The same certificate is typically received in many messages, so share the parsed certificate
+        cachedCert = X509CertificateCache.getInstance(crypto).loadCertificate(data).getX509Certificate();
+        return cachedCert;
     }
 
     /**
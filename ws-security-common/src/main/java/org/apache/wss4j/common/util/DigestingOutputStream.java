@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.util;
+
+import java.io.OutputStream;
+import java.security.MessageDigest;
+
+/**
+ * An OutputStream that feeds the bytes that are written to it into a MessageDigest, so that
+ * (canonicalized) content can be digested without buffering it.
+ */
+public final class DigestingOutputStream extends OutputStream {
+
+    private final MessageDigest messageDigest;
+
+    public DigestingOutputStream(MessageDigest messageDigest) {
+        this.messageDigest = messageDigest;
+    }
+
+    @Override
+    public void write(int b) {
+        messageDigest.update((byte)b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        messageDigest.update(b, off, len);
+    }
+}
@@ -176,6 +176,22 @@ public final class UsernameTokenUtil {
         return passwdDigest;
     }
 
+    /**
+     * Compare the expected and the received password (digest), in a time that does not depend
+     * on where they differ.
+     *
+     * @param expected The expected password (digest)
+     * @param received The received password (digest), may be null
+     * @return true if both are equal
+     */
+    public static boolean isPasswordEqual(String expected, String received) {
+        if (received == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+            expected.getBytes(StandardCharsets.UTF_8), received.getBytes(StandardCharsets.UTF_8));
+    }
+
     /**
      * Get the raw (plain text) password used to compute secret key.
      */
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some unit tests for the EncryptedKeyCache
+ */
+public class EncryptedKeyCacheTest {
+
+    private static final String KEY_TRANSPORT = "http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p";
+
+    @Test
+    public void testEncryptedKeyCache() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        PublicKey recipientKey = keyPairGenerator.generateKeyPair().getPublic();
+        PublicKey otherRecipientKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        EncryptedKeyCache encryptedKeyCache = new EncryptedKeyCache();
+        byte[] encryptedKey = {1, 2, 3, 4};
+        byte[] secretKey = {5, 6, 7, 8};
+        assertNull(encryptedKeyCache.get(encryptedKey, KEY_TRANSPORT, recipientKey));
+
+        encryptedKeyCache.put(encryptedKey, KEY_TRANSPORT, recipientKey, secretKey);
+        assertArrayEquals(secretKey, encryptedKeyCache.get(encryptedKey, KEY_TRANSPORT, recipientKey));
+        assertArrayEquals(secretKey, encryptedKeyCache.get(encryptedKey.clone(), KEY_TRANSPORT, recipientKey));
+
+        // The secret key is only returned for the same key transport algorithm and recipient
+        assertNull(encryptedKeyCache.get(encryptedKey, "http://www.w3.org/2001/04/xmlenc#rsa-1_5", recipientKey));
+        assertNull(encryptedKeyCache.get(encryptedKey, KEY_TRANSPORT, otherRecipientKey));
+        assertNull(encryptedKeyCache.get(new byte[] {1, 2, 3, 5}, KEY_TRANSPORT, recipientKey));
+
+        encryptedKeyCache.clear();
+        assertEquals(0, encryptedKeyCache.size());
+        assertNull(encryptedKeyCache.get(encryptedKey, KEY_TRANSPORT, recipientKey));
+    }
+
+    @Test
+    public void testEncryptedKeyCacheMaxEntries() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        PublicKey recipientKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        EncryptedKeyCache encryptedKeyCache = new EncryptedKeyCache(10, 60L);
+        byte[] first = {0};
+        encryptedKeyCache.put(first, KEY_TRANSPORT, recipientKey, new byte[] {0});
+        for (byte i = 1; i <= 10; i++) {
+            encryptedKeyCache.put(new byte[] {i}, KEY_TRANSPORT, recipientKey, new byte[] {i});
+        }
+
+        // The least recently used secret key is evicted
+        assertEquals(10, encryptedKeyCache.size());
+        assertNull(encryptedKeyCache.get(first, KEY_TRANSPORT, recipientKey));
+        assertArrayEquals(new byte[] {10}, encryptedKeyCache.get(new byte[] {10}, KEY_TRANSPORT, recipientKey));
+    }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Some unit tests for the PasswordCallbackCache
+ */
+public class PasswordCallbackCacheTest {
+
+    @Test
+    public void testPasswordCallbackCache() throws Exception {
+        CountingCallbackHandler callbackHandler = new CountingCallbackHandler();
+        PasswordCallbackCache passwordCallbackCache = new PasswordCallbackCache();
+
+        WSPasswordCallback pwCb = new WSPasswordCallback("wernerd", WSPasswordCallback.USERNAME_TOKEN);
+        passwordCallbackCache.handle(callbackHandler, pwCb);
+        assertEquals("verySecret", pwCb.getPassword());
+
+        pwCb = new WSPasswordCallback("wernerd", WSPasswordCallback.USERNAME_TOKEN);
+        passwordCallbackCache.handle(callbackHandler, pwCb);
+        assertEquals("verySecret", pwCb.getPassword());
+        assertEquals(1, callbackHandler.getCount());
+
+        // A different usage is not found in the cache
+        pwCb = new WSPasswordCallback("wernerd", WSPasswordCallback.SIGNATURE);
+        passwordCallbackCache.handle(callbackHandler, pwCb);
+        assertEquals(2, callbackHandler.getCount());
+
+        passwordCallbackCache.remove("wernerd");
+        assertEquals(0, passwordCallbackCache.size());
+        pwCb = new WSPasswordCallback("wernerd", WSPasswordCallback.USERNAME_TOKEN);
+        passwordCallbackCache.handle(callbackHandler, pwCb);
+        assertEquals(3, callbackHandler.getCount());
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        CountingCallbackHandler callbackHandler = new CountingCallbackHandler();
+        PasswordCallbackCache passwordCallbackCache = new PasswordCallbackCache();
+
+        WSPasswordCallback pwCb = new WSPasswordCallback("unknown", WSPasswordCallback.USERNAME_TOKEN);
+        passwordCallbackCache.handle(callbackHandler, pwCb);
+        assertNull(pwCb.getPassword());
+        pwCb = new WSPasswordCallback("unknown", WSPasswordCallback.USERNAME_TOKEN);
+        passwordCallbackCache.handle(callbackHandler, pwCb);
+        assertNull(pwCb.getPassword());
+        assertEquals(1, callbackHandler.getCount());
+
+        // Now disable negative caching
+        passwordCallbackCache = new PasswordCallbackCache(10, 60L, 0L);
+        passwordCallbackCache.handle(callbackHandler, new WSPasswordCallback("unknown", WSPasswordCallback.USERNAME_TOKEN));
+        passwordCallbackCache.handle(callbackHandler, new WSPasswordCallback("unknown", WSPasswordCallback.USERNAME_TOKEN));
+        assertEquals(3, callbackHandler.getCount());
+        assertEquals(0, passwordCallbackCache.size());
+    }
+
+    @Test
+    public void testFailedCallbackNotCached() throws Exception {
+        PasswordCallbackCache passwordCallbackCache = new PasswordCallbackCache();
+        AtomicInteger count = new AtomicInteger();
+        CallbackHandler callbackHandler = callbacks -> {
+            count.incrementAndGet();
+            throw new IOException("The user store is not available");
+        };
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                passwordCallbackCache.handle(
+                    callbackHandler, new WSPasswordCallback("wernerd", WSPasswordCallback.USERNAME_TOKEN)
+                );
+                fail("Failure expected on a failed callback");
+            } catch (IOException ex) {
+                assertEquals("The user store is not available", ex.getMessage());
+            }
+        }
+        assertEquals(2, count.get());
+        assertEquals(0, passwordCallbackCache.size());
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        CountingCallbackHandler callbackHandler = new CountingCallbackHandler(latch);
+        PasswordCallbackCache passwordCallbackCache = new PasswordCallbackCache();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> passwords = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                passwords.add(executor.submit(() -> {
+                    WSPasswordCallback pwCb =
+                        new WSPasswordCallback("wernerd", WSPasswordCallback.USERNAME_TOKEN);
+                    passwordCallbackCache.handle(callbackHandler, pwCb);
+                    return pwCb.getPassword();
+                }));
+            }
+            // Give all of the lookups the chance to start before the CallbackHandler returns
+            Thread.sleep(200L);
+            latch.countDown();
+            for (Future<String> password : passwords) {
+                assertEquals("verySecret", password.get(10L, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, callbackHandler.getCount());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        CountingCallbackHandler callbackHandler = new CountingCallbackHandler();
+        PasswordCallbackCache passwordCallbackCache = new PasswordCallbackCache(2, 60L, 60L);
+        for (int i = 0; i < 5; i++) {
+            passwordCallbackCache.handle(
+                callbackHandler, new WSPasswordCallback("user" + i, WSPasswordCallback.USERNAME_TOKEN)
+            );
+        }
+        assertTrue(passwordCallbackCache.size() <= 2);
+    }
+
+    private static class CountingCallbackHandler implements CallbackHandler {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final CountDownLatch latch;
+
+        CountingCallbackHandler() {
+            this(null);
+        }
+
+        CountingCallbackHandler(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void handle(Callback[] callbacks) throws IOException {
+            count.incrementAndGet();
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            WSPasswordCallback pwCb = (WSPasswordCallback) callbacks[0];
+            if ("wernerd".equals(pwCb.getIdentifier())) {
+                pwCb.setPassword("verySecret");
+            }
+        }
+
+        int getCount() {
+            return count.get();
+        }
+    }
+}
@@ -19,14 +19,22 @@
 
 package org.apache.wss4j.common.cache;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -43,6 +51,167 @@ public class ReplayCacheTest {
         replayCache.close();
     }
 
+    @Test
+    public void testConcurrentMemoryReplayCache() throws InterruptedException, IOException {
+        ReplayCache replayCache = new ConcurrentMemoryReplayCache();
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testConcurrentMemoryReplayCacheMaxEntries() throws IOException {
+        ConcurrentMemoryReplayCache replayCache = new ConcurrentMemoryReplayCache(10L);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String id = UUID.randomUUID().toString();
+            assertTrue(replayCache.putIfAbsent(id, Instant.now().plusSeconds(10L)));
+            ids.add(id);
+        }
+
+        // A full cache rejects new identifiers, rather than forgetting an unexpired identifier
+        assertFalse(replayCache.putIfAbsent(UUID.randomUUID().toString(), Instant.now().plusSeconds(100L)));
+        String added = UUID.randomUUID().toString();
+        replayCache.add(added, Instant.now().plusSeconds(100L));
+        assertFalse(replayCache.contains(added));
+
+        assertEquals(10L, replayCache.size());
+        for (String id : ids) {
+            assertTrue(replayCache.contains(id));
+            assertFalse(replayCache.putIfAbsent(id, null));
+        }
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testDigestReplayCache() throws InterruptedException, IOException {
+        ReplayCache replayCache = new DigestReplayCache();
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testDigestReplayCacheCapacity() throws IOException {
+        DigestReplayCache replayCache = new DigestReplayCache(1024);
+        assertEquals(1024, replayCache.getCapacity());
+
+        // Filling the cache way beyond its capacity rejects new entries, but never loses an unexpired entry
+        List<String> added = fill(replayCache, 10000);
+        assertTrue(added.size() >= replayCache.getCapacity());
+        for (String id : added) {
+            assertTrue(replayCache.contains(id));
+            assertFalse(replayCache.putIfAbsent(id, null));
+        }
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testDigestReplayCacheMaxCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new DigestReplayCache(DigestReplayCache.MAX_CAPACITY + 1));
+        assertThrows(IllegalArgumentException.class, () -> new DigestReplayCache(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testMappedFileReplayCache() throws InterruptedException, IOException {
+        File file = File.createTempFile("wss4j", ".replaycache");
+        file.deleteOnExit();
+        ReplayCache replayCache = new MappedFileReplayCache(file);
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testMappedFileReplayCachePersistence() throws IOException {
+        File file = File.createTempFile("wss4j", ".replaycache");
+        file.deleteOnExit();
+
+        String id = UUID.randomUUID().toString();
+        MappedFileReplayCache replayCache = new MappedFileReplayCache(file, 2048);
+        assertTrue(replayCache.putIfAbsent(id, Instant.now().plusSeconds(100L)));
+        replayCache.close();
+
+        // The identifier must survive re-opening the cache, and the existing capacity is used
+        replayCache = new MappedFileReplayCache(file);
+        assertEquals(2048, replayCache.getCapacity());
+        assertTrue(replayCache.contains(id));
+        assertFalse(replayCache.putIfAbsent(id, null));
+        replayCache.close();
+    }
+
+    @Test
+    public void testMappedFileReplayCacheFull() throws IOException {
+        File file = File.createTempFile("wss4j", ".replaycache");
+        file.deleteOnExit();
+
+        // Filling the cache way beyond its capacity must not lose an unexpired entry, also after a restart
+        MappedFileReplayCache replayCache = new MappedFileReplayCache(file, 1024);
+        List<String> added = fill(replayCache, 10000);
+        assertTrue(added.size() >= replayCache.getCapacity());
+        replayCache.close();
+
+        replayCache = new MappedFileReplayCache(file);
+        for (String id : added) {
+            assertTrue(replayCache.contains(id));
+            assertFalse(replayCache.putIfAbsent(id, null));
+        }
+        assertFalse(replayCache.putIfAbsent(UUID.randomUUID().toString(), null));
+        replayCache.close();
+    }
+
+    @Test
+    public void testMappedFileReplayCacheFactory() throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"));
+        String key = "wss4j-" + UUID.randomUUID().toString();
+        new File(directory, key + ".replaycache").deleteOnExit();
+
+        MappedFileReplayCacheFactory factory = new MappedFileReplayCacheFactory();
+        ReplayCache replayCache = factory.newReplayCache(key, directory);
+        assertTrue(replayCache instanceof MappedFileReplayCache);
+        assertSame(replayCache, factory.newReplayCache(key, directory.getPath()));
+
+        // An open cache is shared between factories
+        MappedFileReplayCacheFactory otherFactory = new MappedFileReplayCacheFactory();
+        assertSame(replayCache, otherFactory.newReplayCache(key, directory));
+
+        // The cache is only closed once no factory references it any more
+        factory.close();
+        assertFalse(((MappedFileReplayCache)replayCache).isClosed());
+        otherFactory.close();
+        assertTrue(((MappedFileReplayCache)replayCache).isClosed());
+    }
+
+    @Test
+    public void testCreateIdentifier() throws Exception {
+        String identifier = ReplayCacheUtils.createIdentifier(new byte[] {1, 2}, new byte[1000]);
+        assertEquals(identifier, ReplayCacheUtils.createIdentifier(new byte[] {1, 2}, new byte[1000]));
+        assertEquals(24, identifier.length());
+
+        // The split of the values is part of the identifier
+        assertNotEquals(ReplayCacheUtils.createIdentifier(new byte[] {1}, new byte[] {2}),
+                        ReplayCacheUtils.createIdentifier(new byte[] {1, 2}, new byte[0]));
+    }
+
+    @Test
+    public void testMemoryReplayCacheFactory() throws IOException {
+        MemoryReplayCacheFactory factory = new MemoryReplayCacheFactory();
+        ReplayCache replayCache = factory.newReplayCache("xyz", null);
+        assertTrue(replayCache instanceof MemoryReplayCache);
+        replayCache.close();
+
+        factory.setConcurrent(true);
+        replayCache = factory.newReplayCache("xyz", null);
+        assertTrue(replayCache instanceof ConcurrentMemoryReplayCache);
+        replayCache.close();
+    }
+
     @Test
     public void testEhCacheReplayCache() throws InterruptedException, IOException {
         ReplayCache replayCache = new EHCacheReplayCache("xyz", (URL)null);
@@ -52,6 +221,171 @@ public class ReplayCacheTest {
         replayCache.close();
     }
 
+    @Test
+    public void testDefaultPutIfAbsent() throws InterruptedException, IOException {
+        // A ReplayCache that does not override putIfAbsent, as a third-party implementation might not
+        final ReplayCache delegate = new MemoryReplayCache();
+        ReplayCache replayCache = new ReplayCache() {
+            public void add(String identifier) {
+                delegate.add(identifier);
+            }
+
+            public void add(String identifier, Instant expiry) {
+                delegate.add(identifier, expiry);
+            }
+
+            public boolean contains(String identifier) {
+                return delegate.contains(identifier);
+            }
+
+            public void close() throws IOException {
+                delegate.close();
+            }
+        };
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testBloomFilterReplayCache() throws InterruptedException, IOException {
+        ReplayCache replayCache = new BloomFilterReplayCache(new MemoryReplayCache());
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+
+        replayCache = new BloomFilterReplayCache(new EHCacheReplayCache("abc", (URL)null));
+
+        testReplayCacheInstance(replayCache);
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testBloomFilterReplayCacheSharedEhCache() throws IOException {
+        ReplayCache otherReplayCache = new EHCacheReplayCache("shared", (URL)null);
+
+        // An identifier that was cached before the filters were created (e.g. persisted before a restart)
+        String id = UUID.randomUUID().toString();
+        otherReplayCache.add(id);
+        ReplayCache replayCache = new BloomFilterReplayCache(new EHCacheReplayCache("shared", (URL)null));
+        assertTrue(replayCache.contains(id));
+        assertFalse(replayCache.putIfAbsent(id, null));
+
+        // An identifier that was cached by another writer of the shared cache
+        id = UUID.randomUUID().toString();
+        assertTrue(otherReplayCache.putIfAbsent(id, null));
+        assertTrue(replayCache.contains(id));
+        assertFalse(replayCache.putIfAbsent(id, null));
+
+        id = UUID.randomUUID().toString();
+        assertTrue(replayCache.putIfAbsent(id, null));
+        assertTrue(otherReplayCache.contains(id));
+
+        replayCache.close();
+        otherReplayCache.close();
+    }
+
+    @Test
+    public void testBloomFilterReplayCacheSharedEhCacheLookups() throws IOException {
+        AtomicInteger backingLookups = new AtomicInteger();
+        EHCacheReplayCache backingCache = new EHCacheReplayCache("sharedLookups", (URL)null) {
+            @Override
+            public boolean contains(String identifier) {
+                backingLookups.incrementAndGet();
+                return super.contains(identifier);
+            }
+
+            @Override
+            public boolean putIfAbsent(String identifier, Instant expiry) {
+                backingLookups.incrementAndGet();
+                return super.putIfAbsent(identifier, expiry);
+            }
+        };
+        BloomFilterReplayCache replayCache = new BloomFilterReplayCache(backingCache);
+
+        // New identifiers only reach the backing cache if the filter reports a false positive
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(replayCache.putIfAbsent(UUID.randomUUID().toString(), null));
+        }
+        assertEquals(replayCache.getFalsePositiveCount(), backingLookups.get());
+        assertEquals(1000L, replayCache.getFilterMissCount() + replayCache.getFalsePositiveCount());
+
+        // A replayed identifier, including one added by another writer, is looked up in the backing cache
+        String id = UUID.randomUUID().toString();
+        assertTrue(replayCache.putIfAbsent(id, null));
+        int lookups = backingLookups.get();
+        assertFalse(replayCache.putIfAbsent(id, null));
+        assertEquals(lookups + 1, backingLookups.get());
+
+        try (ReplayCache otherReplayCache = new EHCacheReplayCache("sharedLookups", (URL)null)) {
+            id = UUID.randomUUID().toString();
+            assertTrue(otherReplayCache.putIfAbsent(id, null));
+        }
+        long filterMisses = replayCache.getFilterMissCount();
+        assertFalse(replayCache.putIfAbsent(id, null));
+        assertEquals(lookups + 2, backingLookups.get());
+        assertEquals(filterMisses, replayCache.getFilterMissCount());
+        assertEquals(2L, replayCache.getCacheHitCount());
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testBloomFilterReplayCacheUnsupportedCache() throws IOException {
+        File file = File.createTempFile("wss4j", ".replaycache");
+        file.deleteOnExit();
+        try (ReplayCache mappedFileReplayCache = new MappedFileReplayCache(file)) {
+            assertThrows(IllegalArgumentException.class, () -> new BloomFilterReplayCache(mappedFileReplayCache));
+        }
+
+        try (ReplayCache ehCacheReplayCache = new EHCacheReplayCache("xyz", (URL)null)) {
+            assertThrows(IllegalArgumentException.class,
+                () -> new BloomFilterReplayCache(ehCacheReplayCache, 3600L, 1000, 0.01));
+        }
+    }
+
+    @Test
+    public void testBloomFilterReplayCacheCounters() throws IOException {
+        BloomFilterReplayCache replayCache = new BloomFilterReplayCache(new MemoryReplayCache());
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(replayCache.putIfAbsent(UUID.randomUUID().toString(), null));
+        }
+        String id = UUID.randomUUID().toString();
+        assertTrue(replayCache.putIfAbsent(id, null));
+        assertFalse(replayCache.putIfAbsent(id, null));
+        assertTrue(replayCache.contains(id));
+
+        assertEquals(1003L, replayCache.getLookupCount());
+        assertEquals(2L, replayCache.getCacheHitCount());
+        assertEquals(replayCache.getLookupCount(), replayCache.getFilterMissCount()
+                     + replayCache.getCacheHitCount() + replayCache.getFalsePositiveCount());
+        assertTrue(replayCache.getFilterHitRate() > 0.95);
+
+        replayCache.close();
+    }
+
+    /**
+     * Add the given number of new identifiers to the cache, and check that those that were not added
+     * are not contained in the cache
+     * @return the identifiers that were added
+     */
+    private static List<String> fill(ReplayCache replayCache, int count) {
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String id = UUID.randomUUID().toString();
+            if (replayCache.putIfAbsent(id, Instant.now().plusSeconds(100L))) {
+                added.add(id);
+            } else {
+                assertFalse(replayCache.contains(id));
+            }
+        }
+        return added;
+    }
+
     private void testReplayCacheInstance(ReplayCache replayCache) throws InterruptedException, IOException {
 
         // Test default TTL caches OK
@@ -70,5 +404,19 @@ public class ReplayCacheTest {
         Thread.sleep(1250L);
         assertFalse(replayCache.contains(id));
 
+        // Test putIfAbsent
+        id = UUID.randomUUID().toString();
+        assertTrue(replayCache.putIfAbsent(id, null));
+        assertTrue(replayCache.contains(id));
+        assertFalse(replayCache.putIfAbsent(id, Instant.now().plusSeconds(100L)));
+
+        // Test putIfAbsent after expiration
+        id = UUID.randomUUID().toString();
+        assertTrue(replayCache.putIfAbsent(id, Instant.now().plusSeconds(1L)));
+        // EH-Cache stores the creation time of an Element rounded to seconds
+        Thread.sleep(2250L);
+        assertTrue(replayCache.putIfAbsent(id, Instant.now().plusSeconds(100L)));
+        assertTrue(replayCache.contains(id));
+
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import javax.security.auth.Subject;
+
+import org.apache.wss4j.common.principal.CustomTokenPrincipal;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Some unit tests for the SubjectCache
+ */
+public class SubjectCacheTest {
+
+    @Test
+    public void testSubjectCache() throws Exception {
+        Subject subject = new Subject();
+        subject.getPrincipals().add(new CustomTokenPrincipal("alice"));
+
+        SubjectCache subjectCache = new SubjectCache();
+        assertNull(subjectCache.get("ctx", "alice", "password"));
+
+        subjectCache.put("ctx", "alice", "password", subject);
+        Subject cachedSubject = subjectCache.get("ctx", "alice", "password");
+        assertNotNull(cachedSubject);
+        assertEquals("alice", cachedSubject.getPrincipals().iterator().next().getName());
+
+        // The Subject is only returned for the same context name, username and password
+        assertNull(subjectCache.get("ctx", "alice", "Password"));
+        assertNull(subjectCache.get("other", "alice", "password"));
+        assertNull(subjectCache.get("ctx", "bob", "password"));
+        assertNull(subjectCache.get("ctx:", "alice", "password"));
+
+        // Changes to a returned Subject do not affect the cached Subject
+        cachedSubject.getPrincipals().clear();
+        assertEquals(1, subjectCache.get("ctx", "alice", "password").getPrincipals().size());
+
+        subjectCache.remove("ctx", "alice");
+        assertEquals(0, subjectCache.size());
+        assertNull(subjectCache.get("ctx", "alice", "password"));
+    }
+
+    @Test
+    public void testSubjectCacheMaxEntries() throws Exception {
+        SubjectCache subjectCache = new SubjectCache(10, 60L);
+        for (int i = 0; i <= 10; i++) {
+            subjectCache.put("ctx", "user" + i, "password", new Subject());
+        }
+
+        // The least recently used Subject is evicted
+        assertEquals(10, subjectCache.size());
+        assertNull(subjectCache.get("ctx", "user0", "password"));
+        assertNotNull(subjectCache.get("ctx", "user10", "password"));
+    }
+
+}
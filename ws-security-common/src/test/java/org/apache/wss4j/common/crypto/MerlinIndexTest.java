@@ -0,0 +1,383 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PrivateKey;
+import java.security.cert.CertPathValidator;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.util.Loader;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Some tests for the certificate lookups of Merlin, which use an index of the keystore and truststore,
+ * for the cached trust anchors, verified certificate chains and private keys, and for reloading the keystore.
+ */
+public class MerlinIndexTest {
+
+    @Test
+    public void testLookups() throws Exception {
+        Crypto crypto = CryptoFactory.getInstance("wss40.properties");
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        X509Certificate cert = crypto.getX509Certificates(cryptoType)[0];
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SUBJECT_DN);
+        cryptoType.setSubjectDN(cert.getSubjectX500Principal().getName());
+        // The "wss40dsa" entry has the same Subject DN
+        assertEquals(cert.getSubjectX500Principal(),
+                     crypto.getX509Certificates(cryptoType)[0].getSubjectX500Principal());
+
+        cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(cert.getIssuerX500Principal().getName(), cert.getSerialNumber());
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SKI_BYTES);
+        cryptoType.setBytes(crypto.getSKIBytesFromCert(cert));
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+
+        cryptoType = new CryptoType(CryptoType.TYPE.THUMBPRINT_SHA1);
+        cryptoType.setBytes(MessageDigest.getInstance("SHA-1").digest(cert.getEncoded()));
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+
+        assertEquals("wss40", crypto.getX509Identifier(cert));
+        crypto.verifyTrust(cert.getPublicKey());
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SUBJECT_DN);
+        cryptoType.setSubjectDN("CN=Unknown");
+        assertNull(crypto.getX509Certificates(cryptoType));
+    }
+
+    @Test
+    public void testModifiedKeyStore() throws Exception {
+        Merlin crypto = new Merlin();
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(MerlinIndexTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks")) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        crypto.setKeyStore(keyStore);
+
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        crypto.setTrustStore(trustStore);
+
+        X509Certificate cert = (X509Certificate)keyStore.getCertificate("wss40");
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(cert.getIssuerX500Principal().getName(), cert.getSerialNumber());
+        assertNotNull(crypto.getX509Certificates(cryptoType));
+
+        // The index must pick up a new KeyStore
+        KeyStore emptyKeyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        emptyKeyStore.load(null, null);
+        crypto.setKeyStore(emptyKeyStore);
+        assertNull(crypto.getX509Certificates(cryptoType));
+
+        // Entries that are added to the KeyStore in place are picked up on refresh
+        trustStore.setCertificateEntry("wss40cert", cert);
+        crypto.refresh();
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+        assertEquals("wss40cert", crypto.getX509Identifier(cert));
+
+        // An entry that is replaced under the same alias (so the size of the KeyStore does not change)
+        X509Certificate caCert = (X509Certificate)keyStore.getCertificate("wss40ca");
+        trustStore.setCertificateEntry("wss40cert", caCert);
+        assertEquals(cert, crypto.getX509Certificates(cryptoType)[0]);
+        crypto.refresh();
+        assertNull(crypto.getX509Certificates(cryptoType));
+        assertEquals("wss40cert", crypto.getX509Identifier(caCert));
+    }
+
+    @Test
+    public void testCachedTrustAnchors() throws Exception {
+        Merlin crypto = new Merlin();
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(MerlinIndexTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks")) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        crypto.setKeyStore(keyStore);
+
+        X509Certificate cert = (X509Certificate)keyStore.getCertificate("wss40");
+        X509Certificate caCert = (X509Certificate)keyStore.getCertificate("wss40ca");
+        X509Certificate[] chain = new X509Certificate[] {cert, caCert};
+
+        // The trust anchors are taken from the keystore, as there is no truststore
+        crypto.verifyTrust(chain, false, null, null);
+        crypto.verifyTrust(chain, false, null, null);
+
+        // A new truststore replaces the trust anchors of the keystore
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("wss40", cert);
+        crypto.setTrustStore(trustStore);
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(chain, false, null, null));
+
+        // A CA certificate that is added to the truststore is picked up on refresh
+        trustStore.setCertificateEntry("wss40ca", caCert);
+        crypto.refresh();
+        crypto.verifyTrust(chain, false, null, null);
+    }
+
+    @Test
+    public void testConcurrentVerifyTrust() throws Exception {
+        AtomicInteger validators = new AtomicInteger();
+        Merlin crypto = new Merlin() {
+            @Override
+            protected CertPathValidator createCertPathValidator()
+                throws NoSuchAlgorithmException, NoSuchProviderException {
+                validators.incrementAndGet();
+                return super.createCertPathValidator();
+            }
+        };
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(MerlinIndexTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks")) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        crypto.setKeyStore(keyStore);
+
+        X509Certificate[] chain = new X509Certificate[] {
+            (X509Certificate)keyStore.getCertificate("wss40"),
+            (X509Certificate)keyStore.getCertificate("wss40ca")
+        };
+
+        // The trust anchors are shared, but each chain is validated with its own CertPathValidator
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    for (int j = 0; j < 20; j++) {
+                        crypto.verifyTrust(chain, false, null, null);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30L, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(160, validators.get());
+    }
+
+    @Test
+    public void testVerifiedChainCache() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setTrustCacheSize(10);
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(MerlinIndexTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks")) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        crypto.setKeyStore(keyStore);
+
+        X509Certificate cert = (X509Certificate)keyStore.getCertificate("wss40");
+        X509Certificate caCert = (X509Certificate)keyStore.getCertificate("wss40ca");
+        X509Certificate[] chain = new X509Certificate[] {cert, caCert};
+
+        crypto.verifyTrust(chain, false, null, null);
+        // The cached result is served for the same chain
+        crypto.verifyTrust(chain, false, null, null);
+
+        // The constraints are part of the cache key
+        Collection<Pattern> constraints = Collections.singletonList(Pattern.compile("CN=Nobody"));
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(chain, false, constraints, null));
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(chain, false, null, constraints));
+
+        // The cache is cleared when the trust anchors change
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("wss40", cert);
+        crypto.setTrustStore(trustStore);
+        assertThrows(WSSecurityException.class, () -> crypto.verifyTrust(chain, false, null, null));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        Path keyStoreFile = Files.createTempFile("merlin", ".jks");
+        ClassLoader loader = Loader.getClassLoader(MerlinIndexTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks")) {
+            Files.copy(input, keyStoreFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", keyStoreFile.toString());
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.type", "jks");
+        properties.put("org.apache.wss4j.crypto.merlin.reload.interval", "1");
+        Merlin crypto = new Merlin(properties, loader, null);
+
+        assertReloaded(crypto, keyStoreFile, loader);
+        Files.delete(keyStoreFile);
+    }
+
+    @Test
+    public void testReloadSubclass() throws Exception {
+        Path keyStoreFile = Files.createTempFile("merlin", ".jks");
+        ClassLoader loader = Loader.getClassLoader(MerlinIndexTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks")) {
+            Files.copy(input, keyStoreFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // The subclass has no default constructor, so it is reloaded via CryptoFactory
+        Properties properties = new Properties();
+        properties.put("org.apache.wss4j.crypto.provider", PropertiesMerlin.class.getName());
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.file", keyStoreFile.toString());
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.password", "security");
+        properties.put("org.apache.wss4j.crypto.merlin.keystore.type", "jks");
+        properties.put("org.apache.wss4j.crypto.merlin.reload.interval", "1");
+        Crypto crypto = CryptoFactory.getInstance(properties, loader, null);
+        assertEquals(PropertiesMerlin.class, crypto.getClass());
+
+        assertReloaded((Merlin)crypto, keyStoreFile, loader);
+        Files.delete(keyStoreFile);
+    }
+
+    private void assertReloaded(Merlin crypto, Path keyStoreFile, ClassLoader loader) throws Exception {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        X509Certificate cert = crypto.getX509Certificates(cryptoType)[0];
+
+        // Replace the keystore with another one that also has a "wss40" alias
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/rsa1024.jks")) {
+            Files.copy(input, keyStoreFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.setLastModifiedTime(keyStoreFile, FileTime.fromMillis(System.currentTimeMillis() + 10000L));
+
+        X509Certificate reloadedCert = cert;
+        for (int i = 0; i < 100 && reloadedCert.equals(cert); i++) {
+            Thread.sleep(100L);
+            reloadedCert = crypto.getX509Certificates(cryptoType)[0];
+        }
+        assertNotEquals(cert, reloadedCert);
+        assertEquals("wss40", crypto.getX509Identifier(reloadedCert));
+        assertNull(crypto.getX509Identifier(cert));
+    }
+
+    @Test
+    public void testReloadFrom() throws Exception {
+        ClassLoader loader = Loader.getClassLoader(MerlinIndexTest.class);
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks")) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        X509Certificate cert = (X509Certificate)keyStore.getCertificate("wss40");
+        X509Certificate caCert = (X509Certificate)keyStore.getCertificate("wss40ca");
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("wss40ca", caCert);
+
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(keyStore);
+        crypto.setTrustStore(trustStore);
+        assertEquals("wss40", crypto.getX509Identifier(cert));
+        crypto.verifyTrust(new X509Certificate[] {cert, caCert}, false, null, null);
+
+        // Only the keystore is replaced, the truststore (and its index) is kept
+        KeyStore newKeyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/rsa1024.jks")) {
+            newKeyStore.load(input, "security".toCharArray());
+        }
+        Merlin source = new Merlin();
+        source.setKeyStore(newKeyStore);
+        crypto.reloadFrom(source);
+
+        assertSame(newKeyStore, crypto.getKeyStore());
+        assertSame(trustStore, crypto.getTrustStore());
+        assertEquals("wss40ca", crypto.getX509Identifier(caCert));
+        assertNull(crypto.getX509Identifier(cert));
+        X509Certificate newCert = (X509Certificate)newKeyStore.getCertificate("wss40");
+        assertEquals("wss40", crypto.getX509Identifier(newCert));
+
+        // The trust anchors come from the kept truststore, direct trust from the new keystore
+        crypto.verifyTrust(new X509Certificate[] {cert, caCert}, false, null, null);
+        crypto.verifyTrust(new X509Certificate[] {newCert}, false, null, null);
+    }
+
+    @Test
+    public void testPrivateKeyCache() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setPrivateKeyCacheSize(10);
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(MerlinIndexTest.class);
+        try (InputStream input = Merlin.loadInputStream(loader, "keys/wss40.jks")) {
+            keyStore.load(input, "security".toCharArray());
+        }
+        crypto.setKeyStore(keyStore);
+
+        PrivateKey privateKey = crypto.getPrivateKey("wss40", "security");
+        assertNotNull(privateKey);
+        assertSame(privateKey, crypto.getPrivateKey("wss40", "security"));
+
+        // The cached key must not be returned for a wrong password
+        assertThrows(WSSecurityException.class, () -> crypto.getPrivateKey("wss40", "wrong"));
+
+        // The cache is cleared when the keystore changes
+        KeyStore newKeyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        newKeyStore.load(null, null);
+        crypto.setKeyStore(newKeyStore);
+        assertThrows(WSSecurityException.class, () -> crypto.getPrivateKey("wss40", "security"));
+    }
+
+    /**
+     * A Merlin subclass that can only be created from properties
+     */
+    public static class PropertiesMerlin extends Merlin {
+
+        public PropertiesMerlin(Properties properties, ClassLoader loader, PasswordEncryptor passwordEncryptor)
+            throws WSSecurityException, IOException {
+            super(properties, loader, passwordEncryptor);
+        }
+    }
+
+}
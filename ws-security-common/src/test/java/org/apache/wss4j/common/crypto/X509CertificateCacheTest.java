@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Some tests for the X509CertificateCache.
+ */
+public class X509CertificateCacheTest {
+
+    @Test
+    public void testLoadCertificate() throws Exception {
+        Crypto crypto = CryptoFactory.getInstance("wss40.properties");
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        X509Certificate cert = crypto.getX509Certificates(cryptoType)[0];
+
+        X509CertificateCache cache = new X509CertificateCache(crypto, 10);
+        CachedX509Certificate cachedCert = cache.loadCertificate(cert.getEncoded());
+        assertEquals(cert, cachedCert.getX509Certificate());
+
+        // The same certificate is returned for the same bytes
+        assertSame(cachedCert, cache.loadCertificate(cert.getEncoded()));
+        assertSame(cachedCert, cache.get(cert));
+        assertEquals(1, cache.size());
+
+        assertArrayEquals(crypto.getSKIBytesFromCert(cert), cachedCert.getSKIBytes());
+        assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(cert.getEncoded()),
+                          cachedCert.getSHA1Thumbprint());
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(cert.getEncoded()),
+                          cachedCert.getSHA256Thumbprint());
+        assertEquals(cert.getSubjectX500Principal().getName(), cachedCert.getSubjectDN());
+        assertEquals(cert.getIssuerX500Principal().getName(), cachedCert.getIssuerDN());
+
+        // The returned arrays are copies
+        cachedCert.getSHA1Thumbprint()[0]++;
+        assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(cert.getEncoded()),
+                          cachedCert.getSHA1Thumbprint());
+    }
+
+    @Test
+    public void testLoadCertificates() throws Exception {
+        Crypto crypto = CryptoFactory.getInstance("wss40.properties");
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        X509Certificate cert = crypto.getX509Certificates(cryptoType)[0];
+        cryptoType.setAlias("wss40ca");
+        X509Certificate caCert = crypto.getX509Certificates(cryptoType)[0];
+        byte[] pkiPath = crypto.getBytesFromCertificates(new X509Certificate[] {cert, caCert});
+
+        X509CertificateCache cache = new X509CertificateCache(crypto, 10);
+        X509Certificate[] certs = cache.loadCertificates(pkiPath);
+        assertArrayEquals(new X509Certificate[] {cert, caCert}, certs);
+
+        // The certificates of the path are shared with the single certificates
+        assertSame(certs[0], cache.get(cert).getX509Certificate());
+        assertSame(certs[1], cache.get(caCert).getX509Certificate());
+        assertEquals(2, cache.size());
+
+        // The same certificates are returned for the same bytes, in a new array
+        X509Certificate[] cachedCerts = cache.loadCertificates(pkiPath);
+        assertNotSame(certs, cachedCerts);
+        assertSame(certs[0], cachedCerts[0]);
+        assertSame(certs[1], cachedCerts[1]);
+    }
+
+    @Test
+    public void testCachePerCrypto() throws Exception {
+        CountingMerlin crypto = new CountingMerlin();
+        CountingMerlin otherCrypto = new CountingMerlin();
+        Crypto certCrypto = CryptoFactory.getInstance("wss40.properties");
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("wss40");
+        byte[] encoded = certCrypto.getX509Certificates(cryptoType)[0].getEncoded();
+
+        assertSame(X509CertificateCache.getInstance(crypto), X509CertificateCache.getInstance(crypto));
+        assertNotSame(X509CertificateCache.getInstance(crypto), X509CertificateCache.getInstance(otherCrypto));
+        assertSame(X509CertificateCache.getInstance(), X509CertificateCache.getInstance(null));
+
+        // Each Crypto instance parses the certificate itself, once
+        CachedX509Certificate cachedCert = X509CertificateCache.getInstance(crypto).loadCertificate(encoded);
+        assertSame(cachedCert, X509CertificateCache.getInstance(crypto).loadCertificate(encoded));
+        assertEquals(1, crypto.loads);
+        CachedX509Certificate otherCert = X509CertificateCache.getInstance(otherCrypto).loadCertificate(encoded);
+        assertNotSame(cachedCert, otherCert);
+        assertEquals(1, otherCrypto.loads);
+
+        // A new provider clears the cache of the Crypto instance
+        crypto.setCryptoProvider(null);
+        assertNotSame(cachedCert, X509CertificateCache.getInstance(crypto).loadCertificate(encoded));
+        assertEquals(2, crypto.loads);
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        Crypto crypto = CryptoFactory.getInstance("wss40.properties");
+        X509CertificateCache cache = new X509CertificateCache(2);
+        for (String alias : new String[] {"wss40", "wss40ca", "wss40dsa"}) {
+            CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+            cryptoType.setAlias(alias);
+            cache.get(crypto.getX509Certificates(cryptoType)[0]);
+        }
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testInvalidCertificate() throws Exception {
+        X509CertificateCache cache = new X509CertificateCache(10);
+        assertThrows(WSSecurityException.class, () -> cache.loadCertificate(new byte[] {1, 2, 3}));
+        assertEquals(0, cache.size());
+    }
+
+    private static class CountingMerlin extends Merlin {
+        private int loads;
+
+        @Override
+        public X509Certificate loadCertificate(InputStream in) throws WSSecurityException {
+            loads++;
+            return super.loadCertificate(in);
+        }
+    }
+}
@@ -43,9 +43,13 @@ import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.callback.CallbackLookup;
+import org.apache.wss4j.dom.callback.ElementIdIndex;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
 public class WSDocInfo {
     private Document doc;
@@ -60,6 +64,8 @@ public class WSDocInfo {
     private final List<WSSecurityEngineResult> results = new LinkedList<>();
     private final Map<Integer, List<WSSecurityEngineResult>> actionResults = new HashMap<>();
     private CallbackLookup callbackLookup;
+    private ElementIdIndex idIndex;
+    private boolean expanded;
     private Element securityHeader;
 
     public WSDocInfo(Document doc) {
@@ -82,6 +88,8 @@ public class WSDocInfo {
         crypto = null;
         doc = null;
         callbackLookup = null;
+        idIndex = null;
+        expanded = false;
         securityHeader = null;
         tokens.clear();
         results.clear();
@@ -336,6 +344,69 @@ public class WSDocInfo {
         return callbackLookup;
     }
 
+    /**
+     * @param idIndex The index of the elements of the document by Id, or null if no index is used
+     */
+    public void setIdIndex(ElementIdIndex idIndex) {
+        this.idIndex = idIndex;
+    }
+
+    /**
+     * @return the index of the elements of the document by Id, or null if no index is used
+     */
+    public ElementIdIndex getIdIndex() {
+        return idIndex;
+    }
+
+    /**
+     * Add a node that was inserted into the document (e.g. by decryption), along with its
+     * descendants, to the Id index, if an index is used.
+     * @param node The inserted node
+     */
+    public void addToIdIndex(Node node) {
+        if (idIndex != null && node != null) {
+            idIndex.add(node);
+        }
+    }
+
+    /**
+     * Expand all of the nodes of the document, that a DOM implementation may expand lazily on
+     * reads (e.g. the deferred DOM of Xerces), so that the document can be read from several
+     * threads. The document is only expanded once - nodes that are inserted into the document
+     * later on (e.g. by decryption) are created via the document, and so are not expanded lazily.
+     */
+    public void expandDocument() {
+        if (expanded || doc == null) {
+            return;
+        }
+        Node node = doc;
+        while (node != null) {
+            // Visit the data and the attributes of each node
+            node.getNodeValue();
+            node.getLocalName();
+            node.getNamespaceURI();
+            NamedNodeMap attributes = node.getAttributes();
+            if (attributes != null) {
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Attr attr = (Attr)attributes.item(i);
+                    attr.getLocalName();
+                    attr.getNamespaceURI();
+                    attr.getValue();
+                }
+            }
+
+            Node next = node.getFirstChild();
+            while (next == null && node != null) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+        expanded = true;
+    }
+
     /**
      * @return the wsse header being processed
      */
@@ -37,9 +37,20 @@ import org.w3c.dom.Element;
 public class DOMCallbackLookup implements CallbackLookup {
 
     private Document doc;
+    private final ElementIdIndex idIndex;
 
     public DOMCallbackLookup(Document doc) {
+        this(doc, null);
+    }
+
+    /**
+     * @param doc The Document to locate Elements in
+     * @param idIndex The index of the Elements of the Document by Id, or null to search the
+     *        Document for each reference
+     */
+    public DOMCallbackLookup(Document doc, ElementIdIndex idIndex) {
         this.doc = doc;
+        this.idIndex = idIndex;
     }
 
     /**
@@ -93,8 +104,13 @@ public class DOMCallbackLookup implements CallbackLookup {
             }
         }
         // Otherwise do a general search
-        Element foundElement =
-            XMLUtils.findElementById(doc.getDocumentElement(), idToMatch, checkMultipleElements);
+        Element foundElement;
+        if (idIndex != null) {
+            foundElement = idIndex.findElementById(idToMatch, checkMultipleElements);
+        } else {
+            foundElement =
+                XMLUtils.findElementById(doc.getDocumentElement(), idToMatch, checkMultipleElements);
+        }
         if (foundElement != null) {
             if (context != null) {
                 if (foundElement.hasAttributeNS(WSConstants.WSU_NS, "Id")
@@ -117,10 +133,14 @@ public class DOMCallbackLookup implements CallbackLookup {
             || WSConstants.WSS_SAML2_KI_VALUE_TYPE.equals(valueType)
             || "".equals(valueType)
             || valueType == null) {
-            foundElement =
-                XMLUtils.findSAMLAssertionElementById(
-                    doc.getDocumentElement(), idToMatch
-                );
+            if (idIndex != null) {
+                foundElement = idIndex.findSAMLAssertionElementById(idToMatch);
+            } else {
+                foundElement =
+                    XMLUtils.findSAMLAssertionElementById(
+                        doc.getDocumentElement(), idToMatch
+                    );
+            }
             if (foundElement != null) {
                 if (context != null) {
                     if (foundElement.hasAttributeNS(null, "ID")
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.callback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An index of the elements of a document by their Id. Locating a referenced element with
+ * XMLUtils.findElementById walks the whole document for each reference - the index instead walks
+ * the document once, the first time that an element is looked up, and records the elements with a
+ * wsu:Id or Id attribute, and the (SAML) elements with an ID or AssertionID attribute.
+ *
+ * All of the elements with a given Id are recorded, so that duplicate Ids are still detected. An
+ * element that is no longer in the document, or that no longer has the Id, is ignored. Elements
+ * that are added to the document after the index was built (e.g. by decryption) must be added via
+ * the "add" method.
+ */
+public class ElementIdIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ElementIdIndex.class);
+
+    private final Document doc;
+    private Map<String, List<Element>> ids;
+    private Map<String, List<Element>> samlIds;
+
+    public ElementIdIndex(Document doc) {
+        this.doc = doc;
+    }
+
+    /**
+     * Add the given node and its descendants to the index. This is a no-op if the index has not
+     * been built yet, as it will then pick up the node when it is built.
+     * @param startNode The root of the subtree to add
+     */
+    public synchronized void add(Node startNode) {
+        if (ids != null && startNode != null) {
+            index(startNode);
+        }
+    }
+
+    /**
+     * Get the element with the given wsu:Id or Id attribute.
+     * @param id The Id of the element
+     * @param checkMultipleElements If true then return null if there are multiple elements with
+     *        the same Id
+     * @return the element, or null
+     */
+    public synchronized Element findElementById(String id, boolean checkMultipleElements) {
+        build();
+        List<Element> elements = getElements(ids, id);
+        if (elements.isEmpty()) {
+            return null;
+        }
+        List<Element> matches = new ArrayList<>(elements.size());
+        for (Element element : elements) {
+            if (isAttached(element)
+                && (id.equals(element.getAttributeNS(WSConstants.WSU_NS, "Id"))
+                    || id.equals(element.getAttributeNS(null, "Id")))) {
+                matches.add(element);
+            }
+        }
+        if (checkMultipleElements && matches.size() > 1) {
+            LOG.warn("Multiple elements with the same 'Id' attribute value!");
+            return null;
+        }
+        return getFirstInDocumentOrder(matches);
+    }
+
+    /**
+     * Get the (SAML Assertion) element with the given ID or AssertionID attribute.
+     * @param id The ID of the element
+     * @return the element, or null if there is no element or multiple elements with the ID
+     */
+    public synchronized Element findSAMLAssertionElementById(String id) {
+        build();
+        List<Element> elements = getElements(samlIds, id);
+        Element foundElement = null;
+        for (Element element : elements) {
+            if (isAttached(element)
+                && (element.hasAttributeNS(null, "ID") && id.equals(element.getAttributeNS(null, "ID"))
+                    || element.hasAttributeNS(null, "AssertionID")
+                        && id.equals(element.getAttributeNS(null, "AssertionID")))) {
+                if (foundElement != null) {
+                    LOG.warn("Multiple elements with the same 'ID' attribute value!");
+                    return null;
+                }
+                foundElement = element;
+            }
+        }
+        return foundElement;
+    }
+
+    private void build() {
+        if (ids == null) {
+            ids = new HashMap<>();
+            samlIds = new HashMap<>();
+            if (doc != null) {
+                index(doc.getDocumentElement());
+            }
+        }
+    }
+
+    private static List<Element> getElements(Map<String, List<Element>> index, String id) {
+        List<Element> elements = index.get(id);
+        return elements == null ? Collections.<Element>emptyList() : elements;
+    }
+
+    private void index(Node startNode) {
+        // A depth-first loop over the subtree of the start node
+        Node node = startNode;
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                Element se = (Element) node;
+                String wsuId = se.getAttributeNS(WSConstants.WSU_NS, "Id");
+                put(ids, wsuId, se);
+                String id = se.getAttributeNS(null, "Id");
+                if (!id.equals(wsuId)) {
+                    put(ids, id, se);
+                }
+                String samlId = se.getAttributeNS(null, "ID");
+                put(samlIds, samlId, se);
+                String assertionId = se.getAttributeNS(null, "AssertionID");
+                if (!assertionId.equals(samlId)) {
+                    put(samlIds, assertionId, se);
+                }
+            }
+
+            Node next = node.getFirstChild();
+            // no child, so get the next sibling of this node or of its closest ancestor
+            while (next == null && node != startNode) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+    }
+
+    private static void put(Map<String, List<Element>> index, String id, Element element) {
+        if (id == null || "".equals(id)) {
+            return;
+        }
+        List<Element> elements = index.computeIfAbsent(id, k -> new ArrayList<>(1));
+        for (Element existing : elements) {
+            if (existing == element) {
+                return;
+            }
+        }
+        elements.add(element);
+    }
+
+    private static boolean isAttached(Node node) {
+        Node parent = node;
+        while (parent.getParentNode() != null) {
+            parent = parent.getParentNode();
+        }
+        return parent.getNodeType() == Node.DOCUMENT_NODE;
+    }
+
+    private static Element getFirstInDocumentOrder(List<Element> elements) {
+        Element first = null;
+        for (Element element : elements) {
+            if (first == null
+                || (element.compareDocumentPosition(first) & Node.DOCUMENT_POSITION_FOLLOWING) != 0) {
+                first = element;
+            }
+        }
+        return first;
+    }
+}
@@ -71,59 +71,60 @@ public final class WSSConfig {
         org.slf4j.LoggerFactory.getLogger(WSSConfig.class);
 
     /**
-     * The default collection of actions supported by the toolkit.
+     * The default collection of actions supported by the toolkit. None of the default actions has any
+     * fields, so a single instance of each is shared by all WSSConfig instances.
      */
-    private static final Map<Integer, Class<?>> DEFAULT_ACTIONS;
+    private static final Map<Integer, Action> DEFAULT_ACTIONS;
     static {
-        final Map<Integer, Class<?>> tmp = new HashMap<>();
+        final Map<Integer, Action> tmp = new HashMap<>();
         try {
             tmp.put(
                 WSConstants.UT,
-                org.apache.wss4j.dom.action.UsernameTokenAction.class
+                new org.apache.wss4j.dom.action.UsernameTokenAction()
             );
             tmp.put(
                 WSConstants.UT_NOPASSWORD,
-                org.apache.wss4j.dom.action.UsernameTokenAction.class
+                tmp.get(WSConstants.UT)
             );
             tmp.put(
                 WSConstants.ENCR,
-                org.apache.wss4j.dom.action.EncryptionAction.class
+                new org.apache.wss4j.dom.action.EncryptionAction()
             );
             tmp.put(
                 WSConstants.SIGN,
-                org.apache.wss4j.dom.action.SignatureAction.class
+                new org.apache.wss4j.dom.action.SignatureAction()
             );
             tmp.put(
                 WSConstants.DKT_SIGN,
-                org.apache.wss4j.dom.action.SignatureDerivedAction.class
+                new org.apache.wss4j.dom.action.SignatureDerivedAction()
             );
             tmp.put(
                 WSConstants.DKT_ENCR,
-                org.apache.wss4j.dom.action.EncryptionDerivedAction.class
+                new org.apache.wss4j.dom.action.EncryptionDerivedAction()
             );
             tmp.put(
                 WSConstants.ST_SIGNED,
-                org.apache.wss4j.dom.action.SAMLTokenSignedAction.class
+                new org.apache.wss4j.dom.action.SAMLTokenSignedAction()
             );
             tmp.put(
                 WSConstants.ST_UNSIGNED,
-                org.apache.wss4j.dom.action.SAMLTokenUnsignedAction.class
+                new org.apache.wss4j.dom.action.SAMLTokenUnsignedAction()
             );
             tmp.put(
                 WSConstants.TS,
-                org.apache.wss4j.dom.action.TimestampAction.class
+                new org.apache.wss4j.dom.action.TimestampAction()
             );
             tmp.put(
                 WSConstants.UT_SIGN,
-                org.apache.wss4j.dom.action.UsernameTokenSignedAction.class
+                new org.apache.wss4j.dom.action.UsernameTokenSignedAction()
             );
             tmp.put(
                 WSConstants.SC,
-                org.apache.wss4j.dom.action.SignatureConfirmationAction.class
+                new org.apache.wss4j.dom.action.SignatureConfirmationAction()
             );
             tmp.put(
                 WSConstants.CUSTOM_TOKEN,
-                org.apache.wss4j.dom.action.CustomTokenAction.class
+                new org.apache.wss4j.dom.action.CustomTokenAction()
             );
         } catch (final Exception ex) {
             LOG.debug(ex.getMessage(), ex);
@@ -132,51 +133,53 @@ public final class WSSConfig {
     }
 
     /**
-     * The default collection of processors supported by the toolkit
+     * The default collection of processors supported by the toolkit. The default processors only have
+     * final fields (the XMLSignatureFactory or Provider they are created with), so a single instance of
+     * each is shared by all WSSConfig instances.
      */
-    private static final Map<QName, Class<?>> DEFAULT_PROCESSORS;
+    private static final Map<QName, Processor> DEFAULT_PROCESSORS;
     static {
-        final Map<QName, Class<?>> tmp = new HashMap<>();
+        final Map<QName, Processor> tmp = new HashMap<>();
         try {
             tmp.put(
                 WSConstants.SAML_TOKEN,
-                org.apache.wss4j.dom.processor.SAMLTokenProcessor.class
+                new org.apache.wss4j.dom.processor.SAMLTokenProcessor()
             );
             tmp.put(
                 WSConstants.SAML2_TOKEN,
-                org.apache.wss4j.dom.processor.SAMLTokenProcessor.class
+                tmp.get(WSConstants.SAML_TOKEN)
             );
             tmp.put(
                 WSConstants.ENCRYPTED_ASSERTION,
-                org.apache.wss4j.dom.processor.EncryptedAssertionProcessor.class
+                new org.apache.wss4j.dom.processor.EncryptedAssertionProcessor()
             );
             tmp.put(
                 WSConstants.ENCRYPTED_KEY,
-                org.apache.wss4j.dom.processor.EncryptedKeyProcessor.class
+                new org.apache.wss4j.dom.processor.EncryptedKeyProcessor()
             );
             tmp.put(
                 WSConstants.SIGNATURE,
-                org.apache.wss4j.dom.processor.SignatureProcessor.class
+                new org.apache.wss4j.dom.processor.SignatureProcessor()
             );
             tmp.put(
                 WSConstants.TIMESTAMP,
-                org.apache.wss4j.dom.processor.TimestampProcessor.class
+                new org.apache.wss4j.dom.processor.TimestampProcessor()
             );
             tmp.put(
                 WSConstants.USERNAME_TOKEN,
-                org.apache.wss4j.dom.processor.UsernameTokenProcessor.class
+                new org.apache.wss4j.dom.processor.UsernameTokenProcessor()
             );
             tmp.put(
                 WSConstants.REFERENCE_LIST,
-                org.apache.wss4j.dom.processor.ReferenceListProcessor.class
+                new org.apache.wss4j.dom.processor.ReferenceListProcessor()
             );
             tmp.put(
                 WSConstants.SIGNATURE_CONFIRMATION,
-                org.apache.wss4j.dom.processor.SignatureConfirmationProcessor.class
+                new org.apache.wss4j.dom.processor.SignatureConfirmationProcessor()
             );
             tmp.put(
                 WSConstants.DERIVED_KEY_TOKEN_05_02,
-                org.apache.wss4j.dom.processor.DerivedKeyTokenProcessor.class
+                new org.apache.wss4j.dom.processor.DerivedKeyTokenProcessor()
             );
             tmp.put(
                 WSConstants.DERIVED_KEY_TOKEN_05_12,
@@ -184,7 +187,7 @@ public final class WSSConfig {
             );
             tmp.put(
                 WSConstants.SECURITY_CONTEXT_TOKEN_05_02,
-                org.apache.wss4j.dom.processor.SecurityContextTokenProcessor.class
+                new org.apache.wss4j.dom.processor.SecurityContextTokenProcessor()
             );
             tmp.put(
                 WSConstants.SECURITY_CONTEXT_TOKEN_05_12,
@@ -192,11 +195,11 @@ public final class WSSConfig {
             );
             tmp.put(
                 WSConstants.BINARY_TOKEN,
-                org.apache.wss4j.dom.processor.BinarySecurityTokenProcessor.class
+                new org.apache.wss4j.dom.processor.BinarySecurityTokenProcessor()
             );
             tmp.put(
                 WSConstants.ENCRYPTED_DATA,
-                org.apache.wss4j.dom.processor.EncryptedDataProcessor.class
+                new org.apache.wss4j.dom.processor.EncryptedDataProcessor()
             );
         } catch (final Exception ex) {
             LOG.debug(ex.getMessage(), ex);
@@ -205,11 +208,15 @@ public final class WSSConfig {
     }
 
     /**
-     * The default collection of validators supported by the toolkit
+     * The default collection of validators supported by the toolkit. The SignatureTrustValidator,
+     * TimestampValidator and UsernameTokenValidator have no fields, so a single instance of each is
+     * shared by all WSSConfig instances. The SamlAssertionValidator has setters for its TTLs and
+     * Subject Confirmation requirements, so it is registered as a class, and a new instance is
+     * created for each lookup.
      */
-    private static final Map<QName, Class<?>> DEFAULT_VALIDATORS;
+    private static final Map<QName, Object> DEFAULT_VALIDATORS;
     static {
-        final Map<QName, Class<?>> tmp = new HashMap<>();
+        final Map<QName, Object> tmp = new HashMap<>();
         try {
             tmp.put(
                 WSConstants.SAML_TOKEN,
@@ -221,15 +228,15 @@ public final class WSSConfig {
             );
             tmp.put(
                 WSConstants.SIGNATURE,
-                org.apache.wss4j.dom.validate.SignatureTrustValidator.class
+                new org.apache.wss4j.dom.validate.SignatureTrustValidator()
             );
             tmp.put(
                 WSConstants.TIMESTAMP,
-                org.apache.wss4j.dom.validate.TimestampValidator.class
+                new org.apache.wss4j.dom.validate.TimestampValidator()
             );
             tmp.put(
                 WSConstants.USERNAME_TOKEN,
-                org.apache.wss4j.dom.validate.UsernameTokenValidator.class
+                new org.apache.wss4j.dom.validate.UsernameTokenValidator()
             );
         } catch (final Exception ex) {
             LOG.debug(ex.getMessage(), ex);
@@ -34,6 +34,7 @@ import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.callback.CallbackLookup;
 import org.apache.wss4j.dom.callback.DOMCallbackLookup;
+import org.apache.wss4j.dom.callback.ElementIdIndex;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.apache.wss4j.dom.processor.Processor;
@@ -307,7 +308,12 @@ public class WSSecurityEngine {
         WSDocInfo wsDocInfo = new WSDocInfo(securityHeader.getOwnerDocument());
         CallbackLookup callbackLookupToUse = callbackLookup;
         if (callbackLookupToUse == null) {
-            callbackLookupToUse = new DOMCallbackLookup(securityHeader.getOwnerDocument());
+            ElementIdIndex idIndex = null;
+            if (requestData.isEnableIdIndex()) {
+                idIndex = new ElementIdIndex(securityHeader.getOwnerDocument());
+                wsDocInfo.setIdIndex(idIndex);
+            }
+            callbackLookupToUse = new DOMCallbackLookup(securityHeader.getOwnerDocument(), idIndex);
         }
         wsDocInfo.setCallbackLookup(callbackLookupToUse);
         wsDocInfo.setCrypto(requestData.getSigVerCrypto());
@@ -26,6 +26,7 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 import javax.security.auth.callback.CallbackHandler;
@@ -36,7 +37,10 @@ import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.PasswordCallbackCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
@@ -75,6 +79,9 @@ public class RequestData {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private EncryptedKeyCache encryptedKeyCache;
+    private SamlAssertionCache samlAssertionCache;
+    private PasswordCallbackCache passwordCallbackCache;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
     private final List<BSPRule> ignoredBSPRules = new LinkedList<>();
@@ -196,6 +203,11 @@ public class RequestData {
     private boolean validateSamlSubjectConfirmation = true;
 
     private boolean expandXopInclude;
+    private boolean enableIdIndex;
+    private boolean parallelReferenceValidation;
+    private Executor referenceValidationExecutor;
+    private boolean parallelDecryption;
+    private Executor decryptionExecutor;
 
     public Object getMsgContext() {
         return msgContext;
@@ -446,6 +458,48 @@ public class RequestData {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the cache of the secret keys unwrapped from EncryptedKey elements
+     */
+    public void setEncryptedKeyCache(EncryptedKeyCache encryptedKeyCache) {
+        this.encryptedKeyCache = encryptedKeyCache;
+    }
+
+    /**
+     * Get the cache of the secret keys unwrapped from EncryptedKey elements
+     */
+    public EncryptedKeyCache getEncryptedKeyCache() {
+        return encryptedKeyCache;
+    }
+
+    /**
+     * Set the cache of the signed SAML Assertions that have been validated
+     */
+    public void setSamlAssertionCache(SamlAssertionCache samlAssertionCache) {
+        this.samlAssertionCache = samlAssertionCache;
+    }
+
+    /**
+     * Get the cache of the signed SAML Assertions that have been validated
+     */
+    public SamlAssertionCache getSamlAssertionCache() {
+        return samlAssertionCache;
+    }
+
+    /**
+     * Set the cache of the passwords supplied by the CallbackHandler to validate UsernameTokens
+     */
+    public void setPasswordCallbackCache(PasswordCallbackCache passwordCallbackCache) {
+        this.passwordCallbackCache = passwordCallbackCache;
+    }
+
+    /**
+     * Get the cache of the passwords supplied by the CallbackHandler to validate UsernameTokens
+     */
+    public PasswordCallbackCache getPasswordCallbackCache() {
+        return passwordCallbackCache;
+    }
+
     /**
      * Set the Signature Subject Cert Constraints
      */
@@ -609,6 +663,66 @@ public class RequestData {
         this.requireTimestampExpires = requireTimestampExpires;
     }
 
+    public boolean isEnableIdIndex() {
+        return enableIdIndex;
+    }
+
+    /**
+     * Whether to index the elements of the message by their Id, instead of searching the message
+     * for each reference. The default is false.
+     */
+    public void setEnableIdIndex(boolean enableIdIndex) {
+        this.enableIdIndex = enableIdIndex;
+    }
+
+    public boolean isParallelReferenceValidation() {
+        return parallelReferenceValidation;
+    }
+
+    /**
+     * Whether to canonicalize and digest the References of a Signature concurrently, before the
+     * SignatureValue is checked. The default is false.
+     */
+    public void setParallelReferenceValidation(boolean parallelReferenceValidation) {
+        this.parallelReferenceValidation = parallelReferenceValidation;
+    }
+
+    public Executor getReferenceValidationExecutor() {
+        return referenceValidationExecutor;
+    }
+
+    /**
+     * Set the Executor to validate the References of a Signature on, if parallel Reference validation
+     * is enabled. The default (null) is the common ForkJoinPool.
+     */
+    public void setReferenceValidationExecutor(Executor referenceValidationExecutor) {
+        this.referenceValidationExecutor = referenceValidationExecutor;
+    }
+
+    public boolean isParallelDecryption() {
+        return parallelDecryption;
+    }
+
+    /**
+     * Whether to decrypt the EncryptedData elements referenced by a ReferenceList concurrently.
+     * The default is false.
+     */
+    public void setParallelDecryption(boolean parallelDecryption) {
+        this.parallelDecryption = parallelDecryption;
+    }
+
+    public Executor getDecryptionExecutor() {
+        return decryptionExecutor;
+    }
+
+    /**
+     * Set the Executor to decrypt EncryptedData elements on, if parallel decryption is enabled.
+     * The default (null) is the common ForkJoinPool.
+     */
+    public void setDecryptionExecutor(Executor decryptionExecutor) {
+        this.decryptionExecutor = decryptionExecutor;
+    }
+
     public boolean isValidateSamlSubjectConfirmation() {
         return validateSamlSubjectConfirmation;
     }
@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -44,6 +45,10 @@ import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.SignatureEncryptionActionToken;
 import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.MappedFileReplayCacheFactory;
+import org.apache.wss4j.common.cache.PasswordCallbackCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
@@ -64,6 +69,10 @@ import org.w3c.dom.Document;
 public abstract class WSHandler {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(WSHandler.class);
+
+    // Holds a single reference to each persistent replay cache for the lifetime of the JVM
+    private static final MappedFileReplayCacheFactory REPLAY_CACHE_FACTORY = new MappedFileReplayCacheFactory();
+
     protected Map<String, Crypto> cryptos = new ConcurrentHashMap<>();
 
     /**
@@ -123,6 +132,15 @@ public abstract class WSHandler {
             CallbackHandler passwordCallbackHandler = getPasswordCallbackHandler(reqData);
             reqData.setCallbackHandler(passwordCallbackHandler);
         }
+        if (reqData.getPasswordCallbackCache() == null) {
+            Object o = getOption(WSHandlerConstants.PASSWORD_CALLBACK_CACHE_INSTANCE);
+            if (o == null) {
+                o = getProperty(mc, WSHandlerConstants.PASSWORD_CALLBACK_CACHE_INSTANCE);
+            }
+            if (o instanceof PasswordCallbackCache) {
+                reqData.setPasswordCallbackCache((PasswordCallbackCache) o);
+            }
+        }
 
         if (!reqData.isStoreBytesInAttachment()) {
             boolean storeBytesInAttachment =
@@ -345,6 +363,26 @@ public abstract class WSHandler {
             reqData.setCallbackHandler(passwordCallbackHandler);
         }
 
+        // Persistent replay caches are only used if no cache instance is configured
+        String replayCacheDirectory = getString(WSHandlerConstants.REPLAY_CACHE_DIRECTORY, mc);
+        if (replayCacheDirectory != null) {
+            if (reqData.getNonceReplayCache() == null) {
+                reqData.setNonceReplayCache(
+                    REPLAY_CACHE_FACTORY.newReplayCache("wss4j.nonce.cache", replayCacheDirectory)
+                );
+            }
+            if (reqData.getTimestampReplayCache() == null) {
+                reqData.setTimestampReplayCache(
+                    REPLAY_CACHE_FACTORY.newReplayCache("wss4j.timestamp.cache", replayCacheDirectory)
+                );
+            }
+            if (reqData.getSamlOneTimeUseReplayCache() == null) {
+                reqData.setSamlOneTimeUseReplayCache(
+                    REPLAY_CACHE_FACTORY.newReplayCache("wss4j.saml.one.time.use.cache", replayCacheDirectory)
+                );
+            }
+        }
+
         if (actions.contains(WSConstants.SIGN) || actions.contains(WSConstants.ST_SIGNED)
             || actions.contains(WSConstants.ST_UNSIGNED)) {
             decodeSignatureParameter2(reqData);
@@ -361,6 +399,9 @@ public abstract class WSHandler {
         reqData.setRequireTimestampExpires(
             decodeBooleanConfigValue(mc, WSHandlerConstants.REQUIRE_TIMESTAMP_EXPIRES, false)
         );
+        reqData.setEnableIdIndex(
+            decodeBooleanConfigValue(mc, WSHandlerConstants.ENABLE_ID_INDEX, false)
+        );
     }
 
     protected boolean checkReceiverResults(
@@ -1368,6 +1409,32 @@ public abstract class WSHandler {
             );
         }
         reqData.setExpandXopInclude(expandXOP);
+
+        reqData.setParallelReferenceValidation(
+            decodeBooleanConfigValue(
+                reqData.getMsgContext(), WSHandlerConstants.PARALLEL_REFERENCE_VALIDATION, false
+            )
+        );
+        if (reqData.isParallelReferenceValidation() && reqData.getReferenceValidationExecutor() == null) {
+            String executorKey = WSHandlerConstants.REFERENCE_VALIDATION_EXECUTOR_INSTANCE;
+            Object o = getOption(executorKey);
+            if (o == null) {
+                o = getProperty(reqData.getMsgContext(), executorKey);
+            }
+            if (o instanceof Executor) {
+                reqData.setReferenceValidationExecutor((Executor) o);
+            }
+        }
+
+        if (reqData.getSamlAssertionCache() == null) {
+            Object o = getOption(WSHandlerConstants.SAML_ASSERTION_CACHE_INSTANCE);
+            if (o == null) {
+                o = getProperty(reqData.getMsgContext(), WSHandlerConstants.SAML_ASSERTION_CACHE_INSTANCE);
+            }
+            if (o instanceof SamlAssertionCache) {
+                reqData.setSamlAssertionCache((SamlAssertionCache) o);
+            }
+        }
     }
 
     private Collection<Pattern> getCertConstraints(String certConstraints, String separator) throws WSSecurityException {
@@ -1405,6 +1472,29 @@ public abstract class WSHandler {
                 false
             );
         reqData.setAllowRSA15KeyTransportAlgorithm(allowRsa15);
+
+        reqData.setParallelDecryption(
+            decodeBooleanConfigValue(reqData.getMsgContext(), WSHandlerConstants.PARALLEL_DECRYPTION, false)
+        );
+        if (reqData.isParallelDecryption() && reqData.getDecryptionExecutor() == null) {
+            Object o = getOption(WSHandlerConstants.DECRYPTION_EXECUTOR_INSTANCE);
+            if (o == null) {
+                o = getProperty(reqData.getMsgContext(), WSHandlerConstants.DECRYPTION_EXECUTOR_INSTANCE);
+            }
+            if (o instanceof Executor) {
+                reqData.setDecryptionExecutor((Executor) o);
+            }
+        }
+
+        if (reqData.getEncryptedKeyCache() == null) {
+            Object o = getOption(WSHandlerConstants.ENCRYPTED_KEY_CACHE_INSTANCE);
+            if (o == null) {
+                o = getProperty(reqData.getMsgContext(), WSHandlerConstants.ENCRYPTED_KEY_CACHE_INSTANCE);
+            }
+            if (o instanceof EncryptedKeyCache) {
+                reqData.setEncryptedKeyCache((EncryptedKeyCache) o);
+            }
+        }
     }
 
     /**
@@ -25,6 +25,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -68,9 +71,17 @@ import org.w3c.dom.NodeList;
 
 /**
  * A class to encrypt references.
+ *
+ * If an Executor is set, the elements to encrypt are serialized and encrypted concurrently on it,
+ * unless they are expanded from xop:Include elements, stored in attachments or a custom Serializer
+ * is set. The EncryptedData elements are still created and inserted into the Document on the
+ * calling thread, in the order of the references.
  */
 public class Encryptor {
 
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(Encryptor.class);
+
     private Document doc;
     private WSSecHeader securityHeader;
     private WsuIdAllocator idAllocator;
@@ -80,6 +91,8 @@ public class Encryptor {
     private Serializer encryptionSerializer;
     private boolean expandXopInclude;
     private WSDocInfo wsDocInfo;
+    private Executor executor;
+    private final List<EncryptedPart> pendingParts = new ArrayList<>();
 
     public List<String> doEncryption(
         KeyInfo keyInfo,
@@ -119,6 +132,11 @@ public class Encryptor {
             }
             List<Element> elementsToEncrypt =
                 WSSecurityUtil.findElements(encPart, callbackLookup, doc);
+            if (overlapsPendingPart(elementsToEncrypt)) {
+                // Look up the elements again, once the pending elements are encrypted
+                encryptPendingParts();
+                elementsToEncrypt = WSSecurityUtil.findElements(encPart, callbackLookup, doc);
+            }
             if (elementsToEncrypt == null || elementsToEncrypt.isEmpty()) {
                 if (!encPart.isRequired()) {
                     continue;
@@ -195,6 +213,17 @@ public class Encryptor {
                         );
                     }
                 }
+            } else if (executor != null && encryptionSerializer == null) {
+                for (Element elementToEncrypt : elementsToEncrypt) {
+                    if (overlapsPendingPart(elementToEncrypt)) {
+                        encryptPendingParts();
+                    }
+                    String id =
+                        addEncryptedPart(elementToEncrypt, encPart.getEncModifier(), encryptionAlgorithm,
+                                         secretKey, keyInfo);
+                    encPart.setEncId(id);
+                    encDataRef.add("#" + id);
+                }
             } else {
                 for (Element elementToEncrypt : elementsToEncrypt) {
                     String id =
@@ -204,6 +233,7 @@ public class Encryptor {
                 }
             }
         }
+        encryptPendingParts();
 
         if (attachmentEncryptionPart != null) {
             encryptAttachment(keyInfo, secretKey, encryptionAlgorithm, attachmentEncryptionPart, encDataRef,
@@ -475,6 +505,160 @@ public class Encryptor {
         }
     }
 
+    /**
+     * Set up the encryption of an element on the calling thread. The element is serialized and
+     * encrypted concurrently with the other pending elements, see encryptPendingParts.
+     */
+    private String addEncryptedPart(
+        Element elementToEncrypt,
+        String modifier,
+        String encryptionAlgorithm,
+        SecretKey secretKey,
+        KeyInfo keyInfo
+    ) throws WSSecurityException {
+
+        boolean content = "Content".equals(modifier);
+        String xencEncryptedDataId = idAllocator.createId("ED-", elementToEncrypt);
+        try {
+            if ("Header".equals(modifier)) {
+                String soapNamespace = WSSecurityUtil.getSOAPNamespace(doc.getDocumentElement());
+                if (elementToEncrypt.getParentNode().getNamespaceURI().equals(soapNamespace)
+                    && WSConstants.ELEM_HEADER.equals(elementToEncrypt.getParentNode().getLocalName())) {
+                    createEncryptedHeaderElement(securityHeader, elementToEncrypt, idAllocator);
+                }
+            }
+
+            XMLCipher xmlCipher = XMLCipher.getInstance(encryptionAlgorithm);
+            xmlCipher.init(XMLCipher.ENCRYPT_MODE, secretKey);
+            EncryptedData encData = xmlCipher.getEncryptedData();
+            encData.setId(xencEncryptedDataId);
+            encData.setKeyInfo(keyInfo);
+            pendingParts.add(new EncryptedPart(elementToEncrypt, content, xmlCipher));
+            return xencEncryptedDataId;
+        } catch (Exception ex) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ex
+            );
+        }
+    }
+
+    private boolean overlapsPendingPart(List<Element> elements) {
+        if (elements != null) {
+            for (Element element : elements) {
+                if (overlapsPendingPart(element)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean overlapsPendingPart(Element element) {
+        for (EncryptedPart part : pendingParts) {
+            if (isAncestorOrSelf(part.element, element) || isAncestorOrSelf(element, part.element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAncestorOrSelf(Node ancestor, Node node) {
+        for (Node current = node; current != null; current = current.getParentNode()) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serialize and encrypt the pending elements concurrently, and then replace them with the
+     * EncryptedData elements on the calling thread, in the order in which they were added.
+     */
+    private void encryptPendingParts() throws WSSecurityException {
+        List<EncryptedPart> parts = new ArrayList<>(pendingParts);
+        pendingParts.clear();
+
+        if (parts.size() > 1) {
+            if (wsDocInfo == null) {
+                wsDocInfo = new WSDocInfo(doc);
+            }
+            wsDocInfo.expandDocument();
+            for (EncryptedPart part : parts) {
+                if (part.content) {
+                    // The child NodeList is cached by the DOM implementation on first access
+                    part.element.getChildNodes().getLength();
+                }
+            }
+            List<CompletableFuture<Void>> futures = new ArrayList<>(parts.size());
+            for (EncryptedPart part : parts) {
+                try {
+                    futures.add(CompletableFuture.runAsync(part::encryptData, executor));
+                } catch (RejectedExecutionException ex) {
+                    LOG.debug("Can't encrypt the elements concurrently: {}", ex.getMessage());
+                    // They are encrypted on the calling thread instead
+                    break;
+                }
+            }
+            // Wait for all of the elements to be encrypted, before the Document is modified
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+
+        for (EncryptedPart part : parts) {
+            part.replaceElement();
+        }
+    }
+
+    private final class EncryptedPart {
+        private final Element element;
+        private final boolean content;
+        private final XMLCipher xmlCipher;
+
+        private EncryptedData encryptedData;
+        private Exception exception;
+
+        EncryptedPart(Element element, boolean content, XMLCipher xmlCipher) {
+            this.element = element;
+            this.content = content;
+            this.xmlCipher = xmlCipher;
+        }
+
+        /**
+         * Serialize and encrypt the element. This only reads the Document.
+         */
+        void encryptData() {
+            try {
+                encryptedData = xmlCipher.encryptData(doc, element, content);
+            } catch (Exception ex) {
+                exception = ex;
+            }
+        }
+
+        /**
+         * Replace the element (or its content) with the EncryptedData element, the same way as XMLCipher does
+         */
+        void replaceElement() throws WSSecurityException {
+            if (encryptedData == null && exception == null) {
+                encryptData();
+            }
+            if (exception != null) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILED_ENCRYPTION, exception
+                );
+            }
+
+            Element encryptedElement = xmlCipher.martial(doc, encryptedData);
+            if (content) {
+                while (element.hasChildNodes()) {
+                    element.removeChild(element.getFirstChild());
+                }
+                element.appendChild(encryptedElement);
+            } else {
+                element.getParentNode().replaceChild(encryptedElement, element);
+            }
+        }
+    }
+
     private static void createEncryptedHeaderElement(
         WSSecHeader securityHeader,
         Element elementToEncrypt,
@@ -594,4 +778,12 @@ public class Encryptor {
         this.wsDocInfo = wsDocInfo;
     }
 
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
 }
@@ -34,6 +34,7 @@ import javax.security.auth.callback.CallbackHandler;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * This is the base class for WS Security messages. It provides common functions
@@ -55,6 +56,7 @@ public class WSSecBase {
     private final WSSecHeader securityHeader;
     private final Document doc;
     private WSDocInfo wsDocInfo;
+    private Executor partExecutor;
 
     public WSSecBase(WSSecHeader securityHeader) {
         this.securityHeader = securityHeader;
@@ -239,6 +241,23 @@ public class WSSecBase {
         this.wsDocInfo = wsDocInfo;
     }
 
+    public Executor getPartExecutor() {
+        return partExecutor;
+    }
+
+    /**
+     * Set an Executor on which the independent parts of the message are processed concurrently,
+     * i.e. the elements to encrypt are serialized and encrypted, or the digests of the references
+     * to sign are computed. The Executor can be shared by all of the messages that are secured,
+     * e.g. when sending a batch of messages. The default is null, i.e. the parts are processed
+     * one after another on the calling thread.
+     *
+     * @param partExecutor the Executor to process the parts of the message on
+     */
+    public void setPartExecutor(Executor partExecutor) {
+        this.partExecutor = partExecutor;
+    }
+
     public void clean() {
         user = null;
         password = null;
@@ -141,6 +141,7 @@ public class WSSecDKEncrypt extends WSSecDerivedKeyBase {
         encryptor.setStoreBytesInAttachment(storeBytesInAttachment);
         encryptor.setEncryptionSerializer(encryptionSerializer);
         encryptor.setWsDocInfo(getWsDocInfo());
+        encryptor.setExecutor(getPartExecutor());
         List<String> encDataRefs =
             encryptor.doEncryption(keyInfo, key, symEncAlgo, references, attachmentEncryptedDataElements);
 
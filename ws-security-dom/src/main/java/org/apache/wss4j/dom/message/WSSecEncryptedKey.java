@@ -22,7 +22,6 @@ package org.apache.wss4j.dom.message;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
-import java.security.NoSuchProviderException;
 import java.security.Provider;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
@@ -51,6 +50,7 @@ import org.apache.wss4j.common.token.SecurityTokenReference;
 import org.apache.wss4j.common.token.X509Security;
 import org.apache.wss4j.common.util.KeyUtils;
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.stax.impl.util.IDGenerator;
@@ -448,20 +448,8 @@ public class WSSecEncryptedKey extends WSSecBase {
                                                       new Object[] {keyIdentifierType});
                     }
                     try {
-                        XMLSignatureFactory signatureFactory;
-                        if (provider == null) {
-                            // Try to install the Santuario Provider - fall back to the JDK provider if this does
-                            // not work
-                            try {
-                                signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
-                            } catch (NoSuchProviderException ex) {
-                                signatureFactory = XMLSignatureFactory.getInstance("DOM");
-                            }
-                        } else {
-                            signatureFactory = XMLSignatureFactory.getInstance("DOM", provider);
-                        }
-
-                        KeyInfoFactory keyInfoFactory = signatureFactory.getKeyInfoFactory();
+                        XMLSignatureFactory signatureFactory = SignatureUtils.getXMLSignatureFactory(provider);
+                        KeyInfoFactory keyInfoFactory = SignatureUtils.getKeyInfoFactory(signatureFactory);
                         KeyValue keyValue = keyInfoFactory.newKeyValue((PublicKey)key);
                         String keyInfoUri = getIdAllocator().createSecureId("KI-", null);
                         KeyInfo keyInfo =
@@ -19,7 +19,6 @@
 
 package org.apache.wss4j.dom.message;
 
-import java.security.NoSuchProviderException;
 import java.security.Provider;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
@@ -63,6 +62,7 @@ import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.message.token.KerberosSecurity;
 import org.apache.wss4j.dom.transform.STRTransform;
+import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -127,17 +127,7 @@ public class WSSecSignature extends WSSecSignatureBase {
     }
 
     private void init(Provider provider) {
-        if (provider == null) {
-            // Try to install the Santuario Provider - fall back to the JDK provider if this does
-            // not work
-            try {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
-            } catch (NoSuchProviderException ex) {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM");
-            }
-        } else {
-            signatureFactory = XMLSignatureFactory.getInstance("DOM", provider);
-        }
+        signatureFactory = SignatureUtils.getXMLSignatureFactory(provider);
     }
 
     /**
@@ -325,7 +315,7 @@ public class WSSecSignature extends WSSecSignatureBase {
                 java.security.PublicKey publicKey = certs[0].getPublicKey();
 
                 try {
-                    KeyInfoFactory keyInfoFactory = signatureFactory.getKeyInfoFactory();
+                    KeyInfoFactory keyInfoFactory = SignatureUtils.getKeyInfoFactory(signatureFactory);
                     KeyValue keyValue = keyInfoFactory.newKeyValue(publicKey);
                     keyInfo =
                         keyInfoFactory.newKeyInfo(Collections.singletonList(keyValue), keyInfoUri);
@@ -361,7 +351,7 @@ public class WSSecSignature extends WSSecSignatureBase {
             }
         }
 
-        KeyInfoFactory keyInfoFactory = signatureFactory.getKeyInfoFactory();
+        KeyInfoFactory keyInfoFactory = SignatureUtils.getKeyInfoFactory(signatureFactory);
         keyInfo = keyInfoFactory.newKeyInfo(kiChildren, keyInfoUri);
     }
 
@@ -570,7 +560,9 @@ public class WSSecSignature extends WSSecSignatureBase {
             SignatureMethod signatureMethod =
                 signatureFactory.newSignatureMethod(sigAlgo, null);
             SignedInfo signedInfo =
-                signatureFactory.newSignedInfo(c14nMethod, signatureMethod, referenceList);
+                signatureFactory.newSignedInfo(
+                    c14nMethod, signatureMethod, digestReferences(referenceList, getWsDocInfo(), signatureFactory)
+                );
 
             sig = signatureFactory.newXMLSignature(
                     signedInfo,
@@ -20,10 +20,14 @@
 package org.apache.wss4j.dom.message;
 
 import java.security.InvalidAlgorithmParameterException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.security.auth.callback.Callback;
 import javax.xml.crypto.XMLStructure;
@@ -40,6 +44,7 @@ import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.wss4j.common.util.DigestingOutputStream;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
@@ -48,8 +53,11 @@ import org.apache.wss4j.dom.transform.AttachmentTransformParameterSpec;
 import org.apache.wss4j.dom.transform.STRTransform;
 import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.c14n.Canonicalizer;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 /**
  * This is the base class for WS Security messages that are used for signature generation or
@@ -231,6 +239,142 @@ public class WSSecSignatureBase extends WSSecBase {
         return referenceList;
     }
 
+    /**
+     * This method computes the digests of the references to sign concurrently, if an Executor is set
+     * (see setPartExecutor). It must be called just before the Signature is computed, once the elements
+     * to sign won't change anymore. Only the references to an element of the document that are
+     * transformed via exclusive canonicalization are digested concurrently, all other references are
+     * digested as usual when the Signature is computed.
+     *
+     * @param referenceList The list of references to sign
+     * @param wsDocInfo The WSDocInfo object that stores the elements to sign
+     * @param signatureFactory The XMLSignature object
+     * @return the list of references to sign, where the references digested concurrently are replaced
+     * by a reference with the same URI, DigestMethod and Transforms and the computed DigestValue
+     * @throws WSSecurityException
+     */
+    protected List<javax.xml.crypto.dsig.Reference> digestReferences(
+        List<javax.xml.crypto.dsig.Reference> referenceList,
+        WSDocInfo wsDocInfo,
+        XMLSignatureFactory signatureFactory
+    ) throws WSSecurityException {
+        Executor executor = getPartExecutor();
+        if (executor == null || referenceList == null || referenceList.size() < 2) {
+            return referenceList;
+        }
+
+        // The Signature element is inserted into the security header before the references are digested
+        Element securityHeaderElement = getSecurityHeader().getSecurityHeaderElement();
+        List<ReferenceDigest> digests = new ArrayList<>();
+        for (javax.xml.crypto.dsig.Reference reference : referenceList) {
+            Element element = getElementToDigest(reference, wsDocInfo);
+            if (element != null && !isAncestorOrSelf(element, securityHeaderElement)) {
+                digests.add(new ReferenceDigest(reference, element));
+            }
+        }
+        if (digests.size() < 2) {
+            return referenceList;
+        }
+
+        wsDocInfo.expandDocument();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(digests.size());
+        for (ReferenceDigest digest : digests) {
+            try {
+                futures.add(CompletableFuture.runAsync(digest::computeDigest, executor));
+            } catch (RejectedExecutionException ex) {
+                LOG.debug("Can't digest the references concurrently: {}", ex.getMessage());
+                // The remaining references are digested when the Signature is computed
+                break;
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        List<javax.xml.crypto.dsig.Reference> digestedReferenceList = new ArrayList<>(referenceList);
+        for (ReferenceDigest digest : digests) {
+            if (digest.digestValue != null) {
+                javax.xml.crypto.dsig.Reference reference = digest.reference;
+                javax.xml.crypto.dsig.Reference digestedReference =
+                    signatureFactory.newReference(
+                        reference.getURI(),
+                        reference.getDigestMethod(),
+                        reference.getTransforms(),
+                        reference.getType(),
+                        reference.getId(),
+                        digest.digestValue
+                    );
+                digestedReferenceList.set(referenceList.indexOf(reference), digestedReference);
+            }
+        }
+        return digestedReferenceList;
+    }
+
+    private static Element getElementToDigest(javax.xml.crypto.dsig.Reference reference, WSDocInfo wsDocInfo) {
+        String uri = reference.getURI();
+        if (reference.getDigestValue() != null || uri == null || !uri.startsWith("#")
+            || uri.startsWith("#xpointer(") || reference.getTransforms().size() != 1) {
+            return null;
+        }
+        Transform transform = (Transform)reference.getTransforms().get(0);
+        if (!WSConstants.C14N_EXCL_OMIT_COMMENTS.equals(transform.getAlgorithm())) {
+            return null;
+        }
+        return wsDocInfo.getTokenElement(uri);
+    }
+
+    private static boolean isAncestorOrSelf(Node ancestor, Node node) {
+        for (Node current = node; current != null; current = current.getParentNode()) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class ReferenceDigest {
+        private final javax.xml.crypto.dsig.Reference reference;
+        private final Element element;
+        private byte[] digestValue;
+
+        ReferenceDigest(javax.xml.crypto.dsig.Reference reference, Element element) {
+            this.reference = reference;
+            this.element = element;
+        }
+
+        /**
+         * Canonicalize the element the same way as the exclusive canonicalization Transform does, and
+         * digest the result. This only reads the Document.
+         */
+        void computeDigest() {
+            try {
+                Transform transform = (Transform)reference.getTransforms().get(0);
+                String inclusiveNamespaces = null;
+                if (transform.getParameterSpec() instanceof ExcC14NParameterSpec) {
+                    List<?> prefixes = ((ExcC14NParameterSpec)transform.getParameterSpec()).getPrefixList();
+                    if (!prefixes.isEmpty()) {
+                        StringBuilder prefixList = new StringBuilder();
+                        for (Object prefix : prefixes) {
+                            if (prefixList.length() > 0) {
+                                prefixList.append(' ');
+                            }
+                            prefixList.append(prefix);
+                        }
+                        inclusiveNamespaces = prefixList.toString();
+                    }
+                }
+
+                MessageDigest messageDigest =
+                    MessageDigest.getInstance(
+                        JCEMapper.translateURItoJCEID(reference.getDigestMethod().getAlgorithm())
+                    );
+                Canonicalizer canon = Canonicalizer.getInstance(WSConstants.C14N_EXCL_OMIT_COMMENTS);
+                canon.canonicalizeSubtree(element, inclusiveNamespaces, new DigestingOutputStream(messageDigest));
+                digestValue = messageDigest.digest();
+            } catch (Exception ex) {
+                LOG.debug("Error digesting reference {}: {}", reference.getURI(), ex.getMessage());
+            }
+        }
+    }
+
     private void cloneElement(Element element) throws WSSecurityException {
         if (expandXopInclude) {
             // Look for xop:Include Nodes
@@ -161,6 +161,8 @@ public class EncryptedDataProcessor implements Processor {
         WSDataRef dataRef = EncryptionUtils.decryptEncryptedData(
                 elem.getOwnerDocument(), encryptedDataId, elem, key, symEncAlgo,
                 data.getAttachmentCallbackHandler(), data.getEncryptionSerializer());
+        // Index the Ids of the decrypted element
+        data.getWsDocInfo().addToIdIndex(dataRef.getProtectedElement());
 
         WSSecurityEngineResult result =
                 new WSSecurityEngineResult(WSConstants.ENCR, Collections.singletonList(dataRef));
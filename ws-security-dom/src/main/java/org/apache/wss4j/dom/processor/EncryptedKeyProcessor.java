@@ -19,17 +19,14 @@
 
 package org.apache.wss4j.dom.processor;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.Provider;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.security.spec.MGF1ParameterSpec;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 
@@ -45,9 +42,11 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.crypto.X509CertificateCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.token.DOMX509IssuerSerial;
 import org.apache.wss4j.common.token.SecurityTokenReference;
@@ -63,6 +62,7 @@ import org.apache.wss4j.dom.str.STRParser;
 import org.apache.wss4j.dom.str.STRParserParameters;
 import org.apache.wss4j.dom.str.STRParserResult;
 import org.apache.wss4j.dom.util.EncryptionUtils;
+import org.apache.wss4j.dom.util.ParallelDecryptor;
 import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.wss4j.dom.util.X509Util;
@@ -164,18 +164,7 @@ public class EncryptedKeyProcessor implements Processor {
             } else {
                 certs = getCertificatesFromX509Data(keyInfoChildElement, data);
                 if (certs == null) {
-                    XMLSignatureFactory signatureFactory;
-                    if (provider == null) {
-                        // Try to install the Santuario Provider - fall back to the JDK provider if this does
-                        // not work
-                        try {
-                            signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
-                        } catch (NoSuchProviderException ex) {
-                            signatureFactory = XMLSignatureFactory.getInstance("DOM");
-                        }
-                    } else {
-                        signatureFactory = XMLSignatureFactory.getInstance("DOM", provider);
-                    }
+                    XMLSignatureFactory signatureFactory = SignatureUtils.getXMLSignatureFactory(provider);
 
                     publicKey = X509Util.parseKeyValue((Element)keyInfoChildElement.getParentNode(),
                                                        signatureFactory);
@@ -222,16 +211,30 @@ public class EncryptedKeyProcessor implements Processor {
         if (symmetricKeyWrap) {
             decryptedBytes = getSymmetricDecryptedBytes(data, data.getWsDocInfo(), keyInfoChildElement, refList);
         } else {
-            PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
-            decryptedBytes = getAsymmetricDecryptedBytes(data, data.getWsDocInfo(), encryptedKeyTransportMethod,
-                                                         encryptedEphemeralKey, refList,
-                                                         elem, privateKey);
+            EncryptedKeyCache encryptedKeyCache = data.getEncryptedKeyCache();
+            String keyTransport = null;
+            if (encryptedKeyCache != null) {
+                keyTransport = getKeyTransport(elem, encryptedKeyTransportMethod);
+                decryptedBytes = encryptedKeyCache.get(encryptedEphemeralKey, keyTransport, publicKey);
+            }
 
-            // Clean the private key from memory
-            try {
-                privateKey.destroy();
-            } catch (javax.security.auth.DestroyFailedException ex) {
-                LOG.debug("Error destroying private key: {}", ex.getMessage());
+            if (decryptedBytes == null) {
+                PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
+                decryptedBytes = getAsymmetricDecryptedBytes(data, encryptedKeyTransportMethod,
+                                                             encryptedEphemeralKey, elem, privateKey);
+
+                // Clean the private key from memory
+                try {
+                    privateKey.destroy();
+                } catch (javax.security.auth.DestroyFailedException ex) {
+                    LOG.debug("Error destroying private key: {}", ex.getMessage());
+                }
+
+                if (decryptedBytes == null) {
+                    decryptedBytes = getRandomKey(refList, data.getWsDocInfo());
+                } else if (encryptedKeyCache != null) {
+                    encryptedKeyCache.put(encryptedEphemeralKey, keyTransport, publicKey, decryptedBytes);
+                }
             }
         }
 
@@ -295,12 +298,14 @@ public class EncryptedKeyProcessor implements Processor {
         return X509Util.getSecretKey(keyInfoChildElement, algorithmURI, data.getCallbackHandler());
     }
 
+    /**
+     * Unwrap the secret key with the private key
+     * @return the (encoded) secret key, or null if it can't be unwrapped
+     */
     private static byte[] getAsymmetricDecryptedBytes(
         RequestData data,
-        WSDocInfo wsDocInfo,
         String encryptedKeyTransportMethod,
         byte[] encryptedEphemeralKey,
-        Element refList,
         Element encryptedKeyElement,
         PrivateKey privateKey
     ) throws WSSecurityException {
@@ -361,10 +366,25 @@ public class EncryptedKeyProcessor implements Processor {
         } catch (IllegalStateException ex) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
         } catch (Exception ex) {
-            return getRandomKey(refList, wsDocInfo);
+            return null;
         }
     }
 
+    /**
+     * Get the key transport algorithm, along with its (OAEP) parameters, to identify a cached secret key
+     */
+    private static String getKeyTransport(Element encryptedKeyElement, String encryptedKeyTransportMethod)
+        throws WSSecurityException {
+        StringBuilder keyTransport = new StringBuilder(encryptedKeyTransportMethod);
+        keyTransport.append(' ').append(EncryptionUtils.getDigestAlgorithm(encryptedKeyElement));
+        keyTransport.append(' ').append(EncryptionUtils.getMGFAlgorithm(encryptedKeyElement));
+        byte[] pSourceBytes = EncryptionUtils.getPSource(encryptedKeyElement);
+        if (pSourceBytes != null) {
+            keyTransport.append(' ').append(Base64.getEncoder().encodeToString(pSourceBytes));
+        }
+        return keyTransport.toString();
+    }
+
     private static boolean isSymmetricKeyWrap(String transportAlgorithm) {
         return XMLCipher.AES_128_KeyWrap.equals(transportAlgorithm)
             || XMLCipher.AES_192_KeyWrap.equals(transportAlgorithm)
@@ -482,16 +502,10 @@ public class EncryptedKeyProcessor implements Processor {
                         throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "invalidCertData",
                                                       new Object[] {"0"});
                     }
-                    try (InputStream in = new ByteArrayInputStream(token)) {
-                        X509Certificate cert = data.getDecCrypto().loadCertificate(in);
-                        if (cert != null) {
-                            return new X509Certificate[]{cert};
-                        }
-                    } catch (IOException e) {
-                        throw new WSSecurityException(
-                            WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "parseError"
-                        );
-                    }
+                    X509Certificate cert =
+                        X509CertificateCache.getInstance(data.getDecCrypto()).loadCertificate(token)
+                            .getX509Certificate();
+                    return new X509Certificate[]{cert};
                 }
             }
         }
@@ -526,6 +540,7 @@ public class EncryptedKeyProcessor implements Processor {
         }
 
         List<WSDataRef> dataRefs = new ArrayList<>();
+        ParallelDecryptor decryptor = data.isParallelDecryption() ? new ParallelDecryptor(data) : null;
         for (Node node = refList.getFirstChild(); node != null; node = node.getNextSibling()) {
             if (Node.ELEMENT_NODE == node.getNodeType()
                     && WSConstants.ENC_NS.equals(node.getNamespaceURI())
@@ -534,30 +549,38 @@ public class EncryptedKeyProcessor implements Processor {
                 dataRefURI = XMLUtils.getIDFromReference(dataRefURI);
 
                 WSDataRef dataRef =
-                    decryptDataRef(refList.getOwnerDocument(), dataRefURI, docInfo, decryptedBytes, data);
-                dataRefs.add(dataRef);
+                    decryptDataRef(refList.getOwnerDocument(), dataRefURI, docInfo, decryptedBytes, data, decryptor);
+                if (dataRef != null) {
+                    dataRefs.add(dataRef);
+                }
             }
         }
 
+        if (decryptor != null) {
+            dataRefs.addAll(decryptor.decrypt());
+        }
         return dataRefs;
     }
 
     /**
-     * Decrypt an EncryptedData element referenced by dataRefURI
+     * Decrypt an EncryptedData element referenced by dataRefURI. If a ParallelDecryptor is given,
+     * the element is added to it instead, and null is returned.
      */
     private WSDataRef decryptDataRef(
         Document doc,
         String dataRefURI,
         WSDocInfo docInfo,
         byte[] decryptedData,
-        RequestData data
+        RequestData data,
+        ParallelDecryptor decryptor
     ) throws WSSecurityException {
         LOG.debug("found data reference: {}", dataRefURI);
         //
         // Find the encrypted data element referenced by dataRefURI
         //
-        Element encryptedDataElement =
-            EncryptionUtils.findEncryptedDataElement(doc, docInfo, dataRefURI);
+        Element encryptedDataElement = decryptor != null
+            ? decryptor.findEncryptedDataElement(doc, dataRefURI)
+            : EncryptionUtils.findEncryptedDataElement(doc, docInfo, dataRefURI);
         if (encryptedDataElement != null && data.isRequireSignedEncryptedDataElements()) {
             List<WSSecurityEngineResult> signedResults =
                 docInfo.getResultsByTag(WSConstants.SIGN);
@@ -603,10 +626,20 @@ public class EncryptedKeyProcessor implements Processor {
             algorithmSuiteValidator.checkSymmetricEncryptionAlgorithm(symEncAlgo);
         }
 
-        return EncryptionUtils.decryptEncryptedData(
+        if (decryptor != null) {
+            decryptor.add(doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo);
+            return null;
+        }
+
+        WSDataRef dataRef = EncryptionUtils.decryptEncryptedData(
             doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
             data.getEncryptionSerializer()
         );
+        // Index the Ids of the decrypted element
+        if (data.getWsDocInfo() != null) {
+            data.getWsDocInfo().addToIdIndex(dataRef.getProtectedElement());
+        }
+        return dataRef;
     }
 
     /**
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLValidateContext;
+
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.xml.security.c14n.Canonicalizer;
+
+/**
+ * Validates (i.e. dereferences, canonicalizes and digests) the References of a Signature concurrently,
+ * before the Signature itself is validated. The XMLSignature implementation caches the validation status
+ * of each Reference, so that validating the Signature afterwards only checks the SignatureValue, and
+ * validates any Reference that was not (successfully) validated here.
+ *
+ * A DOM implementation is not thread-safe for reads while it expands nodes lazily (e.g. the deferred
+ * DOM of Xerces). So all of the nodes of the Document are expanded on the calling thread first, once per
+ * Document (see WSDocInfo#expandDocument), and only References that just read the Document are validated
+ * on the Executor:
+ *  - same-document References, with no transforms other than canonicalization and the enveloped
+ *    signature transform, are validated on the Executor.
+ *  - attachment References, which do not read the Document but call back into the attachment
+ *    CallbackHandler, are validated on the calling thread while the Executor validates the others.
+ *  - all other References (e.g. with an STR or an XPath transform, which may modify the Document) are
+ *    left to the (sequential) validation of the Signature.
+ */
+final class ParallelReferenceValidator {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ParallelReferenceValidator.class);
+
+    private static final Set<String> CONCURRENT_TRANSFORMS = new HashSet<>(Arrays.asList(
+        CanonicalizationMethod.INCLUSIVE,
+        CanonicalizationMethod.INCLUSIVE_WITH_COMMENTS,
+        CanonicalizationMethod.EXCLUSIVE,
+        CanonicalizationMethod.EXCLUSIVE_WITH_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N11_OMIT_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N11_WITH_COMMENTS,
+        Transform.ENVELOPED
+    ));
+
+    private ParallelReferenceValidator() {
+        // complete
+    }
+
+    /**
+     * Validate the References of the given Signature concurrently
+     * @param xmlSignature The Signature to validate the References of
+     * @param context The validation context
+     * @param executor The Executor to validate the References on, or null to use the common ForkJoinPool
+     * @param wsDocInfo The WSDocInfo object of the Document that the Signature belongs to
+     */
+    static void validateReferences(
+        XMLSignature xmlSignature, XMLValidateContext context, Executor executor, WSDocInfo wsDocInfo
+    ) {
+        List<Reference> concurrentReferences = new ArrayList<>();
+        List<Reference> attachmentReferences = new ArrayList<>();
+        for (Object object : xmlSignature.getSignedInfo().getReferences()) {
+            Reference reference = (Reference)object;
+            String uri = reference.getURI();
+            if (uri != null && uri.startsWith("cid:")) {
+                attachmentReferences.add(reference);
+            } else if (isConcurrent(reference)) {
+                concurrentReferences.add(reference);
+            }
+        }
+        if (concurrentReferences.isEmpty()
+            || concurrentReferences.size() + attachmentReferences.size() < 2) {
+            return;
+        }
+
+        wsDocInfo.expandDocument();
+
+        Executor referenceExecutor = executor != null ? executor : ForkJoinPool.commonPool();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(concurrentReferences.size());
+        for (Reference reference : concurrentReferences) {
+            try {
+                futures.add(CompletableFuture.runAsync(() -> validate(reference, context), referenceExecutor));
+            } catch (RejectedExecutionException ex) {
+                LOG.debug("Can't validate Reference {} concurrently: {}", reference.getURI(), ex.getMessage());
+                // It is validated with the Signature instead
+                break;
+            }
+        }
+
+        for (Reference reference : attachmentReferences) {
+            validate(reference, context);
+        }
+
+        // Wait for all of the References to be validated, before the Document is read (and possibly
+        // modified) by the validation of the Signature
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    private static boolean isConcurrent(Reference reference) {
+        String uri = reference.getURI();
+        if (uri == null || !(uri.isEmpty() || uri.startsWith("#")) || uri.startsWith("#xpointer(")) {
+            return false;
+        }
+        List<?> transforms = reference.getTransforms();
+        for (Object transform : transforms == null ? Collections.emptyList() : transforms) {
+            if (!CONCURRENT_TRANSFORMS.contains(((Transform)transform).getAlgorithm())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void validate(Reference reference, XMLValidateContext context) {
+        try {
+            reference.validate(context);
+        } catch (Exception ex) {
+            // The Reference is validated again (and the error reported) with the Signature
+            LOG.debug("Error validating Reference {}: {}", reference.getURI(), ex.getMessage());
+        }
+    }
+}
@@ -48,6 +48,7 @@ import org.apache.wss4j.dom.str.STRParserParameters;
 import org.apache.wss4j.dom.str.STRParserResult;
 import org.apache.wss4j.dom.str.SecurityTokenRefSTRParser;
 import org.apache.wss4j.dom.util.EncryptionUtils;
+import org.apache.wss4j.dom.util.ParallelDecryptor;
 import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.X509Util;
 
@@ -83,6 +84,7 @@ public class ReferenceListProcessor implements Processor {
         RequestData data
     ) throws WSSecurityException {
         List<WSDataRef> dataRefs = new ArrayList<>();
+        ParallelDecryptor decryptor = data.isParallelDecryption() ? new ParallelDecryptor(data) : null;
         for (Node node = elem.getFirstChild();
             node != null;
             node = node.getNextSibling()
@@ -96,30 +98,38 @@ public class ReferenceListProcessor implements Processor {
                 // See whether we have already processed the encrypted node
                 if (!data.getWsDocInfo().hasResult(WSConstants.ENCR, dataRefURI)) {
                     WSDataRef dataRef =
-                        decryptDataRefEmbedded(elem.getOwnerDocument(), dataRefURI, data);
-                    dataRefs.add(dataRef);
+                        decryptDataRefEmbedded(elem.getOwnerDocument(), dataRefURI, data, decryptor);
+                    if (dataRef != null) {
+                        dataRefs.add(dataRef);
+                    }
                 }
             }
         }
 
+        if (decryptor != null) {
+            dataRefs.addAll(decryptor.decrypt());
+        }
         return dataRefs;
     }
 
 
     /**
-     * Decrypt an (embedded) EncryptedData element referenced by dataRefURI.
+     * Decrypt an (embedded) EncryptedData element referenced by dataRefURI. If a ParallelDecryptor
+     * is given, the element is added to it instead, and null is returned.
      */
     private WSDataRef decryptDataRefEmbedded(
         Document doc,
         String dataRefURI,
-        RequestData data
+        RequestData data,
+        ParallelDecryptor decryptor
     ) throws WSSecurityException {
         LOG.debug("Found data reference: {}", dataRefURI);
         //
         // Find the encrypted data element referenced by dataRefURI
         //
-        Element encryptedDataElement =
-            EncryptionUtils.findEncryptedDataElement(doc, data.getWsDocInfo(), dataRefURI);
+        Element encryptedDataElement = decryptor != null
+            ? decryptor.findEncryptedDataElement(doc, dataRefURI)
+            : EncryptionUtils.findEncryptedDataElement(doc, data.getWsDocInfo(), dataRefURI);
 
         if (encryptedDataElement != null && data.isRequireSignedEncryptedDataElements()) {
             List<WSSecurityEngineResult> signedResults =
@@ -189,11 +199,21 @@ public class ReferenceListProcessor implements Processor {
             algorithmSuiteValidator.checkSymmetricEncryptionAlgorithm(symEncAlgo);
         }
 
-        return
+        if (decryptor != null) {
+            decryptor.add(doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo);
+            return null;
+        }
+
+        WSDataRef dataRef =
             EncryptionUtils.decryptEncryptedData(
                 doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
                 data.getEncryptionSerializer()
             );
+        // Index the Ids of the decrypted element
+        if (data.getWsDocInfo() != null) {
+            data.getWsDocInfo().addToIdIndex(dataRef.getProtectedElement());
+        }
+        return dataRef;
     }
 
     /**
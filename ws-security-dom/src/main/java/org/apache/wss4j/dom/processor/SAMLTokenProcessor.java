@@ -19,7 +19,6 @@
 
 package org.apache.wss4j.dom.processor;
 
-import java.security.NoSuchProviderException;
 import java.security.Provider;
 import java.security.PublicKey;
 import java.util.ArrayList;
@@ -34,6 +33,7 @@ import javax.xml.crypto.dsig.XMLValidateContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
 import javax.xml.namespace.QName;
 
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -48,6 +48,7 @@ import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.saml.WSSSAMLKeyInfoProcessor;
 import org.apache.wss4j.dom.util.EncryptionUtils;
+import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
 import org.opensaml.xmlsec.signature.KeyInfo;
@@ -57,28 +58,26 @@ import org.w3c.dom.Element;
 public class SAMLTokenProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SAMLTokenProcessor.class);
-    private XMLSignatureFactory signatureFactory;
+    /*
+     * The XMLSignatureFactory of the given provider, or null to use the shared factory of the
+     * Santuario provider, which is looked up when it is first used, as the default processors
+     * are created before the Santuario provider is installed.
+     */
+    private final XMLSignatureFactory signatureFactory;
 
     public SAMLTokenProcessor() {
-        init(null);
+        this(null);
     }
 
     public SAMLTokenProcessor(Provider provider) {
-        init(provider);
+        signatureFactory = provider == null ? null : SignatureUtils.getXMLSignatureFactory(provider);
     }
 
-    private void init(Provider provider) {
-        if (provider == null) {
-            // Try to install the Santuario Provider - fall back to the JDK provider if this does
-            // not work
-            try {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
-            } catch (NoSuchProviderException ex) {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM");
-            }
-        } else {
-            signatureFactory = XMLSignatureFactory.getInstance("DOM", provider);
+    private XMLSignatureFactory getSignatureFactory() {
+        if (signatureFactory != null) {
+            return signatureFactory;
         }
+        return SignatureUtils.getXMLSignatureFactory(null);
     }
 
     public List<WSSecurityEngineResult> handleToken(
@@ -91,10 +90,25 @@ public class SAMLTokenProcessor implements Processor {
             data.getValidator(new QName(elem.getNamespaceURI(), elem.getLocalName()));
 
         SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(elem);
-        XMLSignature xmlSignature = verifySignatureKeysAndAlgorithms(samlAssertion, data);
+
+        // See if the (signed) Assertion has been validated previously
+        SamlAssertionCache samlAssertionCache = data.getSamlAssertionCache();
+        String cacheIdentifier = null;
+        SAMLKeyInfo cachedSignatureKeyInfo = null;
+        if (samlAssertionCache != null) {
+            cacheIdentifier = samlAssertionCache.getIdentifier(samlAssertion);
+            cachedSignatureKeyInfo = samlAssertionCache.get(cacheIdentifier, data.getSigVerCrypto(), validator);
+        }
+
+        XMLSignature xmlSignature =
+            verifySignatureKeysAndAlgorithms(samlAssertion, data, cachedSignatureKeyInfo);
         List<WSDataRef> dataRefs = createDataRefs(elem, samlAssertion, xmlSignature);
 
         Credential credential = handleSAMLToken(samlAssertion, data, validator);
+        if (cacheIdentifier != null && cachedSignatureKeyInfo == null && validator != null) {
+            samlAssertionCache.put(cacheIdentifier, data.getSigVerCrypto(), validator,
+                                   samlAssertion, samlAssertion.getSignatureKeyInfo());
+        }
         samlAssertion = credential.getSamlAssertion();
         if (LOG.isDebugEnabled()) {
             LOG.debug("SAML Assertion issuer " + samlAssertion.getIssuerString());
@@ -173,7 +187,8 @@ public class SAMLTokenProcessor implements Processor {
 
     private XMLSignature verifySignatureKeysAndAlgorithms(
         SamlAssertionWrapper samlAssertion,
-        RequestData data
+        RequestData data,
+        SAMLKeyInfo cachedSignatureKeyInfo
     ) throws WSSecurityException {
         if (samlAssertion.isSigned()) {
             Signature sig = samlAssertion.getSignature();
@@ -184,10 +199,13 @@ public class SAMLTokenProcessor implements Processor {
                     new Object[] {"cannot get certificate or key"}
                 );
             }
-            SAMLKeyInfo samlKeyInfo =
-                SAMLUtil.getCredentialFromKeyInfo(
-                    keyInfo.getDOM(), new WSSSAMLKeyInfoProcessor(data), data.getSigVerCrypto()
-                );
+            SAMLKeyInfo samlKeyInfo = cachedSignatureKeyInfo;
+            if (samlKeyInfo == null) {
+                samlKeyInfo =
+                    SAMLUtil.getCredentialFromKeyInfo(
+                        keyInfo.getDOM(), new WSSSAMLKeyInfoProcessor(data), data.getSigVerCrypto()
+                    );
+            }
 
             PublicKey key = null;
             if (samlKeyInfo.getCerts() != null && samlKeyInfo.getCerts()[0] != null) {
@@ -211,7 +229,7 @@ public class SAMLTokenProcessor implements Processor {
 
             XMLSignature xmlSignature;
             try {
-                xmlSignature = signatureFactory.unmarshalXMLSignature(context);
+                xmlSignature = getSignatureFactory().unmarshalXMLSignature(context);
             } catch (MarshalException ex) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.FAILED_CHECK, ex, "invalidSAMLsecurity",
@@ -234,7 +252,12 @@ public class SAMLTokenProcessor implements Processor {
                 }
             }
 
-            samlAssertion.verifySignature(samlKeyInfo);
+            if (cachedSignatureKeyInfo == null) {
+                samlAssertion.verifySignature(samlKeyInfo);
+            } else {
+                // The signature of this (identical) Assertion has been verified previously
+                samlAssertion.setSignatureKeyInfo(samlKeyInfo);
+            }
 
             return xmlSignature;
         }
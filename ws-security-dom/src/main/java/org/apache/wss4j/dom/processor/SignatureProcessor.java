@@ -19,15 +19,14 @@
 
 package org.apache.wss4j.dom.processor;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
-import java.security.NoSuchProviderException;
 import java.security.Principal;
 import java.security.Provider;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +48,7 @@ import javax.xml.crypto.dsig.spec.HMACParameterSpec;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.ReplayCacheUtils;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.Crypto;
@@ -77,6 +77,7 @@ import org.apache.wss4j.dom.transform.AttachmentContentSignatureTransform;
 import org.apache.wss4j.dom.transform.STRTransform;
 import org.apache.wss4j.dom.transform.STRTransformUtil;
 import org.apache.wss4j.dom.util.EncryptionUtils;
+import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.wss4j.dom.util.X509Util;
 import org.apache.wss4j.dom.validate.Credential;
@@ -89,28 +90,26 @@ public class SignatureProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SignatureProcessor.class);
 
-    private XMLSignatureFactory signatureFactory;
+    /*
+     * The XMLSignatureFactory of the given provider, or null to use the shared factory of the
+     * Santuario provider, which is looked up when it is first used, as the default processors
+     * are created before the Santuario provider is installed.
+     */
+    private final XMLSignatureFactory signatureFactory;
 
     public SignatureProcessor() {
-        init(null);
+        this(null);
     }
 
     public SignatureProcessor(Provider provider) {
-        init(provider);
+        signatureFactory = provider == null ? null : SignatureUtils.getXMLSignatureFactory(provider);
     }
 
-    private void init(Provider provider) {
-        if (provider == null) {
-            // Try to install the Santuario Provider - fall back to the JDK provider if this does
-            // not work
-            try {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
-            } catch (NoSuchProviderException ex) {
-                signatureFactory = XMLSignatureFactory.getInstance("DOM");
-            }
-        } else {
-            signatureFactory = XMLSignatureFactory.getInstance("DOM", provider);
+    private XMLSignatureFactory getSignatureFactory() {
+        if (signatureFactory != null) {
+            return signatureFactory;
         }
+        return SignatureUtils.getXMLSignatureFactory(null);
     }
 
     public List<WSSecurityEngineResult> handleToken(
@@ -155,7 +154,7 @@ public class SignatureProcessor implements Processor {
                 && WSConstants.WSSE_NS.equals(child.getNamespaceURI()))) {
                 data.getBSPEnforcer().handleBSPRule(BSPRule.R5417);
 
-                publicKey = X509Util.parseKeyValue(keyInfoElement, signatureFactory);
+                publicKey = X509Util.parseKeyValue(keyInfoElement, getSignatureFactory());
                 if (validator != null) {
                     credential.setPublicKey(publicKey);
                     principal = new PublicKeyPrincipalImpl(publicKey);
@@ -355,7 +354,7 @@ public class SignatureProcessor implements Processor {
                             data.getAttachmentCallbackHandler());
 
         try {
-            XMLSignature xmlSignature = signatureFactory.unmarshalXMLSignature(context);
+            XMLSignature xmlSignature = getSignatureFactory().unmarshalXMLSignature(context);
             checkBSPCompliance(xmlSignature, data.getBSPEnforcer());
 
             // Check for compliance against the defined AlgorithmSuite
@@ -370,6 +369,11 @@ public class SignatureProcessor implements Processor {
             testMessageReplay(elem, xmlSignature.getSignatureValue().getValue(), key, data, wsDocInfo);
 
             setElementsOnContext(xmlSignature, (DOMValidateContext)context, data, wsDocInfo);
+            if (data.isParallelReferenceValidation()) {
+                ParallelReferenceValidator.validateReferences(
+                    xmlSignature, context, data.getReferenceValidationExecutor(), wsDocInfo
+                );
+            }
             boolean signatureOk = xmlSignature.validate(context);
             if (signatureOk) {
                 return xmlSignature;
@@ -660,23 +664,19 @@ public class SignatureProcessor implements Processor {
             return;
         }
 
-        // Test for replay attacks
-        String identifier = timeStamp.getCreatedString() + "" + Arrays.hashCode(signatureValue)
-            + "" + Arrays.hashCode(key.getEncoded());
+        // Test for replay attacks, using a fixed-width digest of the Timestamp/SignatureValue/Key combination
+        String identifier =
+            ReplayCacheUtils.createIdentifier(
+                timeStamp.getCreatedString().getBytes(StandardCharsets.UTF_8), signatureValue, key.getEncoded()
+            );
 
-        if (replayCache.contains(identifier)) {
+        // Store the Timestamp/SignatureValue/Key combination in the cache, unless it is already there
+        if (!replayCache.putIfAbsent(identifier, timeStamp.getExpires())) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.INVALID_SECURITY,
                 "invalidTimestamp",
                 new Object[] {"A replay attack has been detected"});
         }
-
-        // Store the Timestamp/SignatureValue/Key combination in the cache
-        if (timeStamp.getExpires() != null) {
-            replayCache.add(identifier, timeStamp.getExpires());
-        } else {
-            replayCache.add(identifier);
-        }
     }
 
     /**
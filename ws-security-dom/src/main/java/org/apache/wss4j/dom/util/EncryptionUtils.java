@@ -214,6 +214,23 @@ public final class EncryptionUtils {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
         }
 
+        setProtectedElement(dataRef, parent, encData, previousSibling, decryptedNode, content);
+
+        return dataRef;
+    }
+
+    /**
+     * Set the decrypted element (and its XPath) on the WSDataRef
+     * @param dataRef The WSDataRef to set the decrypted element on
+     * @param parent The parent of the EncryptedData element (or of its parent if content is true)
+     * @param encData The EncryptedData element (or its parent if content is true)
+     * @param previousSibling The previous sibling of the EncryptedData element
+     * @param decryptedNode The decrypted node, or null if it has to be found via the previous sibling
+     * @param content Whether the content of an element was encrypted
+     */
+    static void setProtectedElement(
+        WSDataRef dataRef, Node parent, Element encData, Node previousSibling, Node decryptedNode, boolean content
+    ) {
         if (parent.getLocalName().equals(WSConstants.ENCRYPTED_HEADER)
             && parent.getNamespaceURI().equals(WSConstants.WSSE11_NS)
             || parent.getLocalName().equals(WSConstants.ENCRYPED_ASSERTION_LN)
@@ -229,23 +246,22 @@ public final class EncryptionUtils {
             dataRef.setProtectedElement(encData);
             dataRef.setXpath(getXPath(encData));
         } else {
-            if (decryptedNode == null) {
+            Node node = decryptedNode;
+            if (node == null) {
                 if (previousSibling == null) {
-                    decryptedNode = parent.getFirstChild();
+                    node = parent.getFirstChild();
                 } else {
-                    decryptedNode = previousSibling.getNextSibling();
+                    node = previousSibling.getNextSibling();
                 }
             }
-            if (decryptedNode != null && Node.ELEMENT_NODE == decryptedNode.getNodeType()) {
-                dataRef.setProtectedElement((Element)decryptedNode);
+            if (node != null && Node.ELEMENT_NODE == node.getNodeType()) {
+                dataRef.setProtectedElement((Element)node);
             }
-            dataRef.setXpath(getXPath(decryptedNode));
+            dataRef.setXpath(getXPath(node));
         }
-
-        return dataRef;
     }
 
-    private static String getXOPURIFromEncryptedData(Element encData) {
+    static String getXOPURIFromEncryptedData(Element encData) {
         Element cipherValue = getCipherValueFromEncryptedData(encData);
         if (cipherValue != null) {
             return getXOPURIFromCipherValue(cipherValue);
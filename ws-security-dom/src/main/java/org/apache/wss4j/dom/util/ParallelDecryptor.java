@@ -0,0 +1,309 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.util;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.crypto.SecretKey;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.WSDataRef;
+import org.apache.wss4j.dom.WSDocInfo;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.xml.security.c14n.InvalidCanonicalizerException;
+import org.apache.xml.security.encryption.DocumentSerializer;
+import org.apache.xml.security.encryption.XMLCipher;
+import org.apache.xml.security.encryption.XMLEncryptionException;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Decrypts the EncryptedData elements referenced by a ReferenceList concurrently. The symmetric key of
+ * each EncryptedData element is known before it is decrypted, so the decryption of the CipherValue and
+ * the parsing of the plaintext of each element are independent of each other, and are run on an Executor.
+ * The decrypted nodes are then inserted into the Document on the calling thread, in the order in which
+ * the elements were added, so that the WSDataRefs are the same (and in the same order) as when the
+ * elements are decrypted one after another via EncryptionUtils.
+ *
+ * The Document is only read while the elements are decrypted concurrently, after all of its nodes were
+ * expanded (see WSDocInfo#expandDocument). Attachments, and EncryptedData elements that refer to an
+ * attachment via xop:Include, are decrypted on the calling thread, as they call back into the attachment
+ * CallbackHandler.
+ */
+public final class ParallelDecryptor {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ParallelDecryptor.class);
+
+    private final WSDocInfo wsDocInfo;
+    private final Executor executor;
+    private final RequestData data;
+    private final List<EncryptedPart> pendingParts = new ArrayList<>();
+    private final List<WSDataRef> dataRefs = new ArrayList<>();
+
+    public ParallelDecryptor(RequestData data) {
+        this.data = data;
+        wsDocInfo = data.getWsDocInfo();
+        executor = data.getDecryptionExecutor() != null ? data.getDecryptionExecutor() : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Look up the EncryptedData element referenced by dataRefURI. An element that is only revealed by
+     * the decryption of a pending element, or that is (part of) a pending element, is looked up again
+     * after the pending elements were decrypted.
+     *
+     * @param doc The document in which to find EncryptedData
+     * @param dataRefURI The URI of EncryptedData
+     * @return The EncryptedData element
+     * @throws WSSecurityException if the EncryptedData element referenced by dataRefURI is
+     * not found
+     */
+    public Element findEncryptedDataElement(Document doc, String dataRefURI) throws WSSecurityException {
+        if (!pendingParts.isEmpty()) {
+            try {
+                Element encryptedDataElement =
+                    EncryptionUtils.findEncryptedDataElement(doc, wsDocInfo, dataRefURI);
+                if (!overlapsPendingPart(encryptedDataElement)) {
+                    return encryptedDataElement;
+                }
+            } catch (WSSecurityException ex) {
+                LOG.debug("EncryptedData element {} not found, decrypting the pending elements", dataRefURI);
+            }
+            decryptPendingParts();
+        }
+        return EncryptionUtils.findEncryptedDataElement(doc, wsDocInfo, dataRefURI);
+    }
+
+    /**
+     * Add an EncryptedData element to decrypt
+     * @param doc The (document) owner of EncryptedData
+     * @param dataRefURI The URI of EncryptedData
+     * @param encData The EncryptedData element
+     * @param symmetricKey The SecretKey with which to decrypt EncryptedData
+     * @param symEncAlgo The symmetric encryption algorithm to use
+     * @throws WSSecurityException if the algorithm is not supported
+     */
+    public void add(
+        Document doc, String dataRefURI, Element encData, SecretKey symmetricKey, String symEncAlgo
+    ) throws WSSecurityException {
+        EncryptedPart part = new EncryptedPart(doc, dataRefURI, encData, symmetricKey, symEncAlgo);
+
+        String typeStr = encData.getAttributeNS(null, "Type");
+        boolean attachment = WSConstants.SWA_ATTACHMENT_ENCRYPTED_DATA_TYPE_CONTENT_ONLY.equals(typeStr)
+            || WSConstants.SWA_ATTACHMENT_ENCRYPTED_DATA_TYPE_COMPLETE.equals(typeStr);
+        if (!attachment && EncryptionUtils.getXOPURIFromEncryptedData(encData) == null
+            && encData.getParentNode() instanceof Element) {
+            try {
+                XMLCipher xmlCipher = XMLCipher.getInstance(symEncAlgo);
+                xmlCipher.setSecureValidation(true);
+                xmlCipher.init(XMLCipher.DECRYPT_MODE, symmetricKey);
+                part.xmlCipher = xmlCipher;
+            } catch (XMLEncryptionException ex) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.UNSUPPORTED_ALGORITHM, ex
+                );
+            }
+        }
+        pendingParts.add(part);
+    }
+
+    /**
+     * Decrypt the pending EncryptedData elements
+     * @return the WSDataRefs of all of the decrypted EncryptedData elements, in the order in which
+     * the elements were added
+     * @throws WSSecurityException if an element can't be decrypted
+     */
+    public List<WSDataRef> decrypt() throws WSSecurityException {
+        decryptPendingParts();
+        return dataRefs;
+    }
+
+    private boolean overlapsPendingPart(Element element) {
+        for (EncryptedPart part : pendingParts) {
+            if (isAncestorOrSelf(part.encData, element) || isAncestorOrSelf(element, part.encData)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAncestorOrSelf(Node ancestor, Node node) {
+        for (Node current = node; current != null; current = current.getParentNode()) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void decryptPendingParts() throws WSSecurityException {
+        List<EncryptedPart> parts = new ArrayList<>(pendingParts);
+        pendingParts.clear();
+
+        List<EncryptedPart> concurrentParts = new ArrayList<>();
+        for (EncryptedPart part : parts) {
+            if (part.xmlCipher != null) {
+                concurrentParts.add(part);
+            }
+        }
+        if (concurrentParts.size() > 1) {
+            wsDocInfo.expandDocument();
+            List<CompletableFuture<Void>> futures = new ArrayList<>(concurrentParts.size());
+            for (EncryptedPart part : concurrentParts) {
+                try {
+                    futures.add(CompletableFuture.runAsync(part::decryptCipherValue, executor));
+                } catch (RejectedExecutionException ex) {
+                    LOG.debug("Can't decrypt EncryptedData {} concurrently: {}", part.dataRefURI, ex.getMessage());
+                    // It is decrypted on the calling thread instead
+                    break;
+                }
+            }
+            // Wait for all of the elements to be decrypted, before the Document is modified
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        }
+
+        for (EncryptedPart part : parts) {
+            WSDataRef dataRef = part.replaceEncryptedData();
+            wsDocInfo.addToIdIndex(dataRef.getProtectedElement());
+            dataRefs.add(dataRef);
+        }
+    }
+
+    private final class EncryptedPart {
+        private final Document doc;
+        private final String dataRefURI;
+        private final Element encData;
+        private final SecretKey symmetricKey;
+        private final String symEncAlgo;
+        // Only set if the element can be decrypted concurrently
+        private XMLCipher xmlCipher;
+
+        private boolean decrypted;
+        private byte[] decryptedBytes;
+        private Document decryptedDocument;
+        private Exception exception;
+
+        EncryptedPart(Document doc, String dataRefURI, Element encData, SecretKey symmetricKey, String symEncAlgo) {
+            this.doc = doc;
+            this.dataRefURI = dataRefURI;
+            this.encData = encData;
+            this.symmetricKey = symmetricKey;
+            this.symEncAlgo = symEncAlgo;
+        }
+
+        /**
+         * Decrypt the CipherValue, and parse the plaintext in the namespace context of the parent of
+         * the EncryptedData element, unless a custom Serializer is configured. This only reads the Document.
+         */
+        void decryptCipherValue() {
+            try {
+                decryptedBytes = xmlCipher.decryptToByteArray(encData);
+                if (data.getEncryptionSerializer() == null) {
+                    byte[] fragment = ContextSerializer.wrap(decryptedBytes, encData.getParentNode());
+                    decryptedDocument =
+                        org.apache.xml.security.utils.XMLUtils.read(new ByteArrayInputStream(fragment), true);
+                }
+            } catch (Exception ex) {
+                exception = ex;
+            }
+            decrypted = true;
+        }
+
+        /**
+         * Replace the EncryptedData element with the decrypted node(s), the same way as XMLCipher does
+         */
+        WSDataRef replaceEncryptedData() throws WSSecurityException {
+            if (xmlCipher == null) {
+                return EncryptionUtils.decryptEncryptedData(
+                    doc, dataRefURI, encData, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
+                    data.getEncryptionSerializer()
+                );
+            }
+            if (!decrypted) {
+                decryptCipherValue();
+            }
+            if (exception != null) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, exception);
+            }
+
+            WSDataRef dataRef = new WSDataRef();
+            dataRef.setEncryptedElement(encData);
+            dataRef.setWsuId(dataRefURI);
+            dataRef.setAlgorithm(symEncAlgo);
+
+            boolean content = X509Util.isContent(encData);
+            dataRef.setContent(content);
+
+            Node parent = encData.getParentNode();
+            Node previousSibling = encData.getPreviousSibling();
+            try {
+                Node decryptedNode;
+                if (decryptedDocument != null) {
+                    Document ownerDocument = parent.getOwnerDocument();
+                    Element wrapper = (Element)ownerDocument.importNode(decryptedDocument.getDocumentElement(), true);
+                    DocumentFragment fragment = ownerDocument.createDocumentFragment();
+                    for (Node child = wrapper.getFirstChild(); child != null; child = wrapper.getFirstChild()) {
+                        fragment.appendChild(wrapper.removeChild(child));
+                    }
+                    decryptedNode = fragment;
+                } else {
+                    decryptedNode = data.getEncryptionSerializer().deserialize(decryptedBytes, parent);
+                }
+                parent.replaceChild(decryptedNode, encData);
+            } catch (Exception ex) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
+            }
+
+            if (content) {
+                EncryptionUtils.setProtectedElement(
+                    dataRef, parent.getParentNode(), (Element)parent, previousSibling, null, true
+                );
+            } else {
+                EncryptionUtils.setProtectedElement(dataRef, parent, encData, previousSibling, null, false);
+            }
+            return dataRef;
+        }
+    }
+
+    /**
+     * Gives access to the wrapping of decrypted bytes in an element with the namespace declarations
+     * of the context node, that the DocumentSerializer parses the bytes with.
+     */
+    private static final class ContextSerializer extends DocumentSerializer {
+
+        private ContextSerializer() throws InvalidCanonicalizerException {
+            super(true);
+        }
+
+        static byte[] wrap(byte[] source, Node ctx) throws XMLEncryptionException {
+            return createContext(source, ctx);
+        }
+    }
+}
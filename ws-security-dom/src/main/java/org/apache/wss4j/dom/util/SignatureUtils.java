@@ -19,11 +19,16 @@
 
 package org.apache.wss4j.dom.util;
 
+import java.security.NoSuchProviderException;
+import java.security.Provider;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
+
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDataRef;
@@ -38,10 +43,53 @@ import org.w3c.dom.Node;
  */
 public final class SignatureUtils {
 
+    /*
+     * The XMLSignatureFactory and KeyInfoFactory of the Santuario provider. The Santuario factories
+     * are stateless, and so can be shared by all threads, which saves a provider lookup per use.
+     */
+    private static volatile XMLSignatureFactory santuarioSignatureFactory;
+    private static volatile KeyInfoFactory santuarioKeyInfoFactory;
+
     private SignatureUtils() {
         // Complete
     }
 
+    /**
+     * Get an XMLSignatureFactory for the given provider. If the provider is null, the shared
+     * factory of the Santuario provider is returned, falling back to a new factory of the JDK
+     * provider if the Santuario provider is not installed.
+     */
+    public static XMLSignatureFactory getXMLSignatureFactory(Provider provider) {
+        if (provider != null) {
+            return XMLSignatureFactory.getInstance("DOM", provider);
+        }
+        XMLSignatureFactory signatureFactory = santuarioSignatureFactory;
+        if (signatureFactory == null) {
+            // Try to install the Santuario Provider - fall back to the JDK provider if this does
+            // not work
+            try {
+                signatureFactory = XMLSignatureFactory.getInstance("DOM", "ApacheXMLDSig");
+            } catch (NoSuchProviderException ex) {
+                // Don't cache the JDK factory, so that the Santuario provider is picked up once installed
+                return XMLSignatureFactory.getInstance("DOM");
+            }
+            santuarioKeyInfoFactory = signatureFactory.getKeyInfoFactory();
+            santuarioSignatureFactory = signatureFactory;
+        }
+        return signatureFactory;
+    }
+
+    /**
+     * Get the KeyInfoFactory of the given XMLSignatureFactory, which is shared if the
+     * XMLSignatureFactory is the shared factory of the Santuario provider.
+     */
+    public static KeyInfoFactory getKeyInfoFactory(XMLSignatureFactory signatureFactory) {
+        if (signatureFactory == santuarioSignatureFactory) {
+            return santuarioKeyInfoFactory;
+        }
+        return signatureFactory.getKeyInfoFactory();
+    }
+
     public static void verifySignedElement(Element elem, WSDocInfo wsDocInfo)
         throws WSSecurityException {
         verifySignedElement(elem, wsDocInfo.getResultsByTag(WSConstants.SIGN));
@@ -148,7 +148,7 @@ public final class X509Util {
     public static KeyValue getKeyValue(Element keyInfoElement,
                                        XMLSignatureFactory signatureFactory) throws MarshalException {
         XMLStructure keyInfoStructure = new DOMStructure(keyInfoElement);
-        KeyInfoFactory keyInfoFactory = signatureFactory.getKeyInfoFactory();
+        KeyInfoFactory keyInfoFactory = SignatureUtils.getKeyInfoFactory(signatureFactory);
         KeyInfo keyInfo = keyInfoFactory.unmarshalKeyInfo(keyInfoStructure);
         List<?> list = keyInfo.getContent();
 
@@ -26,6 +26,7 @@ import javax.security.auth.login.LoginException;
 
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.NamePasswordCallbackHandler;
+import org.apache.wss4j.common.cache.SubjectCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
@@ -42,6 +43,7 @@ public class JAASUsernameTokenValidator implements Validator {
         org.slf4j.LoggerFactory.getLogger(JAASUsernameTokenValidator.class);
 
     private String contextName;
+    private SubjectCache subjectCache;
 
     public void setContextName(String name) {
         contextName = name;
@@ -51,6 +53,18 @@ public class JAASUsernameTokenValidator implements Validator {
         return contextName;
     }
 
+    /**
+     * Set a cache of the Subjects that were authenticated, so that the LoginModules are not run
+     * again for a user that sends the same username and password. It is not set by default.
+     */
+    public void setSubjectCache(SubjectCache subjectCache) {
+        this.subjectCache = subjectCache;
+    }
+
+    public SubjectCache getSubjectCache() {
+        return subjectCache;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null UsernameToken. A
      * CallbackHandler implementation is also required to be set.
@@ -97,12 +111,23 @@ public class JAASUsernameTokenValidator implements Validator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
 
+        if (subjectCache != null) {
+            Subject subject = subjectCache.get(getContextName(), user, password);
+            if (subject != null) {
+                credential.setSubject(subject);
+                return credential;
+            }
+        }
+
         try {
             CallbackHandler handler = getCallbackHandler(user, password);
             LoginContext ctx = new LoginContext(getContextName(), handler);
             ctx.login();
             Subject subject = ctx.getSubject();
             credential.setSubject(subject);
+            if (subjectCache != null) {
+                subjectCache.put(getContextName(), user, password, subject);
+            }
 
         } catch (LoginException ex) {
             LOG.info("Authentication failed", ex);
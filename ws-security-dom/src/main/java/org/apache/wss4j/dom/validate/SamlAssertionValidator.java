@@ -23,6 +23,7 @@ import java.time.Instant;
 import java.util.List;
 
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
 import org.apache.wss4j.common.saml.SAMLKeyInfo;
@@ -114,16 +115,35 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
         // Check OneTimeUse Condition
         checkOneTimeUse(samlAssertion, data);
 
-        // Validate the assertion against schemas/profiles
-        validateAssertion(samlAssertion);
+        // An Assertion that has been validated previously does not need to be validated against
+        // the profile, or for trust in the signature, again
+        if (!isValidatedAssertion(samlAssertion, data)) {
+            // Validate the assertion against schemas/profiles
+            validateAssertion(samlAssertion);
 
-        // Verify trust on the signature
-        if (samlAssertion.isSigned()) {
-            verifySignedAssertion(samlAssertion, data);
+            // Verify trust on the signature
+            if (samlAssertion.isSigned()) {
+                verifySignedAssertion(samlAssertion, data);
+            }
         }
         return credential;
     }
 
+    /**
+     * Check whether the (signed) Assertion is held in the SamlAssertionCache, i.e. whether
+     * the identical Assertion has been validated previously.
+     */
+    protected boolean isValidatedAssertion(
+        SamlAssertionWrapper samlAssertion, RequestData data
+    ) throws WSSecurityException {
+        SamlAssertionCache samlAssertionCache = data.getSamlAssertionCache();
+        if (samlAssertionCache == null) {
+            return false;
+        }
+        String identifier = samlAssertionCache.getIdentifier(samlAssertion);
+        return samlAssertionCache.get(identifier, data.getSigVerCrypto(), this) != null;
+    }
+
     /**
      * Check the Subject Confirmation method requirements
      */
@@ -254,22 +274,18 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
             String identifier = samlAssertion.getId();
 
             ReplayCache replayCache = data.getSamlOneTimeUseReplayCache();
-            if (replayCache.contains(identifier)) {
+            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
+            Instant zonedExpires = null;
+            if (expires != null) {
+                zonedExpires = Instant.ofEpochMilli(expires.getMillis());
+            }
+
+            if (!replayCache.putIfAbsent(identifier, zonedExpires)) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
                     new Object[] {"A replay attack has been detected"});
             }
-
-            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
-            if (expires != null) {
-                Instant zonedExpires = Instant.ofEpochMilli(expires.getMillis());
-                replayCache.add(identifier, zonedExpires);
-            } else {
-                replayCache.add(identifier);
-            }
-
-            replayCache.add(identifier);
         }
     }
 
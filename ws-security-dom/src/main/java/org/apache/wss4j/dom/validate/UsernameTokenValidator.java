@@ -24,6 +24,7 @@ import java.io.IOException;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.UnsupportedCallbackException;
 
+import org.apache.wss4j.common.cache.PasswordCallbackCache;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -153,7 +154,12 @@ public class UsernameTokenValidator implements Validator {
         WSPasswordCallback pwCb =
             new WSPasswordCallback(user, null, pwType, WSPasswordCallback.USERNAME_TOKEN);
         try {
-            data.getCallbackHandler().handle(new Callback[]{pwCb});
+            PasswordCallbackCache passwordCallbackCache = data.getPasswordCallbackCache();
+            if (passwordCallbackCache != null) {
+                passwordCallbackCache.handle(data.getCallbackHandler(), pwCb);
+            } else {
+                data.getCallbackHandler().handle(new Callback[]{pwCb});
+            }
         } catch (IOException | UnsupportedCallbackException e) {
             LOG.debug(e.getMessage(), e);
             throw new WSSecurityException(
@@ -174,11 +180,11 @@ public class UsernameTokenValidator implements Validator {
             } else {
                 passDigest = UsernameTokenUtil.doPasswordDigest(decodedNonce, createdTime, origPassword);
             }
-            if (!passDigest.equals(password)) {
+            if (!UsernameTokenUtil.isPasswordEqual(passDigest, password)) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
             }
         } else {
-            if (!origPassword.equals(password)) {
+            if (!UsernameTokenUtil.isPasswordEqual(origPassword, password)) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
             }
         }
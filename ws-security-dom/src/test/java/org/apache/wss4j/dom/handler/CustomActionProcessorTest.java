@@ -34,6 +34,7 @@ import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.message.WSSecSignature;
 import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.processor.SignatureProcessor;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
@@ -43,6 +44,8 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -273,4 +276,28 @@ public class CustomActionProcessorTest {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Test that the default processors, validators and actions are shared instances (apart from the
+     * SamlAssertionValidator), and that a custom processor class is still instantiated per lookup
+     */
+    @Test
+    public void
+    testDefaultInstancesAreShared() throws Exception {
+        final WSSConfig cfg = WSSConfig.getNewInstance();
+        final WSSConfig otherCfg = WSSConfig.getNewInstance();
+
+        assertSame(cfg.getProcessor(WSConstants.SIGNATURE), otherCfg.getProcessor(WSConstants.SIGNATURE));
+        assertSame(cfg.getProcessor(WSConstants.SAML_TOKEN), cfg.getProcessor(WSConstants.SAML2_TOKEN));
+        assertSame(cfg.getValidator(WSConstants.TIMESTAMP), otherCfg.getValidator(WSConstants.TIMESTAMP));
+        assertSame(cfg.getAction(WSConstants.SIGN), otherCfg.getAction(WSConstants.SIGN));
+
+        // The SamlAssertionValidator is configurable, and so is not shared
+        assertNotSame(cfg.getValidator(WSConstants.SAML_TOKEN), cfg.getValidator(WSConstants.SAML_TOKEN));
+        assertNotSame(cfg.getValidator(WSConstants.SAML_TOKEN), cfg.getValidator(WSConstants.SAML2_TOKEN));
+
+        cfg.setProcessor(WSConstants.SIGNATURE, CustomProcessor.class);
+        assertNotSame(cfg.getProcessor(WSConstants.SIGNATURE), cfg.getProcessor(WSConstants.SIGNATURE));
+        assertTrue(otherCfg.getProcessor(WSConstants.SIGNATURE) instanceof SignatureProcessor);
+    }
+
+}
@@ -22,12 +22,14 @@ package org.apache.wss4j.dom.message;
 import org.apache.wss4j.dom.SOAPConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.CountingExecutor;
 import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
 import org.apache.wss4j.dom.common.SOAPUtil;
 import org.apache.wss4j.dom.common.SecurityTestUtil;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.engine.WSSecurityEngine;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.crypto.Crypto;
@@ -47,6 +49,7 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -592,6 +595,114 @@ public class EncryptionPartsTest {
     }
 
 
+    /**
+     * Test decrypting an EncryptedHeader, a SOAP header and the SOAP body concurrently
+     */
+    @Test
+    public void testParallelDecryption() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPMSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        encrypt.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        encrypt.getParts().add(new WSEncryptionPart("foobar", "urn:foo.bar", "Header"));
+        encrypt.getParts().add(new WSEncryptionPart("bar1", "urn:foo.bar", "Element"));
+        encrypt.getParts().add(new WSEncryptionPart("with-attributes", "urn:foo.bar", "Content"));
+        SOAPConstants soapConstants = WSSecurityUtil.getSOAPConstants(doc.getDocumentElement());
+        encrypt.getParts().add(
+            new WSEncryptionPart(soapConstants.getBodyQName().getLocalPart(), soapConstants.getEnvelopeURI(), "Content")
+        );
+
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        Document encryptedDoc = encrypt.build(crypto, symmetricKey);
+        String encryptedString = XMLUtils.prettyDocumentToString(encryptedDoc);
+
+        WSHandlerResult results = verify(encryptedDoc);
+        final List<WSDataRef> refs = getDataRefs(results);
+
+        CountingExecutor executor = new CountingExecutor();
+        RequestData requestData = new RequestData();
+        requestData.setDecCrypto(crypto);
+        requestData.setCallbackHandler(callbackHandler);
+        requestData.setParallelDecryption(true);
+        requestData.setDecryptionExecutor(executor);
+        Document parallelDoc = SOAPUtil.toSOAPPart(encryptedString);
+        WSHandlerResult parallelResults = secEngine.processSecurityHeader(parallelDoc, requestData);
+        final List<WSDataRef> parallelRefs = getDataRefs(parallelResults);
+
+        assertEquals(4, executor.getTaskCount());
+        assertEquals(XMLUtils.prettyDocumentToString(encryptedDoc), XMLUtils.prettyDocumentToString(parallelDoc));
+        assertEquals(4, parallelRefs.size());
+        for (int i = 0; i < refs.size(); i++) {
+            assertEquals(refs.get(i).getWsuId(), parallelRefs.get(i).getWsuId());
+            assertEquals(refs.get(i).getXpath(), parallelRefs.get(i).getXpath());
+            assertEquals(refs.get(i).getName(), parallelRefs.get(i).getName());
+            assertEquals(refs.get(i).isContent(), parallelRefs.get(i).isContent());
+        }
+        assertEquals("/soapenv:Envelope/soapenv:Header/foo:foobar", parallelRefs.get(0).getXpath());
+    }
+
+    /**
+     * Test encrypting a SOAP header as an EncryptedHeader, SOAP headers and the SOAP body concurrently
+     */
+    @Test
+    public void testParallelEncryption() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+
+        Document doc = encryptHeadersAndBody(null);
+        Document parallelDoc = encryptHeadersAndBody(executor);
+        assertEquals(4, executor.getTaskCount());
+
+        WSHandlerResult results = verify(doc);
+        WSHandlerResult parallelResults = verify(parallelDoc);
+        final List<WSDataRef> refs = getDataRefs(results);
+        final List<WSDataRef> parallelRefs = getDataRefs(parallelResults);
+        assertEquals(4, parallelRefs.size());
+        for (int i = 0; i < refs.size(); i++) {
+            assertEquals(refs.get(i).getXpath(), parallelRefs.get(i).getXpath());
+            assertEquals(refs.get(i).isContent(), parallelRefs.get(i).isContent());
+        }
+
+        // The messages only differ in the security header
+        for (Document document : new Document[] {doc, parallelDoc}) {
+            Element securityHeader = WSSecurityUtil.getSecurityHeader(document, null);
+            securityHeader.getParentNode().removeChild(securityHeader);
+        }
+        assertEquals(XMLUtils.prettyDocumentToString(doc), XMLUtils.prettyDocumentToString(parallelDoc));
+    }
+
+    private Document encryptHeadersAndBody(Executor executor) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPMSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        encrypt.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        encrypt.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        encrypt.setPartExecutor(executor);
+        encrypt.getParts().add(new WSEncryptionPart("foobar", "urn:foo.bar", "Header"));
+        encrypt.getParts().add(new WSEncryptionPart("bar1", "urn:foo.bar", "Element"));
+        encrypt.getParts().add(new WSEncryptionPart("with-attributes", "urn:foo.bar", "Content"));
+        SOAPConstants soapConstants = WSSecurityUtil.getSOAPConstants(doc.getDocumentElement());
+        encrypt.getParts().add(
+            new WSEncryptionPart(soapConstants.getBodyQName().getLocalPart(), soapConstants.getEnvelopeURI(), "Content")
+        );
+
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        return encrypt.build(crypto, symmetricKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<WSDataRef> getDataRefs(WSHandlerResult results) {
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.ENCR).get(0);
+        return (List<WSDataRef>) actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+    }
+
     /**
      * Verifies the soap envelope
      * <p/>
@@ -29,6 +29,7 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.CryptoType;
@@ -239,6 +240,58 @@ public class EncryptionTest {
         assertTrue(referenceType == REFERENCE_TYPE.KEY_IDENTIFIER);
     }
 
+    /**
+     * Test that the secret key of an EncryptedKey, that is sent again, is taken from the
+     * EncryptedKeyCache rather than decrypted with the private key.
+     */
+    @Test
+    public void testEncryptedKeyCache() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.X509_KEY_IDENTIFIER);
+        builder.setKeyEncAlgo(WSConstants.KEYTRANSPORT_RSAOAEP);
+
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        Document encryptedDoc = builder.build(crypto, symmetricKey);
+        String outputString = XMLUtils.prettyDocumentToString(encryptedDoc);
+        assertFalse(outputString.contains("counter_port_type"));
+
+        EncryptedKeyCache encryptedKeyCache = new EncryptedKeyCache();
+        WSSecurityEngine newEngine = new WSSecurityEngine();
+
+        RequestData data = new RequestData();
+        data.setCallbackHandler(keystoreCallbackHandler);
+        data.setDecCrypto(crypto);
+        data.setEncryptedKeyCache(encryptedKeyCache);
+        newEngine.processSecurityHeader(SOAPUtil.toSOAPPart(outputString), data);
+        assertEquals(1, encryptedKeyCache.size());
+
+        // The private key is not available this time, so the secret key must come from the cache
+        data = new RequestData();
+        data.setCallbackHandler(callbacks -> { });
+        data.setDecCrypto(crypto);
+        data.setEncryptedKeyCache(encryptedKeyCache);
+        Document decryptedDoc = SOAPUtil.toSOAPPart(outputString);
+        newEngine.processSecurityHeader(decryptedDoc, data);
+        assertTrue(XMLUtils.prettyDocumentToString(decryptedDoc).contains("counter_port_type"));
+
+        // Without the cache, the private key is required
+        data = new RequestData();
+        data.setCallbackHandler(callbacks -> { });
+        data.setDecCrypto(crypto);
+        try {
+            newEngine.processSecurityHeader(SOAPUtil.toSOAPPart(outputString), data);
+            fail("Failure expected on no private key");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILED_CHECK);
+        }
+    }
+
     @Test
     public void testEncryptionDecryptionPublicKey() throws Exception {
         Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
@@ -46,6 +46,7 @@ import org.apache.wss4j.dom.common.SecurityTestUtil;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.engine.WSSecurityEngine;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.apache.wss4j.dom.saml.WSSecSignatureSAML;
 import org.apache.wss4j.dom.util.SignatureUtils;
@@ -147,6 +148,47 @@ public class ModifiedRequestTest {
     }
 
 
+    /**
+     * The same as testMovedElement, but using the Id index to locate the signed elements.
+     */
+    @Test
+    public void testMovedElementIdIndex() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPMSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+
+        WSEncryptionPart encP =
+            new WSEncryptionPart(
+                "value",
+                "http://blah.com",
+                "");
+        builder.getParts().add(encP);
+
+        Document signedDoc = builder.build(crypto);
+
+        Element secHeaderElement = secHeader.getSecurityHeaderElement();
+        Element envelopeElement = signedDoc.getDocumentElement();
+        Node valueNode =
+            envelopeElement.getElementsByTagNameNS("http://blah.com", "value").item(0);
+        Node clonedValueNode = valueNode.cloneNode(true);
+        secHeaderElement.appendChild(clonedValueNode);
+        valueNode.getFirstChild().setNodeValue("250");
+
+        RequestData requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setCallbackHandler(callbackHandler);
+        requestData.setEnableIdIndex(true);
+        try {
+            secEngine.processSecurityHeader(signedDoc, requestData);
+            fail("Failure expected on multiple elements with the same wsu:Id");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILED_CHECK);
+        }
+    }
+
     /**
      * Test that signs a SOAP body element "value". The SOAP request is then modified
      * so that the signed "value" element is put in the header, and the value of the
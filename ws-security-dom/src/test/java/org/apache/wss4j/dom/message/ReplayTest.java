@@ -19,11 +19,17 @@
 
 package org.apache.wss4j.dom.message;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.CustomHandler;
 import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
 import org.apache.wss4j.dom.common.SAML2CallbackHandler;
 import org.apache.wss4j.dom.common.SOAPUtil;
@@ -32,6 +38,7 @@ import org.apache.wss4j.dom.common.UsernamePasswordCallbackHandler;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.engine.WSSecurityEngine;
 import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.MappedFileReplayCache;
 import org.apache.wss4j.common.cache.MemoryReplayCache;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.crypto.Crypto;
@@ -44,6 +51,7 @@ import org.apache.wss4j.common.saml.bean.ConditionsBean;
 import org.apache.wss4j.common.saml.builder.SAML2Constants;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerConstants;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.wss4j.dom.validate.SamlAssertionValidator;
@@ -52,6 +60,7 @@ import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -414,6 +423,54 @@ public class ReplayTest {
         }
     }
 
+    @Test
+    public void testPersistentReplayedUsernameToken() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecUsernameToken builder = new WSSecUsernameToken(secHeader);
+        builder.setUserInfo("wernerd", "verySecret");
+
+        Document signedDoc = builder.build();
+
+        File directory = Files.createTempDirectory("wss4j").toFile();
+        directory.deleteOnExit();
+        for (String key : new String[] {"wss4j.nonce.cache", "wss4j.timestamp.cache",
+                                        "wss4j.saml.one.time.use.cache"}) {
+            new File(directory, key + ".replaycache").deleteOnExit();
+        }
+
+        CustomHandler handler = new CustomHandler();
+        Map<String, Object> messageContext = new HashMap<>();
+        messageContext.put(WSHandlerConstants.REPLAY_CACHE_DIRECTORY, directory.getPath());
+
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        RequestData data = new RequestData();
+        data.setCallbackHandler(new UsernamePasswordCallbackHandler());
+        data.setWssConfig(wssConfig);
+        data.setMsgContext(messageContext);
+        handler.receive(Collections.singletonList(WSConstants.UT), data);
+        assertTrue(data.getNonceReplayCache() instanceof MappedFileReplayCache);
+
+        // Successfully verify UsernameToken
+        verify(signedDoc, wssConfig, data);
+
+        // The same cache is used for the next message - a replay attack should be detected
+        RequestData nextData = new RequestData();
+        nextData.setCallbackHandler(new UsernamePasswordCallbackHandler());
+        nextData.setWssConfig(wssConfig);
+        nextData.setMsgContext(messageContext);
+        handler.receive(Collections.singletonList(WSConstants.UT), nextData);
+        assertSame(data.getNonceReplayCache(), nextData.getNonceReplayCache());
+        try {
+            verify(signedDoc, wssConfig, nextData);
+            fail("Expected failure on a replay attack");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.INVALID_SECURITY);
+        }
+    }
+
     @Test
     public void testEhCacheReplayedUsernameToken() throws Exception {
         Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
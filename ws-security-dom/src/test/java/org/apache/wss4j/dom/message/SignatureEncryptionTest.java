@@ -261,6 +261,49 @@ public class SignatureEncryptionTest {
     }
 
 
+    /**
+     * Test that signs and then encrypts an element of the SOAP Body, and verifies the request
+     * with the Id index enabled. The signed element is only in the document (and so must be
+     * added to the index) once it is decrypted.
+     */
+    @Test
+    public void testSigningEncryptionIdIndex() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt encrypt = new WSSecEncrypt(secHeader);
+        WSSecSignature sign = new WSSecSignature(secHeader);
+        encrypt.setUserInfo("wss40");
+        sign.setUserInfo("wss40", "security");
+
+        WSEncryptionPart part =
+            new WSEncryptionPart("add", "http://ws.apache.org/counter/counter_port_type", "Element");
+        sign.getParts().add(part);
+        sign.build(crypto);
+
+        encrypt.getParts().add(part);
+        KeyGenerator keyGen = KeyUtils.getKeyGenerator(WSConstants.AES_128);
+        SecretKey symmetricKey = keyGen.generateKey();
+        Document encryptedSignedDoc = encrypt.build(crypto, symmetricKey);
+
+        RequestData requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setDecCrypto(crypto);
+        requestData.setCallbackHandler(callbackHandler);
+        requestData.setEnableIdIndex(true);
+        WSHandlerResult results = secEngine.processSecurityHeader(encryptedSignedDoc, requestData);
+
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.SIGN).get(0);
+        @SuppressWarnings("unchecked")
+        final List<WSDataRef> refs =
+            (List<WSDataRef>) actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+        assertEquals(1, refs.size());
+        assertEquals("add", refs.get(0).getProtectedElement().getLocalName());
+    }
+
+
     /**
      * Test that signs a SOAP Body, and then encrypts some data inside the SOAP Body.
      * As the encryption adds a wsu:Id to the encrypted element, this test checks that
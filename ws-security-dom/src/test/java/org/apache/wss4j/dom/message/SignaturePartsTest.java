@@ -24,6 +24,7 @@ import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.dom.SOAPConstants;
 import org.apache.wss4j.dom.WSDataRef;
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.CountingExecutor;
 import org.apache.wss4j.dom.common.CustomHandler;
 import org.apache.wss4j.dom.common.SAML1CallbackHandler;
 import org.apache.wss4j.dom.common.SOAPUtil;
@@ -56,6 +57,7 @@ import java.io.InputStream;
 import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.xml.namespace.QName;
 
@@ -660,6 +662,93 @@ public class SignaturePartsTest {
         assertTrue(handler.checkResults(results.getResults(), receivedActions));
     }
 
+    /**
+     * Test validating the References of a signature over a custom SOAP header and the SOAP body
+     * concurrently
+     */
+    @Test
+    public void testParallelReferenceValidation() throws Exception {
+        Document signedDoc = signSOAPHeaderAndBody();
+
+        CountingExecutor executor = new CountingExecutor();
+        RequestData requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setParallelReferenceValidation(true);
+        requestData.setReferenceValidationExecutor(executor);
+        WSHandlerResult results = secEngine.processSecurityHeader(signedDoc, requestData);
+
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.SIGN).get(0);
+        @SuppressWarnings("unchecked")
+        final List<WSDataRef> refs =
+            (List<WSDataRef>) actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+        assertEquals(2, refs.size());
+        assertEquals(2, executor.getTaskCount());
+    }
+
+    /**
+     * Test that a modified signed element is detected when the References are validated concurrently
+     */
+    @Test
+    public void testParallelReferenceValidationModified() throws Exception {
+        Document signedDoc = signSOAPHeaderAndBody();
+
+        Element foobar = XMLUtils.findElement(signedDoc.getDocumentElement(), "foobar", "urn:foo.bar");
+        foobar.setTextContent("modified");
+
+        RequestData requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setParallelReferenceValidation(true);
+        try {
+            secEngine.processSecurityHeader(signedDoc, requestData);
+            fail("Failure expected on a modified signed element");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILED_CHECK);
+        }
+    }
+
+    /**
+     * Test computing the digests of the References to a custom SOAP header and the SOAP body concurrently
+     */
+    @Test
+    public void testParallelDigests() throws Exception {
+        CountingExecutor executor = new CountingExecutor();
+        Document signedDoc = signSOAPHeaderAndBody(executor);
+        assertEquals(2, executor.getTaskCount());
+
+        WSHandlerResult results = verify(signedDoc);
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.SIGN).get(0);
+        @SuppressWarnings("unchecked")
+        final List<WSDataRef> refs =
+            (List<WSDataRef>) actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+        assertEquals(2, refs.size());
+    }
+
+    private Document signSOAPHeaderAndBody() throws Exception {
+        return signSOAPHeaderAndBody(null);
+    }
+
+    private Document signSOAPHeaderAndBody(Executor executor) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPMSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature sign = new WSSecSignature(secHeader);
+        sign.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        sign.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        sign.setPartExecutor(executor);
+
+        SOAPConstants soapConstants =
+            WSSecurityUtil.getSOAPConstants(doc.getDocumentElement());
+        sign.getParts().add(
+            new WSEncryptionPart(soapConstants.getBodyQName().getLocalPart(), soapConstants.getEnvelopeURI(), "")
+        );
+        sign.getParts().add(new WSEncryptionPart("foobar", "urn:foo.bar", ""));
+
+        return sign.build(crypto);
+    }
+
     /**
      * Verifies the soap envelope
      * <p/>
@@ -26,6 +26,7 @@ import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
@@ -33,6 +34,7 @@ import javax.security.auth.callback.UnsupportedCallbackException;
 
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.PasswordCallbackCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.DateUtil;
@@ -1140,6 +1142,55 @@ public class UsernameTokenTest implements CallbackHandler {
         }
     }
 
+    /**
+     * Test that the password of a user is only looked up once when a PasswordCallbackCache is
+     * configured, and that a bad password digest is still rejected.
+     */
+    @Test
+    public void testPasswordCallbackCache() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        CallbackHandler countingCallbackHandler = callbacks -> {
+            count.incrementAndGet();
+            callbackHandler.handle(callbacks);
+        };
+        PasswordCallbackCache passwordCallbackCache = new PasswordCallbackCache();
+
+        for (int i = 0; i < 2; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            WSSecUsernameToken builder = new WSSecUsernameToken(secHeader);
+            builder.setUserInfo("wernerd", "verySecret");
+            Document signedDoc = builder.build();
+
+            RequestData requestData = new RequestData();
+            requestData.setCallbackHandler(countingCallbackHandler);
+            requestData.setPasswordCallbackCache(passwordCallbackCache);
+            new WSSecurityEngine().processSecurityHeader(signedDoc, requestData);
+        }
+        assertEquals(1, count.get());
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecUsernameToken builder = new WSSecUsernameToken(secHeader);
+        builder.setUserInfo("wernerd", "verySecre");
+        Document signedDoc = builder.build();
+
+        RequestData requestData = new RequestData();
+        requestData.setCallbackHandler(countingCallbackHandler);
+        requestData.setPasswordCallbackCache(passwordCallbackCache);
+        try {
+            new WSSecurityEngine().processSecurityHeader(signedDoc, requestData);
+            fail("Failure expected on a bad password digest");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        }
+        assertEquals(1, count.get());
+    }
+
     /**
      * This is a test to create a "Spoofed" UsernameToken (see WSS-441)
      */
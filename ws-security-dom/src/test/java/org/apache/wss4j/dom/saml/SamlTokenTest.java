@@ -34,6 +34,7 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.CryptoType;
@@ -41,6 +42,7 @@ import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.SAMLCallback;
 import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.saml.bean.ConditionsBean;
 import org.apache.wss4j.common.saml.bean.NameIDBean;
 import org.apache.wss4j.common.saml.bean.SubjectConfirmationDataBean;
 import org.apache.wss4j.common.saml.builder.SAML1Constants;
@@ -1209,6 +1211,141 @@ public class SamlTokenTest {
         newEngine.processSecurityHeader(doc, requestData);
     }
 
+    /**
+     * Test that a signed SAML 2 assertion is cached once it has been validated, so that the
+     * signature and trust checks are not repeated when the same assertion is received again.
+     */
+    @Test
+    public void testSamlAssertionCache() throws Exception {
+        SAML2CallbackHandler callbackHandler = new SAML2CallbackHandler();
+        callbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+        callbackHandler.setIssuer("www.example.com");
+        callbackHandler.setConfirmationMethod(SAML2Constants.CONF_BEARER);
+
+        String message = DOM2Writer.nodeToString(createSignedAssertionMessage(callbackHandler));
+
+        Crypto crypto = CryptoFactory.getInstance("crypto.properties");
+        SamlAssertionCache samlAssertionCache = new SamlAssertionCache();
+        WSSecurityEngine newEngine = new WSSecurityEngine();
+
+        RequestData requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSamlAssertionCache(samlAssertionCache);
+        requestData.setValidateSamlSubjectConfirmation(false);
+        newEngine.processSecurityHeader(toDocument(message), requestData);
+        assertEquals(1, samlAssertionCache.size());
+
+        // The assertion is now trusted from the cache for the same signature verification Crypto
+        requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSamlAssertionCache(samlAssertionCache);
+        requestData.setValidateSamlSubjectConfirmation(false);
+        WSHandlerResult results = newEngine.processSecurityHeader(toDocument(message), requestData);
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.ST_SIGNED).get(0);
+        SamlAssertionWrapper receivedSamlAssertion =
+            (SamlAssertionWrapper) actionResult.get(WSSecurityEngineResult.TAG_SAML_ASSERTION);
+        assertNotNull(receivedSamlAssertion.getSignatureKeyInfo());
+        assertEquals(1, samlAssertionCache.size());
+
+        // The cached assertion is not trusted without a signature verification Crypto
+        requestData = new RequestData();
+        requestData.setSamlAssertionCache(samlAssertionCache);
+        requestData.setValidateSamlSubjectConfirmation(false);
+        try {
+            newEngine.processSecurityHeader(toDocument(message), requestData);
+            fail("Failure expected without a signature verification Crypto");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILURE);
+        }
+        assertEquals(1, samlAssertionCache.size());
+
+        // Another signature verification Crypto verifies the assertion itself
+        requestData = new RequestData();
+        requestData.setSigVerCrypto(CryptoFactory.getInstance("crypto.properties"));
+        requestData.setSamlAssertionCache(samlAssertionCache);
+        requestData.setValidateSamlSubjectConfirmation(false);
+        newEngine.processSecurityHeader(toDocument(message), requestData);
+        assertEquals(2, samlAssertionCache.size());
+
+        // A modified assertion is not found in the cache
+        Document modifiedDoc = toDocument(message);
+        Element assertionElement =
+            (Element)modifiedDoc.getElementsByTagNameNS(WSConstants.SAML2_NS, "Assertion").item(0);
+        Element issuer =
+            (Element)assertionElement.getElementsByTagNameNS(WSConstants.SAML2_NS, "Issuer").item(0);
+        issuer.setTextContent("www.example.org");
+        requestData = new RequestData();
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSamlAssertionCache(samlAssertionCache);
+        requestData.setValidateSamlSubjectConfirmation(false);
+        try {
+            newEngine.processSecurityHeader(modifiedDoc, requestData);
+            fail("Failure expected on a modified assertion");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILURE);
+        }
+
+        // Without the cache, the signature verification Crypto is required
+        requestData = new RequestData();
+        requestData.setValidateSamlSubjectConfirmation(false);
+        try {
+            newEngine.processSecurityHeader(toDocument(message), requestData);
+            fail("Failure expected without a signature verification Crypto");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILURE);
+        }
+    }
+
+    /**
+     * Test that a signed SAML 2 assertion with a OneTimeUse Condition is not cached.
+     */
+    @Test
+    public void testSamlAssertionCacheOneTimeUse() throws Exception {
+        SAML2CallbackHandler callbackHandler = new SAML2CallbackHandler();
+        callbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+        callbackHandler.setIssuer("www.example.com");
+        callbackHandler.setConfirmationMethod(SAML2Constants.CONF_BEARER);
+
+        ConditionsBean conditions = new ConditionsBean();
+        conditions.setTokenPeriodMinutes(5);
+        conditions.setOneTimeUse(true);
+        callbackHandler.setConditions(conditions);
+
+        Document signedDoc = createSignedAssertionMessage(callbackHandler);
+
+        SamlAssertionCache samlAssertionCache = new SamlAssertionCache();
+        RequestData requestData = new RequestData();
+        requestData.setSigVerCrypto(CryptoFactory.getInstance("crypto.properties"));
+        requestData.setSamlAssertionCache(samlAssertionCache);
+        requestData.setValidateSamlSubjectConfirmation(false);
+        new WSSecurityEngine().processSecurityHeader(signedDoc, requestData);
+        assertEquals(0, samlAssertionCache.size());
+    }
+
+    private Document createSignedAssertionMessage(CallbackHandler samlCallbackHandler) throws Exception {
+        SAMLCallback samlCallback = new SAMLCallback();
+        SAMLUtil.doSAMLCallback(samlCallbackHandler, samlCallback);
+        SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+        samlAssertion.signAssertion(
+            "16c73ab6-b892-458f-abf5-2f875f74882e", "security",
+            CryptoFactory.getInstance("crypto.properties"), false
+        );
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSAMLToken wsSign = new WSSecSAMLToken(secHeader);
+        return wsSign.build(samlAssertion);
+    }
+
+    private Document toDocument(String message) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(message.getBytes("UTF-8")));
+    }
+
     @Test
     public void testSAML2Advice() throws Exception {
         // Create a "Advice" Element first
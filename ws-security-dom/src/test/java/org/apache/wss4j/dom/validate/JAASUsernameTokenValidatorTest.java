@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.validate;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+import javax.security.auth.callback.PasswordCallback;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.FailedLoginException;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import org.apache.wss4j.common.cache.SubjectCache;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.principal.CustomTokenPrincipal;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.message.token.UsernameToken;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Some tests for the JAASUsernameTokenValidator, using a LoginModule that counts how often
+ * it is asked to log a user in.
+ */
+public class JAASUsernameTokenValidatorTest {
+
+    private static final String CONTEXT_NAME = "CountingLoginModule";
+
+    private static Configuration previousConfiguration;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        previousConfiguration = Configuration.getConfiguration();
+        Configuration.setConfiguration(new Configuration() {
+            @Override
+            public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+                if (!CONTEXT_NAME.equals(name)) {
+                    return previousConfiguration.getAppConfigurationEntry(name);
+                }
+                return new AppConfigurationEntry[] {
+                    new AppConfigurationEntry(CountingLoginModule.class.getName(),
+                        AppConfigurationEntry.LoginModuleControlFlag.REQUIRED,
+                        Collections.<String, Object>emptyMap())
+                };
+            }
+        });
+    }
+
+    @AfterAll
+    public static void cleanup() throws Exception {
+        Configuration.setConfiguration(previousConfiguration);
+    }
+
+    @BeforeEach
+    public void resetLogins() {
+        CountingLoginModule.LOGINS.set(0);
+    }
+
+    @Test
+    public void testLogin() throws Exception {
+        JAASUsernameTokenValidator validator = new JAASUsernameTokenValidator();
+        validator.setContextName(CONTEXT_NAME);
+
+        validate(validator, "alice", CountingLoginModule.PASSWORD);
+        validate(validator, "alice", CountingLoginModule.PASSWORD);
+        assertEquals(2, CountingLoginModule.LOGINS.get());
+    }
+
+    @Test
+    public void testSubjectCache() throws Exception {
+        JAASUsernameTokenValidator validator = new JAASUsernameTokenValidator();
+        validator.setContextName(CONTEXT_NAME);
+        validator.setSubjectCache(new SubjectCache());
+
+        Credential credential = validate(validator, "alice", CountingLoginModule.PASSWORD);
+        assertEquals(1, CountingLoginModule.LOGINS.get());
+        assertEquals("alice", credential.getSubject().getPrincipals().iterator().next().getName());
+
+        // The cached Subject is used without running the LoginModule again
+        credential = validate(validator, "alice", CountingLoginModule.PASSWORD);
+        assertEquals(1, CountingLoginModule.LOGINS.get());
+        assertNotNull(credential.getSubject());
+        assertEquals("alice", credential.getSubject().getPrincipals().iterator().next().getName());
+
+        // A wrong password for the cached user still goes to the LoginModule, which rejects it
+        try {
+            validate(validator, "alice", "wrongPassword");
+            fail("Failure expected on a wrong password");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        }
+        assertEquals(2, CountingLoginModule.LOGINS.get());
+
+        // The failed login does not evict the cached Subject
+        validate(validator, "alice", CountingLoginModule.PASSWORD);
+        assertEquals(2, CountingLoginModule.LOGINS.get());
+    }
+
+    private Credential validate(
+        JAASUsernameTokenValidator validator, String user, String password
+    ) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        UsernameToken usernameToken = new UsernameToken(false, doc, WSConstants.PASSWORD_TEXT);
+        usernameToken.setName(user);
+        usernameToken.setPassword(password);
+
+        Credential credential = new Credential();
+        credential.setUsernametoken(usernameToken);
+        return validator.validate(credential, new RequestData());
+    }
+
+    /**
+     * A LoginModule that accepts a single password for any user, and counts the logins.
+     */
+    public static class CountingLoginModule implements LoginModule {
+
+        static final String PASSWORD = "security";
+        static final AtomicInteger LOGINS = new AtomicInteger();
+
+        private Subject subject;
+        private CallbackHandler callbackHandler;
+        private String user;
+
+        @Override
+        public void initialize(Subject subject, CallbackHandler callbackHandler,
+                               Map<String, ?> sharedState, Map<String, ?> options) {
+            this.subject = subject;
+            this.callbackHandler = callbackHandler;
+        }
+
+        @Override
+        public boolean login() throws LoginException {
+            LOGINS.incrementAndGet();
+            NameCallback nameCallback = new NameCallback("user");
+            PasswordCallback passwordCallback = new PasswordCallback("password", false);
+            try {
+                callbackHandler.handle(new Callback[] {nameCallback, passwordCallback});
+            } catch (Exception ex) {
+                throw new LoginException(ex.getMessage());
+            }
+            if (!PASSWORD.equals(new String(passwordCallback.getPassword()))) {
+                throw new FailedLoginException("Wrong password");
+            }
+            user = nameCallback.getName();
+            return true;
+        }
+
+        @Override
+        public boolean commit() throws LoginException {
+            subject.getPrincipals().add(new CustomTokenPrincipal(user));
+            return true;
+        }
+
+        @Override
+        public boolean abort() throws LoginException {
+            user = null;
+            return true;
+        }
+
+        @Override
+        public boolean logout() throws LoginException {
+            subject.getPrincipals().clear();
+            return true;
+        }
+    }
+
+}
@@ -25,9 +25,10 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Document;
 
 /**
- * A default (inefficient) implementation of DocumentCreator which creates a new DocumentBuilderFactory
+ * A simple (inefficient) implementation of DocumentCreator which creates a new DocumentBuilderFactory
  * implementation per-instance of this class. CXF instead uses a lambda to call the CXF DomUtils class
  * to create a new document, which maintains a cache of DocumentBuilders keyed off the classloader.
+ * The default is the PooledDocumentCreator, which pools the DocumentBuilders per classloader.
  */
 public class DocumentCreatorImpl implements DocumentCreator {
 
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.ext;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+
+/**
+ * The default implementation of DocumentCreator. It keeps a bounded pool of (securely configured)
+ * DocumentBuilders per context ClassLoader, so that a new Document does not cost the lookup and
+ * configuration of a DocumentBuilderFactory and DocumentBuilder. A DocumentBuilder is reset before
+ * it is returned to the pool. Documents themselves are not reused, as the caller owns the Document
+ * that is returned.
+ *
+ * The pools are only weakly referenced: a pool holds a DocumentBuilderFactory that may have been
+ * loaded by the ClassLoader it is kept for, which would otherwise keep that ClassLoader, the key of
+ * its own entry, reachable. A pool therefore only lives from one garbage collection to the next
+ * (unless a Document is being created from it at that time), and is created again on the next use.
+ */
+public class PooledDocumentCreator implements DocumentCreator {
+
+    public static final int DEFAULT_POOL_SIZE = 16;
+
+    private final int poolSize;
+    private final Map<ClassLoader, Reference<DocumentBuilderPool>> pools = new WeakHashMap<>();
+
+    public PooledDocumentCreator() {
+        this(DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Create a new PooledDocumentCreator
+     * @param poolSize The maximum number of idle DocumentBuilders that are kept per ClassLoader
+     */
+    public PooledDocumentCreator(int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("The pool size must be positive");
+        }
+        this.poolSize = poolSize;
+    }
+
+    @Override
+    public Document newDocument() throws ParserConfigurationException {
+        DocumentBuilderPool pool = getPool();
+        DocumentBuilder documentBuilder = pool.documentBuilders.poll();
+        if (documentBuilder == null) {
+            documentBuilder = pool.documentBuilderFactory.newDocumentBuilder();
+        }
+        try {
+            return documentBuilder.newDocument();
+        } finally {
+            documentBuilder.reset();
+            pool.documentBuilders.offer(documentBuilder);
+        }
+    }
+
+    private DocumentBuilderPool getPool() throws ParserConfigurationException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = PooledDocumentCreator.class.getClassLoader();
+        }
+        synchronized (pools) {
+            Reference<DocumentBuilderPool> poolReference = pools.get(classLoader);
+            DocumentBuilderPool pool = poolReference != null ? poolReference.get() : null;
+            if (pool == null) {
+                pool = new DocumentBuilderPool(poolSize);
+                pools.put(classLoader, new WeakReference<>(pool));
+            }
+            return pool;
+        }
+    }
+
+    private static final class DocumentBuilderPool {
+        private final DocumentBuilderFactory documentBuilderFactory;
+        private final BlockingQueue<DocumentBuilder> documentBuilders;
+
+        DocumentBuilderPool(int poolSize) throws ParserConfigurationException {
+            documentBuilderFactory = DocumentBuilderFactory.newInstance();
+            documentBuilderFactory.setNamespaceAware(true);
+            documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            documentBuilderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            documentBuilders = new ArrayBlockingQueue<>(poolSize);
+        }
+    }
+}
@@ -38,7 +38,10 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.PasswordCallbackCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
@@ -54,6 +57,8 @@ import org.apache.xml.security.stax.ext.XMLSecurityProperties;
  */
 public class WSSSecurityProperties extends XMLSecurityProperties {
 
+    private static final DocumentCreator DEFAULT_DOCUMENT_CREATOR = new PooledDocumentCreator();
+
     private boolean mustUnderstand = true;
     private String actor;
     private CallbackHandler callbackHandler;
@@ -108,6 +113,9 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private EncryptedKeyCache encryptedKeyCache;
+    private SamlAssertionCache samlAssertionCache;
+    private PasswordCallbackCache passwordCallbackCache;
     private boolean validateSamlSubjectConfirmation = true;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
@@ -117,7 +125,7 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     private CallbackHandler attachmentCallbackHandler;
     private Object msgContext;
     private boolean soap12;
-    private DocumentCreator documentCreator;
+    private DocumentCreator documentCreator = DEFAULT_DOCUMENT_CREATOR;
 
     public WSSSecurityProperties() {
         super();
@@ -164,6 +172,9 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.timestampReplayCache = wssSecurityProperties.timestampReplayCache;
         this.nonceReplayCache = wssSecurityProperties.nonceReplayCache;
         this.samlOneTimeUseReplayCache = wssSecurityProperties.samlOneTimeUseReplayCache;
+        this.encryptedKeyCache = wssSecurityProperties.encryptedKeyCache;
+        this.samlAssertionCache = wssSecurityProperties.samlAssertionCache;
+        this.passwordCallbackCache = wssSecurityProperties.passwordCallbackCache;
         this.allowRSA15KeyTransportAlgorithm = wssSecurityProperties.allowRSA15KeyTransportAlgorithm;
         this.derivedKeyIterations = wssSecurityProperties.derivedKeyIterations;
         this.useDerivedKeyForMAC = wssSecurityProperties.useDerivedKeyForMAC;
@@ -764,6 +775,52 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the cache of secret keys that were unwrapped from EncryptedKey elements. If set, an
+     * EncryptedKey that is sent again (e.g. with each message of a session) is not decrypted
+     * with the private key again.
+     */
+    public void setEncryptedKeyCache(EncryptedKeyCache encryptedKeyCache) {
+        this.encryptedKeyCache = encryptedKeyCache;
+    }
+
+    /**
+     * Get the cache of secret keys that were unwrapped from EncryptedKey elements
+     */
+    public EncryptedKeyCache getEncryptedKeyCache() {
+        return encryptedKeyCache;
+    }
+
+    /**
+     * Set the cache of signed SAML Assertions that have been validated. If set, an Assertion that
+     * is sent again is not checked against the profile, or for trust in its signature, again.
+     */
+    public void setSamlAssertionCache(SamlAssertionCache samlAssertionCache) {
+        this.samlAssertionCache = samlAssertionCache;
+    }
+
+    /**
+     * Get the cache of signed SAML Assertions that have been validated
+     */
+    public SamlAssertionCache getSamlAssertionCache() {
+        return samlAssertionCache;
+    }
+
+    /**
+     * Set the cache of the passwords supplied by the CallbackHandler to validate UsernameTokens.
+     * If set, concurrent lookups of the same user only call the CallbackHandler once.
+     */
+    public void setPasswordCallbackCache(PasswordCallbackCache passwordCallbackCache) {
+        this.passwordCallbackCache = passwordCallbackCache;
+    }
+
+    /**
+     * Get the cache of the passwords supplied by the CallbackHandler to validate UsernameTokens
+     */
+    public PasswordCallbackCache getPasswordCallbackCache() {
+        return passwordCallbackCache;
+    }
+
     public boolean isDisableBSPEnforcement() {
         return disableBSPEnforcement;
     }
@@ -962,6 +1019,10 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.soap12 = soap12;
     }
 
+    /**
+     * Get the DocumentCreator used to create the DOM Documents of SAML tokens. The default is a
+     * PooledDocumentCreator that is shared by all WSSSecurityProperties.
+     */
     public DocumentCreator getDocumentCreator() {
         return documentCreator;
     }
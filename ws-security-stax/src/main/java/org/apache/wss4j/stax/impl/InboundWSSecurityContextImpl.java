@@ -22,8 +22,13 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -36,6 +41,7 @@ import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
 import org.apache.wss4j.stax.utils.WSSUtils;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.InboundSecurityContextImpl;
 import org.apache.xml.security.stax.securityEvent.AlgorithmSuiteSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
@@ -175,24 +181,26 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         }
 
         //search the root tokens and create new TokenSecurityEvents if not already there...
+        Set<String> supportingTokenIds = new HashSet<>();
         for (int i = 0; i < tokenSecurityEvents.size(); i++) {
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = tokenSecurityEvents.get(i);
             InboundSecurityToken securityToken = WSSUtils.getRootToken(tokenSecurityEvent.getSecurityToken());
 
-            if (!containsSecurityToken(messageTokens.supportingTokens, securityToken)) {
+            if (securityToken == null || supportingTokenIds.add(securityToken.getId())) {
                 TokenSecurityEvent<? extends InboundSecurityToken> newTokenSecurityEvent =
                         WSSUtils.createTokenSecurityEvent(securityToken, tokenSecurityEvent.getCorrelationID());
                 messageTokens.supportingTokens = addTokenSecurityEvent(newTokenSecurityEvent, messageTokens.supportingTokens);
                 securityEventDeque.offer(newTokenSecurityEvent);
             }
-            //remove old TokenSecurityEvent so that only root tokens are in the queue
-            securityEventDeque.remove(tokenSecurityEvent);
         }
+        //remove the old TokenSecurityEvents so that only root tokens are in the queue
+        removeSecurityEvents(securityEventDeque, tokenSecurityEvents);
 
-        parseSupportingTokens(messageTokens, httpsTokenSecurityEvent, securityEventDeque);
+        SecurityEventIndex securityEventIndex = new SecurityEventIndex(securityEventDeque);
+        parseSupportingTokens(messageTokens, httpsTokenSecurityEvent, securityEventIndex);
 
         if (messageTokens.messageSignatureTokens.isEmpty()) {
-            InboundSecurityToken messageSignatureToken = getSupportingTokenSigningToken(messageTokens, securityEventDeque);
+            InboundSecurityToken messageSignatureToken = getSupportingTokenSigningToken(messageTokens, securityEventIndex);
 
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent =
                     getTokenSecurityEvent(messageSignatureToken, tokenSecurityEvents);
@@ -256,43 +264,43 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private void parseSupportingTokens(MessageTokens messageTokens, HttpsTokenSecurityEvent httpsTokenSecurityEvent,
-                                       Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
+                                       SecurityEventIndex securityEventIndex) throws XMLSecurityException {
         Iterator<TokenSecurityEvent<? extends InboundSecurityToken>> supportingTokensIterator = messageTokens.supportingTokens.iterator();
         while (supportingTokensIterator.hasNext()) {
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = supportingTokensIterator.next();
             List<InboundSecurityToken> signingSecurityTokens =
-                isSignedToken(tokenSecurityEvent, securityEventDeque, httpsTokenSecurityEvent);
+                isSignedToken(tokenSecurityEvent, securityEventIndex, httpsTokenSecurityEvent);
 
             List<QName> securityHeader =
                 soap12 ? WSSConstants.SOAP_12_WSSE_SECURITY_HEADER_PATH : WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH;
             List<QName> signatureElementPath = new ArrayList<>(4);
             signatureElementPath.addAll(securityHeader);
             signatureElementPath.add(WSSConstants.TAG_dsig_Signature);
-            boolean signsSignature = signsElement(tokenSecurityEvent, signatureElementPath, securityEventDeque);
-            boolean encryptsSignature = encryptsElement(tokenSecurityEvent, signatureElementPath, securityEventDeque);
+            boolean signsSignature = signsElement(tokenSecurityEvent, signatureElementPath, securityEventIndex);
+            boolean encryptsSignature = encryptsElement(tokenSecurityEvent, signatureElementPath, securityEventIndex);
 
             List<QName> signatureConfirmationElementPath = new ArrayList<>(4);
             signatureConfirmationElementPath.addAll(securityHeader);
             signatureConfirmationElementPath.add(WSSConstants.TAG_WSSE11_SIG_CONF);
             boolean signsSignatureConfirmation =
-                signsElement(tokenSecurityEvent, signatureConfirmationElementPath, securityEventDeque);
+                signsElement(tokenSecurityEvent, signatureConfirmationElementPath, securityEventIndex);
             boolean encryptsSignatureConfirmation =
-                encryptsElement(tokenSecurityEvent, signatureConfirmationElementPath, securityEventDeque);
+                encryptsElement(tokenSecurityEvent, signatureConfirmationElementPath, securityEventIndex);
 
             List<QName> timestampElementPath = new ArrayList<>(4);
             timestampElementPath.addAll(securityHeader);
             timestampElementPath.add(WSSConstants.TAG_WSU_TIMESTAMP);
-            boolean signsTimestamp = signsElement(tokenSecurityEvent, timestampElementPath, securityEventDeque);
+            boolean signsTimestamp = signsElement(tokenSecurityEvent, timestampElementPath, securityEventIndex);
 
             List<QName> usernameTokenElementPath = new ArrayList<>(4);
             usernameTokenElementPath.addAll(securityHeader);
             usernameTokenElementPath.add(WSSConstants.TAG_WSSE_USERNAME_TOKEN);
-            boolean encryptsUsernameToken = encryptsElement(tokenSecurityEvent, usernameTokenElementPath, securityEventDeque);
+            boolean encryptsUsernameToken = encryptsElement(tokenSecurityEvent, usernameTokenElementPath, securityEventIndex);
 
             boolean transportSecurityActive = Boolean.TRUE.equals(get(WSSConstants.TRANSPORT_SECURITY_ACTIVE));
 
             List<InboundSecurityToken> encryptingSecurityTokens =
-                isEncryptedToken(tokenSecurityEvent, securityEventDeque, httpsTokenSecurityEvent);
+                isEncryptedToken(tokenSecurityEvent, securityEventIndex, httpsTokenSecurityEvent);
 
             boolean signatureUsage =
                 tokenSecurityEvent.getSecurityToken().getTokenUsages().contains(WSSecurityTokenConstants.TokenUsage_Signature);
@@ -390,17 +398,24 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         return tokenSecurityEventList;
     }
 
-    private boolean containsSecurityToken(List<TokenSecurityEvent<? extends InboundSecurityToken>> supportingTokens,
-                                          SecurityToken securityToken) {
-        if (securityToken != null) {
-            for (int i = 0; i < supportingTokens.size(); i++) {
-                TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = supportingTokens.get(i);
-                if (tokenSecurityEvent.getSecurityToken().getId().equals(securityToken.getId())) {
-                    return true;
-                }
+    private void removeSecurityEvents(Deque<SecurityEvent> securityEventDeque,
+                                      List<? extends SecurityEvent> securityEvents) {
+        if (securityEvents.isEmpty()) {
+            return;
+        }
+        // Rebuild the queue in one pass, instead of a linear Deque.remove per event
+        Map<SecurityEvent, Boolean> removedSecurityEvents = new IdentityHashMap<>();
+        for (int i = 0; i < securityEvents.size(); i++) {
+            removedSecurityEvents.put(securityEvents.get(i), Boolean.TRUE);
+        }
+        List<SecurityEvent> remainingSecurityEvents = new ArrayList<>(securityEventDeque.size());
+        for (SecurityEvent securityEvent : securityEventDeque) {
+            if (!removedSecurityEvents.containsKey(securityEvent)) {
+                remainingSecurityEvents.add(securityEvent);
             }
         }
-        return false;
+        securityEventDeque.clear();
+        securityEventDeque.addAll(remainingSecurityEvents);
     }
 
     private TokenSecurityEvent<? extends InboundSecurityToken> getTokenSecurityEvent(
@@ -419,34 +434,34 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
 
     private InboundSecurityToken getSupportingTokenSigningToken(
             MessageTokens messageTokens,
-            Deque<SecurityEvent> securityEventDeque
+            SecurityEventIndex securityEventIndex
     ) throws XMLSecurityException {
 
         //todo we have to check if the signingTokens also cover the other supporting tokens!
         for (int i = 0; i < messageTokens.signedSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = messageTokens.signedSupportingTokens.get(i);
-            List<? extends InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<? extends InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventIndex);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
         }
         for (int i = 0; i < messageTokens.signedEndorsingSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = messageTokens.signedEndorsingSupportingTokens.get(i);
-            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventIndex);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
         }
         for (int i = 0; i < messageTokens.signedEncryptedSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = messageTokens.signedEncryptedSupportingTokens.get(i);
-            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventIndex);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
         }
         for (int i = 0; i < messageTokens.signedEndorsingEncryptedSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = messageTokens.signedEndorsingEncryptedSupportingTokens.get(i);
-            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventIndex);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
@@ -455,21 +470,13 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private List<InboundSecurityToken> getSigningToken(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent,
-                                                       Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
+                                                       SecurityEventIndex securityEventIndex) throws XMLSecurityException {
         List<InboundSecurityToken> signingSecurityTokens = new ArrayList<>();
 
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
-                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
-                if (signedElementSecurityEvent.isSigned()
-                        && WSSUtils.pathMatches(
-                        signedElementSecurityEvent.getElementPath(),
-                        ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getElementPath(), false)
-                        ) {
-                    signingSecurityTokens.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
-                }
-            }
+        List<SignedElementSecurityEvent> signedElementSecurityEvents = securityEventIndex.getSignedElements(
+            ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getElementPath());
+        for (int i = 0; i < signedElementSecurityEvents.size(); i++) {
+            signingSecurityTokens.add((InboundSecurityToken)signedElementSecurityEvents.get(i).getSecurityToken());
         }
         return signingSecurityTokens;
     }
@@ -491,32 +498,29 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private List<InboundSecurityToken> isSignedToken(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent,
-                                              Deque<SecurityEvent> securityEventDeque,
+                                              SecurityEventIndex securityEventIndex,
                                               HttpsTokenSecurityEvent httpsTokenSecurityEvent) throws XMLSecurityException {
         List<InboundSecurityToken> securityTokenList = new ArrayList<>();
         if (httpsTokenSecurityEvent != null) {
             securityTokenList.add(httpsTokenSecurityEvent.getSecurityToken());
             return securityTokenList;
         }
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
-                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
-                if (signedElementSecurityEvent.isSigned()
-                        && tokenSecurityEvent.getSecurityToken() != null
-                        && signedElementSecurityEvent.getXmlSecEvent() != null
-                        && signedElementSecurityEvent.getXmlSecEvent()
-                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
-                        && !securityTokenList.contains(signedElementSecurityEvent.getSecurityToken())) {
-                    securityTokenList.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
-                }
+        if (tokenSecurityEvent.getSecurityToken() == null) {
+            return securityTokenList;
+        }
+        List<SignedElementSecurityEvent> signedElementSecurityEvents = securityEventIndex.getSignedElements(
+            ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent());
+        for (int i = 0; i < signedElementSecurityEvents.size(); i++) {
+            SignedElementSecurityEvent signedElementSecurityEvent = signedElementSecurityEvents.get(i);
+            if (!securityTokenList.contains(signedElementSecurityEvent.getSecurityToken())) {
+                securityTokenList.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
             }
         }
         return securityTokenList;
     }
 
     private List<InboundSecurityToken> isEncryptedToken(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent,
-                                                 Deque<SecurityEvent> securityEventDeque,
+                                                 SecurityEventIndex securityEventIndex,
                                                  HttpsTokenSecurityEvent httpsTokenSecurityEvent) throws XMLSecurityException {
 
         List<InboundSecurityToken> securityTokenList = new ArrayList<>();
@@ -524,36 +528,29 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
             securityTokenList.add(httpsTokenSecurityEvent.getSecurityToken());
             return securityTokenList;
         }
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.EncryptedElement.equals(securityEvent.getSecurityEventType())) {
-                EncryptedElementSecurityEvent encryptedElementSecurityEvent = (EncryptedElementSecurityEvent) securityEvent;
-                if (encryptedElementSecurityEvent.isEncrypted()
-                        && tokenSecurityEvent.getSecurityToken() != null
-                        && encryptedElementSecurityEvent.getXmlSecEvent() != null
-                        && encryptedElementSecurityEvent.getXmlSecEvent()
-                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
-                        && !securityTokenList.contains(encryptedElementSecurityEvent.getSecurityToken())) {
-                    securityTokenList.add((InboundSecurityToken)encryptedElementSecurityEvent.getSecurityToken());
-                }
+        if (tokenSecurityEvent.getSecurityToken() == null) {
+            return securityTokenList;
+        }
+        List<EncryptedElementSecurityEvent> encryptedElementSecurityEvents = securityEventIndex.getEncryptedElements(
+            ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent());
+        for (int i = 0; i < encryptedElementSecurityEvents.size(); i++) {
+            EncryptedElementSecurityEvent encryptedElementSecurityEvent = encryptedElementSecurityEvents.get(i);
+            if (!securityTokenList.contains(encryptedElementSecurityEvent.getSecurityToken())) {
+                securityTokenList.add((InboundSecurityToken)encryptedElementSecurityEvent.getSecurityToken());
             }
         }
         return securityTokenList;
     }
 
     private boolean signsElement(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent, List<QName> elementPath,
-                                 Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
-                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
-                if (signedElementSecurityEvent.isSigned()
-                        && matchesTokenOrWrappedTokenId(tokenSecurityEvent.getSecurityToken(),
-                        signedElementSecurityEvent.getSecurityToken().getId(),
-                        SecurityTokenConstants.TokenUsage_Signature)
-                        && WSSUtils.pathMatches(elementPath, signedElementSecurityEvent.getElementPath(), false)) {
-                    return true;
-                }
+                                 SecurityEventIndex securityEventIndex) throws XMLSecurityException {
+        List<SignedElementSecurityEvent> signedElementSecurityEvents = securityEventIndex.getSignedElements(elementPath);
+        for (int i = 0; i < signedElementSecurityEvents.size(); i++) {
+            SignedElementSecurityEvent signedElementSecurityEvent = signedElementSecurityEvents.get(i);
+            if (matchesTokenOrWrappedTokenId(tokenSecurityEvent.getSecurityToken(),
+                    signedElementSecurityEvent.getSecurityToken().getId(),
+                    SecurityTokenConstants.TokenUsage_Signature)) {
+                return true;
             }
         }
         return false;
@@ -576,25 +573,22 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private boolean encryptsElement(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent, List<QName> elementPath,
-                                    Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
+                                    SecurityEventIndex securityEventIndex) throws XMLSecurityException {
+        String tokenId = tokenSecurityEvent.getSecurityToken().getId();
+        List<SecurityEvent> encryptedSecurityEvents = securityEventIndex.getEncryptedElementsAndContent(elementPath);
+        for (int i = 0; i < encryptedSecurityEvents.size(); i++) {
+            SecurityEvent securityEvent = encryptedSecurityEvents.get(i);
             if (WSSecurityEventConstants.EncryptedElement.equals(securityEvent.getSecurityEventType())) {
                 EncryptedElementSecurityEvent encryptedElementSecurityEvent = (EncryptedElementSecurityEvent) securityEvent;
-                if (encryptedElementSecurityEvent.isEncrypted()
-                        && encryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenSecurityEvent.getSecurityToken().getId())
-                        && WSSUtils.pathMatches(elementPath, encryptedElementSecurityEvent.getElementPath(), false)) {
+                if (encryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenId)) {
                     return true;
                 }
-            } else if (WSSecurityEventConstants.ContentEncrypted.equals(securityEvent.getSecurityEventType())) {
+            } else {
                 ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
                     (ContentEncryptedElementSecurityEvent) securityEvent;
-                String tokenId = tokenSecurityEvent.getSecurityToken().getId();
-                if (contentEncryptedElementSecurityEvent.isEncrypted()
-                        && contentEncryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenId)
+                if (contentEncryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenId)
                         && contentEncryptedElementSecurityEvent.getXmlSecEvent()
-                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
-                        && WSSUtils.pathMatches(elementPath, contentEncryptedElementSecurityEvent.getElementPath(), false)) {
+                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()) {
                     return true;
                 }
             }
@@ -646,6 +640,88 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         this.soap12 = soap12;
     }
 
+    /**
+     * An index of the SignedElement, EncryptedElement and ContentEncrypted security events of the message, by element
+     * path and by XMLSecEvent. It is built once per message, so that classifying the tokens does not rescan all of the
+     * security events for each token.
+     */
+    private static class SecurityEventIndex {
+        private final Map<List<QName>, List<SignedElementSecurityEvent>> signedElementsByPath = new HashMap<>();
+        private final Map<XMLSecEvent, List<SignedElementSecurityEvent>> signedElementsByXMLSecEvent =
+            new IdentityHashMap<>();
+        private final Map<List<QName>, List<SecurityEvent>> encryptedElementsAndContentByPath = new HashMap<>();
+        private final Map<XMLSecEvent, List<EncryptedElementSecurityEvent>> encryptedElementsByXMLSecEvent =
+            new IdentityHashMap<>();
+
+        SecurityEventIndex(Deque<SecurityEvent> securityEventDeque) {
+            for (SecurityEvent securityEvent : securityEventDeque) {
+                if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
+                    SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
+                    if (signedElementSecurityEvent.isSigned()) {
+                        add(signedElementsByPath, signedElementSecurityEvent.getElementPath(), signedElementSecurityEvent);
+                        add(signedElementsByXMLSecEvent, signedElementSecurityEvent.getXmlSecEvent(),
+                            signedElementSecurityEvent);
+                    }
+                } else if (WSSecurityEventConstants.EncryptedElement.equals(securityEvent.getSecurityEventType())) {
+                    EncryptedElementSecurityEvent encryptedElementSecurityEvent =
+                        (EncryptedElementSecurityEvent) securityEvent;
+                    if (encryptedElementSecurityEvent.isEncrypted()) {
+                        add(encryptedElementsAndContentByPath, encryptedElementSecurityEvent.getElementPath(),
+                            securityEvent);
+                        add(encryptedElementsByXMLSecEvent, encryptedElementSecurityEvent.getXmlSecEvent(),
+                            encryptedElementSecurityEvent);
+                    }
+                } else if (WSSecurityEventConstants.ContentEncrypted.equals(securityEvent.getSecurityEventType())) {
+                    ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
+                        (ContentEncryptedElementSecurityEvent) securityEvent;
+                    if (contentEncryptedElementSecurityEvent.isEncrypted()) {
+                        add(encryptedElementsAndContentByPath, contentEncryptedElementSecurityEvent.getElementPath(),
+                            securityEvent);
+                    }
+                }
+            }
+        }
+
+        private static <K, V> void add(Map<K, List<V>> map, K key, V value) {
+            if (key != null) {
+                map.computeIfAbsent(key, k -> new ArrayList<>(1)).add(value);
+            }
+        }
+
+        private static <K, V> List<V> get(Map<K, List<V>> map, K key) {
+            List<V> values = key == null ? null : map.get(key);
+            return values == null ? Collections.<V>emptyList() : values;
+        }
+
+        /**
+         * @return the signed elements with the given element path
+         */
+        List<SignedElementSecurityEvent> getSignedElements(List<QName> elementPath) {
+            return get(signedElementsByPath, elementPath);
+        }
+
+        /**
+         * @return the signed elements that start with the given XMLSecEvent
+         */
+        List<SignedElementSecurityEvent> getSignedElements(XMLSecEvent xmlSecEvent) {
+            return get(signedElementsByXMLSecEvent, xmlSecEvent);
+        }
+
+        /**
+         * @return the encrypted elements and encrypted element contents with the given element path
+         */
+        List<SecurityEvent> getEncryptedElementsAndContent(List<QName> elementPath) {
+            return get(encryptedElementsAndContentByPath, elementPath);
+        }
+
+        /**
+         * @return the encrypted elements that start with the given XMLSecEvent
+         */
+        List<EncryptedElementSecurityEvent> getEncryptedElements(XMLSecEvent xmlSecEvent) {
+            return get(encryptedElementsByXMLSecEvent, xmlSecEvent);
+        }
+    }
+
     private static class MessageTokens {
         List<TokenSecurityEvent<? extends InboundSecurityToken>> messageSignatureTokens = Collections.emptyList();
         List<TokenSecurityEvent<? extends InboundSecurityToken>> messageEncryptionTokens = Collections.emptyList();
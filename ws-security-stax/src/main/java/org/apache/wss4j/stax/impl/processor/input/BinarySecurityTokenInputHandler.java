@@ -56,9 +56,9 @@ public class BinarySecurityTokenInputHandler extends AbstractInputSecurityHeader
     @Override
     public void handle(final InputProcessorChain inputProcessorChain, final XMLSecurityProperties securityProperties,
                        final Deque<XMLSecEvent> eventQueue, final Integer index) throws XMLSecurityException {
-        @SuppressWarnings("unchecked")
+        final List<XMLSecEvent> xmlSecEvents = getResponsibleXMLSecEvents(eventQueue, index);
         final BinarySecurityTokenType binarySecurityTokenType =
-                ((JAXBElement<BinarySecurityTokenType>) parseStructure(eventQueue, index, securityProperties)).getValue();
+                parseBinarySecurityToken(eventQueue, index, securityProperties, xmlSecEvents);
 
         checkBSPCompliance(inputProcessorChain, binarySecurityTokenType);
 
@@ -70,7 +70,6 @@ public class BinarySecurityTokenInputHandler extends AbstractInputSecurityHeader
             (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
         final WSSSecurityProperties wssSecurityProperties = (WSSSecurityProperties) securityProperties;
         final List<QName> elementPath = getElementPath(eventQueue);
-        final List<XMLSecEvent> xmlSecEvents = getResponsibleXMLSecEvents(eventQueue, index);
 
         final TokenContext tokenContext =
             new TokenContext(wssSecurityProperties, wsInboundSecurityContext, xmlSecEvents, elementPath);
@@ -116,6 +115,18 @@ public class BinarySecurityTokenInputHandler extends AbstractInputSecurityHeader
         wsInboundSecurityContext.registerSecurityEvent(tokenSecurityEvent);
     }
 
+    @SuppressWarnings("unchecked")
+    private BinarySecurityTokenType parseBinarySecurityToken(Deque<XMLSecEvent> eventQueue, Integer index,
+                                                             XMLSecurityProperties securityProperties,
+                                                             List<XMLSecEvent> xmlSecEvents) throws XMLSecurityException {
+        BinarySecurityTokenType binarySecurityTokenType = XMLSecEventBinder.bindBinarySecurityToken(xmlSecEvents);
+        if (binarySecurityTokenType == null) {
+            binarySecurityTokenType =
+                ((JAXBElement<BinarySecurityTokenType>) parseStructure(eventQueue, index, securityProperties)).getValue();
+        }
+        return binarySecurityTokenType;
+    }
+
     private void checkBSPCompliance(InputProcessorChain inputProcessorChain, BinarySecurityTokenType binarySecurityTokenType)
             throws WSSecurityException {
 
@@ -42,8 +42,10 @@ import javax.xml.stream.events.ProcessingInstruction;
 
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -116,8 +118,21 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
             samlTokenValidator = new SamlTokenValidatorImpl();
         }
 
+        //see if the (signed) assertion has been validated previously
+        final SamlAssertionCache samlAssertionCache = wssSecurityProperties.getSamlAssertionCache();
+        String cacheIdentifier = null;
+        SAMLKeyInfo cachedSignatureKeyInfo = null;
+        if (samlAssertionCache != null) {
+            cacheIdentifier = samlAssertionCache.getIdentifier(samlAssertionWrapper);
+            cachedSignatureKeyInfo = samlAssertionCache.get(cacheIdentifier,
+                wssSecurityProperties.getSignatureVerificationCrypto(), samlTokenValidator);
+        }
+
         //important: check the signature before we do other processing...
-        if (samlAssertionWrapper.isSigned()) {
+        if (cachedSignatureKeyInfo != null) {
+            //the signature of this (identical) assertion has been verified and trusted previously
+            samlAssertionWrapper.setSignatureKeyInfo(cachedSignatureKeyInfo);
+        } else if (samlAssertionWrapper.isSigned()) {
             Signature signature = samlAssertionWrapper.getSignature();
             if (signature == null) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN,
@@ -137,10 +152,13 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
             samlTokenValidator.validate(sigSecurityToken, wssSecurityProperties);
 
             BasicCredential credential = null;
+            SAMLKeyInfo signatureKeyInfo = null;
             if (sigSecurityToken.getX509Certificates() != null) {
                 credential = new BasicX509Credential(sigSecurityToken.getX509Certificates()[0]);
+                signatureKeyInfo = new SAMLKeyInfo(sigSecurityToken.getX509Certificates());
             } else if (sigSecurityToken.getPublicKey() != null) {
                 credential = new BasicCredential(sigSecurityToken.getPublicKey());
+                signatureKeyInfo = new SAMLKeyInfo(sigSecurityToken.getPublicKey());
             } else {
                 throw new WSSecurityException(
                         WSSecurityException.ErrorCode.FAILURE, "invalidSAMLsecurity",
@@ -153,6 +171,7 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
                         ex, "empty", new Object[] {"SAML signature validation failed"});
             }
+            samlAssertionWrapper.setSignatureKeyInfo(signatureKeyInfo);
         }
 
         final InboundSecurityToken subjectSecurityToken;
@@ -189,6 +208,10 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
 
         final SamlSecurityToken samlSecurityToken =
                 samlTokenValidator.validate(samlAssertionWrapper, subjectSecurityToken, tokenContext);
+        if (cacheIdentifier != null && cachedSignatureKeyInfo == null) {
+            samlAssertionCache.put(cacheIdentifier, wssSecurityProperties.getSignatureVerificationCrypto(),
+                samlTokenValidator, samlAssertionWrapper, samlAssertionWrapper.getSignatureKeyInfo());
+        }
 
         SecurityTokenProvider<InboundSecurityToken> subjectSecurityTokenProvider =
                 new SecurityTokenProvider<InboundSecurityToken>() {
@@ -65,11 +65,8 @@ public class TimestampInputHandler extends AbstractInputSecurityHeaderHandler {
         }
         wssecurityContextInbound.put(WSSConstants.TIMESTAMP_PROCESSED, Boolean.TRUE);
 
-        @SuppressWarnings("unchecked")
-        final TimestampType timestampType =
-                ((JAXBElement<TimestampType>) parseStructure(eventQueue, index, securityProperties)).getValue();
-
         final List<XMLSecEvent> xmlSecEvents = getResponsibleXMLSecEvents(eventQueue, index);
+        final TimestampType timestampType = parseTimestamp(eventQueue, index, securityProperties, xmlSecEvents);
         List<QName> elementPath = getElementPath(eventQueue);
 
         checkBSPCompliance(inputProcessorChain, timestampType, xmlSecEvents);
@@ -107,6 +104,18 @@ public class TimestampInputHandler extends AbstractInputSecurityHeaderHandler {
         wssecurityContextInbound.put(WSSConstants.PROP_TIMESTAMP_SECURITYEVENT, timestampSecurityEvent);
     }
 
+    @SuppressWarnings("unchecked")
+    private TimestampType parseTimestamp(Deque<XMLSecEvent> eventQueue, Integer index,
+                                         XMLSecurityProperties securityProperties,
+                                         List<XMLSecEvent> xmlSecEvents) throws XMLSecurityException {
+        TimestampType timestampType = XMLSecEventBinder.bindTimestamp(xmlSecEvents);
+        if (timestampType == null) {
+            timestampType =
+                ((JAXBElement<TimestampType>) parseStructure(eventQueue, index, securityProperties)).getValue();
+        }
+        return timestampType;
+    }
+
     private void checkBSPCompliance(InputProcessorChain inputProcessorChain, TimestampType timestampType,
                                     List<XMLSecEvent> xmlSecEvents) throws WSSecurityException {
         final WSInboundSecurityContext securityContext = (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
@@ -60,11 +60,9 @@ public class UsernameTokenInputHandler extends AbstractInputSecurityHeaderHandle
     public void handle(final InputProcessorChain inputProcessorChain, final XMLSecurityProperties securityProperties,
                        Deque<XMLSecEvent> eventQueue, Integer index) throws XMLSecurityException {
 
-        @SuppressWarnings("unchecked")
-        final UsernameTokenType usernameTokenType =
-                ((JAXBElement<UsernameTokenType>) parseStructure(eventQueue, index, securityProperties)).getValue();
-
         final List<XMLSecEvent> xmlSecEvents = getResponsibleXMLSecEvents(eventQueue, index);
+        final UsernameTokenType usernameTokenType =
+                parseUsernameToken(eventQueue, index, securityProperties, xmlSecEvents);
 
         checkBSPCompliance(inputProcessorChain, usernameTokenType, xmlSecEvents);
 
@@ -82,18 +80,17 @@ public class UsernameTokenInputHandler extends AbstractInputSecurityHeaderHandle
         if (encodedNonce != null && replayCache != null) {
             // Check for replay attacks
             String nonce = encodedNonce.getValue();
-            if (replayCache.contains(nonce)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
-            }
 
             // If no Created, then just cache for the default time
             // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
             // older token will just get rejected anyway
             int utTTL = wssSecurityProperties.getUtTTL();
-            if (created == null || utTTL <= 0) {
-                replayCache.add(nonce);
-            } else {
-                replayCache.add(nonce, Instant.now().plusSeconds(utTTL));
+            Instant expiry = null;
+            if (created != null && utTTL > 0) {
+                expiry = Instant.now().plusSeconds(utTTL);
+            }
+            if (!replayCache.putIfAbsent(nonce, expiry)) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
             }
         }
 
@@ -135,6 +132,18 @@ public class UsernameTokenInputHandler extends AbstractInputSecurityHeaderHandle
         inputProcessorChain.getSecurityContext().registerSecurityEvent(usernameTokenSecurityEvent);
     }
 
+    @SuppressWarnings("unchecked")
+    private UsernameTokenType parseUsernameToken(Deque<XMLSecEvent> eventQueue, Integer index,
+                                                 XMLSecurityProperties securityProperties,
+                                                 List<XMLSecEvent> xmlSecEvents) throws XMLSecurityException {
+        UsernameTokenType usernameTokenType = XMLSecEventBinder.bindUsernameToken(xmlSecEvents);
+        if (usernameTokenType == null) {
+            usernameTokenType =
+                ((JAXBElement<UsernameTokenType>) parseStructure(eventQueue, index, securityProperties)).getValue();
+        }
+        return usernameTokenType;
+    }
+
     private void checkBSPCompliance(InputProcessorChain inputProcessorChain, UsernameTokenType usernameTokenType,
                                     List<XMLSecEvent> xmlSecEvents) throws WSSecurityException {
 
@@ -22,17 +22,23 @@ import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.ReferenceType;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.AttachmentUtils;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
+import org.apache.wss4j.stax.impl.securityToken.CachingEncryptedKeySecurityToken;
 import org.apache.xml.security.binding.xmldsig.KeyInfoType;
 import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
 import org.apache.xml.security.binding.xmlenc.EncryptionMethodType;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.InboundSecurityContext;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.processor.input.XMLEncryptedKeyInputHandler;
+import org.apache.xml.security.stax.impl.util.IDGenerator;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 
@@ -63,7 +69,69 @@ public class WSSEncryptedKeyInputHandler extends XMLEncryptedKeyInputHandler {
             }
         }
 
+        EncryptedKeyCache encryptedKeyCache = ((WSSSecurityProperties) securityProperties).getEncryptedKeyCache();
+        if (encryptedKeyCache != null && encryptedKeyType.getId() == null) {
+            encryptedKeyType.setId(IDGenerator.generateID(null));
+        }
+
         super.handle(inputProcessorChain, encryptedKeyType, responsibleXMLSecStartXMLEvent, securityProperties);
+
+        if (encryptedKeyCache != null) {
+            registerCachingSecurityTokenProvider(inputProcessorChain, encryptedKeyType, encryptedKeyCache);
+        }
+    }
+
+    //XMLEncryptedKeyInputHandler has registered the SecurityTokenProvider of this EncryptedKey. It is replaced by
+    //one that wraps the token in a CachingEncryptedKeySecurityToken, before the EncryptedData of the ReferenceList
+    //or any later reference resolves the token, so that the EncryptedKeyCache is consulted before the key is
+    //decrypted with the private key
+    private void registerCachingSecurityTokenProvider(InputProcessorChain inputProcessorChain,
+                                                      EncryptedKeyType encryptedKeyType,
+                                                      EncryptedKeyCache encryptedKeyCache) {
+        WSInboundSecurityContext inboundSecurityContext =
+            (WSInboundSecurityContext) inputProcessorChain.getSecurityContext();
+        SecurityTokenProvider<? extends InboundSecurityToken> securityTokenProvider =
+            inboundSecurityContext.getSecurityTokenProvider(encryptedKeyType.getId());
+        if (securityTokenProvider != null) {
+            inboundSecurityContext.registerSecurityTokenProvider(encryptedKeyType.getId(),
+                new CachingSecurityTokenProvider(securityTokenProvider, encryptedKeyType, encryptedKeyCache,
+                                                 inboundSecurityContext));
+        }
+    }
+
+    //a SecurityTokenProvider that wraps the token of the EncryptedKey in a CachingEncryptedKeySecurityToken
+    private static class CachingSecurityTokenProvider implements SecurityTokenProvider<InboundSecurityToken> {
+
+        private final SecurityTokenProvider<? extends InboundSecurityToken> securityTokenProvider;
+        private final EncryptedKeyType encryptedKeyType;
+        private final EncryptedKeyCache encryptedKeyCache;
+        private final InboundSecurityContext inboundSecurityContext;
+        private InboundSecurityToken securityToken;
+
+        CachingSecurityTokenProvider(SecurityTokenProvider<? extends InboundSecurityToken> securityTokenProvider,
+                                     EncryptedKeyType encryptedKeyType, EncryptedKeyCache encryptedKeyCache,
+                                     InboundSecurityContext inboundSecurityContext) {
+            this.securityTokenProvider = securityTokenProvider;
+            this.encryptedKeyType = encryptedKeyType;
+            this.encryptedKeyCache = encryptedKeyCache;
+            this.inboundSecurityContext = inboundSecurityContext;
+        }
+
+        @Override
+        public InboundSecurityToken getSecurityToken() throws XMLSecurityException {
+            if (this.securityToken == null) {
+                this.securityToken =
+                    new CachingEncryptedKeySecurityToken(securityTokenProvider.getSecurityToken(),
+                                                         encryptedKeyType, encryptedKeyCache,
+                                                         inboundSecurityContext);
+            }
+            return this.securityToken;
+        }
+
+        @Override
+        public String getId() {
+            return securityTokenProvider.getId();
+        }
     }
 
     //if this EncryptedKey structure contains a reference list, instantiate a new DecryptInputProcessor
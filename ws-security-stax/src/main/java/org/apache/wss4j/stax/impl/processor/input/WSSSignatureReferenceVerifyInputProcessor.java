@@ -22,9 +22,7 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.time.Instant;
-import java.time.temporal.ChronoField;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -38,6 +36,7 @@ import javax.xml.stream.XMLStreamException;
 import org.apache.wss4j.binding.wss10.TransformationParametersType;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.ReplayCacheUtils;
 import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
@@ -313,20 +312,15 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
         ReplayCache replayCache =
             ((WSSSecurityProperties)getSecurityProperties()).getTimestampReplayCache();
         if (timestampSecurityEvent != null && replayCache != null) {
+            // Use a fixed-width digest of the Timestamp/SignatureValue combination
             final String cacheKey =
-                    timestampSecurityEvent.getCreated().get(ChronoField.MILLI_OF_SECOND)
-                    + "" + Arrays.hashCode(getSignatureType().getSignatureValue().getValue());
-            if (replayCache.contains(cacheKey)) {
+                    ReplayCacheUtils.createIdentifier(
+                        timestampSecurityEvent.getCreated().toString().getBytes(StandardCharsets.UTF_8),
+                        getSignatureType().getSignatureValue().getValue());
+            // Store the Timestamp/SignatureValue combination in the cache, unless it is already there
+            if (!replayCache.putIfAbsent(cacheKey, timestampSecurityEvent.getExpires())) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
             }
-
-            // Store the Timestamp/SignatureValue combination in the cache
-            Instant expires = timestampSecurityEvent.getExpires();
-            if (expires != null) {
-                replayCache.add(cacheKey, expires);
-            } else {
-                replayCache.add(cacheKey);
-            }
         }
     }
 
@@ -0,0 +1,319 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.processor.input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.events.Attribute;
+
+import org.apache.wss4j.binding.wss10.AttributedString;
+import org.apache.wss4j.binding.wss10.BinarySecurityTokenType;
+import org.apache.wss4j.binding.wss10.EncodedString;
+import org.apache.wss4j.binding.wss10.PasswordString;
+import org.apache.wss4j.binding.wss10.UsernameTokenType;
+import org.apache.wss4j.binding.wsu10.AttributedDateTime;
+import org.apache.wss4j.binding.wsu10.TimestampType;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.xml.security.stax.ext.stax.XMLSecAttribute;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+
+/**
+ * Binds the XMLSecEvents of the common forms of a Timestamp, UsernameToken and BinarySecurityToken
+ * directly to the JAXB binding types, without the cost of a JAXB Unmarshaller.
+ *
+ * A structure is only bound if it is a plain, schema-valid instance of the type: the expected
+ * child elements in the expected order, simple content, and no attributes other than those known
+ * to the binding type (with values that are trivially a valid xs:ID or xs:anyURI). For anything
+ * else (extension elements or attributes, comments, xop:Include etc.) null is returned, and the
+ * caller must fall back to the JAXB Unmarshaller, which also does the schema validation.
+ */
+public final class XMLSecEventBinder {
+
+    private static final QName[] ID_ATTRIBUTE = {WSSConstants.ATT_WSU_ID};
+    private static final QName[] NO_ATTRIBUTES = {};
+
+    private XMLSecEventBinder() {
+        // complete
+    }
+
+    /**
+     * Bind the XMLSecEvents of a wsu:Timestamp
+     * @param xmlSecEvents The XMLSecEvents of the Timestamp, from the start to the end element
+     * @return the TimestampType, or null if the Timestamp must be unmarshalled with JAXB
+     */
+    public static TimestampType bindTimestamp(List<XMLSecEvent> xmlSecEvents) {
+        List<SimpleElement> children =
+            getSimpleChildElements(xmlSecEvents, WSSConstants.TAG_WSU_TIMESTAMP, ID_ATTRIBUTE);
+        if (children == null || children.size() > 2) {
+            return null;
+        }
+
+        TimestampType timestampType = new TimestampType();
+        timestampType.setId(getAttributeValue(xmlSecEvents.get(0).asStartElement(), WSSConstants.ATT_WSU_ID));
+        int i = 0;
+        if (i < children.size() && children.get(i).is(WSSConstants.TAG_WSU_CREATED, NO_ATTRIBUTES)) {
+            timestampType.setCreated(children.get(i++).toAttributedDateTime());
+        }
+        if (i < children.size() && children.get(i).is(WSSConstants.TAG_WSU_EXPIRES, NO_ATTRIBUTES)) {
+            timestampType.setExpires(children.get(i++).toAttributedDateTime());
+        }
+        if (i < children.size()) {
+            return null;
+        }
+        return timestampType;
+    }
+
+    /**
+     * Bind the XMLSecEvents of a wsse:UsernameToken
+     * @param xmlSecEvents The XMLSecEvents of the UsernameToken, from the start to the end element
+     * @return the UsernameTokenType, or null if the UsernameToken must be unmarshalled with JAXB
+     */
+    public static UsernameTokenType bindUsernameToken(List<XMLSecEvent> xmlSecEvents) {
+        List<SimpleElement> children =
+            getSimpleChildElements(xmlSecEvents, WSSConstants.TAG_WSSE_USERNAME_TOKEN, ID_ATTRIBUTE);
+        if (children == null || children.isEmpty()
+            || !children.get(0).is(WSSConstants.TAG_WSSE_USERNAME, NO_ATTRIBUTES)) {
+            return null;
+        }
+
+        UsernameTokenType usernameTokenType = new UsernameTokenType();
+        usernameTokenType.setId(getAttributeValue(xmlSecEvents.get(0).asStartElement(), WSSConstants.ATT_WSU_ID));
+        AttributedString username = new AttributedString();
+        username.setValue(children.get(0).getText());
+        usernameTokenType.setUsername(username);
+
+        // The remaining children are bound as JAXBElements, as JAXB does for the xs:any content
+        for (int i = 1; i < children.size(); i++) {
+            SimpleElement child = children.get(i);
+            if (child.is(WSSConstants.TAG_WSSE_PASSWORD, WSSConstants.ATT_NULL_Type)) {
+                PasswordString passwordString = new PasswordString();
+                passwordString.setValue(child.getText());
+                passwordString.setType(child.getAttributeValue(WSSConstants.ATT_NULL_Type));
+                usernameTokenType.getAny().add(
+                    new JAXBElement<>(WSSConstants.TAG_WSSE_PASSWORD, PasswordString.class, passwordString));
+            } else if (child.is(WSSConstants.TAG_WSSE_NONCE, WSSConstants.ATT_NULL_ENCODING_TYPE)) {
+                EncodedString encodedString = new EncodedString();
+                encodedString.setValue(child.getText());
+                encodedString.setEncodingType(child.getAttributeValue(WSSConstants.ATT_NULL_ENCODING_TYPE));
+                usernameTokenType.getAny().add(
+                    new JAXBElement<>(WSSConstants.TAG_WSSE_NONCE, EncodedString.class, encodedString));
+            } else if (child.is(WSSConstants.TAG_WSU_CREATED, NO_ATTRIBUTES)) {
+                usernameTokenType.getAny().add(
+                    new JAXBElement<>(WSSConstants.TAG_WSU_CREATED, AttributedDateTime.class,
+                                      child.toAttributedDateTime()));
+            } else {
+                return null;
+            }
+        }
+        return usernameTokenType;
+    }
+
+    /**
+     * Bind the XMLSecEvents of a wsse:BinarySecurityToken
+     * @param xmlSecEvents The XMLSecEvents of the BinarySecurityToken, from the start to the end element
+     * @return the BinarySecurityTokenType, or null if the BinarySecurityToken must be unmarshalled with JAXB
+     */
+    public static BinarySecurityTokenType bindBinarySecurityToken(List<XMLSecEvent> xmlSecEvents) {
+        int last = xmlSecEvents.size() - 1;
+        if (!isElement(xmlSecEvents, WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN)) {
+            return null;
+        }
+        XMLSecStartElement startElement = xmlSecEvents.get(0).asStartElement();
+        if (!hasSupportedAttributes(startElement, WSSConstants.ATT_NULL_VALUE_TYPE,
+                                    WSSConstants.ATT_NULL_ENCODING_TYPE, WSSConstants.ATT_WSU_ID)) {
+            return null;
+        }
+
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i < last; i++) {
+            XMLSecEvent xmlSecEvent = xmlSecEvents.get(i);
+            if (xmlSecEvent.getEventType() != XMLStreamConstants.CHARACTERS) {
+                return null;
+            }
+            content.append(xmlSecEvent.asCharacters().getText());
+        }
+
+        BinarySecurityTokenType binarySecurityTokenType = new BinarySecurityTokenType();
+        binarySecurityTokenType.setId(getAttributeValue(startElement, WSSConstants.ATT_WSU_ID));
+        binarySecurityTokenType.setValueType(getAttributeValue(startElement, WSSConstants.ATT_NULL_VALUE_TYPE));
+        binarySecurityTokenType.setEncodingType(getAttributeValue(startElement, WSSConstants.ATT_NULL_ENCODING_TYPE));
+        if (content.length() > 0) {
+            binarySecurityTokenType.getContent().add(content.toString());
+        }
+        return binarySecurityTokenType;
+    }
+
+    private static boolean isElement(List<XMLSecEvent> xmlSecEvents, QName elementName) {
+        int last = xmlSecEvents.size() - 1;
+        return last > 0
+            && xmlSecEvents.get(0).getEventType() == XMLStreamConstants.START_ELEMENT
+            && xmlSecEvents.get(last).getEventType() == XMLStreamConstants.END_ELEMENT
+            && elementName.equals(xmlSecEvents.get(0).asStartElement().getName());
+    }
+
+    /**
+     * Get the child elements of the given element, if they all have simple content and are only
+     * separated by whitespace
+     */
+    private static List<SimpleElement> getSimpleChildElements(List<XMLSecEvent> xmlSecEvents, QName elementName,
+                                                              QName... supportedAttributes) {
+        if (!isElement(xmlSecEvents, elementName)
+            || !hasSupportedAttributes(xmlSecEvents.get(0).asStartElement(), supportedAttributes)) {
+            return null;
+        }
+
+        int last = xmlSecEvents.size() - 1;
+        List<SimpleElement> children = new ArrayList<>();
+        SimpleElement child = null;
+        for (int i = 1; i < last; i++) {
+            XMLSecEvent xmlSecEvent = xmlSecEvents.get(i);
+            switch (xmlSecEvent.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (child != null) {
+                        return null;
+                    }
+                    child = new SimpleElement(xmlSecEvent.asStartElement());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    // An empty child element is left to JAXB
+                    if (child == null || child.text.length() == 0) {
+                        return null;
+                    }
+                    children.add(child);
+                    child = null;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                    char[] text = xmlSecEvent.asCharacters().getText();
+                    if (child != null) {
+                        child.text.append(text);
+                    } else if (!isWhitespace(text)) {
+                        return null;
+                    }
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return child == null ? children : null;
+    }
+
+    private static boolean hasSupportedAttributes(XMLSecStartElement startElement, QName... supportedAttributes) {
+        List<XMLSecAttribute> attributes = startElement.getOnElementDeclaredAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            XMLSecAttribute attribute = attributes.get(i);
+            QName attributeName = attribute.getName();
+            boolean supported = false;
+            for (QName supportedAttribute : supportedAttributes) {
+                if (supportedAttribute.equals(attributeName)) {
+                    supported = true;
+                    break;
+                }
+            }
+            if (!supported) {
+                return false;
+            }
+            // The wsu:Id is an xs:ID, the other supported attributes are all an xs:anyURI
+            if (WSSConstants.ATT_WSU_ID.equals(attributeName)
+                ? !isSimpleNCName(attribute.getValue()) : !isSimpleURI(attribute.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getAttributeValue(XMLSecStartElement startElement, QName attributeName) {
+        Attribute attribute = startElement.getAttributeByName(attributeName);
+        return attribute == null ? null : attribute.getValue();
+    }
+
+    private static boolean isWhitespace(char[] text) {
+        for (char c : text) {
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A conservative check for a valid xs:ID, that needs no whitespace collapsing
+     */
+    private static boolean isSimpleNCName(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_'
+                || i > 0 && (c >= '0' && c <= '9' || c == '-' || c == '.');
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A conservative check for a valid xs:anyURI, that needs no whitespace collapsing
+     */
+    private static boolean isSimpleURI(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean valid = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || "-._~:/?#@!$&'()*+,;=".indexOf(c) >= 0;
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class SimpleElement {
+        private final XMLSecStartElement startElement;
+        private final StringBuilder text = new StringBuilder();
+
+        SimpleElement(XMLSecStartElement startElement) {
+            this.startElement = startElement;
+        }
+
+        boolean is(QName elementName, QName... supportedAttributes) {
+            return elementName.equals(startElement.getName())
+                && hasSupportedAttributes(startElement, supportedAttributes);
+        }
+
+        String getText() {
+            return text.toString();
+        }
+
+        String getAttributeValue(QName attributeName) {
+            return XMLSecEventBinder.getAttributeValue(startElement, attributeName);
+        }
+
+        AttributedDateTime toAttributedDateTime() {
+            AttributedDateTime attributedDateTime = new AttributedDateTime();
+            attributedDateTime.setValue(getText());
+            return attributedDateTime;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.impl.securityToken;
+
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.binding.xmldsig.DigestMethodType;
+import org.apache.xml.security.binding.xmlenc.CipherDataType;
+import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
+import org.apache.xml.security.binding.xmlenc.EncryptionMethodType;
+import org.apache.xml.security.binding.xmlenc11.MGFType;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.InboundSecurityContext;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.XMLSecurityUtils;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.impl.securityToken.AbstractSecurityToken;
+import org.apache.xml.security.stax.securityEvent.AlgorithmSuiteSecurityEvent;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
+import org.apache.xml.security.utils.XMLUtils;
+
+/**
+ * An InboundSecurityToken for an (asymmetrically encrypted) EncryptedKey, that consults an
+ * EncryptedKeyCache before the wrapped token decrypts the key with the private key. A cached key
+ * is handed to the wrapped token, which then returns it and registers the algorithm events as
+ * usual. All other calls are delegated to the wrapped token.
+ */
+public class CachingEncryptedKeySecurityToken implements InboundSecurityToken {
+
+    private static final transient org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CachingEncryptedKeySecurityToken.class);
+
+    private final InboundSecurityToken delegate;
+    private final EncryptedKeyType encryptedKeyType;
+    private final EncryptedKeyCache encryptedKeyCache;
+    private final InboundSecurityContext inboundSecurityContext;
+    private byte[] encryptedKey;
+    private String sha1Identifier;
+
+    public CachingEncryptedKeySecurityToken(InboundSecurityToken delegate, EncryptedKeyType encryptedKeyType,
+                                            EncryptedKeyCache encryptedKeyCache,
+                                            InboundSecurityContext inboundSecurityContext) {
+        this.delegate = delegate;
+        this.encryptedKeyType = encryptedKeyType;
+        this.encryptedKeyCache = encryptedKeyCache;
+        this.inboundSecurityContext = inboundSecurityContext;
+
+        encryptedKey = getEncryptedBytes(encryptedKeyType.getCipherData());
+        if (encryptedKey != null) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-1").digest(encryptedKey);
+                sha1Identifier = XMLUtils.encodeToString(digest);
+            } catch (NoSuchAlgorithmException e) {
+                LOG.debug(e.getMessage(), e);
+                encryptedKey = null;
+            }
+        }
+    }
+
+    @Override
+    public Key getSecretKey(String algorithmURI, XMLSecurityConstants.AlgorithmUsage algorithmUsage,
+                            String correlationID) throws XMLSecurityException {
+        EncryptionMethodType encryptionMethodType = encryptedKeyType.getEncryptionMethod();
+        SecurityToken wrappingToken = delegate.getKeyWrappingToken();
+        if (encryptedKey == null || encryptionMethodType == null || encryptionMethodType.getAlgorithm() == null
+            || !(delegate instanceof AbstractSecurityToken) || !(wrappingToken instanceof InboundSecurityToken)
+            || !wrappingToken.isAsymmetric() || delegate.getSecretKey().containsKey(algorithmURI)) {
+            return delegate.getSecretKey(algorithmURI, algorithmUsage, correlationID);
+        }
+
+        PublicKey recipientKey = wrappingToken.getPublicKey();
+        if (recipientKey == null) {
+            X509Certificate[] certs = wrappingToken.getX509Certificates();
+            if (certs != null && certs.length > 0) {
+                recipientKey = certs[0].getPublicKey();
+            }
+        }
+        if (recipientKey == null) {
+            return delegate.getSecretKey(algorithmURI, algorithmUsage, correlationID);
+        }
+
+        String keyTransport = getKeyTransport(encryptionMethodType);
+        byte[] secretKey = encryptedKeyCache.get(encryptedKey, keyTransport, recipientKey);
+        if (secretKey == null) {
+            Key key = delegate.getSecretKey(algorithmURI, algorithmUsage, correlationID);
+            if (key != null && key.getEncoded() != null) {
+                encryptedKeyCache.put(encryptedKey, keyTransport, recipientKey, key.getEncoded());
+            }
+            return key;
+        }
+
+        LOG.debug("Using the cached secret key of EncryptedKey {}", getId());
+        // The wrapping token registers the key transport algorithm as it would when decrypting the key
+        ((InboundSecurityToken)wrappingToken).getPublicKey(
+            encryptionMethodType.getAlgorithm(), XMLSecurityConstants.Asym_Key_Wrap, correlationID);
+        // XMLEncryptedKeyInputHandler registers the OAEP digest algorithm when it decrypts the key
+        DigestMethodType digestMethodType =
+            XMLSecurityUtils.getQNameType(encryptionMethodType.getContent(), XMLSecurityConstants.TAG_dsig_DigestMethod);
+        if (digestMethodType != null) {
+            AlgorithmSuiteSecurityEvent algorithmSuiteSecurityEvent = new AlgorithmSuiteSecurityEvent();
+            algorithmSuiteSecurityEvent.setAlgorithmURI(digestMethodType.getAlgorithm());
+            algorithmSuiteSecurityEvent.setAlgorithmUsage(XMLSecurityConstants.EncDig);
+            algorithmSuiteSecurityEvent.setCorrelationID(correlationID);
+            inboundSecurityContext.registerSecurityEvent(algorithmSuiteSecurityEvent);
+        }
+
+        // The wrapped token returns the cached key and registers the symmetric algorithm
+        String keyAlgorithm = JCEMapper.getJCEKeyAlgorithmFromURI(algorithmURI);
+        ((AbstractSecurityToken)delegate).setSecretKey(algorithmURI, new SecretKeySpec(secretKey, keyAlgorithm));
+        return delegate.getSecretKey(algorithmURI, algorithmUsage, correlationID);
+    }
+
+    private static String getKeyTransport(EncryptionMethodType encryptionMethodType) {
+        StringBuilder keyTransport = new StringBuilder(encryptionMethodType.getAlgorithm());
+        List<Object> content = encryptionMethodType.getContent();
+        DigestMethodType digestMethodType =
+            XMLSecurityUtils.getQNameType(content, XMLSecurityConstants.TAG_dsig_DigestMethod);
+        if (digestMethodType != null) {
+            keyTransport.append(' ').append(digestMethodType.getAlgorithm());
+        }
+        MGFType mgfType = XMLSecurityUtils.getQNameType(content, XMLSecurityConstants.TAG_xenc11_MGF);
+        if (mgfType != null) {
+            keyTransport.append(' ').append(mgfType.getAlgorithm());
+        }
+        byte[] oaepParams = XMLSecurityUtils.getQNameType(content, XMLSecurityConstants.TAG_xenc_OAEPparams);
+        if (oaepParams != null) {
+            keyTransport.append(' ').append(XMLUtils.encodeToString(oaepParams));
+        }
+        return keyTransport.toString();
+    }
+
+    private static byte[] getEncryptedBytes(CipherDataType cipherDataType) {
+        if (cipherDataType == null || cipherDataType.getCipherValue() == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Object obj : cipherDataType.getCipherValue().getContent()) {
+            if (!(obj instanceof String)) {
+                // The cipher value is an attachment, which is not cached
+                return null;
+            }
+            sb.append((String)obj);
+        }
+        if (sb.length() == 0) {
+            return null;
+        }
+        return XMLUtils.decode(sb.toString());
+    }
+
+    @Override
+    public String getSha1Identifier() {
+        String identifier = delegate.getSha1Identifier();
+        if (identifier == null) {
+            return sha1Identifier;
+        }
+        return identifier;
+    }
+
+    @Override
+    public Map<String, Key> getSecretKey() throws XMLSecurityException {
+        return delegate.getSecretKey();
+    }
+
+    @Override
+    public PublicKey getPublicKey(String algorithmURI, XMLSecurityConstants.AlgorithmUsage algorithmUsage,
+                                  String correlationID) throws XMLSecurityException {
+        return delegate.getPublicKey(algorithmURI, algorithmUsage, correlationID);
+    }
+
+    @Override
+    public void addWrappedToken(InboundSecurityToken securityToken) {
+        delegate.addWrappedToken(securityToken);
+    }
+
+    @Override
+    public void verify() throws XMLSecurityException {
+        delegate.verify();
+    }
+
+    @Override
+    public List<QName> getElementPath() {
+        return delegate.getElementPath();
+    }
+
+    @Override
+    public XMLSecEvent getXMLSecEvent() {
+        return delegate.getXMLSecEvent();
+    }
+
+    @Override
+    public boolean isIncludedInMessage() {
+        return delegate.isIncludedInMessage();
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public boolean isAsymmetric() throws XMLSecurityException {
+        return delegate.isAsymmetric();
+    }
+
+    @Override
+    public PublicKey getPublicKey() throws XMLSecurityException {
+        return delegate.getPublicKey();
+    }
+
+    @Override
+    public X509Certificate[] getX509Certificates() throws XMLSecurityException {
+        return delegate.getX509Certificates();
+    }
+
+    @Override
+    public SecurityToken getKeyWrappingToken() throws XMLSecurityException {
+        return delegate.getKeyWrappingToken();
+    }
+
+    @Override
+    public List<? extends SecurityToken> getWrappedTokens() throws XMLSecurityException {
+        return delegate.getWrappedTokens();
+    }
+
+    @Override
+    public SecurityTokenConstants.KeyIdentifier getKeyIdentifier() {
+        return delegate.getKeyIdentifier();
+    }
+
+    @Override
+    public SecurityTokenConstants.TokenType getTokenType() {
+        return delegate.getTokenType();
+    }
+
+    @Override
+    public List<SecurityTokenConstants.TokenUsage> getTokenUsages() {
+        return delegate.getTokenUsages();
+    }
+
+    @Override
+    public void addTokenUsage(SecurityTokenConstants.TokenUsage tokenUsage) throws XMLSecurityException {
+        delegate.addTokenUsage(tokenUsage);
+    }
+}
@@ -25,7 +25,6 @@ import java.lang.reflect.Proxy;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
-import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -38,6 +37,7 @@ import org.apache.wss4j.binding.wss10.KeyIdentifierType;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.X509CertificateCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -274,28 +274,23 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
                     (WSInboundSecurityContext) inboundSecurityContext, crypto, callbackHandler, binaryContent,
                     securityTokenReferenceId, securityProperties);
         } else if (WSSConstants.NS_THUMBPRINT.equals(valueType)) {
-            try {
-                MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
-                //first look if the token is included in the message (necessary for TokenInclusion policy)...
-                List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
-                        inboundSecurityContext.getRegisteredSecurityTokenProviders();
-                for (int i = 0; i < securityTokenProviders.size(); i++) {
-                    SecurityTokenProvider<? extends InboundSecurityToken> tokenProvider = securityTokenProviders.get(i);
-                    InboundSecurityToken inboundSecurityToken = tokenProvider.getSecurityToken();
-                    if (inboundSecurityToken instanceof X509SecurityToken) {
-                        X509SecurityToken x509SecurityToken = (X509SecurityToken)inboundSecurityToken;
-                        byte[] tokenDigest = messageDigest.digest(x509SecurityToken.getX509Certificates()[0].getEncoded());
+            //first look if the token is included in the message (necessary for TokenInclusion policy)...
+            List<SecurityTokenProvider<? extends InboundSecurityToken>> securityTokenProviders =
+                    inboundSecurityContext.getRegisteredSecurityTokenProviders();
+            for (int i = 0; i < securityTokenProviders.size(); i++) {
+                SecurityTokenProvider<? extends InboundSecurityToken> tokenProvider = securityTokenProviders.get(i);
+                InboundSecurityToken inboundSecurityToken = tokenProvider.getSecurityToken();
+                if (inboundSecurityToken instanceof X509SecurityToken) {
+                    X509SecurityToken x509SecurityToken = (X509SecurityToken)inboundSecurityToken;
+                    // The thumbprint is memoized with the (cached) certificate
+                    byte[] tokenDigest = X509CertificateCache.getInstance()
+                        .get(x509SecurityToken.getX509Certificates()[0]).getSHA1Thumbprint();
 
-                        if (Arrays.equals(tokenDigest, binaryContent)) {
-                            return createSecurityTokenProxy(inboundSecurityToken,
-                                    WSSecurityTokenConstants.KEYIDENTIFIER_THUMBPRINT_IDENTIFIER);
-                        }
+                    if (Arrays.equals(tokenDigest, binaryContent)) {
+                        return createSecurityTokenProxy(inboundSecurityToken,
+                                WSSecurityTokenConstants.KEYIDENTIFIER_THUMBPRINT_IDENTIFIER);
                     }
                 }
-            } catch (NoSuchAlgorithmException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
-            } catch (CertificateEncodingException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN);
             }
 
             //...then if none is found create a new SecurityToken instance
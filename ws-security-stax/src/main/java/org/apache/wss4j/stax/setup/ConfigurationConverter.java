@@ -31,7 +31,11 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
+import org.apache.wss4j.common.cache.PasswordCallbackCache;
+import org.apache.wss4j.common.cache.MappedFileReplayCacheFactory;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.JasyptPasswordEncryptor;
@@ -54,6 +58,10 @@ public final class ConfigurationConverter {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(ConfigurationConverter.class);
 
+    // Holds a single reference to each persistent replay cache for the lifetime of the JVM, so that
+    // converting a configuration (once per message in some deployments) does not open any new references
+    private static final MappedFileReplayCacheFactory REPLAY_CACHE_FACTORY = new MappedFileReplayCacheFactory();
+
     private ConfigurationConverter() {
         // complete
     }
@@ -573,24 +581,55 @@ public final class ConfigurationConverter {
             }
         }
 
+        // Persistent replay caches are only used if no cache instance is configured
+        String replayCacheDirectory = getString(ConfigurationConstants.REPLAY_CACHE_DIRECTORY, config);
+
         ReplayCache nonceCache =
             (ReplayCache)config.get(ConfigurationConstants.NONCE_CACHE_INSTANCE);
+        if (nonceCache == null && replayCacheDirectory != null) {
+            nonceCache = REPLAY_CACHE_FACTORY.newReplayCache("wss4j.nonce.cache", replayCacheDirectory);
+        }
         if (nonceCache != null) {
             properties.setNonceReplayCache(nonceCache);
         }
 
         ReplayCache timestampCache =
             (ReplayCache)config.get(ConfigurationConstants.TIMESTAMP_CACHE_INSTANCE);
+        if (timestampCache == null && replayCacheDirectory != null) {
+            timestampCache = REPLAY_CACHE_FACTORY.newReplayCache("wss4j.timestamp.cache", replayCacheDirectory);
+        }
         if (timestampCache != null) {
             properties.setTimestampReplayCache(timestampCache);
         }
 
         ReplayCache samlOneTimeUseCache =
             (ReplayCache)config.get(ConfigurationConstants.SAML_ONE_TIME_USE_CACHE_INSTANCE);
+        if (samlOneTimeUseCache == null && replayCacheDirectory != null) {
+            samlOneTimeUseCache =
+                REPLAY_CACHE_FACTORY.newReplayCache("wss4j.saml.one.time.use.cache", replayCacheDirectory);
+        }
         if (samlOneTimeUseCache != null) {
             properties.setSamlOneTimeUseReplayCache(samlOneTimeUseCache);
         }
 
+        EncryptedKeyCache encryptedKeyCache =
+            (EncryptedKeyCache)config.get(ConfigurationConstants.ENCRYPTED_KEY_CACHE_INSTANCE);
+        if (encryptedKeyCache != null) {
+            properties.setEncryptedKeyCache(encryptedKeyCache);
+        }
+
+        SamlAssertionCache samlAssertionCache =
+            (SamlAssertionCache)config.get(ConfigurationConstants.SAML_ASSERTION_CACHE_INSTANCE);
+        if (samlAssertionCache != null) {
+            properties.setSamlAssertionCache(samlAssertionCache);
+        }
+
+        PasswordCallbackCache passwordCallbackCache =
+            (PasswordCallbackCache)config.get(ConfigurationConstants.PASSWORD_CALLBACK_CACHE_INSTANCE);
+        if (passwordCallbackCache != null) {
+            properties.setPasswordCallbackCache(passwordCallbackCache);
+        }
+
         String derivedSignatureKeyLength = getString(ConfigurationConstants.DERIVED_SIGNATURE_KEY_LENGTH, config);
         if (derivedSignatureKeyLength != null) {
             int sigLength = Integer.parseInt(derivedSignatureKeyLength);
@@ -38,7 +38,7 @@ import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.Attribute;
 
-import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.crypto.X509CertificateCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -265,7 +265,7 @@ public class WSSUtils extends XMLSecurityUtils {
         abstractOutputProcessor.createStartElementAndOutputAsEvent(outputProcessorChain,
                                                                    WSSConstants.TAG_WSSE_KEY_IDENTIFIER,
                                                                    false, attributes);
-        byte[] data = new Merlin().getSKIBytesFromCert(x509Certificates[0]);
+        byte[] data = X509CertificateCache.getInstance().get(x509Certificates[0]).getSKIBytes();
         abstractOutputProcessor.createCharactersAndOutputAsEvent(outputProcessorChain,
                                                                  XMLUtils.encodeToString(data));
         abstractOutputProcessor.createEndElementAndOutputAsEvent(outputProcessorChain,
@@ -306,14 +306,9 @@ public class WSSUtils extends XMLSecurityUtils {
         abstractOutputProcessor.createStartElementAndOutputAsEvent(outputProcessorChain,
                                                                    WSSConstants.TAG_WSSE_KEY_IDENTIFIER,
                                                                    false, attributes);
-        try {
-            MessageDigest sha = MessageDigest.getInstance("SHA-1");
-            byte[] data = sha.digest(x509Certificates[0].getEncoded());
-            abstractOutputProcessor.createCharactersAndOutputAsEvent(outputProcessorChain,
-                                                                     XMLUtils.encodeToString(data));
-        } catch (CertificateEncodingException | NoSuchAlgorithmException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
-        }
+        byte[] data = X509CertificateCache.getInstance().get(x509Certificates[0]).getSHA1Thumbprint();
+        abstractOutputProcessor.createCharactersAndOutputAsEvent(outputProcessorChain,
+                                                                 XMLUtils.encodeToString(data));
         abstractOutputProcessor.createEndElementAndOutputAsEvent(outputProcessorChain, WSSConstants.TAG_WSSE_KEY_IDENTIFIER);
     }
 
@@ -22,6 +22,7 @@ import java.time.Instant;
 import java.util.List;
 
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
@@ -125,8 +126,13 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
         checkOneTimeUse(samlAssertionWrapper,
                         tokenContext.getWssSecurityProperties().getSamlOneTimeUseReplayCache());
 
-        // Validate the assertion against schemas/profiles
-        validateAssertion(samlAssertionWrapper);
+        // Validate the assertion against schemas/profiles, unless it has been validated previously
+        SamlAssertionCache samlAssertionCache = tokenContext.getWssSecurityProperties().getSamlAssertionCache();
+        if (samlAssertionCache == null
+            || samlAssertionCache.get(samlAssertionCache.getIdentifier(samlAssertionWrapper),
+                tokenContext.getWssSecurityProperties().getSignatureVerificationCrypto(), this) == null) {
+            validateAssertion(samlAssertionWrapper);
+        }
 
         Crypto sigVerCrypto = null;
         if (samlAssertionWrapper.isSigned()) {
@@ -252,20 +258,18 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
             && samlAssertion.getSaml2().getConditions().getOneTimeUse() != null) {
             String identifier = samlAssertion.getId();
 
-            if (replayCache.contains(identifier)) {
+            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
+            Instant zonedExpires = null;
+            if (expires != null) {
+                zonedExpires = Instant.ofEpochMilli(expires.getMillis());
+            }
+
+            if (!replayCache.putIfAbsent(identifier, zonedExpires)) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
                     new Object[] {"A replay attack has been detected"});
             }
-
-            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
-            if (expires != null) {
-                Instant zonedExpires = Instant.ofEpochMilli(expires.getMillis());
-                replayCache.add(identifier, zonedExpires);
-            } else {
-                replayCache.add(identifier);
-            }
         }
     }
 
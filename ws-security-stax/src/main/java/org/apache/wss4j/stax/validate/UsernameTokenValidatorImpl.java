@@ -18,11 +18,17 @@
  */
 package org.apache.wss4j.stax.validate;
 
+import java.io.IOException;
+
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
 import org.apache.wss4j.binding.wss10.AttributedString;
 import org.apache.wss4j.binding.wss10.EncodedString;
 import org.apache.wss4j.binding.wss10.PasswordString;
 import org.apache.wss4j.binding.wss10.UsernameTokenType;
 import org.apache.wss4j.binding.wsu10.AttributedDateTime;
+import org.apache.wss4j.common.cache.PasswordCallbackCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.UsernameTokenUtil;
@@ -133,11 +139,7 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
         } else if (salt != null) {
             WSPasswordCallback pwCb = new WSPasswordCallback(username.getValue(),
                    WSPasswordCallback.USERNAME_TOKEN);
-            try {
-                WSSUtils.doPasswordCallback(tokenContext.getWssSecurityProperties().getCallbackHandler(), pwCb);
-            } catch (WSSecurityException e) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, e);
-            }
+            doPasswordCallback(pwCb, tokenContext);
             password = pwCb.getPassword();
         } else {
             password = null;
@@ -170,18 +172,14 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
                 null,
                 passwordType.getType(),
                 WSPasswordCallback.USERNAME_TOKEN);
-        try {
-            WSSUtils.doPasswordCallback(tokenContext.getWssSecurityProperties().getCallbackHandler(), pwCb);
-        } catch (WSSecurityException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, e);
-        }
+        doPasswordCallback(pwCb, tokenContext);
 
         if (pwCb.getPassword() == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
 
         String passDigest = UsernameTokenUtil.doPasswordDigest(nonceVal, created, pwCb.getPassword());
-        if (!passwordType.getValue().equals(passDigest)) {
+        if (!UsernameTokenUtil.isPasswordEqual(passDigest, passwordType.getValue())) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
         passwordType.setValue(pwCb.getPassword());
@@ -199,22 +197,44 @@ public class UsernameTokenValidatorImpl implements UsernameTokenValidator {
                 null,
                 passwordType.getType(),
                 WSPasswordCallback.USERNAME_TOKEN);
-        try {
-            WSSUtils.doPasswordCallback(tokenContext.getWssSecurityProperties().getCallbackHandler(), pwCb);
-        } catch (WSSecurityException e) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, e);
-        }
+        doPasswordCallback(pwCb, tokenContext);
 
         if (pwCb.getPassword() == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
 
-        if (!passwordType.getValue().equals(pwCb.getPassword())) {
+        if (!UsernameTokenUtil.isPasswordEqual(pwCb.getPassword(), passwordType.getValue())) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
         passwordType.setValue(pwCb.getPassword());
     }
 
+    /**
+     * Get the password of the user from the CallbackHandler, or from the PasswordCallbackCache
+     * if one is configured.
+     */
+    protected void doPasswordCallback(
+        WSPasswordCallback pwCb,
+        TokenContext tokenContext
+    ) throws WSSecurityException {
+        CallbackHandler callbackHandler = tokenContext.getWssSecurityProperties().getCallbackHandler();
+        PasswordCallbackCache passwordCallbackCache =
+            tokenContext.getWssSecurityProperties().getPasswordCallbackCache();
+        if (passwordCallbackCache == null || callbackHandler == null) {
+            try {
+                WSSUtils.doPasswordCallback(callbackHandler, pwCb);
+            } catch (WSSecurityException e) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, e);
+            }
+            return;
+        }
+        try {
+            passwordCallbackCache.handle(callbackHandler, pwCb);
+        } catch (IOException | UnsupportedCallbackException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, e);
+        }
+    }
+
     /**
      * Verify a UsernameToken containing a password of some unknown (but specified) password
      * type.
@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
+import java.security.PublicKey;
 import java.security.Security;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
@@ -51,6 +52,7 @@ import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.wss4j.common.ConfigurationConstants;
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.EncryptedKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -75,6 +77,7 @@ import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.stax.config.Init;
 import org.apache.xml.security.stax.config.TransformerAlgorithmMapper;
 import org.apache.xml.security.stax.ext.SecurePart;
+import org.apache.xml.security.stax.securityEvent.AlgorithmSuiteSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.EncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
@@ -236,6 +239,64 @@ public class EncDecryptionTest extends AbstractTestBase {
         }
     }
 
+    @Test
+    public void testEncryptedKeyCacheInbound() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.ENCRYPT;
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, new Properties());
+
+            Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+        //process the same EncryptedKey twice with a shared cache
+        CountingEncryptedKeyCache encryptedKeyCache = new CountingEncryptedKeyCache();
+        List<List<String>> algorithmSuites = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+            securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+            securityProperties.setEncryptedKeyCache(encryptedKeyCache);
+
+            WSSecurityEventConstants.Event[] expectedSecurityEvents = new WSSecurityEventConstants.Event[]{
+                    WSSecurityEventConstants.AlgorithmSuite,
+                    WSSecurityEventConstants.AlgorithmSuite,
+                    WSSecurityEventConstants.X509Token,
+                    WSSecurityEventConstants.ENCRYPTED_PART,
+                    WSSecurityEventConstants.OPERATION,
+            };
+            final TestSecurityEventListener securityEventListener = new TestSecurityEventListener(expectedSecurityEvents);
+
+            Document document = doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())), securityEventListener);
+
+            //no encrypted content
+            NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedData.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedData.getLocalPart());
+            assertEquals(nodeList.getLength(), 0);
+
+            securityEventListener.compare();
+
+            List<String> algorithmSuite = new ArrayList<>();
+            for (SecurityEvent securityEvent : securityEventListener.getReceivedSecurityEvents()) {
+                if (securityEvent.getSecurityEventType() == WSSecurityEventConstants.AlgorithmSuite) {
+                    AlgorithmSuiteSecurityEvent algorithmSuiteSecurityEvent = (AlgorithmSuiteSecurityEvent) securityEvent;
+                    algorithmSuite.add(algorithmSuiteSecurityEvent.getAlgorithmURI() + " "
+                        + algorithmSuiteSecurityEvent.getAlgorithmUsage() + " "
+                        + algorithmSuiteSecurityEvent.getKeyLength());
+                }
+            }
+            algorithmSuites.add(algorithmSuite);
+
+            assertEquals(1, encryptedKeyCache.size());
+            assertEquals(i, encryptedKeyCache.hits);
+        }
+
+        //the cached key is reported with the same algorithms and key lengths as the decrypted one
+        assertEquals(algorithmSuites.get(0), algorithmSuites.get(1));
+    }
+
     @Test
     public void testEncDecryptionCryptoPropertiesOutbound() throws Exception {
 
@@ -2693,4 +2754,18 @@ public class EncDecryptionTest extends AbstractTestBase {
             assertEquals(nodeList.getLength(), 0);
         }
     }
+
+    private static class CountingEncryptedKeyCache extends EncryptedKeyCache {
+
+        private int hits;
+
+        @Override
+        public byte[] get(byte[] encryptedKey, String keyTransport, PublicKey recipientKey) {
+            byte[] secretKey = super.get(encryptedKey, keyTransport, recipientKey);
+            if (secretKey != null) {
+                hits++;
+            }
+            return secretKey;
+        }
+    }
 }
\ No newline at end of file
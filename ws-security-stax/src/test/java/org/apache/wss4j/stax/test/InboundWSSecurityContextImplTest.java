@@ -731,6 +731,94 @@ public class InboundWSSecurityContextImplTest {
         return securityEventList;
     }
 
+    @Test
+    public void testTokenIdentificationManySignedSupportingTokens() throws Exception {
+
+        final List<SecurityEvent> securityEventList = new LinkedList<>();
+
+        SecurityEventListener securityEventListener = new SecurityEventListener() {
+            @Override
+            public void registerSecurityEvent(SecurityEvent securityEvent) throws WSSecurityException {
+                securityEventList.add(securityEvent);
+            }
+        };
+
+        InboundWSSecurityContextImpl inboundWSSecurityContext = new InboundWSSecurityContextImpl();
+        inboundWSSecurityContext.addSecurityEventListener(securityEventListener);
+
+        List<XMLSecurityConstants.ContentType> protectionOrder = new LinkedList<>();
+        protectionOrder.add(XMLSecurityConstants.ContentType.SIGNATURE);
+
+        List<QName> bstPath = new LinkedList<>();
+        bstPath.addAll(WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH);
+        bstPath.add(WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN);
+
+        X509TokenSecurityEvent x509TokenSecurityEvent = new X509TokenSecurityEvent();
+        X509SecurityTokenImpl initiatorToken = getX509Token(WSSecurityTokenConstants.X509V3Token);
+        initiatorToken.setElementPath(bstPath);
+        initiatorToken.setXMLSecEvent(
+            XMLSecEventFactory.createXmlSecStartElement(WSSConstants.TAG_WSSE_BINARY_SECURITY_TOKEN, null, null));
+        initiatorToken.addTokenUsage(WSSecurityTokenConstants.TokenUsage_Signature);
+        x509TokenSecurityEvent.setSecurityToken(initiatorToken);
+        inboundWSSecurityContext.registerSecurityEvent(x509TokenSecurityEvent);
+
+        List<QName> timestampPath = new LinkedList<>();
+        timestampPath.addAll(WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH);
+        timestampPath.add(WSSConstants.TAG_WSU_TIMESTAMP);
+
+        SignedElementSecurityEvent signedTimestampElementSecurityEvent =
+            new SignedElementSecurityEvent(initiatorToken, true, protectionOrder);
+        signedTimestampElementSecurityEvent.setElementPath(timestampPath);
+        inboundWSSecurityContext.registerSecurityEvent(signedTimestampElementSecurityEvent);
+
+        List<QName> usernameTokenPath = new LinkedList<>();
+        usernameTokenPath.addAll(WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH);
+        usernameTokenPath.add(WSSConstants.TAG_WSSE_USERNAME_TOKEN);
+
+        // Each UsernameToken is signed by the initiator token
+        int usernameTokenCount = 50;
+        for (int i = 0; i < usernameTokenCount; i++) {
+            XMLSecEvent usernameTokenXmlEvent =
+                XMLSecEventFactory.createXmlSecStartElement(WSSConstants.TAG_WSSE_USERNAME_TOKEN, null, null);
+
+            UsernameSecurityTokenImpl usernameSecurityToken = new UsernameSecurityTokenImpl(
+                    WSSConstants.UsernameTokenPasswordType.PASSWORD_TEXT,
+                    "username" + i, "password", null, null, new byte[10], 10L,
+                    null, IDGenerator.generateID(null), WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE);
+            usernameSecurityToken.setElementPath(usernameTokenPath);
+            usernameSecurityToken.setXMLSecEvent(usernameTokenXmlEvent);
+            UsernameTokenSecurityEvent usernameTokenSecurityEvent = new UsernameTokenSecurityEvent();
+            usernameTokenSecurityEvent.setSecurityToken(usernameSecurityToken);
+            inboundWSSecurityContext.registerSecurityEvent(usernameTokenSecurityEvent);
+
+            SignedElementSecurityEvent signedUsernameTokenElementSecurityEvent =
+                new SignedElementSecurityEvent(initiatorToken, true, protectionOrder);
+            signedUsernameTokenElementSecurityEvent.setElementPath(usernameTokenPath);
+            signedUsernameTokenElementSecurityEvent.setXmlSecEvent(usernameTokenXmlEvent);
+            inboundWSSecurityContext.registerSecurityEvent(signedUsernameTokenElementSecurityEvent);
+        }
+
+        OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+        operationSecurityEvent.setOperation(new QName("definitions"));
+        inboundWSSecurityContext.registerSecurityEvent(operationSecurityEvent);
+
+        int usernameTokenSecurityEvents = 0;
+        for (int i = 0; i < securityEventList.size(); i++) {
+            SecurityEvent securityEvent = securityEventList.get(i);
+            if (securityEvent instanceof X509TokenSecurityEvent) {
+                X509TokenSecurityEvent tokenSecurityEvent = (X509TokenSecurityEvent) securityEvent;
+                assertEquals(tokenSecurityEvent.getSecurityToken().getTokenUsages().size(), 1);
+                assertTrue(tokenSecurityEvent.getSecurityToken().getTokenUsages().contains(WSSecurityTokenConstants.TOKENUSAGE_MAIN_SIGNATURE));
+            } else if (securityEvent instanceof UsernameTokenSecurityEvent) {
+                UsernameTokenSecurityEvent tokenSecurityEvent = (UsernameTokenSecurityEvent) securityEvent;
+                assertEquals(tokenSecurityEvent.getSecurityToken().getTokenUsages().size(), 1);
+                assertTrue(tokenSecurityEvent.getSecurityToken().getTokenUsages().contains(WSSecurityTokenConstants.TOKENUSAGE_SIGNED_SUPPORTING_TOKENS));
+                usernameTokenSecurityEvents++;
+            }
+        }
+        assertEquals(usernameTokenCount, usernameTokenSecurityEvents);
+    }
+
     private X509SecurityTokenImpl getX509Token(WSSecurityTokenConstants.TokenType tokenType) throws Exception {
 
         final KeyStore keyStore = KeyStore.getInstance("jks");
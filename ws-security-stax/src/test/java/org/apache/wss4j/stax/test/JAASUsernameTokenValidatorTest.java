@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.test;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.NameCallback;
+import javax.security.auth.callback.PasswordCallback;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.FailedLoginException;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+import javax.xml.bind.JAXBElement;
+
+import org.apache.wss4j.binding.wss10.AttributedString;
+import org.apache.wss4j.binding.wss10.PasswordString;
+import org.apache.wss4j.binding.wss10.UsernameTokenType;
+import org.apache.wss4j.common.cache.SubjectCache;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.crypto.WSProviderConfig;
+import org.apache.wss4j.common.principal.CustomTokenPrincipal;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.impl.InboundWSSecurityContextImpl;
+import org.apache.wss4j.stax.impl.securityToken.UsernameSecurityTokenImpl;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.wss4j.stax.validate.JAASUsernameTokenValidatorImpl;
+import org.apache.wss4j.stax.validate.TokenContext;
+import org.apache.xml.security.stax.config.Init;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.impl.util.IDGenerator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Some tests for the JAASUsernameTokenValidatorImpl, using a LoginModule that counts how often
+ * it is asked to log a user in.
+ */
+public class JAASUsernameTokenValidatorTest {
+
+    private static final String CONTEXT_NAME = "CountingLoginModule";
+
+    private static Configuration previousConfiguration;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        WSProviderConfig.init();
+        Init.init(WSSec.class.getClassLoader().getResource("wss/wss-config.xml").toURI(), WSSec.class);
+
+        previousConfiguration = Configuration.getConfiguration();
+        Configuration.setConfiguration(new Configuration() {
+            @Override
+            public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+                if (!CONTEXT_NAME.equals(name)) {
+                    return previousConfiguration.getAppConfigurationEntry(name);
+                }
+                return new AppConfigurationEntry[] {
+                    new AppConfigurationEntry(CountingLoginModule.class.getName(),
+                        AppConfigurationEntry.LoginModuleControlFlag.REQUIRED,
+                        Collections.<String, Object>emptyMap())
+                };
+            }
+        });
+    }
+
+    @AfterAll
+    public static void cleanup() throws Exception {
+        Configuration.setConfiguration(previousConfiguration);
+    }
+
+    @BeforeEach
+    public void resetLogins() {
+        CountingLoginModule.LOGINS.set(0);
+    }
+
+    @Test
+    public void testLogin() throws Exception {
+        JAASUsernameTokenValidatorImpl validator = new JAASUsernameTokenValidatorImpl();
+        validator.setContextName(CONTEXT_NAME);
+
+        validate(validator, "alice", CountingLoginModule.PASSWORD);
+        validate(validator, "alice", CountingLoginModule.PASSWORD);
+        assertEquals(2, CountingLoginModule.LOGINS.get());
+    }
+
+    @Test
+    public void testSubjectCache() throws Exception {
+        JAASUsernameTokenValidatorImpl validator = new JAASUsernameTokenValidatorImpl();
+        validator.setContextName(CONTEXT_NAME);
+        validator.setSubjectCache(new SubjectCache());
+
+        UsernameSecurityTokenImpl token = validate(validator, "alice", CountingLoginModule.PASSWORD);
+        assertEquals(1, CountingLoginModule.LOGINS.get());
+        assertEquals("alice", token.getSubject().getPrincipals().iterator().next().getName());
+
+        // The cached Subject is used without running the LoginModule again
+        token = validate(validator, "alice", CountingLoginModule.PASSWORD);
+        assertEquals(1, CountingLoginModule.LOGINS.get());
+        assertNotNull(token.getSubject());
+        assertEquals("alice", token.getSubject().getPrincipals().iterator().next().getName());
+
+        // A wrong password for the cached user still goes to the LoginModule, which rejects it
+        try {
+            validate(validator, "alice", "wrongPassword");
+            fail("Failure expected on a wrong password");
+        } catch (WSSecurityException ex) {
+            assertTrue(ex.getErrorCode() == WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        }
+        assertEquals(2, CountingLoginModule.LOGINS.get());
+
+        // The failed login does not evict the cached Subject
+        validate(validator, "alice", CountingLoginModule.PASSWORD);
+        assertEquals(2, CountingLoginModule.LOGINS.get());
+    }
+
+    private UsernameSecurityTokenImpl validate(
+        JAASUsernameTokenValidatorImpl validator, String user, String password
+    ) throws Exception {
+        UsernameTokenType usernameTokenType = new UsernameTokenType();
+        usernameTokenType.setId(IDGenerator.generateID(null));
+        AttributedString username = new AttributedString();
+        username.setValue(user);
+        usernameTokenType.setUsername(username);
+        PasswordString passwordString = new PasswordString();
+        passwordString.setValue(password);
+        passwordString.setType(WSSConstants.NS_PASSWORD_TEXT);
+        usernameTokenType.getAny().add(
+            new JAXBElement<>(WSSConstants.TAG_WSSE_PASSWORD, PasswordString.class, passwordString));
+
+        List<XMLSecEvent> xmlSecEvents = new LinkedList<>();
+        xmlSecEvents.add(XMLSecEventFactory.createXmlSecStartElement(WSSConstants.TAG_WSSE_USERNAME_TOKEN, null, null));
+        TokenContext tokenContext = new TokenContext(new WSSSecurityProperties(), new InboundWSSecurityContextImpl(),
+                                                     xmlSecEvents, WSSConstants.SOAP_11_WSSE_SECURITY_HEADER_PATH);
+        return validator.validate(usernameTokenType, tokenContext);
+    }
+
+    /**
+     * A LoginModule that accepts a single password for any user, and counts the logins.
+     */
+    public static class CountingLoginModule implements LoginModule {
+
+        static final String PASSWORD = "security";
+        static final AtomicInteger LOGINS = new AtomicInteger();
+
+        private Subject subject;
+        private CallbackHandler callbackHandler;
+        private String user;
+
+        @Override
+        public void initialize(Subject subject, CallbackHandler callbackHandler,
+                               Map<String, ?> sharedState, Map<String, ?> options) {
+            this.subject = subject;
+            this.callbackHandler = callbackHandler;
+        }
+
+        @Override
+        public boolean login() throws LoginException {
+            LOGINS.incrementAndGet();
+            NameCallback nameCallback = new NameCallback("user");
+            PasswordCallback passwordCallback = new PasswordCallback("password", false);
+            try {
+                callbackHandler.handle(new Callback[] {nameCallback, passwordCallback});
+            } catch (Exception ex) {
+                throw new LoginException(ex.getMessage());
+            }
+            if (!PASSWORD.equals(new String(passwordCallback.getPassword()))) {
+                throw new FailedLoginException("Wrong password");
+            }
+            user = nameCallback.getName();
+            return true;
+        }
+
+        @Override
+        public boolean commit() throws LoginException {
+            subject.getPrincipals().add(new CustomTokenPrincipal(user));
+            return true;
+        }
+
+        @Override
+        public boolean abort() throws LoginException {
+            user = null;
+            return true;
+        }
+
+        @Override
+        public boolean logout() throws LoginException {
+            subject.getPrincipals().clear();
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.wss4j.stax.ext.PooledDocumentCreator;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PooledDocumentCreatorTest {
+
+    @Test
+    public void testDefaultDocumentCreator() throws Exception {
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        assertTrue(securityProperties.getDocumentCreator() instanceof PooledDocumentCreator);
+
+        // The default DocumentCreator is shared, so that its pools are not created per configuration
+        assertSame(securityProperties.getDocumentCreator(), new WSSSecurityProperties().getDocumentCreator());
+    }
+
+    @Test
+    public void testNewDocument() throws Exception {
+        PooledDocumentCreator documentCreator = new PooledDocumentCreator(1);
+
+        Document document = documentCreator.newDocument();
+        Element element = document.createElementNS("urn:test", "ns:Test");
+        document.appendChild(element);
+
+        // A new Document is returned each time, even though the DocumentBuilder is reused
+        Document otherDocument = documentCreator.newDocument();
+        assertNotSame(document, otherDocument);
+        assertNull(otherDocument.getDocumentElement());
+        assertEquals("urn:test", document.getDocumentElement().getNamespaceURI());
+    }
+
+    @Test
+    public void testConcurrentNewDocument() throws Exception {
+        PooledDocumentCreator documentCreator = new PooledDocumentCreator(2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Document>> documents = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                documents.add(executor.submit(documentCreator::newDocument));
+            }
+            for (Future<Document> document : documents) {
+                assertNull(document.get().getDocumentElement());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.stax.test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.wss4j.binding.wss10.BinarySecurityTokenType;
+import org.apache.wss4j.binding.wss10.EncodedString;
+import org.apache.wss4j.binding.wss10.PasswordString;
+import org.apache.wss4j.binding.wss10.UsernameTokenType;
+import org.apache.wss4j.binding.wsu10.AttributedDateTime;
+import org.apache.wss4j.binding.wsu10.TimestampType;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.impl.processor.input.XMLSecEventBinder;
+import org.apache.xml.security.stax.ext.XMLSecurityUtils;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class XMLSecEventBinderTest {
+
+    private static final String NAMESPACES =
+        " xmlns:wsse=\"" + WSSConstants.NS_WSSE10 + "\" xmlns:wsu=\"" + WSSConstants.NS_WSU10 + "\"";
+
+    @Test
+    public void testTimestamp() throws Exception {
+        TimestampType timestampType = XMLSecEventBinder.bindTimestamp(getXMLSecEvents(
+            "<wsu:Timestamp" + NAMESPACES + " wsu:Id=\"TS-1\">\n"
+            + "  <wsu:Created>2020-01-01T12:00:00.000Z</wsu:Created>\n"
+            + "  <wsu:Expires>2020-01-01T12:05:00.000Z</wsu:Expires>\n"
+            + "</wsu:Timestamp>"));
+        assertNotNull(timestampType);
+        assertEquals("TS-1", timestampType.getId());
+        assertEquals("2020-01-01T12:00:00.000Z", timestampType.getCreated().getValue());
+        assertEquals("2020-01-01T12:05:00.000Z", timestampType.getExpires().getValue());
+
+        // Expires before Created is left to JAXB (and the schema validation)
+        assertNull(XMLSecEventBinder.bindTimestamp(getXMLSecEvents(
+            "<wsu:Timestamp" + NAMESPACES + ">"
+            + "<wsu:Expires>2020-01-01T12:05:00.000Z</wsu:Expires>"
+            + "<wsu:Created>2020-01-01T12:00:00.000Z</wsu:Created>"
+            + "</wsu:Timestamp>")));
+        // As is an extension element
+        assertNull(XMLSecEventBinder.bindTimestamp(getXMLSecEvents(
+            "<wsu:Timestamp" + NAMESPACES + ">"
+            + "<wsu:Created>2020-01-01T12:00:00.000Z</wsu:Created><ext:Other xmlns:ext=\"urn:ext\"/>"
+            + "</wsu:Timestamp>")));
+    }
+
+    @Test
+    public void testUsernameToken() throws Exception {
+        UsernameTokenType usernameTokenType = XMLSecEventBinder.bindUsernameToken(getXMLSecEvents(
+            "<wsse:UsernameToken" + NAMESPACES + " wsu:Id=\"UsernameToken-1\">"
+            + "<wsse:Username>wernerd</wsse:Username>"
+            + "<wsse:Password Type=\"" + WSSConstants.NS_PASSWORD_DIGEST + "\">digest</wsse:Password>"
+            + "<wsse:Nonce EncodingType=\"" + WSSConstants.SOAPMESSAGE_NS10_BASE64_ENCODING + "\">bm9uY2U=</wsse:Nonce>"
+            + "<wsu:Created>2020-01-01T12:00:00.000Z</wsu:Created>"
+            + "</wsse:UsernameToken>"));
+        assertNotNull(usernameTokenType);
+        assertEquals("UsernameToken-1", usernameTokenType.getId());
+        assertEquals("wernerd", usernameTokenType.getUsername().getValue());
+
+        PasswordString password =
+            XMLSecurityUtils.getQNameType(usernameTokenType.getAny(), WSSConstants.TAG_WSSE_PASSWORD);
+        assertEquals("digest", password.getValue());
+        assertEquals(WSSConstants.NS_PASSWORD_DIGEST, password.getType());
+        EncodedString nonce = XMLSecurityUtils.getQNameType(usernameTokenType.getAny(), WSSConstants.TAG_WSSE_NONCE);
+        assertEquals("bm9uY2U=", nonce.getValue());
+        assertEquals(WSSConstants.SOAPMESSAGE_NS10_BASE64_ENCODING, nonce.getEncodingType());
+        AttributedDateTime created =
+            XMLSecurityUtils.getQNameType(usernameTokenType.getAny(), WSSConstants.TAG_WSU_CREATED);
+        assertEquals("2020-01-01T12:00:00.000Z", created.getValue());
+
+        // A derived key UsernameToken (with a Salt) is left to JAXB
+        assertNull(XMLSecEventBinder.bindUsernameToken(getXMLSecEvents(
+            "<wsse:UsernameToken" + NAMESPACES + " xmlns:wsse11=\"" + WSSConstants.NS_WSSE11 + "\">"
+            + "<wsse:Username>wernerd</wsse:Username><wsse11:Salt>c2FsdA==</wsse11:Salt>"
+            + "</wsse:UsernameToken>")));
+        // As is a UsernameToken with a comment, or with an Id that is not a plain NCName
+        assertNull(XMLSecEventBinder.bindUsernameToken(getXMLSecEvents(
+            "<wsse:UsernameToken" + NAMESPACES + "><wsse:Username>wernerd</wsse:Username><!-- comment -->"
+            + "</wsse:UsernameToken>")));
+        assertNull(XMLSecEventBinder.bindUsernameToken(getXMLSecEvents(
+            "<wsse:UsernameToken" + NAMESPACES + " wsu:Id=\"1\"><wsse:Username>wernerd</wsse:Username>"
+            + "</wsse:UsernameToken>")));
+    }
+
+    @Test
+    public void testBinarySecurityToken() throws Exception {
+        BinarySecurityTokenType binarySecurityTokenType = XMLSecEventBinder.bindBinarySecurityToken(getXMLSecEvents(
+            "<wsse:BinarySecurityToken" + NAMESPACES + " wsu:Id=\"X509-1\""
+            + " EncodingType=\"" + WSSConstants.SOAPMESSAGE_NS10_BASE64_ENCODING + "\""
+            + " ValueType=\"" + WSSConstants.NS_X509_V3_TYPE + "\">MIIB\nAAAA</wsse:BinarySecurityToken>"));
+        assertNotNull(binarySecurityTokenType);
+        assertEquals("X509-1", binarySecurityTokenType.getId());
+        assertEquals(WSSConstants.SOAPMESSAGE_NS10_BASE64_ENCODING, binarySecurityTokenType.getEncodingType());
+        assertEquals(WSSConstants.NS_X509_V3_TYPE, binarySecurityTokenType.getValueType());
+        assertEquals(1, binarySecurityTokenType.getContent().size());
+        assertEquals("MIIB\nAAAA", binarySecurityTokenType.getContent().get(0));
+
+        // A xop:Include is left to JAXB
+        assertNull(XMLSecEventBinder.bindBinarySecurityToken(getXMLSecEvents(
+            "<wsse:BinarySecurityToken" + NAMESPACES + " ValueType=\"" + WSSConstants.NS_X509_V3_TYPE + "\">"
+            + "<xop:Include xmlns:xop=\"http://www.w3.org/2004/08/xop/include\" href=\"cid:id\"/>"
+            + "</wsse:BinarySecurityToken>")));
+    }
+
+    private static List<XMLSecEvent> getXMLSecEvents(String xml) throws Exception {
+        XMLStreamReader xmlStreamReader =
+            XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+        List<XMLSecEvent> xmlSecEvents = new ArrayList<>();
+        XMLSecStartElement parentXMLSecStartElement = null;
+        while (xmlStreamReader.hasNext()) {
+            int eventType = xmlStreamReader.next();
+            if (eventType == XMLStreamConstants.END_DOCUMENT) {
+                break;
+            }
+            XMLSecEvent xmlSecEvent = XMLSecEventFactory.allocate(xmlStreamReader, parentXMLSecStartElement);
+            if (eventType == XMLStreamConstants.START_ELEMENT) {
+                parentXMLSecStartElement = xmlSecEvent.asStartElement();
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                parentXMLSecStartElement = parentXMLSecStartElement.getParentXMLSecStartElement();
+            }
+            xmlSecEvents.add(xmlSecEvent);
+        }
+        return xmlSecEvents;
+    }
+}
@@ -39,9 +39,11 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.cache.SamlAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.SAMLCallback;
 import org.apache.wss4j.common.saml.SAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -71,6 +73,7 @@ import org.apache.xml.security.encryption.XMLCipher;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.keys.KeyInfo;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
 import org.joda.time.DateTime;
 import org.junit.jupiter.api.Test;
 import org.opensaml.core.xml.XMLObjectBuilder;
@@ -391,6 +394,65 @@ public class SAMLTokenTest extends AbstractTestBase {
         }
     }
 
+    /**
+     * Test that a signed SAML 2 assertion is cached once it has been validated, for the
+     * signature verification Crypto it has been trusted with.
+     */
+    @Test
+    public void testSAML2SignedAssertionCacheInbound() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        {
+            SAML2CallbackHandler callbackHandler = new SAML2CallbackHandler();
+            callbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+            callbackHandler.setIssuer("www.example.com");
+            callbackHandler.setConfirmationMethod(SAML2Constants.CONF_BEARER);
+
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.SAML_TOKEN_UNSIGNED;
+            Properties properties = new Properties();
+            properties.put(WSHandlerConstants.SAML_CALLBACK_REF, callbackHandler);
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, properties);
+
+            //the assertion itself is signed
+            NodeList nodeList = securedDocument.getElementsByTagNameNS(WSSConstants.TAG_dsig_Signature.getNamespaceURI(), WSSConstants.TAG_dsig_Signature.getLocalPart());
+            assertEquals(nodeList.getLength(), 1);
+            assertEquals(nodeList.item(0).getParentNode().getLocalName(), WSSConstants.TAG_SAML2_ASSERTION.getLocalPart());
+
+            javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+
+        SamlAssertionCache samlAssertionCache = new SamlAssertionCache();
+        CountingSamlTokenValidator validator = new CountingSamlTokenValidator();
+        Crypto crypto = CryptoFactory.getInstance("receiver-crypto.properties");
+
+        //the assertion is verified and trusted once, and then taken from the cache
+        for (int i = 0; i < 2; i++) {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.setSignatureVerificationCrypto(crypto);
+            securityProperties.addValidator(WSSConstants.TAG_SAML2_ASSERTION, validator);
+            securityProperties.setSamlAssertionCache(samlAssertionCache);
+            Document document = doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+            assertEquals(document.getElementsByTagNameNS(WSSConstants.NS_SAML2, "Assertion").getLength(), 1);
+
+            assertEquals(1, samlAssertionCache.size());
+            assertEquals(1, validator.trustChecks);
+        }
+
+        //another signature verification Crypto verifies and trusts the assertion itself
+        {
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.setSignatureVerificationCrypto(CryptoFactory.getInstance("receiver-crypto.properties"));
+            securityProperties.addValidator(WSSConstants.TAG_SAML2_ASSERTION, validator);
+            securityProperties.setSamlAssertionCache(samlAssertionCache);
+            doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())));
+
+            assertEquals(2, samlAssertionCache.size());
+            assertEquals(2, validator.trustChecks);
+        }
+    }
+
     @Test
     public void testSAML2AttrAssertionOutbound() throws Exception {
 
@@ -1235,4 +1297,16 @@ public class SAMLTokenTest extends AbstractTestBase {
 
         cipher.doFinal(document, elementToEncrypt, content);
     }
+
+    private static class CountingSamlTokenValidator extends SamlTokenValidatorImpl {
+
+        private int trustChecks;
+
+        @Override
+        public void validate(InboundSecurityToken inboundSecurityToken, WSSSecurityProperties wssSecurityProperties)
+            throws WSSecurityException {
+            trustChecks++;
+            super.validate(inboundSecurityToken, wssSecurityProperties);
+        }
+    }
 }
\ No newline at end of file